@@ -29,7 +29,6 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.apache.hadoop.hdfs.BFTRandom;
 import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
 import org.apache.hadoop.hdfs.server.namenode.DatanodeDescriptor;
 import org.apache.hadoop.hdfs.server.namenode.FSNamesystem;
@@ -560,8 +559,7 @@ public class NetworkTopology implements Writable {
     }
   }
     
-  //final private static Random r = new Random();
-  private static Random r = BFTRandom.getRandom();
+  final private static Random r = new Random();
   /** randomly choose one node from <i>scope</i>
    * if scope starts with ~, choose one from the all nodes except for the
    * ones in <i>scope</i>; otherwise, choose one from <i>scope</i>
@@ -569,19 +567,27 @@ public class NetworkTopology implements Writable {
    * @return the choosen node
    */
   public Node chooseRandom(String scope) {
+    return chooseRandom(scope, r);
+  }
+
+  /** randomly choose one node from <i>scope</i>, drawing from <i>random</i>
+   * @see #chooseRandom(String)
+   */
+  public Node chooseRandom(String scope, Random random) {
     netlock.readLock().lock();
     try {
       if (scope.startsWith("~")) {
-        return chooseRandom(NodeBase.ROOT, scope.substring(1));
+        return chooseRandom(NodeBase.ROOT, scope.substring(1), random);
       } else {
-        return chooseRandom(scope, null);
+        return chooseRandom(scope, null, random);
       }
     } finally {
       netlock.readLock().unlock();
     }
   }
     
-  private Node chooseRandom(String scope, String excludedScope){
+  private Node chooseRandom(String scope, String excludedScope,
+                            Random random){
     if (excludedScope != null) {
       if (scope.startsWith(excludedScope)) {
         return null;
@@ -606,7 +612,7 @@ public class NetworkTopology implements Writable {
         numOfDatanodes -= ((InnerNode)node).getNumOfLeaves();
       }
     }
-    int leaveIndex = r.nextInt(numOfDatanodes);
+    int leaveIndex = random.nextInt(numOfDatanodes);
     return innerNode.getLeaf(leaveIndex, node);
   }
        
@@ -689,6 +695,15 @@ public class NetworkTopology implements Writable {
    * It leaves the rest nodes untouched.
    */
   public void pseudoSortByDistance( Node reader, Node[] nodes ) {
+    pseudoSortByDistance(reader, nodes, r);
+  }
+
+  /** Sort nodes array by their distances to <i>reader</i>, drawing the
+   * random replica location from <i>random</i>
+   * @see #pseudoSortByDistance(Node, Node[])
+   */
+  public void pseudoSortByDistance( Node reader, Node[] nodes,
+                                    Random random ) {
     int tempIndex = 0;
     if (reader != null ) {
       int localRackNode = -1;
@@ -722,7 +737,7 @@ public class NetworkTopology implements Writable {
     
     // put a random node at position 0 if it is not a local/local-rack node
     if(tempIndex == 0 && nodes.length != 0) {
-      swap(nodes, 0, r.nextInt(nodes.length));
+      swap(nodes, 0, random.nextInt(nodes.length));
     }
   }
 
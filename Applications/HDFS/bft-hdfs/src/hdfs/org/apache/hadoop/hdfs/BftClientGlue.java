@@ -3,7 +3,6 @@
 package org.apache.hadoop.hdfs;
 
 import java.io.IOException;
-import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.net.InetSocketAddress;
@@ -25,10 +24,14 @@ import org.apache.hadoop.hdfs.protocol.FSConstants.DatanodeReportType;
 import org.apache.hadoop.hdfs.protocol.FSConstants.SafeModeAction;
 import org.apache.hadoop.hdfs.protocol.FSConstants.UpgradeAction;
 import org.apache.hadoop.hdfs.server.common.UpgradeStatusReport;
+import org.apache.hadoop.hdfs.server.protocol.BlockReportDelta;
 import org.apache.hadoop.hdfs.server.protocol.DatanodeCommand;
 import org.apache.hadoop.hdfs.server.protocol.DatanodeProtocol;
 import org.apache.hadoop.hdfs.server.protocol.DatanodeRegistration;
+import org.apache.hadoop.hdfs.server.protocol.HeartbeatBatch;
+import org.apache.hadoop.hdfs.server.protocol.HeartbeatReplies;
 import org.apache.hadoop.hdfs.server.protocol.NamespaceInfo;
+import org.apache.hadoop.hdfs.server.protocol.ReceivedBlocks;
 import org.apache.hadoop.hdfs.server.protocol.UpgradeCommand;
 import org.apache.hadoop.ipc.RPC;
 import org.apache.hadoop.ipc.Server;
@@ -60,6 +63,16 @@ public class BftClientGlue implements ClientProtocol, DatanodeProtocol{
 	
 	ClientShimBaseNode clientShim;
 	
+	// merges the heartbeats of the datanodes, unless
+	// dfs.bft.clientGlue.heartbeatInterval is 0
+	private BftHeartbeatCoalescer heartbeats = null;
+	
+	// block report bytes sent for ordering, logged once an hour
+	private static final long REPORT_WINDOW = 3600 * 1000;
+	private long reportWindowStart = System.currentTimeMillis();
+	private long reportBytes = 0;
+	private int reportCount = 0;
+	
 	public BftClientGlue(
 			Configuration _conf){
 		this.conf = _conf;
@@ -72,6 +85,7 @@ public class BftClientGlue implements ClientProtocol, DatanodeProtocol{
 		
 		// here we instantiate cleint shim
 		clientShim = new ClientShimBaseNode(shimConfigurationFile, shimId);
+		clientShim.setGlue(new BftGlueInvoker.ReplyGlue());
 		clientShim.setNetwork(new TCPNetwork(clientShim));
 		clientShim.start();
 		
@@ -86,6 +100,19 @@ public class BftClientGlue implements ClientProtocol, DatanodeProtocol{
 					new Class[] { DatanodeProtocol.class },
 					new Invoker(NodeType.DATANODE));
 		
+		long heartbeatInterval =
+			conf.getLong("dfs.bft.clientGlue.heartbeatInterval", 1000);
+		if(heartbeatInterval > 0){
+			heartbeats = new BftHeartbeatCoalescer(proxyDataNodeProtocol,
+					heartbeatInterval,
+					conf.getInt("dfs.bft.clientGlue.heartbeatBatchSize", 256),
+					// ten heartbeats of a datanode
+					10 * 1000 * conf.getLong("dfs.heartbeat.interval", 3));
+			Thread t = new Thread(heartbeats, "BftHeartbeatCoalescer");
+			t.setDaemon(true);
+			t.start();
+		}
+		
 		// initialize hadoop rpc server
 		String wrapperRPCServerAddr =       	
 			conf.get("dfs.bft.clientGlue.ip","localhost") + ":"
@@ -104,29 +131,36 @@ public class BftClientGlue implements ClientProtocol, DatanodeProtocol{
 	
 	
 	/**
-	 * Invoker that sends a message that corresponds to each hadoop rpc call
-	 * to bftNamenodeWrapper
+	 * Invoker that also accounts the bytes of block reports
 	 */
-	private class Invoker implements InvocationHandler {
-		
-		NodeType nodeType;
+	private class Invoker extends BftGlueInvoker {
 		
 		public Invoker(NodeType nodeType){
-			this.nodeType = nodeType;
+			super(clientShim, nodeType, null, conf);
 		}
 
-		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable{
-			BftGlueInvocation invocation = new BftGlueInvocation(method, args);
-			LOG.debug("Calling : " + invocation);
-			BftGlueRequest req = new BftGlueRequest(invocation, nodeType, UserGroupInformation.getCurrentUGI(), conf);
-			byte[] request = req.toBytes(); 
-			byte[] result = clientShim.execute(request);			
-			BftGlueReply reply = BftGlueReply.getReplyFromBytes(result, conf);			
-			return reply.getReturnValue().get();
+		protected void requestEncoded(Method method, byte[] request){
+			if(method.getName().startsWith("blockReport")){
+				accountReport(method.getName(), request.length);
+			}
 		}
 
 	}
 	
+	private synchronized void accountReport(String method, int bytes){
+		long now = System.currentTimeMillis();
+		if(now - reportWindowStart >= REPORT_WINDOW){
+			LOG.info("Block reports ordered in the last hour: " + reportCount
+					+ " reports, " + reportBytes + " bytes");
+			reportWindowStart = now;
+			reportBytes = 0;
+			reportCount = 0;
+		}
+		reportBytes += bytes;
+		reportCount++;
+		LOG.info(method + " of " + bytes + " bytes sent for ordering, "
+				+ reportBytes + " bytes this hour");
+	}
 	
 	//
 	// ClientProtocol - called by the rpc server
@@ -280,6 +314,11 @@ public class BftClientGlue implements ClientProtocol, DatanodeProtocol{
 		proxyDataNodeProtocol.blockReceived(registration, blocks, delHints);
 	}
 
+	public void blocksReceived(DatanodeRegistration registration,
+			ReceivedBlocks blocks) throws IOException {
+		proxyDataNodeProtocol.blocksReceived(registration, blocks);
+	}
+
 	public DatanodeCommand blockReport(DatanodeRegistration registration,
 			long[] blocks) throws IOException {
 		return proxyDataNodeProtocol.blockReport(registration, blocks);
@@ -290,6 +329,11 @@ public class BftClientGlue implements ClientProtocol, DatanodeProtocol{
 		return proxyDataNodeProtocol.blockReport(registration, blocks);
 	}
 
+	public DatanodeCommand blockReportDelta(DatanodeRegistration registration,
+			BlockReportDelta delta) throws IOException {
+		return proxyDataNodeProtocol.blockReportDelta(registration, delta);
+	}
+
 	public void errorReport(DatanodeRegistration registration, int errorCode,
 			String msg) throws IOException {
 		proxyDataNodeProtocol.errorReport(registration, errorCode, msg);
@@ -302,16 +346,31 @@ public class BftClientGlue implements ClientProtocol, DatanodeProtocol{
 
 	public DatanodeRegistration register(DatanodeRegistration registration)
 	throws IOException {
-		return proxyDataNodeProtocol.register(registration);
+		DatanodeRegistration registered =
+			proxyDataNodeProtocol.register(registration);
+		if(heartbeats != null){
+			heartbeats.registered(registration);
+			heartbeats.registered(registered);
+		}
+		return registered;
 	}
 
 	public DatanodeCommand sendHeartbeat(DatanodeRegistration registration,
 			long capacity, long dfsUsed, long remaining, int xmitsInProgress,
 			int xceiverCount) throws IOException {
+		if(heartbeats != null){
+			return heartbeats.sendHeartbeat(registration, capacity, 
+					dfsUsed, remaining, xmitsInProgress, xceiverCount);
+		}
 		return proxyDataNodeProtocol.sendHeartbeat(registration, capacity, 
 				dfsUsed, remaining, xmitsInProgress, xceiverCount);
 	}
 
+	public HeartbeatReplies sendHeartbeats(HeartbeatBatch batch)
+	throws IOException {
+		return proxyDataNodeProtocol.sendHeartbeats(batch);
+	}
+
 	public NamespaceInfo versionRequest() throws IOException {
 		return proxyDataNodeProtocol.versionRequest();
 	}
@@ -337,6 +396,11 @@ public class BftClientGlue implements ClientProtocol, DatanodeProtocol{
 		proxyClientProtocol.setTimes(src, mtime, atime);
 	}
 
+	@Override
+	public void updateAccessTimes(String[] srcs) throws IOException {
+		proxyClientProtocol.updateAccessTimes(srcs);
+	}
+
 
 	@Override
 	public void commitBlockSynchronization(Block block, 
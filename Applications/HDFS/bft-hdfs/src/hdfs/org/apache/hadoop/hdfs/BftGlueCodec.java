@@ -0,0 +1,402 @@
+package org.apache.hadoop.hdfs;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.TreeMap;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.protocol.ClientProtocol;
+import org.apache.hadoop.hdfs.server.protocol.DatanodeProtocol;
+import org.apache.hadoop.io.ObjectWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableFactories;
+import org.apache.hadoop.security.UnixUserGroupInformation;
+import org.apache.hadoop.security.UserGroupInformation;
+
+/**
+ * The compact encoding of glue requests and replies. Instead of the
+ * method name and an ObjectWritable per value, a call is written as a
+ * method id followed by its parameters, each encoded by its declared
+ * type:
+ *
+ *  - primitives are written fixed width, with no class name;
+ *  - strings are interned within a message, and paths are interned one
+ *    component at a time, so a path repeated in a call or sharing its
+ *    parent with another costs a few bytes;
+ *  - arrays are a length and their elements, enums their ordinal;
+ *  - writables are a flag and their fields, with a class name only when
+ *    the value is a subclass of the declared type;
+ *  - anything else falls back to ObjectWritable.
+ *
+ * The method ids index the sorted methods of ClientProtocol and
+ * DatanodeProtocol. Both sides must agree on that table, so every
+ * request carries VERSION, a hash of the table, and a replica built
+ * with a different table rejects the request with a
+ * VersionMismatchException instead of calling the wrong method.
+ */
+public class BftGlueCodec {
+
+	public static final int VERSION;
+
+	private static final Method[] methods;
+	private static final HashMap<Method, Integer> methodIds =
+		new HashMap<Method, Integer>();
+
+	static {
+		TreeMap<String, Method> sorted = new TreeMap<String, Method>();
+		for(Class<?> protocol : new Class<?>[] {
+				ClientProtocol.class, DatanodeProtocol.class }){
+			for(Method m : protocol.getMethods()){
+				sorted.put(signature(m), m);
+			}
+		}
+		methods = sorted.values().toArray(new Method[sorted.size()]);
+		StringBuilder schema = new StringBuilder();
+		for(int i = 0; i < methods.length; i++){
+			methodIds.put(methods[i], i);
+			schema.append(signature(methods[i]));
+			schema.append(methods[i].getReturnType().getName());
+			for(Class<?> type : methods[i].getParameterTypes()){
+				appendEnumConstants(schema, type);
+			}
+			appendEnumConstants(schema, methods[i].getReturnType());
+		}
+		VERSION = schema.toString().hashCode();
+	}
+
+	private static String signature(Method m){
+		StringBuilder s = new StringBuilder();
+		s.append(m.getDeclaringClass().getName()).append('.');
+		s.append(m.getName()).append('(');
+		for(Class<?> type : m.getParameterTypes()){
+			s.append(type.getName()).append(',');
+		}
+		return s.append(')').toString();
+	}
+
+	// enums are sent by ordinal, so their constants are part of the schema
+	private static void appendEnumConstants(StringBuilder schema, Class<?> type){
+		while(type.isArray()){
+			type = type.getComponentType();
+		}
+		if(type.isEnum()){
+			for(Object constant : type.getEnumConstants()){
+				schema.append(constant).append(',');
+			}
+		}
+	}
+
+	/** The id of method, or -1 if it is not part of the schema. */
+	public static int getMethodId(Method method){
+		Integer id = methodIds.get(method);
+		return id == null ? -1 : id;
+	}
+
+	public static Method getMethod(int id) throws IOException {
+		if(id < 0 || id >= methods.length){
+			throw new IOException("Unknown method id " + id);
+		}
+		return methods[id];
+	}
+
+	/**
+	 * Thrown for a request encoded with a different method table.
+	 */
+	public static class VersionMismatchException extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		public VersionMismatchException(int version){
+			super("Glue codec version " + version + ", expected " + VERSION);
+		}
+	}
+
+	/**
+	 * The strings seen so far in one message, in the order they were
+	 * first written or read.
+	 */
+	public static class Strings {
+		private HashMap<String, Integer> ids = new HashMap<String, Integer>();
+		private ArrayList<String> list = new ArrayList<String>();
+
+		private void add(String s){
+			ids.put(s, list.size());
+			list.add(s);
+		}
+	}
+
+	// null is -1, a new string 0, a back reference the id plus one and a
+	// new path of n components -2-n
+	public static void writeString(DataOutput out, String s, Strings strings)
+	throws IOException {
+		if(s == null){
+			WritableUtils.writeVInt(out, -1);
+			return;
+		}
+		Integer id = strings.ids.get(s);
+		if(id != null){
+			WritableUtils.writeVInt(out, id + 1);
+		} else if(s.length() > 1 && s.charAt(0) == Path.SEPARATOR_CHAR){
+			String[] components = s.substring(1).split(Path.SEPARATOR, -1);
+			WritableUtils.writeVInt(out, -2 - components.length);
+			for(String component : components){
+				writeString(out, component, strings);
+			}
+			strings.add(s);
+		} else {
+			WritableUtils.writeVInt(out, 0);
+			Text.writeString(out, s);
+			strings.add(s);
+		}
+	}
+
+	public static String readString(DataInput in, Strings strings)
+	throws IOException {
+		int k = WritableUtils.readVInt(in);
+		if(k == -1){
+			return null;
+		}
+		if(k > 0){
+			if(k > strings.list.size()){
+				throw new IOException("Bad string reference " + k);
+			}
+			return strings.list.get(k - 1);
+		}
+		String s;
+		if(k == 0){
+			s = readText(in);
+		} else {
+			StringBuilder path = new StringBuilder();
+			for(int i = -2 - k; i > 0; i--){
+				path.append(Path.SEPARATOR_CHAR);
+				path.append(readComponent(in, strings));
+			}
+			s = path.toString();
+		}
+		strings.add(s);
+		return s;
+	}
+
+	// a path component is a new string or a reference to one, never a path
+	private static String readComponent(DataInput in, Strings strings)
+	throws IOException {
+		int k = WritableUtils.readVInt(in);
+		String s;
+		if(k == 0){
+			s = readText(in);
+			strings.add(s);
+		} else if(k > 0 && k <= strings.list.size()){
+			s = strings.list.get(k - 1);
+		} else {
+			throw new IOException("Bad path component " + k);
+		}
+		if(s.indexOf(Path.SEPARATOR_CHAR) >= 0){
+			throw new IOException("Bad path component " + s);
+		}
+		return s;
+	}
+
+	private static String readText(DataInput in) throws IOException {
+		int length = WritableUtils.readVInt(in);
+		if(length < 0){
+			throw new IOException("Bad string length " + length);
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return Text.decode(bytes);
+	}
+
+	public static void writeValue(DataOutput out, Class<?> type, Object value,
+			Strings strings, Configuration conf) throws IOException {
+		if(type == void.class){
+		} else if(type == long.class){
+			out.writeLong((Long) value);
+		} else if(type == int.class){
+			out.writeInt((Integer) value);
+		} else if(type == short.class){
+			out.writeShort((Short) value);
+		} else if(type == boolean.class){
+			out.writeBoolean((Boolean) value);
+		} else if(type == byte.class){
+			out.writeByte((Byte) value);
+		} else if(type == char.class){
+			out.writeChar((Character) value);
+		} else if(type == float.class){
+			out.writeFloat((Float) value);
+		} else if(type == double.class){
+			out.writeDouble((Double) value);
+		} else if(type == String.class){
+			writeString(out, (String) value, strings);
+		} else if(type.isArray()){
+			if(value == null){
+				WritableUtils.writeVInt(out, -1);
+				return;
+			}
+			int length = Array.getLength(value);
+			WritableUtils.writeVInt(out, length);
+			if(type == long[].class){
+				for(long l : (long[]) value){
+					out.writeLong(l);
+				}
+				return;
+			}
+			Class<?> component = type.getComponentType();
+			for(int i = 0; i < length; i++){
+				writeValue(out, component, Array.get(value, i), strings, conf);
+			}
+		} else if(type.isEnum()){
+			WritableUtils.writeVInt(out,
+					value == null ? -1 : ((Enum<?>) value).ordinal());
+		} else if(Writable.class.isAssignableFrom(type)){
+			if(value == null){
+				out.writeByte(0);
+			} else if(value.getClass() == type){
+				out.writeByte(1);
+				((Writable) value).write(out);
+			} else {
+				out.writeByte(2);
+				writeString(out, value.getClass().getName(), strings);
+				((Writable) value).write(out);
+			}
+		} else {
+			ObjectWritable.writeObject(out, value, type, conf);
+		}
+	}
+
+	public static Object readValue(DataInput in, Class<?> type,
+			Strings strings, Configuration conf) throws IOException {
+		if(type == void.class){
+			return null;
+		} else if(type == long.class){
+			return in.readLong();
+		} else if(type == int.class){
+			return in.readInt();
+		} else if(type == short.class){
+			return in.readShort();
+		} else if(type == boolean.class){
+			return in.readBoolean();
+		} else if(type == byte.class){
+			return in.readByte();
+		} else if(type == char.class){
+			return in.readChar();
+		} else if(type == float.class){
+			return in.readFloat();
+		} else if(type == double.class){
+			return in.readDouble();
+		} else if(type == String.class){
+			return readString(in, strings);
+		} else if(type.isArray()){
+			int length = WritableUtils.readVInt(in);
+			if(length < 0){
+				return null;
+			}
+			if(type == long[].class){
+				long[] value = new long[length];
+				for(int i = 0; i < length; i++){
+					value[i] = in.readLong();
+				}
+				return value;
+			}
+			Class<?> component = type.getComponentType();
+			Object value = Array.newInstance(component, length);
+			for(int i = 0; i < length; i++){
+				Array.set(value, i, readValue(in, component, strings, conf));
+			}
+			return value;
+		} else if(type.isEnum()){
+			int ordinal = WritableUtils.readVInt(in);
+			if(ordinal < 0){
+				return null;
+			}
+			Object[] constants = type.getEnumConstants();
+			if(ordinal >= constants.length){
+				throw new IOException("Bad ordinal " + ordinal + " for " + type);
+			}
+			return constants[ordinal];
+		} else if(Writable.class.isAssignableFrom(type)){
+			byte flag = in.readByte();
+			if(flag == 0){
+				return null;
+			}
+			Class<?> actual = type;
+			if(flag == 2){
+				actual = getClass(readString(in, strings), conf);
+				if(!type.isAssignableFrom(actual)){
+					throw new IOException(actual + " is not a " + type);
+				}
+			} else if(flag != 1){
+				throw new IOException("Bad writable flag " + flag);
+			}
+			Writable value = WritableFactories.newInstance(
+					actual.asSubclass(Writable.class), conf);
+			value.readFields(in);
+			return value;
+		} else {
+			return ObjectWritable.readObject(in, conf);
+		}
+	}
+
+	private static Class<?> getClass(String name, Configuration conf)
+	throws IOException {
+		try {
+			return conf != null ? conf.getClassByName(name) : Class.forName(name);
+		} catch (ClassNotFoundException e) {
+			throw new IOException("Unknown class " + name);
+		}
+	}
+
+	/**
+	 * The caller of a request: a unix user as its interned names, and
+	 * anything else as an ObjectWritable.
+	 */
+	public static void writeTicket(DataOutput out, UserGroupInformation ticket,
+			Strings strings, Configuration conf) throws IOException {
+		if(ticket == null){
+			out.writeByte(0);
+		} else if(ticket.getClass() == UnixUserGroupInformation.class){
+			out.writeByte(1);
+			writeString(out, ticket.getUserName(), strings);
+			String[] groups = ticket.getGroupNames();
+			WritableUtils.writeVInt(out, groups.length);
+			for(String group : groups){
+				writeString(out, group, strings);
+			}
+		} else {
+			out.writeByte(2);
+			ObjectWritable.writeObject(out, ticket, UserGroupInformation.class, conf);
+		}
+	}
+
+	public static UserGroupInformation readTicket(DataInput in,
+			Strings strings, Configuration conf) throws IOException {
+		byte flag = in.readByte();
+		if(flag == 0){
+			return null;
+		} else if(flag == 1){
+			String user = readString(in, strings);
+			int n = WritableUtils.readVInt(in);
+			if(n < 0){
+				throw new IOException("Bad ticket group count " + n);
+			}
+			String[] groups = new String[n];
+			for(int i = 0; i < groups.length; i++){
+				groups[i] = readString(in, strings);
+			}
+			try {
+				return new UnixUserGroupInformation(user, groups);
+			} catch (IllegalArgumentException e) {
+				throw new IOException("Bad ticket: " + e.getMessage());
+			}
+		} else if(flag == 2){
+			return (UserGroupInformation) ObjectWritable.readObject(in, conf);
+		}
+		throw new IOException("Bad ticket flag " + flag);
+	}
+}
@@ -18,6 +18,7 @@ public class BftGlueInvocation implements Writable, Configurable {
 	private String methodName;
 	private Class[] parameterClasses;
 	private Object[] parameters;
+	private Method method;
 	private Configuration conf;
 
 	public BftGlueInvocation() {}
@@ -26,6 +27,7 @@ public class BftGlueInvocation implements Writable, Configurable {
 		this.methodName = method.getName();
 		this.parameterClasses = method.getParameterTypes();
 		this.parameters = parameters;
+		this.method = method;
 	}
 
 	/** The name of the method invoked. */
@@ -37,6 +39,9 @@ public class BftGlueInvocation implements Writable, Configurable {
 	/** The parameter instances. */
 	public Object[] getParameters() { return parameters; }
 
+	/** The protocol method, or null if it was read by name. */
+	public Method getMethod() { return method; }
+
 	public void readFields(DataInput in) throws IOException {
 		methodName = UTF8.readString(in);
 		parameters = new Object[in.readInt()];
@@ -59,6 +64,28 @@ public class BftGlueInvocation implements Writable, Configurable {
 		}
 	}
 
+	/** Read the method id and the parameters by their declared types. */
+	public void readCompact(DataInput in, BftGlueCodec.Strings strings)
+	throws IOException {
+		method = BftGlueCodec.getMethod(in.readShort());
+		methodName = method.getName();
+		parameterClasses = method.getParameterTypes();
+		parameters = new Object[parameterClasses.length];
+		for (int i = 0; i < parameters.length; i++) {
+			parameters[i] = BftGlueCodec.readValue(in, parameterClasses[i],
+					strings, conf);
+		}
+	}
+
+	public void writeCompact(DataOutput out, BftGlueCodec.Strings strings)
+	throws IOException {
+		out.writeShort(BftGlueCodec.getMethodId(method));
+		for (int i = 0; i < parameterClasses.length; i++) {
+			BftGlueCodec.writeValue(out, parameterClasses[i], parameters[i],
+					strings, conf);
+		}
+	}
+
 	public String toString() {
 		StringBuffer buffer = new StringBuffer();
 		buffer.append(methodName);
@@ -0,0 +1,332 @@
+package org.apache.hadoop.hdfs;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hdfs.BftGlueCodec.VersionMismatchException;
+import org.apache.hadoop.hdfs.BftGlueRequest.NodeType;
+import org.apache.hadoop.hdfs.protocol.ClientProtocol;
+import org.apache.hadoop.hdfs.server.protocol.DatanodeProtocol;
+import org.apache.hadoop.ipc.RemoteException;
+import org.apache.hadoop.security.UserGroupInformation;
+
+import BFT.clientShim.ClientGlueInterface;
+import BFT.clientShim.ClientShimBaseNode;
+import BFT.network.TCPNetwork;
+import BFT.util.StageTimes;
+
+/**
+ * Turns each protocol call into a BftGlueRequest and executes it through
+ * a client shim. Used by BftClientGlue behind its RPC server, and by
+ * DFSClient directly when dfs.bft.client.embedded is set, which saves
+ * the loopback RPC hop to the glue.
+ *
+ * With dfs.bft.client.readOnlyBlockLocations set, getBlockLocations is
+ * sent as a read-only request, which the replicas answer without
+ * ordering it. The files read that way are collected per caller, and
+ * dfs.bft.client.accessTimeInterval ms after the first of them was read
+ * their access times are set with one ordered updateAccessTimes call
+ * per caller, made as that caller. Reads whose access times are still
+ * pending when the process exits are not recorded.
+ *
+ * Calls are encoded with BftGlueCodec unless dfs.bft.glue.compact is
+ * false. If the replicas were built with a different method table, the
+ * invoker falls back to the ObjectWritable encoding for good.
+ */
+public class BftGlueInvoker implements InvocationHandler {
+	public static final Log LOG = LogFactory.getLog(BftGlueInvoker.class);
+
+	// print latency stats every STATS_INTERVAL calls
+	private static final int STATS_INTERVAL = 10000;
+
+	// flush pending access times once this many files were read
+	private static final int MAX_PENDING_ACCESS = 1000;
+
+	private static final Method GET_BLOCK_LOCATIONS;
+	private static final Method UPDATE_ACCESS_TIMES;
+	static {
+		try {
+			GET_BLOCK_LOCATIONS = ClientProtocol.class.getMethod("getBlockLocations",
+					String.class, long.class, long.class);
+			UPDATE_ACCESS_TIMES = ClientProtocol.class.getMethod("updateAccessTimes",
+					String[].class);
+		} catch (NoSuchMethodException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static ClientShimBaseNode embeddedShim = null;
+
+	// sends the access times pending in any invoker
+	private static Timer accessTimer = null;
+
+	private ClientShimBaseNode clientShim;
+	private NodeType nodeType;
+	private UserGroupInformation ugi;
+	private Configuration conf;
+
+	private long calls = 0;
+	private long encodeTime = 0;
+	private long executeTime = 0;
+	private long decodeTime = 0;
+	private long requestBytes = 0;
+
+	private volatile boolean compact;
+
+	private boolean readOnlyBlockLocations;
+	private long accessTimeInterval;
+	// files read without ordering whose access times are pending, per caller
+	private final Map<UserGroupInformation, LinkedHashSet<String>> pendingAccess =
+		new HashMap<UserGroupInformation, LinkedHashSet<String>>();
+	private int pendingAccessCount = 0;
+
+	/**
+	 * @param ugi the caller, or null to use the current UGI of each call
+	 */
+	public BftGlueInvoker(ClientShimBaseNode clientShim, NodeType nodeType,
+			UserGroupInformation ugi, Configuration conf){
+		this.clientShim = clientShim;
+		this.nodeType = nodeType;
+		this.ugi = ugi;
+		this.conf = conf;
+		this.readOnlyBlockLocations = nodeType == NodeType.CLIENT
+			&& conf.getBoolean("dfs.bft.client.readOnlyBlockLocations", false);
+		this.accessTimeInterval =
+			conf.getLong("dfs.bft.client.accessTimeInterval", 60 * 1000);
+		this.compact = conf.getBoolean("dfs.bft.glue.compact", true);
+	}
+
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable{
+		return call(method, args,
+				ugi == null ? UserGroupInformation.getCurrentUGI() : ugi);
+	}
+
+	private Object call(Method method, Object[] args, UserGroupInformation caller)
+	throws Throwable{
+		long start = System.nanoTime();
+		BftGlueInvocation invocation = new BftGlueInvocation(method, args);
+		LOG.debug("Calling : " + invocation);
+		boolean compactCall = compact && BftGlueCodec.getMethodId(method) >= 0;
+		BftGlueRequest req = new BftGlueRequest(invocation, nodeType, caller, conf,
+				compactCall);
+		byte[] request = req.toBytes();
+		requestEncoded(method, request);
+		long encoded = System.nanoTime();
+		boolean readOnly = readOnlyBlockLocations && method.equals(GET_BLOCK_LOCATIONS);
+		byte[] result = readOnly ? clientShim.executeReadOnlyRequest(request)
+				: clientShim.execute(request);
+		long executed = System.nanoTime();
+		BftGlueReply reply = compactCall
+			? BftGlueReply.getReplyFromBytes(result, method, conf)
+			: BftGlueReply.getReplyFromBytes(result, conf);
+		Object ret;
+		try {
+			ret = reply.getReturnValue().get();
+		} catch (RemoteException e) {
+			if(compactCall && VersionMismatchException.class.getName()
+					.equals(e.getClassName())){
+				LOG.warn("Replicas use another glue codec version, falling back"
+						+ " to the ObjectWritable encoding: " + e.getMessage());
+				compact = false;
+				return call(method, args, caller);
+			}
+			throw e;
+		}
+		long decoded = System.nanoTime();
+		StageTimes.add("glue.encode", encoded - start);
+		StageTimes.add("glue.decode", decoded - executed);
+		account(encoded - start, executed - encoded, decoded - executed,
+				request.length);
+		if(readOnly){
+			accessed(caller, (String) args[0]);
+		}
+		return ret;
+	}
+
+	/**
+	 * Remember that caller read src without ordering. The first pending
+	 * read schedules the access times to be sent, too many send them now.
+	 */
+	private void accessed(UserGroupInformation caller, String src){
+		synchronized(pendingAccess){
+			LinkedHashSet<String> srcs = pendingAccess.get(caller);
+			if(srcs == null){
+				srcs = new LinkedHashSet<String>();
+				pendingAccess.put(caller, srcs);
+			}
+			if(!srcs.add(src)){
+				return;
+			}
+			if(pendingAccessCount++ == 0){
+				getAccessTimer().schedule(new TimerTask(){
+					public void run(){
+						flushAccessTimes();
+					}
+				}, accessTimeInterval);
+			}
+			if(pendingAccessCount < MAX_PENDING_ACCESS){
+				return;
+			}
+		}
+		flushAccessTimes();
+	}
+
+	/**
+	 * Set the pending access times, with a call per caller made as the
+	 * caller, so that each is checked against its own permissions.
+	 */
+	private void flushAccessTimes(){
+		Map<UserGroupInformation, LinkedHashSet<String>> pending;
+		synchronized(pendingAccess){
+			if(pendingAccessCount == 0){
+				return;
+			}
+			pending = new HashMap<UserGroupInformation, LinkedHashSet<String>>(
+					pendingAccess);
+			pendingAccess.clear();
+			pendingAccessCount = 0;
+		}
+		for(Map.Entry<UserGroupInformation, LinkedHashSet<String>> e
+				: pending.entrySet()){
+			String[] srcs = e.getValue().toArray(new String[e.getValue().size()]);
+			try {
+				call(UPDATE_ACCESS_TIMES, new Object[] { srcs }, e.getKey());
+			} catch (Throwable t) {
+				LOG.warn("Could not update access times of " + srcs.length
+						+ " files read by " + e.getKey() + ": " + t);
+			}
+		}
+	}
+
+	private static synchronized Timer getAccessTimer(){
+		if(accessTimer == null){
+			accessTimer = new Timer("BftGlueInvoker access times", true);
+		}
+		return accessTimer;
+	}
+
+	/**
+	 * Called with every request before it is sent for ordering.
+	 */
+	protected void requestEncoded(Method method, byte[] request){
+	}
+
+	private synchronized void account(long encode, long execute, long decode,
+			int bytes){
+		calls++;
+		requestBytes += bytes;
+		encodeTime += encode;
+		executeTime += execute;
+		decodeTime += decode;
+		if(calls % STATS_INTERVAL == 0){
+			LOG.info(nodeType + " calls: " + calls
+					+ " encode: " + encodeTime / calls / 1000 + " us"
+					+ " execute: " + executeTime / calls / 1000 + " us"
+					+ " decode: " + decodeTime / calls / 1000 + " us"
+					+ " request: " + requestBytes / calls + " bytes");
+		}
+	}
+
+	/**
+	 * Create a ClientProtocol that sends calls straight to the BFT
+	 * namenode replicas through a client shim hosted in this process.
+	 * All embedded clients of a JVM share one shim, whose id and
+	 * configuration file come from dfs.bft.client.shimId and
+	 * dfs.bft.client.configFile, or the UpRightShimID and
+	 * UpRightConfigFile system properties.
+	 */
+	public static ClientProtocol createEmbeddedClient(Configuration conf,
+			UserGroupInformation ugi){
+		return createClient(getEmbeddedShim(conf), conf, ugi);
+	}
+
+	/**
+	 * Create a DatanodeProtocol over the shared embedded client shim.
+	 * Calls carry the current UGI of the calling thread.
+	 */
+	public static DatanodeProtocol createEmbeddedDatanode(Configuration conf){
+		return createDatanode(getEmbeddedShim(conf), conf);
+	}
+
+	/**
+	 * Create a ClientProtocol over the given shim. A shim has one request
+	 * outstanding at a time, so callers that should not wait for each
+	 * other need a shim each.
+	 */
+	public static ClientProtocol createClient(ClientShimBaseNode shim,
+			Configuration conf, UserGroupInformation ugi){
+		return (ClientProtocol) Proxy.newProxyInstance(
+				ClientProtocol.class.getClassLoader(),
+				new Class[] { ClientProtocol.class },
+				new BftGlueInvoker(shim, NodeType.CLIENT, ugi, conf));
+	}
+
+	public static DatanodeProtocol createDatanode(ClientShimBaseNode shim,
+			Configuration conf){
+		return (DatanodeProtocol) Proxy.newProxyInstance(
+				DatanodeProtocol.class.getClassLoader(),
+				new Class[] { DatanodeProtocol.class },
+				new BftGlueInvoker(shim, NodeType.DATANODE, null, conf));
+	}
+
+	/**
+	 * Start a client shim with the given id in this process.
+	 */
+	public static ClientShimBaseNode startShim(String configFile, int shimId){
+		LOG.info("Starting embedded client shim " + shimId + " with " + configFile);
+		ClientShimBaseNode shim = new ClientShimBaseNode(configFile, shimId);
+		shim.setGlue(new ReplyGlue());
+		shim.setNetwork(new TCPNetwork(shim));
+		shim.start();
+		return shim;
+	}
+
+	private static synchronized ClientShimBaseNode getEmbeddedShim(Configuration conf){
+		if(embeddedShim == null){
+			int shimId = conf.getInt("dfs.bft.client.shimId",
+					Integer.parseInt(System.getProperty("UpRightShimID", "0")));
+			String configFile = conf.get("dfs.bft.client.configFile",
+					System.getProperty("UpRightConfigFile"));
+			embeddedShim = startShim(configFile, shimId);
+		}
+		return embeddedShim;
+	}
+
+	/**
+	 * Calls go through the synchronous execute methods of the shim, so
+	 * the glue only has to pick the reply to a read-only request: the
+	 * replicas that answered must agree on it.
+	 */
+	public static class ReplyGlue implements ClientGlueInterface {
+		public void brokenConnection(){
+		}
+
+		public void returnReply(byte[] reply){
+		}
+
+		public byte[] canonicalEntry(byte[][] options){
+			byte[] entry = null;
+			for(byte[] option : options){
+				if(option == null){
+					continue;
+				}
+				if(entry == null){
+					entry = option;
+				} else if(!Arrays.equals(entry, option)){
+					return null;
+				}
+			}
+			return entry;
+		}
+	}
+}
@@ -9,6 +9,7 @@ import java.io.DataInputStream;
 import java.io.DataOutput;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.lang.reflect.Method;
 
 import org.apache.hadoop.conf.Configurable;
 import org.apache.hadoop.conf.Configuration;
@@ -25,6 +26,9 @@ public class BftGlueReply implements Writable, Configurable{
 	private String strErrorClass;
 	private String strErrorMsg;
 	
+	// the declared type of the value, for the BftGlueCodec encoding
+	private Class<?> compactType;
+	
 	public BftGlueReply(){}
 	
 	// used by getReply()
@@ -44,12 +48,36 @@ public class BftGlueReply implements Writable, Configurable{
 		return rep;
 	}
 	
+	/**
+	 * Decode a reply in the BftGlueCodec encoding, to a request for method.
+	 */
+	public static BftGlueReply 
+	getReplyFromBytes(byte[] bytesForm, Method method, Configuration conf)
+	throws IOException {
+		BftGlueReply rep = new BftGlueReply(conf);
+		rep.compactType = method.getReturnType();
+		
+		ByteArrayInputStream bais = new ByteArrayInputStream(bytesForm);
+		DataInputStream dis = new DataInputStream(bais);
+		rep.readFields(dis);
+
+		return rep;
+	}
+	
 	public BftGlueReply(ObjectWritable retval, Configuration _conf) {
 		returnValue = retval;
 		isError = false;
 		this.conf = _conf;
 	}
 
+	/**
+	 * A reply in the BftGlueCodec encoding.
+	 */
+	public BftGlueReply(Class<?> type, Object value, Configuration _conf) {
+		this(new ObjectWritable(type, value), _conf);
+		compactType = type;
+	}
+
 	public BftGlueReply(String errorClass, 
 			String errorMsg, Configuration _conf) {
 		isError = true;
@@ -90,6 +118,11 @@ public class BftGlueReply implements Writable, Configurable{
 	      strErrorClass = in.readUTF();
 	      strErrorMsg = in.readUTF();
 	      returnValue = null;
+	    }else if(compactType != null){
+	      returnValue = new ObjectWritable(compactType, BftGlueCodec.readValue(
+	          in, compactType, new BftGlueCodec.Strings(), conf));
+	      strErrorClass = null;
+	      strErrorMsg = null;
 	    }else{
 	      ObjectWritable ow = new ObjectWritable();
 	      ow.setConf(conf);
@@ -106,6 +139,9 @@ public class BftGlueReply implements Writable, Configurable{
 	    if(isError){
 	      out.writeUTF(strErrorClass);
 	      out.writeUTF(strErrorMsg);
+	    }else if(compactType != null){
+	      BftGlueCodec.writeValue(out, compactType, returnValue.get(),
+	          new BftGlueCodec.Strings(), conf);
 	    }else{
 	      returnValue.write(out);
 	    }
@@ -26,6 +26,9 @@ public class BftGlueRequest implements Writable, Configurable{
 	private BftGlueInvocation invocation;
 	private NodeType nodeType;
 	private UserGroupInformation ticket;
+	
+	// whether the request is in the BftGlueCodec encoding
+	private boolean compact;
 
 	public BftGlueRequest(){}
 	
@@ -53,6 +56,16 @@ public class BftGlueRequest implements Writable, Configurable{
 		conf = _conf;
 	}
 
+	/**
+	 * @param _compact encode the request with BftGlueCodec; the method of
+	 *        the invocation must have a method id
+	 */
+	public BftGlueRequest(BftGlueInvocation _invocation, NodeType _nodeType,
+			UserGroupInformation _ticket, Configuration _conf, boolean _compact) {
+		this(_invocation, _nodeType, _ticket, _conf);
+		compact = _compact;
+	}
+
 
 	private void setNodeType(NodeType type) {
 		this.nodeType = type;	
@@ -73,6 +86,10 @@ public class BftGlueRequest implements Writable, Configurable{
 	public UserGroupInformation getTicket() {
 		return ticket;
 	}
+
+	public boolean isCompact() {
+		return compact;
+	}
 	
 	//serialize to byte array
 	public byte[] toBytes() {	
@@ -97,14 +114,28 @@ public class BftGlueRequest implements Writable, Configurable{
 	@Override
 	public void readFields(DataInput in) throws IOException {
 		int type = in.readByte();
-		if(type==0){
+		if(type==0 || type==2){
 			nodeType = NodeType.CLIENT;
-		}else if(type==1){
+		}else if(type==1 || type==3){
 			nodeType = NodeType.DATANODE;
 		}else{
 			throw new IOException("unknown node type");
 		}
 		
+		compact = type >= 2;
+		if(compact){
+			int version = in.readInt();
+			if(version != BftGlueCodec.VERSION){
+				throw new BftGlueCodec.VersionMismatchException(version);
+			}
+			invocation = new BftGlueInvocation();
+			invocation.setConf(conf);
+			BftGlueCodec.Strings strings = new BftGlueCodec.Strings();
+			invocation.readCompact(in, strings);
+			ticket = BftGlueCodec.readTicket(in, strings, conf);
+			return;
+		}
+		
 		Writable param = (
 				Writable)ReflectionUtils.newInstance(BftGlueInvocation.class, conf);
 		param.readFields(in);
@@ -119,14 +150,25 @@ public class BftGlueRequest implements Writable, Configurable{
 	
 	@Override
 	public void write(DataOutput out) throws IOException {
-		// write the node type
+		// write the node type, plus 2 for the compact encoding
+		int type;
 		if(this.nodeType == NodeType.CLIENT){
-			out.writeByte(0);
+			type = 0;
 		} else if(this.nodeType == NodeType.DATANODE){
-			out.writeByte(1);
+			type = 1;
 		} else {
 			throw new IOException("inappropriate node type");
 		}
+		
+		if(compact){
+			out.writeByte(type + 2);
+			out.writeInt(BftGlueCodec.VERSION);
+			BftGlueCodec.Strings strings = new BftGlueCodec.Strings();
+			invocation.writeCompact(out, strings);
+			BftGlueCodec.writeTicket(out, ticket, strings, conf);
+			return;
+		}
+		out.writeByte(type);
 
 		// write the invocation
 		invocation.write(out);
@@ -0,0 +1,194 @@
+package org.apache.hadoop.hdfs;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hdfs.protocol.DatanodeID;
+import org.apache.hadoop.hdfs.server.protocol.DatanodeCommand;
+import org.apache.hadoop.hdfs.server.protocol.DatanodeProtocol;
+import org.apache.hadoop.hdfs.server.protocol.DatanodeRegistration;
+import org.apache.hadoop.hdfs.server.protocol.HeartbeatBatch;
+import org.apache.hadoop.hdfs.server.protocol.HeartbeatReplies;
+import org.apache.hadoop.ipc.RemoteException;
+
+/**
+ * Merges the heartbeats of the datanodes behind a client glue into one
+ * ordered sendHeartbeats request every interval ms.
+ *
+ * A heartbeat does not wait for its batch: it is queued, replacing a
+ * heartbeat of the same datanode still queued, and answered at once with
+ * the oldest reply a batch returned for its datanode that it has not
+ * been given yet. A datanode thus gets its commands, or the errors its
+ * heartbeats failed with, in order with its next heartbeats. A batch is
+ * sent early once maxBatch heartbeats are queued, which keeps it well
+ * under the size limit of a request.
+ *
+ * The replies still queued for a datanode are dropped when it registers
+ * again, since they were meant for its old registration, and when it
+ * has sent no heartbeat for expiry ms.
+ */
+class BftHeartbeatCoalescer implements Runnable {
+	public static final Log LOG = LogFactory.getLog(BftHeartbeatCoalescer.class);
+
+	// print batch stats every STATS_INTERVAL batches
+	private static final int STATS_INTERVAL = 1000;
+
+	private static class Heartbeat {
+		final DatanodeRegistration registration;
+		final long capacity;
+		final long dfsUsed;
+		final long remaining;
+		final int xmitsInProgress;
+		final int xceiverCount;
+
+		Heartbeat(DatanodeRegistration registration, long capacity,
+				long dfsUsed, long remaining, int xmitsInProgress,
+				int xceiverCount){
+			this.registration = registration;
+			this.capacity = capacity;
+			this.dfsUsed = dfsUsed;
+			this.remaining = remaining;
+			this.xmitsInProgress = xmitsInProgress;
+			this.xceiverCount = xceiverCount;
+		}
+	}
+
+	// the undelivered DatanodeCommands and RemoteExceptions of a datanode
+	private static class Replies {
+		final LinkedList<Object> queue = new LinkedList<Object>();
+		long lastHeartbeat;
+	}
+
+	private final DatanodeProtocol namenode;
+	private final long interval;
+	private final int maxBatch;
+	private final long expiry;
+
+	private LinkedHashMap<DatanodeID, Heartbeat> pending =
+		new LinkedHashMap<DatanodeID, Heartbeat>();
+	private final HashMap<DatanodeID, Replies> replies =
+		new HashMap<DatanodeID, Replies>();
+
+	private long batches = 0;
+	private long heartbeats = 0;
+
+	BftHeartbeatCoalescer(DatanodeProtocol namenode, long interval, int maxBatch,
+			long expiry){
+		this.namenode = namenode;
+		this.interval = interval;
+		this.maxBatch = maxBatch;
+		this.expiry = expiry;
+	}
+
+	/**
+	 * Forget what is queued for a datanode that registered again.
+	 */
+	synchronized void registered(DatanodeID datanode){
+		pending.remove(datanode);
+		replies.remove(datanode);
+	}
+
+	DatanodeCommand sendHeartbeat(DatanodeRegistration registration,
+			long capacity, long dfsUsed, long remaining, int xmitsInProgress,
+			int xceiverCount) throws IOException {
+		Object reply = null;
+		synchronized(this){
+			pending.put(registration, new Heartbeat(registration, capacity,
+					dfsUsed, remaining, xmitsInProgress, xceiverCount));
+			if(pending.size() >= maxBatch){
+				notify();
+			}
+			Replies undelivered = replies.get(registration);
+			if(undelivered != null){
+				undelivered.lastHeartbeat = System.currentTimeMillis();
+				reply = undelivered.queue.removeFirst();
+				if(undelivered.queue.isEmpty()){
+					replies.remove(registration);
+				}
+			}
+		}
+		if(reply instanceof RemoteException){
+			throw (RemoteException) reply;
+		}
+		return (DatanodeCommand) reply;
+	}
+
+	public void run(){
+		long last = System.currentTimeMillis();
+		while(true){
+			LinkedHashMap<DatanodeID, Heartbeat> batch;
+			synchronized(this){
+				long left;
+				while(pending.size() < maxBatch
+						&& (left = last + interval - System.currentTimeMillis()) > 0){
+					try {
+						wait(left);
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+				batch = pending;
+				pending = new LinkedHashMap<DatanodeID, Heartbeat>();
+			}
+			last = System.currentTimeMillis();
+			if(!batch.isEmpty()){
+				send(batch);
+			}
+		}
+	}
+
+	private void send(LinkedHashMap<DatanodeID, Heartbeat> queued){
+		HeartbeatBatch batch = new HeartbeatBatch(queued.size());
+		for(Heartbeat h : queued.values()){
+			batch.add(h.registration, h.capacity, h.dfsUsed, h.remaining,
+					h.xmitsInProgress, h.xceiverCount);
+		}
+		HeartbeatReplies result;
+		try {
+			result = namenode.sendHeartbeats(batch);
+		} catch (IOException e) {
+			LOG.warn("Could not send " + batch + ": " + e);
+			return;
+		}
+		if(result.size() != batch.size()){
+			LOG.warn(result.size() + " replies to " + batch);
+			return;
+		}
+		synchronized(this){
+			long now = System.currentTimeMillis();
+			for(int i = 0; i < batch.size(); i++){
+				Object reply;
+				try {
+					reply = result.getCommand(i);
+				} catch (RemoteException e) {
+					reply = e;
+				}
+				if(reply != null){
+					Replies undelivered = replies.get(batch.getRegistration(i));
+					if(undelivered == null){
+						undelivered = new Replies();
+						undelivered.lastHeartbeat = now;
+						replies.put(batch.getRegistration(i), undelivered);
+					}
+					undelivered.queue.add(reply);
+				}
+			}
+			for(Iterator<Replies> it = replies.values().iterator(); it.hasNext();){
+				if(now - it.next().lastHeartbeat > expiry){
+					it.remove();
+				}
+			}
+			batches++;
+			heartbeats += batch.size();
+			if(batches % STATS_INTERVAL == 0){
+				LOG.info("Heartbeat batches: " + batches + " average heartbeats: "
+						+ heartbeats / batches);
+			}
+		}
+	}
+}
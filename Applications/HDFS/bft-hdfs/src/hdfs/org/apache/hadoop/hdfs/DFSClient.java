@@ -44,6 +44,7 @@ import org.apache.commons.logging.*;
 
 import java.io.*;
 import java.net.*;
+import java.lang.reflect.Proxy;
 import java.security.NoSuchAlgorithmException;
 import java.util.*;
 import java.util.zip.CRC32;
@@ -112,6 +113,11 @@ public class DFSClient implements FSConstants, java.io.Closeable {
   	if(conf.getBoolean("dfs.bft", false)){
   		LOG.debug("BFT Mode");
   		
+  		if(conf.getBoolean("dfs.bft.client.embedded", false)){
+  			// Run the client shim in this process instead of going through the glue
+  			return BftGlueInvoker.createEmbeddedClient(conf, ugi);
+  		}
+  		
   		// Connect to UpRight Glue instead of namenode
 		String glueRPCServerAddr =       	
 			conf.get("dfs.bft.clientGlue.ip","localhost") + ":"
@@ -241,7 +247,10 @@ public class DFSClient implements FSConstants, java.io.Closeable {
     leasechecker.close();
 
     // close connections to the namenode
-    RPC.stopProxy(rpcNamenode);
+    // (the embedded BFT client shim is shared and stays up)
+    if (!(Proxy.getInvocationHandler(rpcNamenode) instanceof BftGlueInvoker)) {
+      RPC.stopProxy(rpcNamenode);
+    }
   }
 
   /**
@@ -11,11 +11,11 @@ import org.apache.hadoop.ipc.VersionedProtocol;
  */
 public interface BFTGlueNamenodeProtocol extends VersionedProtocol {
 
-	public static final long versionID = 1L;
+	public static final long versionID = 2L;
 
 	public void executeThreadFunctions();
 	
-	public void setBftTime(long time);
+	public void setBftContext(long time, long seed);
 	
 	public void reloadImage() throws IOException;
 	
@@ -23,4 +23,12 @@ public interface BFTGlueNamenodeProtocol extends VersionedProtocol {
 	
 	public FSImage getFSImage();
 	
+	/*
+	 * Read-only versions of ClientProtocol calls, used to execute read-only
+	 * requests. Each is named after the call it replaces, with a
+	 * ReadOnly suffix, and takes the same parameters.
+	 */
+	public LocatedBlocks getBlockLocationsReadOnly(String src, long offset,
+			long length) throws IOException;
+	
 }
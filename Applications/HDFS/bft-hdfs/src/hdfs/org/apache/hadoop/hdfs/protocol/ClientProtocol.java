@@ -41,8 +41,9 @@ public interface ClientProtocol extends VersionedProtocol {
    * (Only the latest change is reflected.
    * The log of historical changes can be retrieved from the svn).
    * 40: added disk space quotas.
+   * 41: added updateAccessTimes.
    */
-  public static final long versionID = 40L;
+  public static final long versionID = 41L;
   
   ///////////////////////////////////////
   // File contents
@@ -452,6 +453,14 @@ public interface ClientProtocol extends VersionedProtocol {
    *              by this call.
    */
   public void setTimes(String src, long mtime, long atime) throws IOException;
+
+  /**
+   * Sets the access time of each file to the current time of the name-node.
+   * BFT clients that get block locations without ordering them use this
+   * to apply the access times of those reads in one batch.
+   * @param srcs the files read since the last call
+   */
+  public void updateAccessTimes(String[] srcs) throws IOException;
   
   //
   // Followings are added for BFT Datanode
@@ -35,6 +35,7 @@ import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -65,12 +66,14 @@ import org.apache.hadoop.hdfs.server.namenode.NameNode;
 import org.apache.hadoop.hdfs.server.namenode.StreamFile;
 import org.apache.hadoop.hdfs.server.protocol.BlockCommand;
 import org.apache.hadoop.hdfs.server.protocol.BlockMetaDataInfo;
+import org.apache.hadoop.hdfs.server.protocol.BlockReportDelta;
 import org.apache.hadoop.hdfs.server.protocol.DatanodeCommand;
 import org.apache.hadoop.hdfs.server.protocol.DatanodeProtocol;
 import org.apache.hadoop.hdfs.server.protocol.DatanodeRegistration;
 import org.apache.hadoop.hdfs.server.protocol.DisallowedDatanodeException;
 import org.apache.hadoop.hdfs.server.protocol.InterDatanodeProtocol;
 import org.apache.hadoop.hdfs.server.protocol.NamespaceInfo;
+import org.apache.hadoop.hdfs.server.protocol.ReceivedBlocks;
 import org.apache.hadoop.hdfs.server.protocol.UpgradeCommand;
 import org.apache.hadoop.http.HttpServer;
 import org.apache.hadoop.io.IOUtils;
@@ -186,6 +189,19 @@ public class DataNode extends Configured
   
   public boolean bft;
   public boolean bftdatanode;
+  // In BFT mode only the blocks added and removed since the last report the
+  // namenode acknowledged are sent. A full report is sent after registration
+  // or when the namenode asks for one.
+  boolean deltaBlockReports = false;
+  private long[] lastReport = null; // sorted (id, generation stamp) pairs
+  private long lastReportDigest = 0;
+  // In BFT mode received blocks are sent packed, once
+  // blockReceivedBatchSize of them are queued or the first of them has
+  // waited blockReceivedDelay ms.
+  private ReceivedBlocks receivedBatch = null;
+  private int blockReceivedBatchSize = 1;
+  private long blockReceivedDelay = 0;
+  private long firstReceivedTime = 0; // guarded by receivedBlockList
   public static boolean fakemd5=false;
 
   /**
@@ -262,6 +278,11 @@ public class DataNode extends Configured
     if(conf.getBoolean("dfs.bft", false)){
     	LOG.info("BFT Mode");
     	bft = true;
+    	deltaBlockReports = conf.getBoolean("dfs.bft.blockreport.delta", true);
+    	blockReceivedBatchSize = 
+    		Math.max(1, conf.getInt("dfs.bft.datanode.blockReceivedBatchSize", 128));
+    	blockReceivedDelay = conf.getLong("dfs.bft.datanode.blockReceivedDelay", 100);
+    	receivedBatch = new ReceivedBlocks(blockReceivedBatchSize);
 
     	// Connect to UpRight Glue instead of namenode
     	String glueRPCServerAddr =       	
@@ -562,9 +583,59 @@ public class DataNode extends Configured
     }
     
     // random short delay - helps scatter the BR from all DNs
+    lastReport = null;
     scheduleBlockReport(initialBlockReportDelay);
   }
 
+  /**
+   * Remember the report the namenode acknowledged as the base of the
+   * next delta report.
+   */
+  private void setLastReport(Block[] bReport) {
+    Arrays.sort(bReport);
+    lastReport = new long[2 * bReport.length];
+    for (int i = 0; i < bReport.length; i++) {
+      lastReport[2 * i] = bReport[i].getBlockId();
+      lastReport[2 * i + 1] = bReport[i].getGenerationStamp();
+    }
+    lastReportDigest = BlockReportDelta.digest(bReport);
+  }
+
+  /**
+   * Send the blocks added and removed since the last acknowledged report.
+   * A block whose generation stamp changed is both removed and added.
+   */
+  private DatanodeCommand blockReportDelta(Block[] bReport) throws IOException {
+    Arrays.sort(bReport);
+    List<Block> added = new ArrayList<Block>();
+    List<Block> removed = new ArrayList<Block>();
+    int n = lastReport.length / 2;
+    int i = 0, j = 0;
+    while (i < bReport.length || j < n) {
+      if (j == n ||
+          (i < bReport.length && bReport[i].getBlockId() < lastReport[2 * j])) {
+        added.add(bReport[i++]);
+      } else if (i == bReport.length || 
+                 lastReport[2 * j] < bReport[i].getBlockId()) {
+        removed.add(new Block(lastReport[2 * j], 0, lastReport[2 * j + 1]));
+        j++;
+      } else {
+        if (bReport[i].getGenerationStamp() != lastReport[2 * j + 1]) {
+          added.add(bReport[i]);
+          removed.add(new Block(lastReport[2 * j], 0, lastReport[2 * j + 1]));
+        }
+        i++;
+        j++;
+      }
+    }
+    BlockReportDelta delta = new BlockReportDelta(lastReportDigest,
+        added.toArray(new Block[added.size()]),
+        removed.toArray(new Block[removed.size()]));
+    DatanodeCommand cmd = namenode.blockReportDelta(dnRegistration, delta);
+    setLastReport(bReport);
+    return cmd;
+  }
+
   /**
    * Shut down this instance of the datanode.
    * Returns only after shutdown is complete.
@@ -710,6 +781,7 @@ public class DataNode extends Configured
         // check if there are newly received blocks
         Block [] blockArray=null;
         String [] delHintArray=null;
+        int numBatched = 0;
         synchronized(receivedBlockList) {
           synchronized(delHints) {
             int numBlocks = receivedBlockList.size();
@@ -720,8 +792,36 @@ public class DataNode extends Configured
               //
               // Send newly-received blockids to namenode
               //
-              blockArray = receivedBlockList.toArray(new Block[numBlocks]);
-              delHintArray = delHints.toArray(new String[numBlocks]);
+              if (receivedBatch != null) {
+                if (numBlocks >= blockReceivedBatchSize ||
+                    now() - firstReceivedTime >= blockReceivedDelay) {
+                  receivedBatch.clear();
+                  Iterator<String> hints = delHints.iterator();
+                  for (Block b : receivedBlockList) {
+                    if (receivedBatch.size() == blockReceivedBatchSize ||
+                        !hints.hasNext()) {
+                      break;
+                    }
+                    receivedBatch.add(b, hints.next());
+                  }
+                  numBatched = receivedBatch.size();
+                }
+              } else {
+                blockArray = receivedBlockList.toArray(new Block[numBlocks]);
+                delHintArray = delHints.toArray(new String[numBlocks]);
+              }
+            }
+          }
+        }
+        if (numBatched > 0) {
+          namenode.blocksReceived(dnRegistration, receivedBatch);
+          synchronized (receivedBlockList) {
+            synchronized (delHints) {
+              // blocks are only queued at the end, so the batch is the head
+              for (int i = 0; i < numBatched; i++) {
+                receivedBlockList.removeFirst();
+                delHints.removeFirst();
+              }
             }
           }
         }
@@ -750,11 +850,18 @@ public class DataNode extends Configured
           long brStartTime = now();
           Block[] bReport = data.getBlockReport();
           DatanodeCommand cmd;
-          if(bftdatanode){
-          	cmd = namenode.blockReport(dnRegistration,bReport);                
+          if(deltaBlockReports && lastReport != null){
+          	cmd = blockReportDelta(bReport);
           }else{
-          	cmd = namenode.blockReport(dnRegistration,
-                  BlockListAsLongs.convertToArrayLongs(bReport));
+          	if(bftdatanode){
+          		cmd = namenode.blockReport(dnRegistration,bReport);                
+          	}else{
+          		cmd = namenode.blockReport(dnRegistration,
+          				BlockListAsLongs.convertToArrayLongs(bReport));
+          	}
+          	if(deltaBlockReports){
+          		setLastReport(bReport);
+          	}
           }
           long brTime = now() - brStartTime;
           myMetrics.blockReports.inc(brTime);
@@ -787,7 +894,12 @@ public class DataNode extends Configured
         //
         long waitTime = heartBeatInterval - (System.currentTimeMillis() - lastHeartbeat);
         synchronized(receivedBlockList) {
-          if (waitTime > 0 && receivedBlockList.size() == 0) {
+          if (receivedBatch != null && receivedBlockList.size() > 0) {
+            waitTime = Math.min(waitTime,
+                firstReceivedTime + blockReceivedDelay - now());
+          }
+          if (waitTime > 0 && (receivedBatch != null ||
+                               receivedBlockList.size() == 0)) {
             try {
               receivedBlockList.wait(waitTime);
             } catch (InterruptedException ie) {
@@ -857,6 +969,12 @@ public class DataNode extends Configured
     case DatanodeProtocol.DNA_FINALIZE:
       storage.finalizeUpgrade();
       break;
+    case DatanodeProtocol.DNA_BLOCKREPORT:
+      // namenode could not apply a delta report
+      LOG.info("DatanodeCommand action: DNA_BLOCKREPORT");
+      lastReport = null;
+      scheduleBlockReport(0);
+      break;
     case UpgradeCommand.UC_ACTION_START_UPGRADE:
       // start distributed upgrade here
       processDistributedUpgradeCommand((UpgradeCommand)cmd);
@@ -946,9 +1064,16 @@ public class DataNode extends Configured
     LOG.debug("notifyNamenodeReceivedBlock : Block hash : " +block.getHash());
     synchronized (receivedBlockList) {
       synchronized (delHints) {
+        if (receivedBlockList.isEmpty()) {
+          firstReceivedTime = now();
+        }
         receivedBlockList.add(block);
         delHints.add(delHint);
-        receivedBlockList.notifyAll();
+        // a batch waits for more blocks, but the first one starts the clock
+        if (receivedBatch == null || receivedBlockList.size() == 1 ||
+            receivedBlockList.size() >= blockReceivedBatchSize) {
+          receivedBlockList.notifyAll();
+        }
       }
     }
   }
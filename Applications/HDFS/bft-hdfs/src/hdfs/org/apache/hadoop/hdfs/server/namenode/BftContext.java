@@ -0,0 +1,63 @@
+package org.apache.hadoop.hdfs.server.namenode;
+
+import java.util.Random;
+
+/**
+ * The logical time and the random numbers of the ordered request a BFT
+ * name-node is executing. Both come from the request's ordering, so
+ * every replica, and a replay of the edit log, sees the same ones.
+ *
+ * The namesystem's context is reset for each request instead of being
+ * created; a request that overlaps others gets a context of its own.
+ * Either way only one request uses a context at a time, so it draws
+ * from the generator of java.util.Random, but without its atomic updates.
+ */
+class BftContext extends Random {
+	private static final long serialVersionUID = 1L;
+
+	private static final long MULTIPLIER = 0x5DEECE66DL;
+	private static final long ADDEND = 0xBL;
+	private static final long MASK = (1L << 48) - 1;
+
+	private long time;
+	private long seed;
+	private long state;
+
+	BftContext(long time){
+		this(time, time);
+	}
+
+	BftContext(long time, long seed){
+		super(0);
+		reset(time, seed);
+	}
+
+	/**
+	 * Start the context of a request ordered at time with seed.
+	 */
+	void reset(long time, long seed){
+		this.time = time;
+		this.seed = seed;
+		this.state = (seed ^ MULTIPLIER) & MASK;
+	}
+
+	long getTime(){
+		return time;
+	}
+
+	/** The seed the context was last reset with. */
+	long getSeed(){
+		return seed;
+	}
+
+	@Override
+	public void setSeed(long seed){
+		reset(time, seed);
+	}
+
+	@Override
+	protected int next(int bits){
+		state = (state * MULTIPLIER + ADDEND) & MASK;
+		return (int) (state >>> (48 - bits));
+	}
+}
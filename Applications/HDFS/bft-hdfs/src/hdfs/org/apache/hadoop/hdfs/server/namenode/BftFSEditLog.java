@@ -10,7 +10,6 @@ import java.util.Random;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.permission.FsPermission;
 import org.apache.hadoop.fs.permission.PermissionStatus;
-import org.apache.hadoop.hdfs.BFTRandom;
 import org.apache.hadoop.hdfs.protocol.Block;
 import org.apache.hadoop.hdfs.protocol.BlockListAsLongs;
 import org.apache.hadoop.hdfs.protocol.DatanodeID;
@@ -19,7 +18,10 @@ import org.apache.hadoop.hdfs.protocol.FSConstants;
 import org.apache.hadoop.hdfs.protocol.LocatedBlock;
 import org.apache.hadoop.hdfs.protocol.FSConstants.SafeModeAction;
 import org.apache.hadoop.hdfs.server.common.Storage;
+import org.apache.hadoop.hdfs.server.protocol.BlockReportDelta;
 import org.apache.hadoop.hdfs.server.protocol.DatanodeRegistration;
+import org.apache.hadoop.hdfs.server.protocol.HeartbeatBatch;
+import org.apache.hadoop.hdfs.server.protocol.ReceivedBlocks;
 import org.apache.hadoop.io.ArrayWritable;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.MD5Hash;
@@ -55,10 +57,16 @@ public class BftFSEditLog extends FSEditLog {
   private static final byte BFT_OP_BLOCK_RECEIVED = 72;
   private static final byte BFT_OP_REMOVE_DATANODE = 73;
   private static final byte BFT_OP_GET_BLOCKLOCATIONS = 74;
+  private static final byte BFT_OP_BLOCK_REPORT_DELTA = 75;
+  private static final byte BFT_OP_BLOCK_REPORT_LONGS = 76;
+  private static final byte BFT_OP_UPDATE_ACCESS_TIMES = 77;
+  private static final byte BFT_OP_REGISTER_IN_CONTEXT = 78;
+  private static final byte BFT_OP_SEND_HEARTBEATS = 79;
   
   private static final byte BFT_OP_BLOCK_REPORT_BFTDN = 80;
   private static final byte BFT_OP_ADD_BLOCK_BFTDN = 81;
   private static final byte BFT_OP_COMPLETE_BFTDN = 82;
+  private static final byte BFT_OP_BLOCKS_RECEIVED = 83;
   
   private static final byte BFT_OP_HB_MON = 90;
   private static final byte BFT_OP_DECOMM_MON = 91;
@@ -141,8 +149,7 @@ public class BftFSEditLog extends FSEditLog {
 
 	case BFT_OP_START_FILE:{
 		UserGroupInformation.setCurrentUGI((UserGroupInformation) ObjectWritable.readObject(in, conf));
-		long bftTime = readLong(in);
-		BFTRandom.setBftTime(bftTime);
+		long bftTime = readContext(in, fsNamesys);
 	  String src = FSImage.readString(in);
 	  PermissionStatus ps = PermissionStatus.read(in);
 	  String holder = FSImage.readString(in);
@@ -156,8 +163,7 @@ public class BftFSEditLog extends FSEditLog {
 
 	case BFT_OP_APPEND:{
 		UserGroupInformation.setCurrentUGI((UserGroupInformation) ObjectWritable.readObject(in, conf));
-		long bftTime = readLong(in);
-		BFTRandom.setBftTime(bftTime);
+		long bftTime = readContext(in, fsNamesys);
 	  fsNamesys.appendFile(FSImage.readString(in), FSImage.readString(in), FSImage.readString(in));
 	  break;
 	}
@@ -183,8 +189,7 @@ public class BftFSEditLog extends FSEditLog {
 	}
 
 	case BFT_OP_ADD_BLOCK:{
-		long bftTime = readLong(in);
-		BFTRandom.setBftTime(bftTime);
+		long bftTime = readContext(in, fsNamesys);
 		
 	  String src = FSImage.readString(in);
 	  String clientName = FSImage.readString(in);
@@ -204,8 +209,7 @@ public class BftFSEditLog extends FSEditLog {
 	}
 	
 	case BFT_OP_ADD_BLOCK_BFTDN:{
-		long bftTime = readLong(in);
-		BFTRandom.setBftTime(bftTime);
+		long bftTime = readContext(in, fsNamesys);
 		
 	  String src = FSImage.readString(in);
 	  String clientName = FSImage.readString(in);
@@ -268,8 +272,7 @@ public class BftFSEditLog extends FSEditLog {
 	}
 
 	case BFT_OP_NEXT_GENERATION_TIME:{
-		long bftTime = readLong(in);
-		BFTRandom.setBftTime(bftTime);
+		long bftTime = readContext(in, fsNamesys);
 	  Block b = new Block();
 	  b.readFields(in);
 	  fsNamesys.nextGenerationStampForBlock(b);
@@ -302,23 +305,20 @@ public class BftFSEditLog extends FSEditLog {
 	  break;
 	}
 	case BFT_OP_RENAME:{
-		long bftTime = readLong(in);
-		BFTRandom.setBftTime(bftTime);
+		long bftTime = readContext(in, fsNamesys);
 	  fsNamesys.renameTo(FSImage.readString(in), FSImage.readString(in));
 	  break;
 	}
 	case BFT_OP_DELETE:{
 		UserGroupInformation.setCurrentUGI((UserGroupInformation) ObjectWritable.readObject(in, conf));
-		long bftTime = readLong(in);
-		BFTRandom.setBftTime(bftTime);
+		long bftTime = readContext(in, fsNamesys);
 	  String src = FSImage.readString(in);
 	  boolean recursive = readLong(in) > 0 ? true:false;
 	  fsNamesys.delete(src, recursive);
 	  break;
 	}
 	case BFT_OP_MKDIR:{
-		long bftTime = readLong(in);
-		BFTRandom.setBftTime(bftTime);
+		long bftTime = readContext(in, fsNamesys);
 		
 		String src = FSImage.readString(in);
 		PermissionStatus permission = PermissionStatus.read(in);		
@@ -329,8 +329,7 @@ public class BftFSEditLog extends FSEditLog {
 	  break;
 	}
 	case BFT_OP_RENEW_LEASE:{
-		long bftTime = readLong(in);
-		BFTRandom.setBftTime(bftTime);
+		long bftTime = readContext(in, fsNamesys);
 	  fsNamesys.renewLease(FSImage.readString(in));
 	  break;
 	}
@@ -359,9 +358,15 @@ public class BftFSEditLog extends FSEditLog {
 	  fsNamesys.registerDatanode(nodeReg);
 	  break;
 	}
+	case BFT_OP_REGISTER_IN_CONTEXT:{
+	  readContext(in, fsNamesys);
+	  DatanodeRegistration nodeReg = new  DatanodeRegistration();
+	  nodeReg.readFields(in);
+	  fsNamesys.registerDatanode(nodeReg);
+	  break;
+	}
 	case BFT_OP_SEND_HEARTBEAT:{
-		long bftTime = readLong(in);
-		BFTRandom.setBftTime(bftTime);
+		long bftTime = readContext(in, fsNamesys);
 	  DatanodeRegistration nodeReg = new  DatanodeRegistration();
 	  nodeReg.readFields(in);
 	  int len = in.readInt();
@@ -374,6 +379,13 @@ public class BftFSEditLog extends FSEditLog {
 	  fsNamesys.handleHeartbeat(nodeReg, capacity, dfsUsed, remaining, xceiverCount, xmitsInProgress);
 	  break;          
 	}
+	case BFT_OP_SEND_HEARTBEATS:{
+	  readContext(in, fsNamesys);
+	  HeartbeatBatch batch = new HeartbeatBatch();
+	  batch.readFields(in);
+	  fsNamesys.handleHeartbeats(batch, new IOException[batch.size()]);
+	  break;
+	}
 	case BFT_OP_BLOCK_REPORT:{
 	  DatanodeRegistration nodeReg = new  DatanodeRegistration();
 	  nodeReg.readFields(in);
@@ -391,6 +403,29 @@ public class BftFSEditLog extends FSEditLog {
 	  break;                    
 	}
 	
+	case BFT_OP_BLOCK_REPORT_LONGS:{
+	  DatanodeRegistration nodeReg = new  DatanodeRegistration();
+	  nodeReg.readFields(in);
+	  ArrayWritable a = new ArrayWritable(LongWritable.class);
+	  a.readFields(in);
+	  Writable[] w = a.get();
+	  long[] blocks = new long[w.length];
+	  for(int i=0; i < w.length; i++){
+	    blocks[i] = ((LongWritable)w[i]).get();
+	  }
+	  fsNamesys.processReport(nodeReg, new BlockListAsLongs(blocks));
+	  break;
+	}
+
+	case BFT_OP_BLOCK_REPORT_DELTA:{
+	  DatanodeRegistration nodeReg = new  DatanodeRegistration();
+	  nodeReg.readFields(in);
+	  BlockReportDelta delta = new BlockReportDelta();
+	  delta.readFields(in);
+	  fsNamesys.processDeltaReport(nodeReg, delta);
+	  break;
+	}
+	
 	case BFT_OP_BLOCK_REPORT_BFTDN:{
 	  DatanodeRegistration nodeReg = new  DatanodeRegistration();
 	  nodeReg.readFields(in);
@@ -417,6 +452,14 @@ public class BftFSEditLog extends FSEditLog {
 	  break;
 
 	}
+	case BFT_OP_BLOCKS_RECEIVED:{
+	  DatanodeRegistration nodeReg = new  DatanodeRegistration();
+	  nodeReg.readFields(in);
+	  ReceivedBlocks blocks = new ReceivedBlocks();
+	  blocks.readFields(in);
+	  fsNamesys.blocksReceived(nodeReg, blocks);
+	  break;
+	}
 	case BFT_OP_REMOVE_DATANODE:{
 	  DatanodeID datanodeID = new DatanodeID();
 	  datanodeID.readFields(in);
@@ -424,8 +467,7 @@ public class BftFSEditLog extends FSEditLog {
 	  break;
 	}
 	case BFT_OP_GET_BLOCKLOCATIONS: {
-		long bftTime = readLong(in);
-		BFTRandom.setBftTime(bftTime);
+		long bftTime = readContext(in, fsNamesys);
 		String clientMachine = FSImage.readString(in);
 		String src = FSImage.readString(in);
 		long offset = readLong(in);
@@ -434,17 +476,23 @@ public class BftFSEditLog extends FSEditLog {
 		break;
 	}
 	
+	case BFT_OP_UPDATE_ACCESS_TIMES: {
+		long bftTime = readContext(in, fsNamesys);
+		ArrayWritable a = new ArrayWritable(UTF8.class);
+		a.readFields(in);
+		fsNamesys.updateAccessTimes(a.toStrings());
+		break;
+	}
+	
 	case BFT_OP_HB_MON:{
-		long bftTime = readLong(in);
-		BFTRandom.setBftTime(bftTime);		
+		long bftTime = readContext(in, fsNamesys);
 		fsNamesys.heartbeatCheck();
 		fsNamesys.lastHeartBeatCheck = bftTime;
 		break;
 	}
 	
 	case BFT_OP_REP_MON:{
-		long bftTime = readLong(in);
-		BFTRandom.setBftTime(bftTime);
+		long bftTime = readContext(in, fsNamesys);
 		fsNamesys.computeDatanodeWork();
 		fsNamesys.processPendingReplications();
 		fsNamesys.lastReplicationCheck = bftTime;
@@ -452,23 +500,20 @@ public class BftFSEditLog extends FSEditLog {
 	}
 	
 	case BFT_OP_DECOMM_MON:{
-		long bftTime = readLong(in);
-		BFTRandom.setBftTime(bftTime);		
+		long bftTime = readContext(in, fsNamesys);
 		fsNamesys.decommissionedDatanodeCheck();
 		fsNamesys.lastDecommissionCheck = bftTime;
 		break;
 	}
 	
 	case BFT_OP_LEASE_MON:{
-		long bftTime = readLong(in);
-		BFTRandom.setBftTime(bftTime);		
+		long bftTime = readContext(in, fsNamesys);
 		fsNamesys.checkLease();
 		fsNamesys.lastLeaseCheck = bftTime;
 		break;
 	}
 	case BFT_OP_PENDING_REP_MON:{
-		long bftTime = readLong(in);
-		BFTRandom.setBftTime(bftTime);		
+		long bftTime = readContext(in, fsNamesys);
 		fsNamesys.pendingReplications.pendingReplicationMonitor.pendingReplicationCheck();
 		fsNamesys.lastPendingReplicationBlockCheck = bftTime;
 		
@@ -494,6 +539,32 @@ public class BftFSEditLog extends FSEditLog {
     return numEdits;
   }
 
+  /**
+   * Read the context an ordered request was logged in, as time:seed, and
+   * make it the context of fsNamesys unless it already is: all records
+   * of a request carry its context, and the request draws on where the
+   * previous one left off. Records written before seeds were logged only
+   * have a time.
+   * @return the time of the request
+   */
+  static long readContext(DataInputStream in, FSNamesystem fsNamesys)
+  throws IOException {
+    String s = FSImage.readString(in);
+    int colon = s.indexOf(':');
+    long time = Long.parseLong(colon < 0 ? s : s.substring(0, colon));
+    long seed = colon < 0 ? time : Long.parseLong(s.substring(colon + 1));
+    if (fsNamesys != null && (fsNamesys.bftContext.getTime() != time
+        || fsNamesys.bftContext.getSeed() != seed)) {
+      fsNamesys.setBftContext(time, seed);
+    }
+    return time;
+  }
+
+  private static UTF8 toLogContext(long time) {
+    return new UTF8(time + ":"
+        + FSNamesystem.getFSNamesystem().getBftContext().getSeed());
+  }
+
   synchronized long getFsEditTime() {
     return lastEditTime;
   }
@@ -510,7 +581,7 @@ public class BftFSEditLog extends FSEditLog {
   	UserGroupInformation ugi = UserGroupInformation.getCurrentUGI();
   	ObjectWritable ow = new ObjectWritable(ugi.getClass(), ugi);
   	ow.setConf(new Configuration());
-    logEdit(BFT_OP_START_FILE, ow, toLogLong(bftTime), new UTF8(src), permissions, 
+    logEdit(BFT_OP_START_FILE, ow, toLogContext(bftTime), new UTF8(src), permissions, 
 	new UTF8(holder), new UTF8(clientMachine),
 	overwrite ? toLogLong(1):toLogLong(0),
 	    toLogReplication(replication), toLogLong(blockSize));
@@ -520,7 +591,7 @@ public class BftFSEditLog extends FSEditLog {
   	UserGroupInformation ugi = UserGroupInformation.getCurrentUGI();
   	ObjectWritable ow = new ObjectWritable(ugi.getClass(), ugi);
   	ow.setConf(new Configuration());
-    logEdit(BFT_OP_APPEND, ow, toLogLong(bftTime), new UTF8(src), new UTF8(holder), new UTF8(clientName));
+    logEdit(BFT_OP_APPEND, ow, toLogContext(bftTime), new UTF8(src), new UTF8(holder), new UTF8(clientName));
   }
 
   public void bftLogSetReplication(String src, short replication) 
@@ -558,7 +629,7 @@ public class BftFSEditLog extends FSEditLog {
   		targetSIDs[i] = datanodeInfos[i].storageID;
   	}
 
-  	logEdit(BFT_OP_ADD_BLOCK, toLogLong(bfttime), new UTF8(src), new UTF8(clientName), newBlock,
+  	logEdit(BFT_OP_ADD_BLOCK, toLogContext(bfttime), new UTF8(src), new UTF8(clientName), newBlock,
   			new ArrayWritable(targetSIDs));
   }
 
@@ -569,7 +640,7 @@ public class BftFSEditLog extends FSEditLog {
   	for(int i=0; i<datanodeInfos.length; i++){
   		targetSIDs[i] = datanodeInfos[i].storageID;
   	}
-  	logEdit(BFT_OP_ADD_BLOCK_BFTDN, toLogLong(bfttime), new UTF8(src), new UTF8(clientName), newBlock,
+  	logEdit(BFT_OP_ADD_BLOCK_BFTDN, toLogContext(bfttime), new UTF8(src), new UTF8(clientName), newBlock,
   			new ArrayWritable(targetSIDs), new MD5Hash(hash));
   }
 
@@ -592,7 +663,7 @@ public class BftFSEditLog extends FSEditLog {
   }
 
   public void bftLogNextGenerationStamp(long time, Block block) throws IOException {
-    logEdit(BFT_OP_NEXT_GENERATION_TIME, toLogLong(time), block);
+    logEdit(BFT_OP_NEXT_GENERATION_TIME, toLogContext(time), block);
   }
 
   public void bftLogCommitBlockSynchronization(Block block,
@@ -615,23 +686,23 @@ public class BftFSEditLog extends FSEditLog {
   }
 
   public void bftLogRename(long time, String src, String dst) throws IOException {
-    logEdit(BFT_OP_RENAME, toLogLong(time), new UTF8(src), new UTF8(dst));
+    logEdit(BFT_OP_RENAME, toLogContext(time), new UTF8(src), new UTF8(dst));
   }
 
   public void bftLogDelete(long time, String src, boolean recursive) throws IOException {
   	UserGroupInformation ugi = UserGroupInformation.getCurrentUGI();
   	ObjectWritable ow = new ObjectWritable(ugi.getClass(), ugi);
   	ow.setConf(new Configuration());
-    logEdit(BFT_OP_DELETE, ow, toLogLong(time), new UTF8(src), 
+    logEdit(BFT_OP_DELETE, ow, toLogContext(time), new UTF8(src), 
 	recursive ? toLogLong(1) : toLogLong(0));
   }
 
   public void bftLogMkdirs(long time, String src, PermissionStatus permissions) throws IOException{
-    logEdit(BFT_OP_MKDIR, toLogLong(time), new UTF8(src), permissions);
+    logEdit(BFT_OP_MKDIR, toLogContext(time), new UTF8(src), permissions);
   }
 
   public void bftLogRenewLease(long time, String clientName) throws IOException {
-    logEdit(BFT_OP_RENEW_LEASE, toLogLong(time), new UTF8(clientName));
+    logEdit(BFT_OP_RENEW_LEASE, toLogContext(time), new UTF8(clientName));
   }
 
   public void bftLogSetSafeMode(SafeModeAction action) throws IOException {
@@ -656,7 +727,8 @@ public class BftFSEditLog extends FSEditLog {
 
   public void bftLogRegister(DatanodeRegistration nodeReg) 
   throws IOException {
-    logEdit(BFT_OP_REGISTER, nodeReg);
+    logEdit(BFT_OP_REGISTER_IN_CONTEXT, toLogContext(FSNamesystem.now()),
+        nodeReg);
   }
 
   public void bftLogSendHeartbeat(long time, DatanodeRegistration nodeReg,
@@ -670,19 +742,29 @@ public class BftFSEditLog extends FSEditLog {
 	toLogLong(capacity), toLogLong(dfsUsed), toLogLong(remaining),
 	toLogLong(xmitsInProgress), toLogLong(xceiverCount) };
 
-    logEdit(BFT_OP_SEND_HEARTBEAT, toLogLong(time), nodeReg, 
+    logEdit(BFT_OP_SEND_HEARTBEAT, toLogContext(time), nodeReg, 
 	new ArrayWritable(UTF8.class, info));
 
   }
 
+  public void bftLogSendHeartbeats(long time, HeartbeatBatch batch)
+  throws IOException {
+    logEdit(BFT_OP_SEND_HEARTBEATS, toLogContext(time), batch);
+  }
+
   public void bftLogBlockReport(DatanodeRegistration nodeReg, long[] blocks) 
   throws IOException {
-    UTF8[] blocksToLog = new UTF8[blocks.length];
+    LongWritable[] blocksToLog = new LongWritable[blocks.length];
     for(int i=0; i< blocks.length; i++){
-      blocksToLog[i] = toLogLong(blocks[i]);
+      blocksToLog[i] = new LongWritable(blocks[i]);
     }
-    logEdit(BFT_OP_BLOCK_REPORT, nodeReg, 
-	new ArrayWritable(UTF8.class, blocksToLog));
+    logEdit(BFT_OP_BLOCK_REPORT_LONGS, nodeReg, 
+	new ArrayWritable(LongWritable.class, blocksToLog));
+  }
+
+  public void bftLogBlockReportDelta(DatanodeRegistration nodeReg,
+      BlockReportDelta delta) throws IOException {
+    logEdit(BFT_OP_BLOCK_REPORT_DELTA, nodeReg, delta);
   }
   
   public void bftLogBlockReport(DatanodeRegistration nodeReg, Block[] blocks)
@@ -699,6 +781,11 @@ public class BftFSEditLog extends FSEditLog {
 	new ArrayWritable(Block.class, blocks), new ArrayWritable(delHints));
   }
 
+  public void bftLogBlocksReceived(DatanodeRegistration nodeReg,
+      ReceivedBlocks blocks) throws IOException {
+    logEdit(BFT_OP_BLOCKS_RECEIVED, nodeReg, blocks);
+  }
+
   public void bftLogRemoveDatanode(DatanodeID nodeID) throws IOException {
 
     logEdit(BFT_OP_REMOVE_DATANODE, nodeID);
@@ -706,25 +793,30 @@ public class BftFSEditLog extends FSEditLog {
   
   public void bftLogGetBlockLocations(long time, String clientMachine, 
   		String src, long offset, long length){
-  	logEdit(BFT_OP_GET_BLOCKLOCATIONS, toLogLong(time), 
+  	logEdit(BFT_OP_GET_BLOCKLOCATIONS, toLogContext(time), 
   			new UTF8(clientMachine), new UTF8(src), toLogLong(offset),
   			toLogLong(length));
   }
   
+  public void bftLogUpdateAccessTimes(long time, String[] srcs){
+  	logEdit(BFT_OP_UPDATE_ACCESS_TIMES, toLogContext(time),
+  			new ArrayWritable(srcs));
+  }
+  
 	public void bftLogHeartBeatMonitor(long time) {
-		logEdit(BFT_OP_HB_MON, toLogLong(time));
+		logEdit(BFT_OP_HB_MON, toLogContext(time));
 	}
 	public void bftLogDecommisionMonitor(long time) {
-		logEdit(BFT_OP_DECOMM_MON, toLogLong(time));
+		logEdit(BFT_OP_DECOMM_MON, toLogContext(time));
 	}
 	public void bftLogReplicationMonitor(long time) {
-		logEdit(BFT_OP_REP_MON, toLogLong(time));
+		logEdit(BFT_OP_REP_MON, toLogContext(time));
 	}
 	public void bftLogLeaseMonitor(long time) {
-		logEdit(BFT_OP_LEASE_MON, toLogLong(time));
+		logEdit(BFT_OP_LEASE_MON, toLogContext(time));
 	}
 	public void bftLogPendingReplicationMonitor(long time) {
-		logEdit(BFT_OP_PENDING_REP_MON, toLogLong(time));
+		logEdit(BFT_OP_PENDING_REP_MON, toLogContext(time));
 	}	
 	
   //
@@ -833,8 +925,7 @@ public class BftFSEditLog extends FSEditLog {
 	switch (opcode) {
 
 	case BFT_OP_START_FILE:{
-		long bftTime = readLong(in);
-		BFTRandom.setBftTime(bftTime);
+		long bftTime = readContext(in, null);
 	  String src = FSImage.readString(in);
 	  PermissionStatus ps = PermissionStatus.read(in);
 	  String holder = FSImage.readString(in);
@@ -848,8 +939,7 @@ public class BftFSEditLog extends FSEditLog {
 	} 
 
 	case BFT_OP_APPEND:{
-		long bftTime = readLong(in);
-		BFTRandom.setBftTime(bftTime);
+		long bftTime = readContext(in, null);
 	  //fsNamesys.appendFile(FSImage.readString(in), FSImage.readString(in), FSImage.readString(in));
 		System.out.println("BFT_OP_APPEND");
 	  break;
@@ -954,8 +1044,7 @@ public class BftFSEditLog extends FSEditLog {
 	}
 
 	case BFT_OP_NEXT_GENERATION_TIME:{
-		long bftTime = readLong(in);
-		BFTRandom.setBftTime(bftTime);
+		long bftTime = readContext(in, null);
 	  Block b = new Block();
 	  b.readFields(in);
 	  //fsNamesys.nextGenerationStampForBlock(b);
@@ -987,15 +1076,13 @@ public class BftFSEditLog extends FSEditLog {
 	  break;
 	}
 	case BFT_OP_RENAME:{
-		long bftTime = readLong(in);
-		BFTRandom.setBftTime(bftTime);
+		long bftTime = readContext(in, null);
 	  //fsNamesys.renameTo(FSImage.readString(in), FSImage.readString(in));
 		System.out.println("BFT_OP_RENAME :" + FSImage.readString(in)+ " " + FSImage.readString(in));
 	  break;
 	}
 	case BFT_OP_DELETE:{
-		long bftTime = readLong(in);
-		BFTRandom.setBftTime(bftTime);
+		long bftTime = readContext(in, null);
 	  String src = FSImage.readString(in);
 	  boolean recursive = readLong(in) > 0 ? true:false;
 	  //fsNamesys.delete(src, recursive);
@@ -1003,8 +1090,7 @@ public class BftFSEditLog extends FSEditLog {
 	  break;
 	}
 	case BFT_OP_MKDIR:{
-		long bftTime = readLong(in);
-		BFTRandom.setBftTime(bftTime);
+		long bftTime = readContext(in, null);
 		
 		String src = FSImage.readString(in);
 		PermissionStatus permission = PermissionStatus.read(in);		
@@ -1015,8 +1101,7 @@ public class BftFSEditLog extends FSEditLog {
 	  break;
 	}
 	case BFT_OP_RENEW_LEASE:{
-		long bftTime = readLong(in);
-		BFTRandom.setBftTime(bftTime);
+		long bftTime = readContext(in, null);
 	  //fsNamesys.renewLease(FSImage.readString(in));
 	  System.out.println("BFT_OP_RENEW_LEASE :" + FSImage.readString(in));
 	  break;
@@ -1053,9 +1138,15 @@ public class BftFSEditLog extends FSEditLog {
 	  System.out.println("BFT_OP_REGISTER");
 	  break;
 	}
+	case BFT_OP_REGISTER_IN_CONTEXT:{
+	  readContext(in, null);
+	  DatanodeRegistration nodeReg = new  DatanodeRegistration();
+	  nodeReg.readFields(in);
+	  System.out.println("BFT_OP_REGISTER_IN_CONTEXT");
+	  break;
+	}
 	case BFT_OP_SEND_HEARTBEAT:{
-		long bftTime = readLong(in);
-		BFTRandom.setBftTime(bftTime);
+		long bftTime = readContext(in, null);
 	  DatanodeRegistration nodeReg = new  DatanodeRegistration();
 	  nodeReg.readFields(in);
 	  int len = in.readInt();
@@ -1073,6 +1164,13 @@ public class BftFSEditLog extends FSEditLog {
 	  //fsNamesys.handleHeartbeat(nodeReg, capacity, dfsUsed, remaining, xceiverCount, xmitsInProgress);
 	  break;          
 	}
+	case BFT_OP_SEND_HEARTBEATS:{
+	  long bftTime = readContext(in, null);
+	  HeartbeatBatch batch = new HeartbeatBatch();
+	  batch.readFields(in);
+	  System.out.println("BFT_OP_SEND_HEARTBEATS : " + bftTime + " " + batch);
+	  break;
+	}
 	case BFT_OP_BLOCK_REPORT:{
 	  DatanodeRegistration nodeReg = new  DatanodeRegistration();
 	  nodeReg.readFields(in);
@@ -1090,6 +1188,31 @@ public class BftFSEditLog extends FSEditLog {
 	  System.out.println("BFT_OP_BLOCK_REPORT");
 	  break;                    
 	}
+
+	case BFT_OP_BLOCK_REPORT_LONGS:{
+	  DatanodeRegistration nodeReg = new  DatanodeRegistration();
+	  nodeReg.readFields(in);
+	  ArrayWritable a = new ArrayWritable(LongWritable.class);
+	  a.readFields(in);
+	  Writable[] w = a.get();
+	  long[] blocks = new long[w.length];
+	  for(int i=0; i < w.length; i++){
+	    blocks[i] = ((LongWritable)w[i]).get();
+	  }
+	  BlockListAsLongs blist = new BlockListAsLongs(blocks);
+	  System.out.println("BFT_OP_BLOCK_REPORT_LONGS : " + nodeReg + " "
+	      + blist.getNumberOfBlocks() + " blocks");
+	  break;
+	}
+
+	case BFT_OP_BLOCK_REPORT_DELTA:{
+	  DatanodeRegistration nodeReg = new  DatanodeRegistration();
+	  nodeReg.readFields(in);
+	  BlockReportDelta delta = new BlockReportDelta();
+	  delta.readFields(in);
+	  System.out.println("BFT_OP_BLOCK_REPORT_DELTA : " + nodeReg + " " + delta);
+	  break;
+	}
 	
 	case BFT_OP_BLOCK_REPORT_BFTDN:{
 	  DatanodeRegistration nodeReg = new  DatanodeRegistration();
@@ -1122,6 +1245,17 @@ public class BftFSEditLog extends FSEditLog {
 	  break;
 
 	}
+	case BFT_OP_BLOCKS_RECEIVED:{
+	  DatanodeRegistration nodeReg = new  DatanodeRegistration();
+	  nodeReg.readFields(in);
+	  ReceivedBlocks blocks = new ReceivedBlocks();
+	  blocks.readFields(in);
+	  System.out.println("BFT_OP_BLOCKS_RECEIVED");
+	  for(int i=0; i < blocks.size(); i++){
+	    System.out.println(nodeReg + " " + blocks.getBlock(i) + " " + blocks.getDelHint(i));
+	  }
+	  break;
+	}
 	case BFT_OP_REMOVE_DATANODE:{
 	  DatanodeID datanodeID = new DatanodeID();
 	  datanodeID.readFields(in);
@@ -1130,8 +1264,7 @@ public class BftFSEditLog extends FSEditLog {
 	  break;
 	}
 	case BFT_OP_GET_BLOCKLOCATIONS: {
-		long bftTime = readLong(in);
-		BFTRandom.setBftTime(bftTime);
+		long bftTime = readContext(in, null);
 		String clientMachine = FSImage.readString(in);
 		String src = FSImage.readString(in);
 		long offset = readLong(in);
@@ -1140,10 +1273,21 @@ public class BftFSEditLog extends FSEditLog {
 		System.out.println("BFT_OP_GET_BLOCKLOCATIONS");
 		break;
 	}
+
+	case BFT_OP_UPDATE_ACCESS_TIMES: {
+		long bftTime = readContext(in, null);
+		ArrayWritable a = new ArrayWritable(UTF8.class);
+		a.readFields(in);
+		String[] srcs = a.toStrings();
+		System.out.println("BFT_OP_UPDATE_ACCESS_TIMES : " + bftTime);
+		for(String src : srcs){
+			System.out.println(src);
+		}
+		break;
+	}
 	
 	case BFT_OP_HB_MON:{
-		long bftTime = readLong(in);
-		BFTRandom.setBftTime(bftTime);		
+		long bftTime = readContext(in, null);
 		//fsNamesys.heartbeatCheck();
 		//fsNamesys.lastHeartBeatCheck = bftTime;
 		System.out.println("BFT_OP_HB_MON");
@@ -1151,8 +1295,7 @@ public class BftFSEditLog extends FSEditLog {
 	}
 	
 	case BFT_OP_REP_MON:{
-		long bftTime = readLong(in);
-		BFTRandom.setBftTime(bftTime);
+		long bftTime = readContext(in, null);
 		/*
 		fsNamesys.computeDatanodeWork();
 		fsNamesys.processPendingReplications();
@@ -1163,8 +1306,7 @@ public class BftFSEditLog extends FSEditLog {
 	}
 	
 	case BFT_OP_DECOMM_MON:{
-		long bftTime = readLong(in);
-		BFTRandom.setBftTime(bftTime);
+		long bftTime = readContext(in, null);
 		/*
 		fsNamesys.decommissionedDatanodeCheck();
 		fsNamesys.lastDecommissionCheck = bftTime;
@@ -1174,8 +1316,7 @@ public class BftFSEditLog extends FSEditLog {
 	}
 	
 	case BFT_OP_LEASE_MON:{
-		long bftTime = readLong(in);
-		BFTRandom.setBftTime(bftTime);
+		long bftTime = readContext(in, null);
 		/*
 		fsNamesys.checkLease();
 		fsNamesys.lastLeaseCheck = bftTime;
@@ -1184,8 +1325,7 @@ public class BftFSEditLog extends FSEditLog {
 		break;
 	}
 	case BFT_OP_PENDING_REP_MON:{
-		long bftTime = readLong(in);
-		BFTRandom.setBftTime(bftTime);
+		long bftTime = readContext(in, null);
 		/*
 		fsNamesys.pendingReplications.pendingReplicationMonitor.pendingReplicationCheck();
 		fsNamesys.lastPendingReplicationBlockCheck = bftTime;
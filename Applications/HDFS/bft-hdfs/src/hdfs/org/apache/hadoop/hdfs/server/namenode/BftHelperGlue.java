@@ -152,13 +152,15 @@ public class BftHelperGlue implements AppCPInterface {
 		
 		Class implementation = namenode.getClass();
 		BftGlueInvocation invocation = req.getInvocation();
-		Method method = null;
+		Method method = invocation.getMethod();
 		Object value = null;
 		
 		try {
-			method =
-				implementation.getMethod(invocation.getMethodName(),
-						invocation.getParameterClasses());
+			if(method == null){
+				method =
+					implementation.getMethod(invocation.getMethodName(),
+							invocation.getParameterClasses());
+			}
 			LOG.debug("invoking : " + invocation.getMethodName());
 		} catch (SecurityException e1) {
 			// TODO Auto-generated catch block
@@ -205,7 +207,7 @@ public class BftHelperGlue implements AppCPInterface {
 		lastseq = info.getSeqNo();
 		
 		// setup a logical time
-		wrapperNamenode.setBftTime(info.getTime());
+		wrapperNamenode.setBftContext(info.getTime(), info.getRandom());
 		wrapperNamenode.executeThreadFunctions();
 		
 		byte[] result = processRequest(request, info.getClientId());
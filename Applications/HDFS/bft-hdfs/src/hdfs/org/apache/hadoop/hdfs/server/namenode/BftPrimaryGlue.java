@@ -11,6 +11,10 @@ import java.lang.reflect.Method;
 import java.net.InetSocketAddress;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import javax.security.auth.login.LoginException;
 
@@ -18,6 +22,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.hdfs.BftGlueCodec.VersionMismatchException;
 import org.apache.hadoop.hdfs.BftGlueInvocation;
 import org.apache.hadoop.hdfs.BftGlueReply;
 import org.apache.hadoop.hdfs.BftGlueRequest;
@@ -48,6 +53,12 @@ public class BftPrimaryGlue implements AppCPInterface {
 	private CPAppInterface generalCP;
 	String generalCPDir;
 	private HashMap<Integer, VersionedProtocol> proxyCache;
+	private HashMap<Integer, BFTGlueNamenodeProtocol> readOnlyProxyCache;
+	
+	// set when ordered requests that do not conflict run concurrently
+	private BftRequestScheduler scheduler;
+	private ExecutorService executor;
+	private LinkedList<PendingReply> pendingReplies;
 	
 	public BftPrimaryGlue(Configuration _conf, 
 			BFTGlueNamenodeProtocol namenode){
@@ -78,6 +89,7 @@ public class BftPrimaryGlue implements AppCPInterface {
 		}
 
 		proxyCache = new HashMap<Integer, VersionedProtocol>();
+		readOnlyProxyCache = new HashMap<Integer, BFTGlueNamenodeProtocol>();
 		
 		String shimConfigurationFile = System.getProperty("UpRightConfigFile");
 		int shimId = Integer.parseInt(System.getProperty("UpRightShimID"));
@@ -104,10 +116,34 @@ public class BftPrimaryGlue implements AppCPInterface {
 			throw new IOException("Failed to connect to namenode helper.");
 		}
 		
+		if(conf.getBoolean("dfs.bft.exec.concurrent", false)){
+			if(wrapperNamenode instanceof NameNode){
+				startConcurrentExecution(conf.getInt("dfs.bft.exec.threads", 8));
+			} else {
+				LOG.warn("Concurrent execution needs the namenode in this process,"
+						+ " executing requests one at a time");
+			}
+		}
+		
 		PrimaryHelperWrapper wrapper = new PrimaryHelperWrapper(this, helper);
 		generalCP.setupApplication(wrapper);		
 		
 	}
+	private void startConcurrentExecution(int threads){
+		LOG.info("Overlapping ordered requests that do not conflict with "
+				+ threads + " threads; the namesystem still applies their"
+				+ " changes one at a time");
+		scheduler = new BftRequestScheduler();
+		pendingReplies = new LinkedList<PendingReply>();
+		executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "BftPrimaryGlue executor");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+	
 	/*
 	 * This is to avoid creating RPC client for each request.
 	 * Instead, we cache RPC clients created previously.
@@ -140,6 +176,25 @@ public class BftPrimaryGlue implements AppCPInterface {
 		return namenode;
 	}
 	
+	/*
+	 * Read-only requests are executed through BFTGlueNamenodeProtocol,
+	 * as the caller, so that permissions are checked as for ordered calls.
+	 */
+	private BFTGlueNamenodeProtocol getReadOnlyProxy(BftGlueRequest req, long client)
+	throws IOException {
+		UserGroupInformation ticket = req.getTicket();
+		Integer key = getHashCode(req.getNodeType(), client, ticket);
+		BFTGlueNamenodeProtocol namenode = readOnlyProxyCache.get(key);
+		if(namenode == null){
+			namenode = (BFTGlueNamenodeProtocol)RPC.getProxy(
+					BFTGlueNamenodeProtocol.class,
+					BFTGlueNamenodeProtocol.versionID, nameNodeAddr, ticket, conf,
+					NetUtils.getSocketFactory(conf, BFTGlueNamenodeProtocol.class));
+			readOnlyProxyCache.put(key, namenode);
+		}
+		return namenode;
+	}
+	
 	private int getHashCode(NodeType nodetype, long clientID, UserGroupInformation ugi){
 		int ret = (new Long(clientID)).hashCode() ^ nodetype.hashCode();
 		if (nodetype == NodeType.DATANODE || ugi == null){
@@ -153,39 +208,99 @@ public class BftPrimaryGlue implements AppCPInterface {
 		return ret;
 	}
 	
+	/*
+	 * A decoded request, ready to be invoked on its proxy. A request
+	 * that could not be decoded has no proxy, and its reply is set.
+	 * A request that overlaps others is invoked on the namenode itself,
+	 * in the calling thread, as its caller and in a context of its own.
+	 */
+	private class PreparedCall {
+		NodeType nodeType;
+		VersionedProtocol namenode;
+		Method method;
+		Object[] parameters;
+		boolean compact;
+		byte[] reply;
+		UserGroupInformation ticket;
+		BftContext context;
+
+		byte[] run(){
+			if(namenode == null){
+				return reply;
+			}
+			if(context == null){
+				return invoke(namenode, method, parameters, compact);
+			}
+			UserGroupInformation previous = UserGroupInformation.getCurrentUGI();
+			UserGroupInformation.setCurrentUGI(ticket);
+			FSNamesystem.setRequestContext(context);
+			try {
+				return invoke(namenode, method, parameters, compact);
+			} finally {
+				FSNamesystem.setRequestContext(null);
+				UserGroupInformation.setCurrentUGI(previous);
+			}
+		}
+	}
+
 	private byte[] processRequest(byte[] request, int clientId){
+		return prepare(request, clientId, null).run();
+	}
+
+	/*
+	 * Decode request. With info, the call is to run in a thread of the
+	 * executor, directly on the namenode.
+	 */
+	private PreparedCall prepare(byte[] request, int clientId, RequestInfo info){
+		PreparedCall call = new PreparedCall();
 		
 		// reconstruct BftGlueRequest
 		BftGlueRequest req;
 		try {
 			req = BftGlueRequest.getRequestFromBytes(request, conf);
+		} catch (VersionMismatchException e3) {
+			LOG.warn(e3.getMessage());
+			call.reply = new BftGlueReply(e3.getClass().getName(), e3.getMessage(),
+					conf).toBytes();
+			return call;
 		} catch (IOException e3) {
 			e3.printStackTrace();
-			return null;
+			return call;
 		}
+		call.nodeType = req.getNodeType();
 		
 		// create hadoop RPC client for this call
 		VersionedProtocol namenode = null;
-		try {
-			namenode = getProxy(req, clientId);
-		} catch (IOException e2) {
-			e2.printStackTrace();
-			return null;
+		if(info != null){
+			if(req.getNodeType() == NodeType.CLIENT
+					|| req.getNodeType() == NodeType.DATANODE){
+				namenode = (NameNode) wrapperNamenode;
+				call.ticket = req.getTicket();
+				call.context = new BftContext(info.getTime(), info.getRandom());
+			}
+		} else {
+			try {
+				namenode = getProxy(req, clientId);
+			} catch (IOException e2) {
+				e2.printStackTrace();
+				return call;
+			}
 		}
 		
 		if(namenode == null){
-			return null;
+			return call;
 		}
 		
 		Class implementation = namenode.getClass();
 		BftGlueInvocation invocation = req.getInvocation();
-		Method method = null;
-		Object value = null;
+		Method method = invocation.getMethod();
 		
 		try {
-			method =
-				implementation.getMethod(invocation.getMethodName(),
-						invocation.getParameterClasses());
+			if(method == null){
+				method =
+					implementation.getMethod(invocation.getMethodName(),
+							invocation.getParameterClasses());
+			}
 			LOG.debug("invoking : " + invocation.getMethodName());
 		} catch (SecurityException e1) {
 			// TODO Auto-generated catch block
@@ -195,6 +310,20 @@ public class BftPrimaryGlue implements AppCPInterface {
 			e1.printStackTrace();
 		}
 
+		call.namenode = namenode;
+		call.method = method;
+		call.parameters = invocation.getParameters();
+		call.compact = req.isCompact();
+		return call;
+	}
+	
+	/*
+	 * Invoke method on namenode and encode the return value or the
+	 * exception thrown as a reply, in the encoding of the request.
+	 */
+	private byte[] invoke(Object namenode, Method method, Object[] parameters,
+			boolean compact){
+		Object value = null;
 		boolean error = false;
 		String errorClass = null;
 		String errorStr = null;
@@ -203,7 +332,7 @@ public class BftPrimaryGlue implements AppCPInterface {
 		try {
 						
 			try{
-				value = method.invoke(namenode, invocation.getParameters());
+				value = method.invoke(namenode, parameters);
 			} catch (InvocationTargetException e) {
 				throw e.getTargetException();
 			}
@@ -217,7 +346,9 @@ public class BftPrimaryGlue implements AppCPInterface {
 		}
 
 		// create the reply
-		if(!error){
+		if(!error && compact){
+			rep = new BftGlueReply(method.getReturnType(), value, conf);
+		}else if(!error){
 			ObjectWritable retval = 
 				new ObjectWritable(method.getReturnType(), value);
 			rep = new BftGlueReply(retval, conf);
@@ -242,8 +373,13 @@ public class BftPrimaryGlue implements AppCPInterface {
 		LOG.debug("executing request seqNo : " + info.getSeqNo() + ", cid: " 
 				+ info.getClientId() + ", reqId: " + info.getRequestId());
 		
+		if(scheduler != null){
+			execConcurrently(request, info);
+			return;
+		}
+		
 		// setup a logical time
-		wrapperNamenode.setBftTime(info.getTime());
+		wrapperNamenode.setBftContext(info.getTime(), info.getRandom());
 		wrapperNamenode.executeThreadFunctions();
 		
 		byte[] result = processRequest(request, info.getClientId());
@@ -252,9 +388,111 @@ public class BftPrimaryGlue implements AppCPInterface {
 		
 	}
 
+	/*
+	 * Run the request in the executor once the scheduler admits it, in
+	 * a context of its own. The namesystem's context is still set in
+	 * order, before the request starts, for the thread functions, which
+	 * run only while no other request does: within a batch the time
+	 * does not move, so they have nothing to do after the first request
+	 * unless the namesystem is in safe mode, where every request runs
+	 * alone. Replies are sent in request order, and the last request of
+	 * a batch returns when the whole batch is done, so GeneralCP syncs a
+	 * namesystem at rest.
+	 */
+	private void execConcurrently(byte[] request, RequestInfo info){
+		final PreparedCall call = prepare(request, info.getClientId(), info);
+		final BftRequestScheduler.Op op = BftRequestScheduler.classify(
+				call.nodeType, call.method, call.parameters);
+		final PendingReply pending = new PendingReply(info);
+		synchronized(pendingReplies){
+			pendingReplies.addLast(pending);
+		}
+		
+		scheduler.admit(op, ((NameNode) wrapperNamenode).namesystem);
+		wrapperNamenode.setBftContext(info.getTime(), info.getRandom());
+		if(scheduler.isAlone(op)){
+			wrapperNamenode.executeThreadFunctions();
+		}
+		executor.execute(new Runnable(){
+			public void run(){
+				byte[] result = null;
+				try {
+					result = call.run();
+				} finally {
+					replyInOrder(pending, result);
+					scheduler.finish(op);
+				}
+			}
+		});
+		
+		if(info.isLastReqInBatch()){
+			scheduler.waitForAll();
+		}
+	}
+
+	private static class PendingReply {
+		final RequestInfo info;
+		byte[] result;
+		boolean done = false;
+
+		PendingReply(RequestInfo info){
+			this.info = info;
+		}
+	}
+
+	private void replyInOrder(PendingReply pending, byte[] result){
+		synchronized(pendingReplies){
+			pending.result = result;
+			pending.done = true;
+			while(!pendingReplies.isEmpty() && pendingReplies.getFirst().done){
+				PendingReply first = pendingReplies.removeFirst();
+				generalCP.execDone(first.result, first.info);
+			}
+		}
+	}
+
+	/*
+	 * Serve a ClientProtocol call that has a read-only version in
+	 * BFTGlueNamenodeProtocol. Other requests get no reply, and the client
+	 * falls back to ordering them.
+	 */
 	@Override
-	public void execReadonly(byte[] request, int clientId, long requestId) {
-		// NOT SUPPORTED YET
+	public synchronized void execReadonly(byte[] request, int clientId, long requestId) {
+		BftGlueRequest req;
+		try {
+			req = BftGlueRequest.getRequestFromBytes(request, conf);
+		} catch (VersionMismatchException e) {
+			LOG.warn(e.getMessage());
+			return;
+		} catch (IOException e) {
+			e.printStackTrace();
+			return;
+		}
+		BftGlueInvocation invocation = req.getInvocation();
+		Method method = null;
+		if(req.getNodeType() == NodeType.CLIENT){
+			try {
+				method = BFTGlueNamenodeProtocol.class.getMethod(
+						invocation.getMethodName() + "ReadOnly",
+						invocation.getParameterClasses());
+			} catch (NoSuchMethodException e) {
+				method = null;
+			}
+		}
+		if(method == null){
+			LOG.warn("No read-only version of " + invocation.getMethodName());
+			return;
+		}
+		BFTGlueNamenodeProtocol namenode;
+		try {
+			namenode = getReadOnlyProxy(req, clientId);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return;
+		}
+		byte[] result = invoke(namenode, method, invocation.getParameters(),
+				req.isCompact());
+		generalCP.execReadonlyDone(result, clientId, requestId);
 	}
 
 	@Override
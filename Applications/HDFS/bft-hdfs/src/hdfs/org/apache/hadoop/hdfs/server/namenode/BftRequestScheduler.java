@@ -0,0 +1,213 @@
+package org.apache.hadoop.hdfs.server.namenode;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSUtil;
+import org.apache.hadoop.hdfs.BftGlueRequest.NodeType;
+
+/**
+ * Decides which ordered requests of a replica may run at the same time,
+ * so that running them concurrently gives the same replies and the same
+ * namespace as running them one by one in order.
+ *
+ * Each request is classified by its method and paths:
+ *  - READ: getFileInfo, getListing, getContentSummary and
+ *    getPreferredBlockSize read their path and the directories above it;
+ *  - WRITE: mkdirs, rename, setPermission, setOwner, setTimes and
+ *    updateAccessTimes change their paths, the subtrees under them, and
+ *    the children and times of their parents;
+ *  - DATANODE: sendHeartbeat, sendHeartbeats, blockReceived,
+ *    blocksReceived, blockReport, blockReportDelta and errorReport
+ *    change datanode and block state, and the lengths of files;
+ *  - GLOBAL: anything else, in particular every call that chooses
+ *    datanodes or changes leases (create, addBlock, getBlockLocations,
+ *    register...).
+ *
+ * Requests are admitted in order, each once no running request
+ * conflicts with it. A GLOBAL request conflicts with every other,
+ * DATANODE requests with each other and with READs, which may see file
+ * lengths, and a READ or WRITE with a WRITE on the same path or on a
+ * path above or under it. A request that FSNamesystem.isIsolated does
+ * not allow, say a mkdirs under a directory with a quota or anything in
+ * safe mode, becomes GLOBAL once admitted.
+ *
+ * The scheduler only decides which requests may overlap. FSNamesystem
+ * still guards its state with its own monitor and FSDirectory with the
+ * root directory, so the namespace changes of admitted requests are
+ * still applied one at a time; what runs concurrently is the decoding
+ * and permission checking around them, and the READs, which take
+ * neither monitor for long. Each request reads the time and draws the
+ * random numbers of its own BftContext, so overlapping requests do not
+ * see each other's.
+ */
+class BftRequestScheduler {
+
+	enum Kind { READ, WRITE, DATANODE, GLOBAL }
+
+	static class Op {
+		private Kind kind;
+		private final String[] paths;
+
+		Op(Kind kind, String[] paths){
+			this.kind = kind;
+			this.paths = paths;
+		}
+
+		Kind getKind(){
+			return kind;
+		}
+	}
+
+	private static final HashMap<String, Kind> clientKinds =
+		new HashMap<String, Kind>();
+	private static final HashMap<String, Kind> datanodeKinds =
+		new HashMap<String, Kind>();
+	static {
+		for(String m : new String[] { "getFileInfo", "getListing",
+				"getContentSummary", "getPreferredBlockSize" }){
+			clientKinds.put(m, Kind.READ);
+		}
+		for(String m : new String[] { "mkdirs", "rename", "setPermission",
+				"setOwner", "setTimes", "updateAccessTimes" }){
+			clientKinds.put(m, Kind.WRITE);
+		}
+		for(String m : new String[] { "sendHeartbeat", "sendHeartbeats",
+				"blockReceived", "blocksReceived", "blockReport", "blockReportDelta",
+				"errorReport" }){
+			datanodeKinds.put(m, Kind.DATANODE);
+		}
+	}
+
+	private final ArrayList<Op> running = new ArrayList<Op>();
+
+	/**
+	 * Classify a call. A method that could not be resolved is GLOBAL.
+	 */
+	static Op classify(NodeType nodeType, Method method, Object[] params){
+		Kind kind = null;
+		if(method != null && nodeType == NodeType.CLIENT){
+			kind = clientKinds.get(method.getName());
+		} else if(method != null && nodeType == NodeType.DATANODE){
+			kind = datanodeKinds.get(method.getName());
+		}
+		if(kind == null){
+			return new Op(Kind.GLOBAL, null);
+		}
+		if(kind == Kind.DATANODE){
+			return new Op(kind, new String[0]);
+		}
+		String[] paths;
+		if(method.getName().equals("updateAccessTimes")){
+			paths = ((String[]) params[0]).clone();
+		} else if(method.getName().equals("rename")){
+			paths = new String[] { (String) params[0], (String) params[1] };
+		} else {
+			paths = new String[] { (String) params[0] };
+		}
+		for(int i = 0; i < paths.length; i++){
+			paths[i] = normalize(paths[i]);
+			if(paths[i] == null){
+				return new Op(Kind.GLOBAL, null);
+			}
+		}
+		return new Op(kind, paths);
+	}
+
+	// the path as FSDirectory sees it, or null if it is not valid
+	private static String normalize(String path){
+		if(path == null || !DFSUtil.isValidName(path)){
+			return null;
+		}
+		while(path.length() > 1 && path.endsWith(Path.SEPARATOR)){
+			path = path.substring(0, path.length() - 1);
+		}
+		return path;
+	}
+
+	// whether one of a and b is the other or above it
+	private static boolean overlap(String a, String b){
+		if(a.length() > b.length()){
+			String t = a;
+			a = b;
+			b = t;
+		}
+		return b.startsWith(a) && (b.length() == a.length()
+				|| a.length() == 1 || b.charAt(a.length()) == Path.SEPARATOR_CHAR);
+	}
+
+	private static boolean conflict(Op a, Op b){
+		if(a.kind == Kind.GLOBAL || b.kind == Kind.GLOBAL){
+			return true;
+		}
+		if(a.kind == Kind.DATANODE || b.kind == Kind.DATANODE){
+			return a.kind != Kind.WRITE && b.kind != Kind.WRITE;
+		}
+		if(a.kind == Kind.READ && b.kind == Kind.READ){
+			return false;
+		}
+		for(String p : a.paths){
+			for(String q : b.paths){
+				if(overlap(p, q)){
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private boolean conflictsWithRunning(Op op){
+		for(Op r : running){
+			if(r != op && conflict(r, op)){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Wait until op may run, and mark it as running. Requests must be
+	 * admitted in order, by one thread.
+	 */
+	synchronized void admit(Op op, FSNamesystem namesystem){
+		while(conflictsWithRunning(op)){
+			waitUninterruptibly();
+		}
+		running.add(op);
+		// nothing running now can change what isIsolated sees for op
+		if(op.kind != Kind.GLOBAL
+				&& !namesystem.isIsolated(op.paths, op.kind == Kind.WRITE)){
+			op.kind = Kind.GLOBAL;
+			while(running.size() > 1){
+				waitUninterruptibly();
+			}
+		}
+	}
+
+	/** Whether op is the only request running. */
+	synchronized boolean isAlone(Op op){
+		return running.size() == 1 && running.get(0) == op;
+	}
+
+	synchronized void finish(Op op){
+		running.remove(op);
+		notifyAll();
+	}
+
+	/** Wait until all admitted requests are finished. */
+	synchronized void waitForAll(){
+		while(!running.isEmpty()){
+			waitUninterruptibly();
+		}
+	}
+
+	private void waitUninterruptibly(){
+		try {
+			wait();
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+		}
+	}
+}
@@ -111,6 +111,13 @@ public class DatanodeDescriptor extends DatanodeInfo {
 	private long lastBlocksScheduledRollTime = 0;
 	private static final int BLOCKS_SCHEDULED_ROLL_INTERVAL = 600*1000; //10min
 
+	/* Digest of the last block report applied for this datanode, used to
+	 * check that a delta report starts from the report we have.
+	 * It is invalid until the first full report after registration.
+	 */
+	private long reportDigest = 0;
+	private boolean reportDigestValid = false;
+
 	/** Default constructor */
 	public DatanodeDescriptor() {}
 
@@ -215,6 +222,21 @@ public class DatanodeDescriptor extends DatanodeInfo {
 		this.dfsUsed = 0;
 		this.xceiverCount = 0;
 		this.blockList = null;
+		this.reportDigestValid = false;
+	}
+
+	void setReportDigest(long digest) {
+		this.reportDigest = digest;
+		this.reportDigestValid = true;
+	}
+
+	void invalidateReportDigest() {
+		this.reportDigestValid = false;
+	}
+
+	/** true if a delta report based on baseDigest can be applied */
+	boolean matchesReportDigest(long baseDigest) {
+		return reportDigestValid && reportDigest == baseDigest;
 	}
 
 	public int numBlocks() {
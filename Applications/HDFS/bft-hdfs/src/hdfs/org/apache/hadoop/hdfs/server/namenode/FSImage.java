@@ -47,7 +47,6 @@ import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.permission.PermissionStatus;
 import org.apache.hadoop.fs.permission.FsPermission;
 import org.apache.hadoop.conf.Configuration;
-import org.apache.hadoop.hdfs.BFTRandom;
 import org.apache.hadoop.hdfs.protocol.Block;
 import org.apache.hadoop.hdfs.protocol.DatanodeID;
 import org.apache.hadoop.hdfs.protocol.FSConstants;
@@ -138,6 +137,17 @@ public class FSImage extends Storage {
 
   static public boolean bft = false;
 
+  /**
+   * Whether to save the inodes in sections, see FSImageSections, and how
+   * many threads save and load them. Set from dfs.image.sectioned and
+   * dfs.image.threads.
+   */
+  static boolean sectionedImage = false;
+  static int imageThreads = 1;
+
+  // written in place of the root's name length in a sectioned image
+  static private final short SECTIONED_IMAGE = -1;
+
   /**
    */
   protected FSImage() {
@@ -824,6 +834,7 @@ public class FSImage extends Storage {
     // Load in bits
     //
     boolean needToSave = true;
+    long startTime = System.currentTimeMillis();
     DataInputStream in = new DataInputStream(new BufferedInputStream(
                               new FileInputStream(curFile)));
     try {
@@ -864,11 +875,23 @@ public class FSImage extends Storage {
 
       LOG.info("Number of files = " + numFiles);
 
+      // a sectioned image has only the root before the sections; the
+      // marker cannot be mistaken for the length of the root's empty name
+      boolean sectioned = false;
+      if (imgVersion == FSConstants.LAYOUT_VERSION) {
+        in.mark(2);
+        sectioned = (in.readShort() == SECTIONED_IMAGE);
+        if (!sectioned) {
+          in.reset();
+        }
+      }
+      long numRecords = sectioned ? 1 : numFiles;
+
       String path;
       String parentPath = "";
       INodeDirectory parentINode = fsDir.rootDir;
       //System.out.println("root dir : " + System.identityHashCode(fsDir.rootDir));
-      for (long i = 0; i < numFiles; i++) {
+      for (long i = 0; i < numRecords; i++) {
         long modificationTime = 0;
         long atime = 0;
         long blockSize = 0;
@@ -951,6 +974,15 @@ public class FSImage extends Storage {
                                         // do not update mod time of parent
                                         false);
       }
+      if (sectioned) {
+        long loaded = 1 + new FSImageSections(imageThreads).load(fsDir, in);
+        // the root of a freshly formatted namespace has not counted
+        // itself yet, so its image says 0 files
+        if (loaded != Math.max(numFiles, 1)) {
+          throw new IOException("Image has " + loaded + " files instead of "
+                                + numFiles);
+        }
+      }
       //System.out.println("Num of All files in rootdir : " + 
       //		fsDir.rootDir.numItemsInTree());
       // load datanode info
@@ -988,6 +1020,7 @@ public class FSImage extends Storage {
       in.close();
     }
     
+    logImageTransfer("loaded", curFile, startTime);
     return needToSave;
   }
   
@@ -1086,7 +1119,7 @@ public class FSImage extends Storage {
   void saveFSImage(File newFile) throws IOException {
     FSNamesystem fsNamesys = FSNamesystem.getFSNamesystem();
     FSDirectory fsDir = fsNamesys.dir;
-    long startTime = FSNamesystem.now();
+    long startTime = System.currentTimeMillis();
     //
     // Write out data
     //
@@ -1102,11 +1135,17 @@ public class FSImage extends Storage {
       out.writeLong(fsNamesys.getGenerationStamp());
       byte[] byteStore = new byte[4*FSConstants.MAX_PATH_LENGTH];
       ByteBuffer strbuf = ByteBuffer.wrap(byteStore);
-      // save the root
-      saveINode2Image(strbuf, fsDir.rootDir, out);
+      if (sectionedImage) {
+        out.writeShort(SECTIONED_IMAGE);
+        saveINode2Image(strbuf, fsDir.rootDir, out);
+        new FSImageSections(imageThreads).save(fsDir.rootDir, out);
+      } else {
+        // save the root
+        saveINode2Image(strbuf, fsDir.rootDir, out);
       
-      // save the rest of the nodes
-      saveImage(strbuf, 0, fsDir.rootDir, out);
+        // save the rest of the nodes
+        saveImage(strbuf, 0, fsDir.rootDir, out);
+      }
 
       
       putDelimiter(out, 1);
@@ -1134,8 +1173,15 @@ public class FSImage extends Storage {
 
     //System.out.println("FILENAME : " + newFile.getAbsolutePath());
     
-    LOG.info("Image file of size " + newFile.length() + " saved in " 
-        + (FSNamesystem.now() - startTime)/1000 + " seconds.");
+    logImageTransfer("saved", newFile, startTime);
+  }
+
+  private static void logImageTransfer(String what, File file, long startTime) {
+    long ms = Math.max(1, System.currentTimeMillis() - startTime);
+    LOG.info("Image file of size " + file.length() + " " + what + " in "
+        + ms + " ms, " + (file.length() * 1000 / ms) / (1024 * 1024)
+        + " MB/s" + (sectionedImage ? " with " + imageThreads + " threads" : "")
+        + ".");
   }
   
   //
@@ -1261,8 +1307,7 @@ public class FSImage extends Storage {
    * @return new namespaceID
    */
   private int newNamespaceID() {
-    //Random r = new Random();
-    Random r = BFTRandom.getRandom();
+    Random r = new Random();
     r.setSeed(FSNamesystem.now());
     int newID = 0;
     while(newID == 0)
@@ -1307,6 +1352,17 @@ public class FSImage extends Storage {
   private static void saveINode2Image(ByteBuffer name,
                                       INode node,
                                       DataOutputStream out) throws IOException {
+    saveINode2Image(name, node, out, FILE_PERM);
+  }
+
+  /*
+   * Save one inode's attributes to the image, using perm as scratch
+   * space for its permission.
+   */
+  static void saveINode2Image(ByteBuffer name,
+                              INode node,
+                              DataOutputStream out,
+                              FsPermission perm) throws IOException {
     int nameLen = name.position();
     out.writeShort(nameLen);
     //System.out.println("NameLen : " + nameLen);
@@ -1334,10 +1390,10 @@ public class FSImage extends Storage {
       	//System.out.println("Block : " + blk);
         blk.write(out);
       }
-      FILE_PERM.fromShort(fileINode.getFsPermissionShort());
+      perm.fromShort(fileINode.getFsPermissionShort());
       PermissionStatus.write(out, fileINode.getUserName(),
                              fileINode.getGroupName(),
-                             FILE_PERM);
+                             perm);
       //System.out.println(""+fileINode.getUserName()+","+fileINode.getGroupName()
       //		+","+FILE_PERM);
     } else {   // write directory inode
@@ -1351,10 +1407,10 @@ public class FSImage extends Storage {
       out.writeLong(node.getNsQuota());
       out.writeLong(node.getDsQuota());
       //System.out.println("NS quota : " + node.getNsQuota() + ", DS quota : " + node.getDsQuota());
-      FILE_PERM.fromShort(node.getFsPermissionShort());
+      perm.fromShort(node.getFsPermissionShort());
       PermissionStatus.write(out, node.getUserName(),
                              node.getGroupName(),
-                             FILE_PERM);
+                             perm);
       //System.out.println(""+node.getUserName()+","+node.getGroupName() + ","+FILE_PERM);
     }
   }
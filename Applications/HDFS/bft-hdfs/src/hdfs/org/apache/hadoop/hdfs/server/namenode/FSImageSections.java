@@ -0,0 +1,370 @@
+package org.apache.hadoop.hdfs.server.namenode;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.fs.permission.PermissionStatus;
+import org.apache.hadoop.hdfs.protocol.Block;
+import org.apache.hadoop.hdfs.protocol.FSConstants;
+
+/**
+ * The sectioned form of the inodes in an image, which is saved and
+ * loaded by several threads.
+ *
+ * The inodes other than the root are written in the usual order, one
+ * record per inode as FSImage.saveINode2Image writes it, and cut into
+ * sections of SECTION_SIZE records. Each section is preceded by its
+ * record count and length in bytes, and the last one by a count of 0:
+ *
+ *   (int records, int length, byte[length] records)* int 0
+ *
+ * Since every record carries the full path of its inode, a section can
+ * be encoded or decoded on its own. Saving walks the tree in one thread
+ * and encodes the sections in a pool; loading reads the sections in one
+ * thread, builds their inodes in the pool, and then links them into the
+ * tree and the blocks map in file order.
+ *
+ * The section boundaries only depend on the namespace, so the bytes of
+ * an image do not depend on the number of threads.
+ */
+class FSImageSections {
+  static final int SECTION_SIZE = 64 * 1024;
+
+  private static final byte[] PATH_SEPARATOR = INode.string2Bytes("/");
+
+  private final int threads;
+  private ExecutorService pool;
+  // sections being encoded or decoded, in file order
+  private LinkedList<Future<byte[]>> encoding =
+    new LinkedList<Future<byte[]>>();
+  private LinkedList<Integer> encodingRecords = new LinkedList<Integer>();
+  private LinkedList<Future<Section>> decoding =
+    new LinkedList<Future<Section>>();
+
+  FSImageSections(int threads) {
+    this.threads = Math.max(1, threads);
+  }
+
+  private void start() {
+    pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "FSImageSections");
+        t.setDaemon(true);
+        return t;
+      }
+    });
+  }
+
+  private void stop() {
+    pool.shutdownNow();
+    encoding.clear();
+    encodingRecords.clear();
+    decoding.clear();
+  }
+
+  private static <T> T get(Future<T> f) throws IOException {
+    try {
+      return f.get();
+    } catch(InterruptedException e) {
+      throw new IOException("Interrupted while processing image sections");
+    } catch(ExecutionException e) {
+      Throwable cause = e.getCause();
+      if(cause instanceof IOException)
+        throw (IOException) cause;
+      IOException ioe = new IOException("Failed to process image section");
+      ioe.initCause(cause);
+      throw ioe;
+    }
+  }
+
+  /////////////////////////////////////////////////////
+  // Saving
+  /////////////////////////////////////////////////////
+
+  /**
+   * A run of children of one directory, written as part of a section.
+   */
+  private static class Run {
+    final byte[] dirPath;
+    final List<INode> children;
+    final int from;
+    final int to;
+
+    Run(byte[] dirPath, List<INode> children, int from, int to) {
+      this.dirPath = dirPath;
+      this.children = children;
+      this.from = from;
+      this.to = to;
+    }
+  }
+
+  private static class SectionEncoder implements Callable<byte[]> {
+    private final List<Run> runs;
+    private final int records;
+
+    SectionEncoder(List<Run> runs, int records) {
+      this.runs = runs;
+      this.records = records;
+    }
+
+    public byte[] call() throws IOException {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream(records * 64);
+      DataOutputStream out = new DataOutputStream(bytes);
+      ByteBuffer name = ByteBuffer.wrap(new byte[4*FSConstants.MAX_PATH_LENGTH]);
+      FsPermission perm = new FsPermission((short)0);
+      for(Run run : runs) {
+        for(int i = run.from; i < run.to; i++) {
+          name.clear();
+          name.put(run.dirPath).put(PATH_SEPARATOR)
+              .put(run.children.get(i).getLocalNameBytes());
+          FSImage.saveINode2Image(name, run.children.get(i), out, perm);
+        }
+      }
+      out.flush();
+      return bytes.toByteArray();
+    }
+  }
+
+  private DataOutputStream out;
+  private List<Run> runs;
+  private int records;
+  private long totalRecords;
+
+  /**
+   * Write all the inodes under root, but not root itself.
+   * @return the number of inodes written
+   */
+  long save(INodeDirectory root, DataOutputStream out) throws IOException {
+    this.out = out;
+    this.runs = new ArrayList<Run>();
+    this.records = 0;
+    this.totalRecords = 0;
+    start();
+    try {
+      saveChildren(new byte[0], root);
+      submit();
+      while(!encoding.isEmpty())
+        writeOldest();
+      out.writeInt(0);
+    } finally {
+      stop();
+      this.out = null;
+      this.runs = null;
+    }
+    return totalRecords;
+  }
+
+  // the same order as FSImage.saveImage
+  private void saveChildren(byte[] dirPath, INodeDirectory dir)
+  throws IOException {
+    List<INode> children = dir.getChildrenRaw();
+    if(children == null)
+      return;
+    int from = 0;
+    while(from < children.size()) {
+      int to = Math.min(children.size(), from + SECTION_SIZE - records);
+      runs.add(new Run(dirPath, children, from, to));
+      records += to - from;
+      from = to;
+      if(records == SECTION_SIZE)
+        submit();
+    }
+    for(INode child : children) {
+      if(!child.isDirectory())
+        continue;
+      byte[] name = child.getLocalNameBytes();
+      byte[] childPath = new byte[dirPath.length + 1 + name.length];
+      System.arraycopy(dirPath, 0, childPath, 0, dirPath.length);
+      childPath[dirPath.length] = PATH_SEPARATOR[0];
+      System.arraycopy(name, 0, childPath, dirPath.length + 1, name.length);
+      saveChildren(childPath, (INodeDirectory)child);
+    }
+  }
+
+  private void writeOldest() throws IOException {
+    byte[] section = get(encoding.removeFirst());
+    out.writeInt(encodingRecords.removeFirst());
+    out.writeInt(section.length);
+    out.write(section);
+  }
+
+  private void submit() throws IOException {
+    if(records == 0)
+      return;
+    while(encoding.size() >= 2 * threads)
+      writeOldest();
+    encoding.add(pool.submit(new SectionEncoder(runs, records)));
+    encodingRecords.add(records);
+    totalRecords += records;
+    runs = new ArrayList<Run>();
+    records = 0;
+  }
+
+  /////////////////////////////////////////////////////
+  // Loading
+  /////////////////////////////////////////////////////
+
+  /**
+   * The inodes of a section, not yet linked into the tree.
+   */
+  private static class Section {
+    final String[] parents;
+    final INode[] nodes;
+    final Block[][] blocks;
+
+    Section(int records) {
+      parents = new String[records];
+      nodes = new INode[records];
+      blocks = new Block[records][];
+    }
+  }
+
+  private static class SectionDecoder implements Callable<Section> {
+    private final byte[] bytes;
+    private final int records;
+
+    SectionDecoder(byte[] bytes, int records) {
+      this.bytes = bytes;
+      this.records = records;
+    }
+
+    public Section call() throws IOException {
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+      Section s = new Section(records);
+      byte[] path = new byte[4*FSConstants.MAX_PATH_LENGTH];
+      byte[] lastParent = new byte[0];
+      String lastParentName = "";
+      for(int i = 0; i < records; i++) {
+        int len = in.readUnsignedShort();
+        in.readFully(path, 0, len);
+        int slash = len - 1;
+        while(slash >= 0 && path[slash] != PATH_SEPARATOR[0])
+          slash--;
+        if(slash < 0)
+          throw new IOException("Bad path in image section");
+        // siblings are consecutive, so they share the parent string
+        if(!samePrefix(path, slash, lastParent)) {
+          lastParent = new byte[slash];
+          System.arraycopy(path, 0, lastParent, 0, slash);
+          lastParentName = INode.bytes2String(lastParent);
+        }
+        s.parents[i] = lastParentName;
+        byte[] name = new byte[len - slash - 1];
+        System.arraycopy(path, slash + 1, name, 0, name.length);
+
+        short replication = FSEditLog.adjustReplication(in.readShort());
+        long modificationTime = in.readLong();
+        long atime = in.readLong();
+        long blockSize = in.readLong();
+        int numBlocks = in.readInt();
+        INode node;
+        if(numBlocks >= 0) {
+          Block[] blocks = new Block[numBlocks];
+          for(int j = 0; j < numBlocks; j++) {
+            blocks[j] = new Block();
+            blocks[j].readFields(in);
+          }
+          PermissionStatus permissions = PermissionStatus.read(in);
+          node = new INodeFile(permissions, numBlocks, replication,
+                               modificationTime, atime, blockSize);
+          s.blocks[i] = blocks;
+        } else {
+          long nsQuota = in.readLong();
+          long dsQuota = in.readLong();
+          PermissionStatus permissions = PermissionStatus.read(in);
+          if(nsQuota >= 0 || dsQuota >= 0)
+            node = new INodeDirectoryWithQuota(permissions, modificationTime,
+                                               nsQuota, dsQuota);
+          else
+            node = new INodeDirectory(permissions, modificationTime);
+        }
+        node.name = name;
+        s.nodes[i] = node;
+      }
+      return s;
+    }
+
+    private static boolean samePrefix(byte[] path, int len, byte[] prefix) {
+      if(prefix.length != len)
+        return false;
+      for(int i = len - 1; i >= 0; i--)
+        if(path[i] != prefix[i])
+          return false;
+      return true;
+    }
+  }
+
+  private INodeDirectory parent;
+  private String parentPath;
+
+  /**
+   * Read the inodes written by save and add them to fsDir.
+   * @return the number of inodes read
+   */
+  long load(FSDirectory fsDir, DataInputStream in) throws IOException {
+    long total = 0;
+    parent = fsDir.rootDir;
+    parentPath = "";
+    start();
+    try {
+      int records;
+      while((records = in.readInt()) > 0) {
+        int length = in.readInt();
+        if(length < 0)
+          throw new IOException("Bad image section length " + length);
+        byte[] section = new byte[length];
+        in.readFully(section);
+        while(decoding.size() >= 2 * threads)
+          linkOldest(fsDir);
+        decoding.add(pool.submit(new SectionDecoder(section, records)));
+        total += records;
+      }
+      while(!decoding.isEmpty())
+        linkOldest(fsDir);
+    } finally {
+      stop();
+      parent = null;
+    }
+    return total;
+  }
+
+  private void linkOldest(FSDirectory fsDir) throws IOException {
+    Section s = get(decoding.removeFirst());
+    BlocksMap blocksMap = fsDir.namesystem.blocksMap;
+    synchronized(fsDir.rootDir) {
+      for(int i = 0; i < s.nodes.length; i++) {
+        if(!s.parents[i].equals(parentPath)) {
+          parentPath = s.parents[i];
+          INode p = parentPath.length() == 0 ? fsDir.rootDir
+              : fsDir.rootDir.getNode(parentPath);
+          if(p == null || !p.isDirectory())
+            throw new IOException("Parent of " + parentPath + "/"
+                + s.nodes[i].getLocalName() + " is not a directory in the image");
+          parent = (INodeDirectory)p;
+        }
+        if(parent.addChild(s.nodes[i], false, false) == null)
+          continue;
+        Block[] blocks = s.blocks[i];
+        if(blocks != null) {
+          INodeFile file = (INodeFile)s.nodes[i];
+          for(int j = 0; j < blocks.length; j++)
+            file.setBlock(j, blocksMap.addINode(blocks[j], file));
+        }
+      }
+    }
+  }
+}
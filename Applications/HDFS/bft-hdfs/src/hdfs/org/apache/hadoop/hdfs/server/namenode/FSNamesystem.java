@@ -20,7 +20,6 @@ package org.apache.hadoop.hdfs.server.namenode;
 import org.apache.commons.logging.*;
 
 import org.apache.hadoop.conf.*;
-import org.apache.hadoop.hdfs.BFTRandom;
 import org.apache.hadoop.hdfs.DFSUtil;
 import org.apache.hadoop.hdfs.protocol.*;
 import org.apache.hadoop.hdfs.server.common.GenerationStamp;
@@ -43,12 +42,15 @@ import org.apache.hadoop.net.NetUtils;
 import org.apache.hadoop.net.NetworkTopology;
 import org.apache.hadoop.net.ScriptBasedMapping;
 import org.apache.hadoop.hdfs.server.namenode.LeaseManager.Lease;
+import org.apache.hadoop.hdfs.server.protocol.BlockReportDelta;
 import org.apache.hadoop.hdfs.server.protocol.BlocksWithLocations;
 import org.apache.hadoop.hdfs.server.protocol.BlocksWithLocations.BlockWithLocations;
 import org.apache.hadoop.hdfs.server.protocol.DatanodeCommand;
 import org.apache.hadoop.hdfs.server.protocol.DatanodeRegistration;
 import org.apache.hadoop.hdfs.server.protocol.DisallowedDatanodeException;
+import org.apache.hadoop.hdfs.server.protocol.HeartbeatBatch;
 import org.apache.hadoop.hdfs.server.protocol.NamespaceInfo;
+import org.apache.hadoop.hdfs.server.protocol.ReceivedBlocks;
 import org.apache.hadoop.hdfs.server.protocol.UpgradeCommand;
 import org.apache.hadoop.fs.ContentSummary;
 import org.apache.hadoop.fs.FileStatus;
@@ -211,8 +213,15 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean {
   Date startTime;
     
   //
-  //Random r = new Random();
-  Random r = BFTRandom.getRandom();
+  private final Random r = new Random();
+
+  // the ordered request being executed, see getRandom()
+  BftContext bftContext;
+
+  // the context of the ordered request this thread executes, set by the
+  // glue when requests overlap, see getBftContext()
+  private static final ThreadLocal<BftContext> requestContext =
+    new ThreadLocal<BftContext>();
 
   /**
    * Stores a set of DatanodeDescriptor objects.
@@ -284,6 +293,8 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean {
   
   // for block replicas placement
   ReplicationTargetChooser replicator;
+  // for picking datanodes outside of ordered requests
+  private ReplicationTargetChooser randomNodeChooser;
 
   private HostsFileReader hostsReader; 
   private Daemon dnthread = null;
@@ -302,6 +313,7 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean {
   private long accessTimePrecision = 0;
 
   static public boolean bft = true;
+  static long bftInitialTime = 0;
   static public boolean bftdatanode;
   
   boolean bftReplaying;
@@ -491,6 +503,12 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean {
    */
   private void setConfigurationParameters(Configuration conf) 
                                           throws IOException {
+    // a namesystem reloaded from an image goes on in the same context
+    bftInitialTime = conf.getLong("dfs.bft.format.initialTimeValue", 0);
+    if (fsNamesystemObject != null && fsNamesystemObject.bftContext != null)
+      bftContext = fsNamesystemObject.bftContext;
+    else
+      bftContext = new BftContext(bftInitialTime);
     fsNamesystemObject = this;
         
     
@@ -515,7 +533,11 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean {
     this.replicator = new ReplicationTargetChooser(
                          conf.getBoolean("dfs.replication.considerLoad", true),
                          this,
-                         clusterMap);
+                         clusterMap,
+                         getRandom());
+    this.randomNodeChooser = bft ? new ReplicationTargetChooser(
+                         conf.getBoolean("dfs.replication.considerLoad", true),
+                         this, clusterMap, r) : replicator;
     this.defaultReplication = conf.getInt("dfs.replication", 3);
     this.maxReplication = conf.getInt("dfs.replication.max", 512);
     this.minReplication = conf.getInt("dfs.replication.min", 1);
@@ -549,6 +571,9 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean {
     this.blockInvalidateLimit = Math.max(this.blockInvalidateLimit, 
                                          20*(int)(heartbeatInterval/1000));
     this.accessTimePrecision = conf.getLong("dfs.access.time.precision", 0);
+    FSImage.sectionedImage = conf.getBoolean("dfs.image.sectioned", bft);
+    FSImage.imageThreads = conf.getInt("dfs.image.threads",
+                                       Runtime.getRuntime().availableProcessors());
   }
 
   /**
@@ -714,7 +739,6 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean {
       return new BlocksWithLocations(new BlockWithLocations[0]);
     }
     Iterator<Block> iter = node.getBlockIterator();
-    //r = BFTRandom.getRandom();
     int startBlock = r.nextInt(numBlocks); // starting from a random block
     // skip blocks
     for(int i=0; i<startBlock; i++) {
@@ -840,9 +864,9 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean {
     if (blocks != null) {
       //sort the blocks
       DatanodeDescriptor client = host2DataNodeMap.getDatanodeByHost(
-          clientMachine);
+          clientMachine, getRandom());
       for (LocatedBlock b : blocks.getLocatedBlocks()) {
-        clusterMap.pseudoSortByDistance(client, b.getLocations());
+        clusterMap.pseudoSortByDistance(client, b.getLocations(), getRandom());
       }
     }
     
@@ -858,6 +882,91 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean {
     return getBlockLocations(src, offset, length, false);
   }
 
+  /**
+   * Get block locations without changing any state, for BFT read-only
+   * requests that are executed outside the agreed order.
+   * 
+   * Nothing is logged, the access time is left alone and the replicas
+   * of each block are put in a deterministic order instead of being
+   * sorted by distance with the shared random generator, so replicas
+   * at the same state give the same answer.
+   */
+  LocatedBlocks getBlockLocationsReadOnly(String src, long offset,
+      long length) throws IOException {
+    if (isPermissionEnabled) {
+      checkPathAccess(src, FsAction.READ);
+    }
+    if (offset < 0) {
+      throw new IOException("Negative offset is not supported. File: " + src );
+    }
+    if (length < 0) {
+      throw new IOException("Negative length is not supported. File: " + src );
+    }
+    LocatedBlocks blocks = getBlockLocationsInternal(src,
+        dir.getFileINode(src), offset, length, Integer.MAX_VALUE, false);
+    if (blocks != null) {
+      for (LocatedBlock b : blocks.getLocatedBlocks()) {
+        deterministicSort(b.getBlock(), b.getLocations());
+      }
+    }
+    return blocks;
+  }
+
+  /**
+   * Order the replicas of a block by storage id, rotated by the block id
+   * so that reads of different blocks start at different datanodes.
+   */
+  private static void deterministicSort(Block b, DatanodeInfo[] nodes) {
+    if (nodes.length < 2) {
+      return;
+    }
+    Arrays.sort(nodes, new Comparator<DatanodeInfo>() {
+      public int compare(DatanodeInfo d1, DatanodeInfo d2) {
+        return d1.getStorageID().compareTo(d2.getStorageID());
+      }
+    });
+    int shift = (int)((b.getBlockId() % nodes.length + nodes.length)
+                      % nodes.length);
+    if (shift != 0) {
+      DatanodeInfo[] sorted = nodes.clone();
+      for (int i = 0; i < nodes.length; i++) {
+        nodes[i] = sorted[(i + shift) % nodes.length];
+      }
+    }
+  }
+
+  /**
+   * Set the access time of the given files to now.  BFT clients that
+   * read block locations without ordering send the files they read in
+   * one batch every so often.  Files that no longer exist or that the
+   * caller may not read are skipped.
+   */
+  synchronized void updateAccessTimes(String[] srcs) throws IOException {
+    if (!isAccessTimeSupported()) {
+      return;
+    }
+    long now = now();
+    List<String> updated = new ArrayList<String>(srcs.length);
+    for (String src : srcs) {
+      if (isPermissionEnabled) {
+        try {
+          checkPathAccess(src, FsAction.READ);
+        } catch (AccessControlException e) {
+          continue;
+        }
+      }
+      INodeFile inode = dir.getFileINode(src);
+      if (inode != null) {
+        dir.setTimes(src, inode, -1, now, false);
+        updated.add(src);
+      }
+    }
+    if(bft & !bftReplaying && !updated.isEmpty()){
+      ((BftFSEditLog)getEditLog()).bftLogUpdateAccessTimes(now,
+          updated.toArray(new String[updated.size()]));
+    }
+  }
+
   /**
    * Get block locations within the specified range.
    * @see ClientProtocol#getBlockLocations(String, long, long)
@@ -1210,7 +1319,7 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean {
       }
       
       DatanodeDescriptor clientNode = 
-        host2DataNodeMap.getDatanodeByHost(clientMachine);
+        host2DataNodeMap.getDatanodeByHost(clientMachine, getRandom());
       
       if (append) {
         //
@@ -1302,7 +1411,7 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean {
           if(bftdatanode){
           	// reorder datanodes
           	// This is for client's retry when it failed append due to a faulty datanode
-          	int n = r.nextInt(targets.length);
+          	int n = getRandom().nextInt(targets.length);
           	DatanodeDescriptor[] targets2 = new DatanodeDescriptor[targets.length];
           	for(int i=0; i<n; i++){
           		targets2[i] = targets[(i+n)%targets.length];
@@ -1785,9 +1894,6 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean {
     }
   }
 
-  //static Random randBlockId = new Random();
-  static Random randBlockId = BFTRandom.getRandom();
-    
   /**
    * Allocate a block at the given pending filename
    * 
@@ -1796,10 +1902,9 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean {
    *        <code>inodes[inodes.length-1]</code> is the INode for the file.
    */
   private Block allocateBlock(String src, INode[] inodes) throws IOException {
-  	//randBlockId = BFTRandom.getRandom();
     Block b = null;
     do {
-      b = new Block(FSNamesystem.randBlockId.nextLong(), 0, 
+      b = new Block(getRandom().nextLong(), 0, 
                     getGenerationStamp());
     } while (isValidBlock(b));
     b = dir.addBlock(src, inodes, b);
@@ -2501,6 +2606,7 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean {
       // update cluster map
       clusterMap.remove(nodeS);
       nodeS.updateRegInfo(nodeReg);
+      nodeS.invalidateReportDigest();
       nodeS.setHostName(hostName);
       
       // resolve network location
@@ -2594,8 +2700,7 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean {
   private String newStorageID() {
     String newID = null;
     while(newID == null) {
-    	//r = BFTRandom.getRandom();
-      newID = "DS" + Integer.toString(r.nextInt());
+      newID = "DS" + Integer.toString(getRandom().nextInt());
       if (datanodeMap.get(newID) != null)
         newID = null;
     }
@@ -2628,20 +2733,8 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean {
     DatanodeCommand cmd = null;
     synchronized (heartbeats) {
       synchronized (datanodeMap) {
-        DatanodeDescriptor nodeinfo = null;
-        try {
-          nodeinfo = getDatanode(nodeReg);
-        } catch(UnregisteredDatanodeException e) {
-          return DatanodeCommand.REGISTER;
-        }
-          
-        // Check if this datanode should actually be shutdown instead. 
-        if (nodeinfo != null && shouldNodeShutdown(nodeinfo)) {
-          setDatanodeDead(nodeinfo);
-          throw new DisallowedDatanodeException(nodeinfo);
-        }
-
-        if (nodeinfo == null || !nodeinfo.isAlive) {
+        DatanodeDescriptor nodeinfo = getHeartbeatNode(nodeReg);
+        if (nodeinfo == null) {
           return DatanodeCommand.REGISTER;
         }
 
@@ -2654,25 +2747,7 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean {
               capacity, dfsUsed, remaining, xmitsInProgress, xceiverCount);
         }
         
-        //check lease recovery
-        if (cmd == null) {
-          cmd = nodeinfo.getLeaseRecoveryCommand(Integer.MAX_VALUE);
-        }
-        if(bftdatanode){
-        	//check block to be rolled back
-        	if (cmd == null) {
-        		cmd = nodeinfo.getRollbackBlocks();
-        	}
-        }
-        //check pending replication
-        if (cmd == null) {
-          cmd = nodeinfo.getReplicationCommand(
-              maxReplicationStreams - xmitsInProgress);
-        }
-        //check block invalidation
-        if (cmd == null) {
-          cmd = nodeinfo.getInvalidateBlocks(blockInvalidateLimit);
-        }
+        cmd = getHeartbeatCommand(nodeinfo, xmitsInProgress);
       }
     }
 
@@ -2683,6 +2758,119 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean {
     
     return cmd;
   }
+
+  /**
+   * Handle the heartbeats of a batch as handleHeartbeat handles each,
+   * in one pass under the heartbeat and datanode map locks, and log the
+   * ones that were applied as one record.
+   * 
+   * @param errors the error of each heartbeat. Heartbeats that already
+   *        have one are skipped, and the others get one if they fail.
+   * @return the command for each heartbeat
+   */
+  DatanodeCommand[] handleHeartbeats(HeartbeatBatch batch,
+      IOException[] errors) throws IOException {
+    DatanodeCommand[] cmds = new DatanodeCommand[batch.size()];
+    boolean[] applied = new boolean[batch.size()];
+    int numApplied = 0;
+    synchronized (heartbeats) {
+      synchronized (datanodeMap) {
+        for (int i = 0; i < batch.size(); i++) {
+          if (errors[i] != null) {
+            continue;
+          }
+          DatanodeDescriptor nodeinfo;
+          try {
+            nodeinfo = getHeartbeatNode(batch.getRegistration(i));
+          } catch (IOException e) {
+            errors[i] = e;
+            continue;
+          }
+          if (nodeinfo == null) {
+            cmds[i] = DatanodeCommand.REGISTER;
+            continue;
+          }
+          updateStats(nodeinfo, false);
+          nodeinfo.updateHeartbeat(batch.getCapacity(i), batch.getDfsUsed(i),
+              batch.getRemaining(i), batch.getXceiverCount(i));
+          updateStats(nodeinfo, true);
+          applied[i] = true;
+          numApplied++;
+          cmds[i] = getHeartbeatCommand(nodeinfo, batch.getXmitsInProgress(i));
+        }
+        if (bft & !bftReplaying && numApplied > 0) {
+          ((BftFSEditLog)getEditLog()).bftLogSendHeartbeats(now(),
+              numApplied == batch.size() ? batch : batch.subset(applied));
+        }
+      }
+    }
+
+    //check distributed upgrade, which is the same for every node
+    DatanodeCommand upgradeCmd = null;
+    for (int i = 0; i < cmds.length; i++) {
+      if (applied[i] && cmds[i] == null) {
+        if (upgradeCmd == null) {
+          upgradeCmd = getDistributedUpgradeCommand();
+          if (upgradeCmd == null) {
+            break;
+          }
+        }
+        cmds[i] = upgradeCmd;
+      }
+    }
+    return cmds;
+  }
+
+  /**
+   * The descriptor of a node that sent a heartbeat, or null if it has to
+   * register again. Called with the heartbeat and datanode map locks.
+   */
+  private DatanodeDescriptor getHeartbeatNode(DatanodeRegistration nodeReg
+                                              ) throws IOException {
+    DatanodeDescriptor nodeinfo = null;
+    try {
+      nodeinfo = getDatanode(nodeReg);
+    } catch(UnregisteredDatanodeException e) {
+      return null;
+    }
+      
+    // Check if this datanode should actually be shutdown instead. 
+    if (nodeinfo != null && shouldNodeShutdown(nodeinfo)) {
+      setDatanodeDead(nodeinfo);
+      throw new DisallowedDatanodeException(nodeinfo);
+    }
+
+    if (nodeinfo == null || !nodeinfo.isAlive) {
+      return null;
+    }
+    return nodeinfo;
+  }
+
+  /**
+   * The work pending for a node that sent a heartbeat, if any.
+   * Called with the heartbeat and datanode map locks.
+   */
+  private DatanodeCommand getHeartbeatCommand(DatanodeDescriptor nodeinfo,
+                                              int xmitsInProgress) {
+    //check lease recovery
+    DatanodeCommand cmd = nodeinfo.getLeaseRecoveryCommand(Integer.MAX_VALUE);
+    if(bftdatanode){
+      //check block to be rolled back
+      if (cmd == null) {
+        cmd = nodeinfo.getRollbackBlocks();
+      }
+    }
+    //check pending replication
+    if (cmd == null) {
+      cmd = nodeinfo.getReplicationCommand(
+          maxReplicationStreams - xmitsInProgress);
+    }
+    //check block invalidation
+    if (cmd == null) {
+      cmd = nodeinfo.getInvalidateBlocks(blockInvalidateLimit);
+    }
+    return cmd;
+  }
   
   public boolean confirmBlockUpdate(String clientMachine, Block blk){
   	INodeFile openedFile = blocksMap.getINode(blk);
@@ -2990,8 +3178,7 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean {
       // switch to a different node randomly
       // this to prevent from deterministically selecting the same node even
       // if the node failed to replicate the block on previous iterations
-      //r = BFTRandom.getRandom();
-      if(r.nextBoolean())
+      if(getRandom().nextBoolean())
         srcNode = node;
     }
     if(numReplicas != null)
@@ -3242,6 +3429,7 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean {
     Collection<Block> toRemove = new LinkedList<Block>();
     Collection<Block> toInvalidate = new LinkedList<Block>();
     node.reportDiff(blocksMap, newReport, toAdd, toRemove, toInvalidate);
+    node.setReportDigest(newReport == null ? 0 : BlockReportDelta.digest(newReport));
         
     for (Block b : toRemove) {
       removeStoredBlock(b, node);
@@ -3295,6 +3483,7 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean {
     Collection<Block> toInvalidate = new LinkedList<Block>();
     
     node.reportDiff(blocksMap, newReport, toAdd, toRemove, toInvalidate);
+    node.setReportDigest(newReport == null ? 0 : BlockReportDelta.digest(newReport));
         
     for (Block b : toRemove) {
       removeStoredBlock(b, node);
@@ -3314,6 +3503,66 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean {
     }
   }
 
+  /**
+   * The given node is reporting the blocks it added and removed since
+   * its last report. The delta is applied only if it starts from the
+   * report we have for the node.
+   * @return false if the digests do not match and a full report is needed
+   */
+  public synchronized boolean processDeltaReport(DatanodeID nodeID,
+                                                 BlockReportDelta delta
+                                                ) throws IOException {
+    long startTime = System.currentTimeMillis();
+    if (NameNode.stateChangeLog.isDebugEnabled()) {
+      NameNode.stateChangeLog.debug("BLOCK* NameSystem.processDeltaReport: "
+                             + "from " + nodeID.getName() + " " + delta);
+    }
+    DatanodeDescriptor node = getDatanode(nodeID);
+    if (node == null) {
+      throw new IOException("ProcessDeltaReport from unregisterted node: "
+                            + nodeID.getName());
+    }
+
+    // Check if this datanode should actually be shutdown instead.
+    if (shouldNodeShutdown(node)) {
+      setDatanodeDead(node);
+      throw new DisallowedDatanodeException(node);
+    }
+
+    if (!delta.isConsistent() || !node.matchesReportDigest(delta.getBaseDigest())) {
+      NameNode.stateChangeLog.info("BLOCK* NameSystem.processDeltaReport: "
+          + "digest mismatch from " + node.getName()
+          + ", asking for a full report");
+      node.invalidateReportDigest();
+      return false;
+    }
+
+    for (Block b : delta.getRemoved()) {
+      removeStoredBlock(b, node);
+    }
+    for (Block b : delta.getAdded()) {
+      BlockInfo storedBlock = blocksMap.getStoredBlock(b);
+      if (storedBlock == null ||
+          (bftdatanode && !Arrays.equals(storedBlock.getHash(), b.getHash()))) {
+        NameNode.stateChangeLog.info("BLOCK* NameSystem.processDeltaReport: block " 
+            + b + " on " + node.getName() + " size " + b.getNumBytes()
+            + " does not belong to any file.");
+        addToInvalidates(b, node);
+        continue;
+      }
+      if (storedBlock.findDatanode(node) < 0) {
+        addStoredBlock(storedBlock.getNumBytes() != b.getNumBytes() ?
+                       b : storedBlock, node, null);
+      }
+    }
+    node.setReportDigest(delta.getDigest());
+
+    if(NameNode.getNameNodeMetrics() != null){
+      NameNode.getNameNodeMetrics().blockReportDelta.inc((int) (System.currentTimeMillis() - startTime));
+    }
+    return true;
+  }
+
   /**
    * Modify (block-->datanode) map.  Remove block from set of 
    * needed replications if this takes care of the problem.
@@ -3751,6 +4000,42 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean {
                                          Block block,
                                          String delHint
                                          ) throws IOException {
+    DatanodeDescriptor node = getReceivingDatanode(nodeID, block);
+        
+    if (NameNode.stateChangeLog.isDebugEnabled()) {
+      NameNode.stateChangeLog.debug("BLOCK* NameSystem.blockReceived: "
+                                    +block+" is received from " + nodeID.getName());
+    }
+
+    blockReceived(node, block, delHint);
+  }
+
+  /**
+   * The given node is reporting that it received several blocks. The
+   * node is looked up and checked once, and the blocks are applied in
+   * order, as blockReceived applies each.
+   */
+  public synchronized void blocksReceived(DatanodeID nodeID,
+                                          ReceivedBlocks blocks
+                                          ) throws IOException {
+    if (blocks.size() == 0) {
+      return;
+    }
+    DatanodeDescriptor node = getReceivingDatanode(nodeID, blocks.getBlock(0));
+
+    if (NameNode.stateChangeLog.isDebugEnabled()) {
+      NameNode.stateChangeLog.debug("BLOCK* NameSystem.blocksReceived: "
+                                    +blocks+" are received from " + nodeID.getName());
+    }
+
+    for (int i = 0; i < blocks.size(); i++) {
+      blockReceived(node, blocks.getBlock(i), blocks.getDelHint(i));
+    }
+  }
+
+  private DatanodeDescriptor getReceivingDatanode(DatanodeID nodeID,
+                                                  Block block
+                                                  ) throws IOException {
     DatanodeDescriptor node = getDatanode(nodeID);
     if (node == null) {
       NameNode.stateChangeLog.warn("BLOCK* NameSystem.blockReceived: "
@@ -3760,18 +4045,17 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean {
                                          "Unexpected exception.  Got blockReceived message from node " 
                                          + block + ", but there is no info for it");
     }
-        
-    if (NameNode.stateChangeLog.isDebugEnabled()) {
-      NameNode.stateChangeLog.debug("BLOCK* NameSystem.blockReceived: "
-                                    +block+" is received from " + nodeID.getName());
-    }
 
     // Check if this datanode should actually be shutdown instead.
     if (shouldNodeShutdown(node)) {
       setDatanodeDead(node);
       throw new DisallowedDatanodeException(node);
     }
+    return node;
+  }
 
+  private void blockReceived(DatanodeDescriptor node, Block block,
+                             String delHint) throws IOException {
     // decrement number of blocks scheduled to this datanode.
     node.decBlocksScheduled();
     
@@ -4452,7 +4736,6 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean {
     int size = datanodeMap.size();
     int index = 0;
     if (size != 0) {
-    	//r = BFTRandom.getRandom();
       index = r.nextInt(size);
       for(int i=0; i<size; i++) {
         DatanodeDescriptor d = getDatanodeByIndex(index);
@@ -4467,7 +4750,7 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean {
   }
 
   public DatanodeDescriptor getRandomDatanode() {
-    return replicator.chooseTarget(1, null, null, 0)[0];
+    return randomNodeChooser.chooseTarget(1, null, null, 0)[0];
   }
     
   public int getNameNodeInfoPort() {
@@ -4836,10 +5119,55 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean {
    * @return current time in msec.
    */
   static long now() {
-  	if(bft)
-  		return BFTRandom.now();
+  	if(bft) {
+  	  BftContext context = requestContext.get();
+  	  if (context != null)
+  	    return context.getTime();
+  	  FSNamesystem ns = fsNamesystemObject;
+  	  if (ns != null && ns.bftContext != null)
+  	    return ns.bftContext.getTime();
+  	  return bftInitialTime;
+  	}
     return System.currentTimeMillis();
   }
+
+  /**
+   * The random numbers of an ordered request. In BFT mode they come from
+   * the context of the request, which the glue resets before each one,
+   * so that all replicas draw the same ones. Calls that are not ordered,
+   * such as those of the web UI or the balancer, must use r instead.
+   */
+  Random getRandom() {
+    return bft ? getBftContext() : r;
+  }
+
+  /**
+   * The context of the ordered request the calling thread executes: its
+   * own one if the glue set it, the one of the namesystem otherwise.
+   */
+  BftContext getBftContext() {
+    BftContext context = requestContext.get();
+    return context != null ? context : bftContext;
+  }
+
+  /**
+   * Start executing an ordered request, ordered at time with seed.
+   */
+  void setBftContext(long time, long seed) {
+    bftContext.reset(time, seed);
+  }
+
+  /**
+   * Give the calling thread the context of the ordered request it is
+   * about to execute, so that it does not share the one of the
+   * namesystem with other requests. Null clears it.
+   */
+  static void setRequestContext(BftContext context) {
+    if (context == null)
+      requestContext.remove();
+    else
+      requestContext.set(context);
+  }
     
   boolean setSafeMode(SafeModeAction action) throws IOException {
     if (action != SafeModeAction.SAFEMODE_GET) {
@@ -5552,6 +5880,39 @@ public class FSNamesystem implements FSConstants, FSNamesystemMBean {
   	
   	System.out.println(msg);
   }
+
+  /**
+   * Whether an ordered request that reads or, if write is set, changes
+   * the given paths affects nothing above them, so that BftPrimaryGlue
+   * may run it next to requests on other paths. It must be out of safe
+   * mode, and a change must not be counted against an object limit or
+   * a quota above the paths, nor create missing parents.
+   * The quota of the root is never reached, and is ignored.
+   */
+  boolean isIsolated(String[] paths, boolean write) {
+    if (safeMode != null)
+      return false;
+    if (!write)
+      return true;
+    if (maxFsObjects != 0)
+      return false;
+    // requests on other paths may be changing the children of the
+    // directories above these paths
+    synchronized (dir.rootDir) {
+      for (String src : paths) {
+        INode[] inodes = dir.rootDir.getExistingPathINodes(src);
+        for (int i = 1; i < inodes.length; i++) {
+          if (inodes[i] == null) {
+            if (i < inodes.length - 1)
+              return false;
+          } else if (inodes[i].isQuotaSet()) {
+            return false;
+          }
+        }
+      }
+    }
+    return true;
+  }
   void executeThreadFunctions(){
   	
   	assert bft;
@@ -25,15 +25,13 @@ import java.util.Map.Entry;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
-import org.apache.hadoop.hdfs.BFTRandom;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.Writable;
 
 class Host2NodesMap implements Writable {
   private HashMap<String, DatanodeDescriptor[]> map
     = new HashMap<String, DatanodeDescriptor[]>();
-  //private Random r = new Random();
-  private Random r = BFTRandom.getRandom();
+  private Random r = new Random();
   private ReadWriteLock hostmapLock = new ReentrantReadWriteLock();
                       
   /** Check if node is already in the map. */
@@ -137,6 +135,13 @@ class Host2NodesMap implements Writable {
    * @return DatanodeDescriptor if found; otherwise null.
    */
   DatanodeDescriptor getDatanodeByHost(String host) {
+    return getDatanodeByHost(host, r);
+  }
+
+  /** get a data node by its host, picking among several with random.
+   * @return DatanodeDescriptor if found; otherwise null.
+   */
+  DatanodeDescriptor getDatanodeByHost(String host, Random random) {
     if (host==null) {
       return null;
     }
@@ -153,8 +158,7 @@ class Host2NodesMap implements Writable {
         return nodes[0];
       }
       // more than one node
-      //r = BFTRandom.getRandom();
-      return nodes[r.nextInt(nodes.length)];
+      return nodes[random.nextInt(nodes.length)];
     } finally {
       hostmapLock.readLock().unlock();
     }
@@ -25,19 +25,22 @@ import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.Trash;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.permission.*;
-import org.apache.hadoop.hdfs.BFTRandom;
 import org.apache.hadoop.hdfs.protocol.*;
 import org.apache.hadoop.hdfs.server.common.HdfsConstants.StartupOption;
 import org.apache.hadoop.hdfs.server.common.IncorrectVersionException;
 import org.apache.hadoop.hdfs.server.common.UpgradeStatusReport;
 import org.apache.hadoop.hdfs.server.namenode.FSNamesystem.CompleteFileStatus;
 import org.apache.hadoop.hdfs.server.namenode.metrics.NameNodeMetrics;
+import org.apache.hadoop.hdfs.server.protocol.BlockReportDelta;
 import org.apache.hadoop.hdfs.server.protocol.BlocksWithLocations;
 import org.apache.hadoop.hdfs.server.protocol.DatanodeCommand;
 import org.apache.hadoop.hdfs.server.protocol.DatanodeProtocol;
 import org.apache.hadoop.hdfs.server.protocol.DatanodeRegistration;
+import org.apache.hadoop.hdfs.server.protocol.HeartbeatBatch;
+import org.apache.hadoop.hdfs.server.protocol.HeartbeatReplies;
 import org.apache.hadoop.hdfs.server.protocol.NamenodeProtocol;
 import org.apache.hadoop.hdfs.server.protocol.NamespaceInfo;
+import org.apache.hadoop.hdfs.server.protocol.ReceivedBlocks;
 import org.apache.hadoop.hdfs.server.protocol.UpgradeCommand;
 import org.apache.hadoop.io.MD5Hash;
 import org.apache.hadoop.ipc.*;
@@ -691,6 +694,11 @@ public class NameNode implements ClientProtocol, DatanodeProtocol,
     namesystem.setTimes(src, mtime, atime);
   }
 
+  /** @inheritDoc */
+  public void updateAccessTimes(String[] srcs) throws IOException {
+    namesystem.updateAccessTimes(srcs);
+  }
+
   ////////////////////////////////////////////////////////////////
   // DatanodeProtocol
   ////////////////////////////////////////////////////////////////
@@ -720,6 +728,24 @@ public class NameNode implements ClientProtocol, DatanodeProtocol,
         xceiverCount, xmitsInProgress);
   }
 
+  /**
+   * The heartbeats of several data nodes. A heartbeat that fails does
+   * not fail the others: its error is returned in its place.
+   */
+  public HeartbeatReplies sendHeartbeats(HeartbeatBatch batch)
+                                         throws IOException {
+    IOException[] errors = new IOException[batch.size()];
+    for (int i = 0; i < batch.size(); i++) {
+      try {
+        verifyRequest(batch.getRegistration(i));
+      } catch (IOException e) {
+        errors[i] = e;
+      }
+    }
+    DatanodeCommand[] cmds = namesystem.handleHeartbeats(batch, errors);
+    return new HeartbeatReplies(cmds, errors);
+  }
+
   public DatanodeCommand blockReport(DatanodeRegistration nodeReg,
                                      long[] blocks) throws IOException {
     verifyRequest(nodeReg);
@@ -727,10 +753,13 @@ public class NameNode implements ClientProtocol, DatanodeProtocol,
     stateChangeLog.debug("*BLOCK* NameNode.blockReport: "
            +"from "+nodeReg.getName()+" "+blist.getNumberOfBlocks() +" blocks");
 
+    long start = System.nanoTime();
     namesystem.processReport(nodeReg, blist);
   
     if(FSNamesystem.bft & !namesystem.bftReplaying){
       ((BftFSEditLog)namesystem.getEditLog()).bftLogBlockReport(nodeReg, blocks);
+      LOG.info("Block report of " + blist.getNumberOfBlocks() + " blocks from "
+          + nodeReg.getName() + " executed in " + (System.nanoTime() - start) / 1000 + " us");
     }
     
     if (getFSImage().isUpgradeFinalized())
@@ -745,16 +774,42 @@ public class NameNode implements ClientProtocol, DatanodeProtocol,
   	stateChangeLog.debug("*BLOCK* NameNode.blockReport: "
   			+"from "+nodeReg.getName()+" "+blocks.length +" blocks");
 
+  	long start = System.nanoTime();
   	namesystem.processReport(nodeReg, blocks);
 
   	if(FSNamesystem.bft & !namesystem.bftReplaying){
   		((BftFSEditLog)namesystem.getEditLog()).bftLogBlockReport(nodeReg, blocks);  		  		
+  		LOG.info("Block report of " + blocks.length + " blocks from "
+  				+ nodeReg.getName() + " executed in " + (System.nanoTime() - start) / 1000 + " us");
   	}
 
   	if (getFSImage().isUpgradeFinalized())
   		return DatanodeCommand.FINALIZE;
   	return null;
   }
+
+  public DatanodeCommand blockReportDelta(DatanodeRegistration nodeReg,
+                                          BlockReportDelta delta) throws IOException {
+    verifyRequest(nodeReg);
+    stateChangeLog.debug("*BLOCK* NameNode.blockReportDelta: "
+           +"from "+nodeReg.getName()+" "+delta+" blocks");
+
+    long start = System.nanoTime();
+    boolean applied = namesystem.processDeltaReport(nodeReg, delta);
+
+    if(FSNamesystem.bft & !namesystem.bftReplaying){
+      ((BftFSEditLog)namesystem.getEditLog()).bftLogBlockReportDelta(nodeReg, delta);
+      LOG.info("Delta block report " + delta + " from " + nodeReg.getName()
+          + (applied ? " executed in " + (System.nanoTime() - start) / 1000 + " us" 
+                     : " rejected, full report requested"));
+    }
+
+    if (!applied)
+      return DatanodeCommand.BLOCKREPORT;
+    if (getFSImage().isUpgradeFinalized())
+      return DatanodeCommand.FINALIZE;
+    return null;
+  }
   
   
 
@@ -773,6 +828,17 @@ public class NameNode implements ClientProtocol, DatanodeProtocol,
     
   }
 
+  public void blocksReceived(DatanodeRegistration nodeReg,
+                             ReceivedBlocks blocks) throws IOException {
+    verifyRequest(nodeReg);
+    stateChangeLog.debug("*BLOCK* NameNode.blocksReceived: "
+                         +"from "+nodeReg.getName()+" "+blocks.size()+" blocks.");
+    namesystem.blocksReceived(nodeReg, blocks);
+    if(FSNamesystem.bft & !namesystem.bftReplaying){
+      ((BftFSEditLog)namesystem.getEditLog()).bftLogBlocksReceived(nodeReg, blocks);
+    }
+  }
+
   /**
    */
   public void errorReport(DatanodeRegistration nodeReg,
@@ -874,8 +940,14 @@ public class NameNode implements ClientProtocol, DatanodeProtocol,
 	  namesystem.executeThreadFunctions();
   }
 
-  public void setBftTime(long time) {
-	  BFTRandom.setBftTime(time);
+  public void setBftContext(long time, long seed) {
+	  namesystem.setBftContext(time, seed);
+  }
+
+  public LocatedBlocks getBlockLocationsReadOnly(String src, long offset,
+		  long length) throws IOException {
+	  myMetrics.numGetBlockLocations.inc();
+	  return namesystem.getBlockLocationsReadOnly(src, offset, length);
   }
 
   public void reloadImage() throws IOException{
@@ -38,12 +38,14 @@ class ReplicationTargetChooser {
   private final boolean considerLoad; 
   private NetworkTopology clusterMap;
   private FSNamesystem fs;
+  private final Random random;
     
   ReplicationTargetChooser(boolean considerLoad,  FSNamesystem fs,
-                           NetworkTopology clusterMap) {
+                           NetworkTopology clusterMap, Random random) {
     this.considerLoad = considerLoad;
     this.fs = fs;
     this.clusterMap = clusterMap;
+    this.random = random;
   }
     
   private static class NotEnoughReplicasException extends Exception {
@@ -370,7 +372,7 @@ class ReplicationTargetChooser {
       numOfAvailableNodes:numOfReplicas;
     while(numOfReplicas > 0) {
       DatanodeDescriptor choosenNode = 
-        (DatanodeDescriptor)(clusterMap.chooseRandom(nodes));
+        (DatanodeDescriptor)(clusterMap.chooseRandom(nodes, random));
       if (!excludedNodes.contains(choosenNode)) {
         results.add(choosenNode);
         excludedNodes.add(choosenNode);
@@ -62,6 +62,7 @@ public class NameNodeMetrics implements Updater {
     public MetricsTimeVaryingRate transactions = new MetricsTimeVaryingRate("Transactions");
     public MetricsTimeVaryingRate syncs = new MetricsTimeVaryingRate("Syncs");
     public MetricsTimeVaryingRate blockReport = new MetricsTimeVaryingRate("blockReport");
+    public MetricsTimeVaryingRate blockReportDelta = new MetricsTimeVaryingRate("blockReportDelta");
     public MetricsIntValue safeModeTime = new MetricsIntValue("SafemodeTime");
     public MetricsIntValue fsImageLoadTime = 
                                         new MetricsIntValue("fsImageLoadTime");
@@ -111,6 +112,7 @@ public class NameNodeMetrics implements Updater {
         transactions.pushMetric(metricsRecord);
         syncs.pushMetric(metricsRecord);
         blockReport.pushMetric(metricsRecord);
+        blockReportDelta.pushMetric(metricsRecord);
         safeModeTime.pushMetric(metricsRecord);
         fsImageLoadTime.pushMetric(metricsRecord);
         numBlocksCorrupted.pushMetric(metricsRecord);
@@ -122,6 +124,7 @@ public class NameNodeMetrics implements Updater {
       transactions.resetMinMax();
       syncs.resetMinMax();
       blockReport.resetMinMax();
+      blockReportDelta.resetMinMax();
     }
 
 }
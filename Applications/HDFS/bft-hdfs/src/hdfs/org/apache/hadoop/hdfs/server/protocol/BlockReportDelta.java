@@ -0,0 +1,181 @@
+package org.apache.hadoop.hdfs.server.protocol;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.hadoop.hdfs.protocol.Block;
+import org.apache.hadoop.hdfs.protocol.BlockListAsLongs;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableFactories;
+import org.apache.hadoop.io.WritableFactory;
+import org.apache.hadoop.io.WritableUtils;
+
+/**
+ * The blocks a datanode added and removed since its last acknowledged
+ * block report.
+ *
+ * A report digest is the xor of a per-block hash of (id, generation stamp),
+ * so both sides can maintain it incrementally. The namenode applies a delta
+ * only if its digest of the node's last report equals the base digest;
+ * otherwise it asks for a full report.
+ *
+ * Blocks are sorted by id and written as variable length differences,
+ * so a delta costs a few bytes per block instead of a full Block.
+ */
+public class BlockReportDelta implements Writable {
+
+  static {                                      // register a ctor
+    WritableFactories.setFactory
+      (BlockReportDelta.class,
+       new WritableFactory() {
+         public Writable newInstance() { return new BlockReportDelta(); }
+       });
+  }
+
+  private long baseDigest;
+  private long digest;
+  private Block[] added;
+  private Block[] removed;
+
+  public BlockReportDelta() {
+    this(0, new Block[0], new Block[0]);
+  }
+
+  public BlockReportDelta(long baseDigest, Block[] added, Block[] removed) {
+    this.baseDigest = baseDigest;
+    this.added = added;
+    this.removed = removed;
+    Arrays.sort(this.added);
+    Arrays.sort(this.removed);
+    this.digest = baseDigest ^ digest(added) ^ digest(removed);
+  }
+
+  /** digest of the last acknowledged report */
+  public long getBaseDigest() {
+    return baseDigest;
+  }
+
+  /** digest of the report once this delta is applied */
+  public long getDigest() {
+    return digest;
+  }
+
+  public Block[] getAdded() {
+    return added;
+  }
+
+  public Block[] getRemoved() {
+    return removed;
+  }
+
+  /** true if the digests are consistent with the blocks carried */
+  public boolean isConsistent() {
+    return (baseDigest ^ digest(added) ^ digest(removed)) == digest;
+  }
+
+  public static long digest(long blockId, long generationStamp) {
+    long h = blockId * 0x9E3779B97F4A7C15L ^ generationStamp;
+    h ^= h >>> 33;
+    h *= 0xFF51AFD7ED558CCDL;
+    h ^= h >>> 33;
+    h *= 0xC4CEB9FE1A85EC53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  public static long digest(Block b) {
+    return digest(b.getBlockId(), b.getGenerationStamp());
+  }
+
+  public static long digest(Block[] blocks) {
+    long d = 0;
+    for (Block b : blocks) {
+      d ^= digest(b);
+    }
+    return d;
+  }
+
+  public static long digest(BlockListAsLongs blocks) {
+    long d = 0;
+    for (int i = 0; i < blocks.getNumberOfBlocks(); i++) {
+      d ^= digest(blocks.getBlockId(i), blocks.getBlockGenStamp(i));
+    }
+    return d;
+  }
+
+  public int size() {
+    return added.length + removed.length;
+  }
+
+  public String toString() {
+    return "+" + added.length + " -" + removed.length;
+  }
+
+  /////////////////////////////////////
+  // Writable
+  /////////////////////////////////////
+  public void write(DataOutput out) throws IOException {
+    out.writeLong(baseDigest);
+    out.writeLong(digest);
+    writeBlocks(out, added, true);
+    writeBlocks(out, removed, false);
+  }
+
+  public void readFields(DataInput in) throws IOException {
+    baseDigest = in.readLong();
+    digest = in.readLong();
+    added = readBlocks(in, true);
+    removed = readBlocks(in, false);
+  }
+
+  private static void writeBlocks(DataOutput out, Block[] blocks,
+                                  boolean full) throws IOException {
+    WritableUtils.writeVInt(out, blocks.length);
+    long prev = 0;
+    for (Block b : blocks) {
+      WritableUtils.writeVLong(out, b.getBlockId() - prev);
+      WritableUtils.writeVLong(out, b.getGenerationStamp());
+      prev = b.getBlockId();
+      if (!full) {
+        continue;
+      }
+      WritableUtils.writeVLong(out, b.getNumBytes());
+      byte[] hash = b.getHash();
+      if (hash == null) {
+        WritableUtils.writeVInt(out, 0);
+      } else {
+        WritableUtils.writeVInt(out, hash.length);
+        out.write(hash);
+      }
+    }
+  }
+
+  private static Block[] readBlocks(DataInput in, boolean full)
+  throws IOException {
+    Block[] blocks = new Block[WritableUtils.readVInt(in)];
+    long prev = 0;
+    for (int i = 0; i < blocks.length; i++) {
+      long id = prev + WritableUtils.readVLong(in);
+      long genStamp = WritableUtils.readVLong(in);
+      prev = id;
+      if (!full) {
+        blocks[i] = new Block(id, 0, genStamp);
+        continue;
+      }
+      long len = WritableUtils.readVLong(in);
+      if (len < 0) {
+        throw new IOException("Unexpected block size: " + len);
+      }
+      blocks[i] = new Block(id, len, genStamp);
+      int hashLen = WritableUtils.readVInt(in);
+      if (hashLen > 0) {
+        byte[] hash = new byte[hashLen];
+        in.readFully(hash);
+        blocks[i].setHash(hash);
+      }
+    }
+    return blocks;
+  }
+}
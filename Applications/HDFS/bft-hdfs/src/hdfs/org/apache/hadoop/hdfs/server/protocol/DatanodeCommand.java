@@ -34,6 +34,12 @@ public abstract class DatanodeCommand implements Writable {
     public void write(DataOutput out) {}
   }
 
+  static class BlockReport extends DatanodeCommand {
+    private BlockReport() {super(DatanodeProtocol.DNA_BLOCKREPORT);}
+    public void readFields(DataInput in) {}
+    public void write(DataOutput out) {}
+  }
+
   static {                                      // register a ctor
     WritableFactories.setFactory(Register.class,
         new WritableFactory() {
@@ -43,10 +49,15 @@ public abstract class DatanodeCommand implements Writable {
         new WritableFactory() {
           public Writable newInstance() {return new Finalize();}
         });
+    WritableFactories.setFactory(BlockReport.class,
+        new WritableFactory() {
+          public Writable newInstance() {return new BlockReport();}
+        });
   }
 
   public static final DatanodeCommand REGISTER = new Register();
   public static final DatanodeCommand FINALIZE = new Finalize();
+  public static final DatanodeCommand BLOCKREPORT = new BlockReport();
 
   private int action;
   
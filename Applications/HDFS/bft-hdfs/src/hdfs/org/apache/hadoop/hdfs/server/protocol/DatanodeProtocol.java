@@ -42,8 +42,13 @@ public interface DatanodeProtocol extends VersionedProtocol {
    *
    *     The new capacity reported is sum of the filesystem disk space of 
    *     all the data directories minus the reserved capacity.
+   * 19: Added blockReportDelta, the blocks added and removed since the
+   *     last report, and DNA_BLOCKREPORT.
+   * 20: Added sendHeartbeats, the heartbeats of several datanodes in one
+   *     call.
+   * 21: Added blocksReceived, blockReceived with the blocks packed.
    */
-  public static final long versionID = 18L;
+  public static final long versionID = 21L;
   
   // error code
   final static int NOTIFY = 0;
@@ -63,6 +68,7 @@ public interface DatanodeProtocol extends VersionedProtocol {
   final static int DNA_RECOVERBLOCK = 6;  // request a block recovery
   
   final static int DNA_ROLLBACKBLOCK = 7; // roll-back a block to prev. status 
+  final static int DNA_BLOCKREPORT = 8;   // send a full block report
 
   /** 
    * Register Datanode.
@@ -89,6 +95,15 @@ public interface DatanodeProtocol extends VersionedProtocol {
                                        int xmitsInProgress,
                                        int xceiverCount) throws IOException;
 
+  /**
+   * The heartbeats of several datanodes, each handled as sendHeartbeat
+   * would handle it. Used by a BFT client glue to order the heartbeats
+   * of its datanodes as one request.
+   *
+   * @return the command or the error for each heartbeat
+   */
+  public HeartbeatReplies sendHeartbeats(HeartbeatBatch batch) throws IOException;
+
   /**
    * blockReport() tells the NameNode about all the locally-stored blocks.
    * The NameNode returns an array of Blocks that have become obsolete
@@ -113,6 +128,15 @@ public interface DatanodeProtocol extends VersionedProtocol {
    */
 	public DatanodeCommand blockReport(DatanodeRegistration dnRegistration,
 			Block[] report) throws IOException;
+
+  /**
+   * Incremental block report used with BFT namenodes.
+   * Carries only the blocks added and removed since the last
+   * acknowledged report. If the namenode's digest of that report does
+   * not match, the delta is ignored and DNA_BLOCKREPORT is returned.
+   */
+  public DatanodeCommand blockReportDelta(DatanodeRegistration registration,
+                                          BlockReportDelta delta) throws IOException;
   /**
    * blockReceived() allows the DataNode to tell the NameNode about
    * recently-received block data, with a hint for pereferred replica
@@ -125,6 +149,14 @@ public interface DatanodeProtocol extends VersionedProtocol {
                             Block blocks[],
                             String[] delHints) throws IOException;
 
+  /**
+   * Same as blockReceived, with the blocks and their hints packed in a
+   * ReceivedBlocks. Used by datanodes in BFT mode, which batch the
+   * blocks they received.
+   */
+  public void blocksReceived(DatanodeRegistration registration,
+                             ReceivedBlocks blocks) throws IOException;
+
   /**
    * errorReport() tells the NameNode about something that has gone
    * awry.  Useful for debugging.
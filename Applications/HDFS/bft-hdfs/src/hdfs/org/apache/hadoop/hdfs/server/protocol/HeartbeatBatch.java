@@ -0,0 +1,183 @@
+package org.apache.hadoop.hdfs.server.protocol;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.hdfs.server.common.StorageInfo;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableFactories;
+import org.apache.hadoop.io.WritableFactory;
+import org.apache.hadoop.io.WritableUtils;
+
+/**
+ * The heartbeats of several datanodes, sent to the namenode as one call.
+ *
+ * Each heartbeat is the registration of its datanode and the counters
+ * of sendHeartbeat, written as variable length numbers. The storage
+ * info of a registration is written only when it differs from the one
+ * before, since all datanodes of a cluster normally share it.
+ */
+public class HeartbeatBatch implements Writable {
+
+  static {                                      // register a ctor
+    WritableFactories.setFactory
+      (HeartbeatBatch.class,
+       new WritableFactory() {
+         public Writable newInstance() { return new HeartbeatBatch(); }
+       });
+  }
+
+  private int size;
+  private DatanodeRegistration[] registrations;
+  private long[] capacity;
+  private long[] dfsUsed;
+  private long[] remaining;
+  private int[] xmitsInProgress;
+  private int[] xceiverCount;
+
+  public HeartbeatBatch() {
+    this(0);
+  }
+
+  /** An empty batch with room for maxSize heartbeats */
+  public HeartbeatBatch(int maxSize) {
+    registrations = new DatanodeRegistration[maxSize];
+    capacity = new long[maxSize];
+    dfsUsed = new long[maxSize];
+    remaining = new long[maxSize];
+    xmitsInProgress = new int[maxSize];
+    xceiverCount = new int[maxSize];
+  }
+
+  /** Add the heartbeat of a datanode, as sendHeartbeat takes it */
+  public void add(DatanodeRegistration registration, long capacity,
+                  long dfsUsed, long remaining, int xmitsInProgress,
+                  int xceiverCount) {
+    this.registrations[size] = registration;
+    this.capacity[size] = capacity;
+    this.dfsUsed[size] = dfsUsed;
+    this.remaining[size] = remaining;
+    this.xmitsInProgress[size] = xmitsInProgress;
+    this.xceiverCount[size] = xceiverCount;
+    size++;
+  }
+
+  /** The heartbeats i for which include[i] is set */
+  public HeartbeatBatch subset(boolean[] include) {
+    int n = 0;
+    for (int i = 0; i < size; i++) {
+      if (include[i]) {
+        n++;
+      }
+    }
+    HeartbeatBatch batch = new HeartbeatBatch(n);
+    for (int i = 0; i < size; i++) {
+      if (include[i]) {
+        batch.add(registrations[i], capacity[i], dfsUsed[i], remaining[i],
+                  xmitsInProgress[i], xceiverCount[i]);
+      }
+    }
+    return batch;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public DatanodeRegistration getRegistration(int i) {
+    return registrations[i];
+  }
+
+  public long getCapacity(int i) {
+    return capacity[i];
+  }
+
+  public long getDfsUsed(int i) {
+    return dfsUsed[i];
+  }
+
+  public long getRemaining(int i) {
+    return remaining[i];
+  }
+
+  public int getXmitsInProgress(int i) {
+    return xmitsInProgress[i];
+  }
+
+  public int getXceiverCount(int i) {
+    return xceiverCount[i];
+  }
+
+  public String toString() {
+    return size + " heartbeats";
+  }
+
+  /////////////////////////////////////
+  // Writable
+  /////////////////////////////////////
+  public void write(DataOutput out) throws IOException {
+    WritableUtils.writeVInt(out, size);
+    StorageInfo prev = null;
+    for (int i = 0; i < size; i++) {
+      DatanodeRegistration reg = registrations[i];
+      Text.writeString(out, reg.getName());
+      Text.writeString(out, reg.getStorageID());
+      WritableUtils.writeVInt(out, reg.getInfoPort());
+      WritableUtils.writeVInt(out, reg.getIpcPort());
+      StorageInfo info = reg.storageInfo;
+      if (prev != null && prev.getLayoutVersion() == info.getLayoutVersion()
+          && prev.getNamespaceID() == info.getNamespaceID()
+          && prev.getCTime() == info.getCTime()) {
+        out.writeBoolean(true);
+      } else {
+        out.writeBoolean(false);
+        WritableUtils.writeVInt(out, info.getLayoutVersion());
+        WritableUtils.writeVInt(out, info.getNamespaceID());
+        WritableUtils.writeVLong(out, info.getCTime());
+        prev = info;
+      }
+      WritableUtils.writeVLong(out, capacity[i]);
+      WritableUtils.writeVLong(out, dfsUsed[i]);
+      WritableUtils.writeVLong(out, remaining[i]);
+      WritableUtils.writeVInt(out, xmitsInProgress[i]);
+      WritableUtils.writeVInt(out, xceiverCount[i]);
+    }
+  }
+
+  public void readFields(DataInput in) throws IOException {
+    int n = WritableUtils.readVInt(in);
+    if (n < 0) {
+      throw new IOException("Unexpected number of heartbeats: " + n);
+    }
+    HeartbeatBatch batch = new HeartbeatBatch(n);
+    StorageInfo prev = null;
+    for (int i = 0; i < n; i++) {
+      DatanodeRegistration reg = new DatanodeRegistration(Text.readString(in));
+      reg.setStorageID(Text.readString(in));
+      reg.setInfoPort(WritableUtils.readVInt(in));
+      reg.setIpcPort(WritableUtils.readVInt(in));
+      if (in.readBoolean()) {
+        if (prev == null) {
+          throw new IOException("No storage info to repeat");
+        }
+        reg.storageInfo = new StorageInfo(prev);
+      } else {
+        reg.storageInfo = new StorageInfo(WritableUtils.readVInt(in),
+            WritableUtils.readVInt(in), WritableUtils.readVLong(in));
+        prev = reg.storageInfo;
+      }
+      batch.add(reg, WritableUtils.readVLong(in), WritableUtils.readVLong(in),
+                WritableUtils.readVLong(in), WritableUtils.readVInt(in),
+                WritableUtils.readVInt(in));
+    }
+    size = batch.size;
+    registrations = batch.registrations;
+    capacity = batch.capacity;
+    dfsUsed = batch.dfsUsed;
+    remaining = batch.remaining;
+    xmitsInProgress = batch.xmitsInProgress;
+    xceiverCount = batch.xceiverCount;
+  }
+}
@@ -0,0 +1,123 @@
+package org.apache.hadoop.hdfs.server.protocol;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableFactories;
+import org.apache.hadoop.io.WritableFactory;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.ipc.RemoteException;
+
+/**
+ * What the namenode returns for each heartbeat of a HeartbeatBatch:
+ * the command for its datanode, if any, or the error its heartbeat
+ * failed with.
+ */
+public class HeartbeatReplies implements Writable {
+
+  static {                                      // register a ctor
+    WritableFactories.setFactory
+      (HeartbeatReplies.class,
+       new WritableFactory() {
+         public Writable newInstance() { return new HeartbeatReplies(); }
+       });
+  }
+
+  private DatanodeCommand[] commands;
+  private String[] errorClasses;
+  private String[] errorMessages;
+
+  public HeartbeatReplies() {
+    this(new DatanodeCommand[0], new IOException[0]);
+  }
+
+  /**
+   * @param commands the command for each heartbeat, or null
+   * @param errors the error of each heartbeat, or null if it succeeded
+   */
+  public HeartbeatReplies(DatanodeCommand[] commands, IOException[] errors) {
+    this.commands = commands;
+    this.errorClasses = new String[errors.length];
+    this.errorMessages = new String[errors.length];
+    for (int i = 0; i < errors.length; i++) {
+      if (errors[i] != null) {
+        errorClasses[i] = errors[i].getClass().getName();
+        errorMessages[i] = String.valueOf(errors[i].getMessage());
+      }
+    }
+  }
+
+  public int size() {
+    return commands.length;
+  }
+
+  /**
+   * The command for heartbeat i
+   * @throws RemoteException if the heartbeat failed
+   */
+  public DatanodeCommand getCommand(int i) throws RemoteException {
+    if (errorClasses[i] != null) {
+      throw new RemoteException(errorClasses[i], errorMessages[i]);
+    }
+    return commands[i];
+  }
+
+  /////////////////////////////////////
+  // Writable
+  /////////////////////////////////////
+  public void write(DataOutput out) throws IOException {
+    WritableUtils.writeVInt(out, commands.length);
+    for (int i = 0; i < commands.length; i++) {
+      if (errorClasses[i] != null) {
+        out.writeByte(2);
+        Text.writeString(out, errorClasses[i]);
+        Text.writeString(out, errorMessages[i]);
+      } else if (commands[i] != null) {
+        out.writeByte(1);
+        Text.writeString(out, commands[i].getClass().getName());
+        commands[i].write(out);
+      } else {
+        out.writeByte(0);
+      }
+    }
+  }
+
+  public void readFields(DataInput in) throws IOException {
+    int n = WritableUtils.readVInt(in);
+    if (n < 0) {
+      throw new IOException("Unexpected number of replies: " + n);
+    }
+    commands = new DatanodeCommand[n];
+    errorClasses = new String[n];
+    errorMessages = new String[n];
+    for (int i = 0; i < n; i++) {
+      byte kind = in.readByte();
+      if (kind == 2) {
+        errorClasses[i] = Text.readString(in);
+        errorMessages[i] = Text.readString(in);
+      } else if (kind == 1) {
+        commands[i] = readCommand(in);
+      } else if (kind != 0) {
+        throw new IOException("Unexpected reply kind: " + kind);
+      }
+    }
+  }
+
+  private static DatanodeCommand readCommand(DataInput in) throws IOException {
+    String name = Text.readString(in);
+    Class<? extends DatanodeCommand> c;
+    try {
+      c = Class.forName(name).asSubclass(DatanodeCommand.class);
+    } catch (ClassNotFoundException e) {
+      throw new IOException("Unknown command class " + name);
+    } catch (ClassCastException e) {
+      throw new IOException(name + " is not a datanode command");
+    }
+    DatanodeCommand cmd = (DatanodeCommand) WritableFactories.newInstance(c, null);
+    cmd.readFields(in);
+    return cmd;
+  }
+}
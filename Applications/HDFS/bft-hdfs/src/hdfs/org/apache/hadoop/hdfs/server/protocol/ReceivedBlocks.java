@@ -0,0 +1,198 @@
+package org.apache.hadoop.hdfs.server.protocol;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.hadoop.hdfs.protocol.Block;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableFactories;
+import org.apache.hadoop.io.WritableFactory;
+import org.apache.hadoop.io.WritableUtils;
+
+/**
+ * The blocks a datanode received, with their deletion hints, as
+ * blockReceived takes them.
+ *
+ * The blocks are kept as columns of primitives rather than as Block
+ * objects, so a datanode can fill the same instance for every call.
+ * Lengths and generation stamps are written as variable length
+ * numbers, and a deletion hint as a reference to an earlier entry with
+ * the same hint, since most hints are empty or repeated: 0 is the empty
+ * hint, k > 0 the hint of entry k-1 and -1 a new hint that follows.
+ */
+public class ReceivedBlocks implements Writable {
+
+  static {                                      // register a ctor
+    WritableFactories.setFactory
+      (ReceivedBlocks.class,
+       new WritableFactory() {
+         public Writable newInstance() { return new ReceivedBlocks(); }
+       });
+  }
+
+  private int size;
+  private long[] ids;
+  private long[] lengths;
+  private long[] genStamps;
+  private byte[][] hashes;
+  private byte[][] addedHashes;
+  private String[] delHints;
+
+  public ReceivedBlocks() {
+    this(8);
+  }
+
+  public ReceivedBlocks(int capacity) {
+    ids = new long[capacity];
+    lengths = new long[capacity];
+    genStamps = new long[capacity];
+    hashes = new byte[capacity][];
+    addedHashes = new byte[capacity][];
+    delHints = new String[capacity];
+  }
+
+  public void add(Block block, String delHint) {
+    if (size == ids.length) {
+      grow();
+    }
+    ids[size] = block.getBlockId();
+    lengths[size] = block.getNumBytes();
+    genStamps[size] = block.getGenerationStamp();
+    hashes[size] = block.getHash();
+    addedHashes[size] = block.getAddedHash();
+    delHints[size] = delHint;
+    size++;
+  }
+
+  private void grow() {
+    int capacity = Math.max(8, 2 * ids.length);
+    ids = Arrays.copyOf(ids, capacity);
+    lengths = Arrays.copyOf(lengths, capacity);
+    genStamps = Arrays.copyOf(genStamps, capacity);
+    hashes = Arrays.copyOf(hashes, capacity);
+    addedHashes = Arrays.copyOf(addedHashes, capacity);
+    delHints = Arrays.copyOf(delHints, capacity);
+  }
+
+  /** Empty the list, keeping its capacity */
+  public void clear() {
+    Arrays.fill(hashes, 0, size, null);
+    Arrays.fill(addedHashes, 0, size, null);
+    Arrays.fill(delHints, 0, size, null);
+    size = 0;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /** A new Block for entry i */
+  public Block getBlock(int i) {
+    Block b = new Block(ids[i], lengths[i], genStamps[i]);
+    b.setHash(hashes[i]);
+    b.setAddedHash(addedHashes[i]);
+    return b;
+  }
+
+  public String getDelHint(int i) {
+    return delHints[i];
+  }
+
+  public String toString() {
+    return size + " blocks";
+  }
+
+  /////////////////////////////////////
+  // Writable
+  /////////////////////////////////////
+  public void write(DataOutput out) throws IOException {
+    WritableUtils.writeVInt(out, size);
+    for (int i = 0; i < size; i++) {
+      out.writeLong(ids[i]);
+      WritableUtils.writeVLong(out, lengths[i]);
+      WritableUtils.writeVLong(out, genStamps[i]);
+      writeHash(out, hashes[i]);
+      writeHash(out, addedHashes[i]);
+      writeHint(out, i);
+    }
+  }
+
+  public void readFields(DataInput in) throws IOException {
+    int n = WritableUtils.readVInt(in);
+    if (n < 0) {
+      throw new IOException("Unexpected number of blocks: " + n);
+    }
+    clear();
+    if (n > ids.length) {
+      ids = new long[n];
+      lengths = new long[n];
+      genStamps = new long[n];
+      hashes = new byte[n][];
+      addedHashes = new byte[n][];
+      delHints = new String[n];
+    }
+    for (size = 0; size < n; size++) {
+      ids[size] = in.readLong();
+      lengths[size] = WritableUtils.readVLong(in);
+      if (lengths[size] < 0) {
+        throw new IOException("Unexpected block size: " + lengths[size]);
+      }
+      genStamps[size] = WritableUtils.readVLong(in);
+      hashes[size] = readHash(in);
+      addedHashes[size] = readHash(in);
+      int k = WritableUtils.readVInt(in);
+      if (k == 0) {
+        delHints[size] = "";
+      } else if (k == -1) {
+        delHints[size] = Text.readString(in);
+      } else if (k > 0 && k <= size) {
+        delHints[size] = delHints[k - 1];
+      } else {
+        throw new IOException("Bad deletion hint reference " + k);
+      }
+    }
+  }
+
+  // hints are few and mostly empty, so an earlier one is found by a scan
+  private void writeHint(DataOutput out, int i) throws IOException {
+    String hint = delHints[i];
+    if (hint == null || hint.length() == 0) {
+      WritableUtils.writeVInt(out, 0);
+      return;
+    }
+    for (int j = 0; j < i; j++) {
+      if (hint.equals(delHints[j])) {
+        WritableUtils.writeVInt(out, j + 1);
+        return;
+      }
+    }
+    WritableUtils.writeVInt(out, -1);
+    Text.writeString(out, hint);
+  }
+
+  private static void writeHash(DataOutput out, byte[] hash)
+  throws IOException {
+    if (hash == null) {
+      WritableUtils.writeVInt(out, 0);
+    } else {
+      WritableUtils.writeVInt(out, hash.length);
+      out.write(hash);
+    }
+  }
+
+  private static byte[] readHash(DataInput in) throws IOException {
+    int len = WritableUtils.readVInt(in);
+    if (len < 0) {
+      throw new IOException("Unexpected hash length: " + len);
+    }
+    if (len == 0) {
+      return null;
+    }
+    byte[] hash = new byte[len];
+    in.readFully(hash);
+    return hash;
+  }
+}
@@ -0,0 +1,209 @@
+package org.apache.hadoop.hdfs;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.hdfs.BftGlueRequest.NodeType;
+import org.apache.hadoop.hdfs.protocol.Block;
+import org.apache.hadoop.hdfs.protocol.ClientProtocol;
+import org.apache.hadoop.hdfs.protocol.DatanodeID;
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
+import org.apache.hadoop.hdfs.protocol.LocatedBlock;
+import org.apache.hadoop.hdfs.protocol.LocatedBlocks;
+import org.apache.hadoop.hdfs.server.protocol.BlockCommand;
+import org.apache.hadoop.hdfs.server.protocol.BlockReportDelta;
+import org.apache.hadoop.hdfs.server.protocol.DatanodeProtocol;
+import org.apache.hadoop.hdfs.server.protocol.DatanodeRegistration;
+import org.apache.hadoop.io.ObjectWritable;
+import org.apache.hadoop.security.UnixUserGroupInformation;
+import org.apache.hadoop.security.UserGroupInformation;
+
+/**
+ * Compares the ObjectWritable and the BftGlueCodec encodings of glue
+ * requests and replies on a mix of typical name-node calls: the average
+ * request and reply size, and how many requests per second each can
+ * encode and decode. Every message is also decoded and re-encoded, and
+ * must give back the same bytes.
+ *
+ * Usage: BftGlueCodecBenchmark [iterations]
+ */
+public class BftGlueCodecBenchmark {
+  private static final Log LOG = LogFactory.getLog(BftGlueCodecBenchmark.class);
+
+  private static final Configuration conf = new Configuration();
+  private static final UserGroupInformation ugi =
+    new UnixUserGroupInformation("hadoop", new String[] {"supergroup"});
+
+  private static class Call {
+    final Method method;
+    final Object[] args;
+    final NodeType nodeType;
+    final Object ret;
+
+    Call(Class<?> protocol, String name, Class<?>[] types, Object[] args,
+         Object ret) throws NoSuchMethodException {
+      this.method = protocol.getMethod(name, types);
+      this.args = args;
+      this.nodeType = protocol == ClientProtocol.class
+          ? NodeType.CLIENT : NodeType.DATANODE;
+      this.ret = ret;
+    }
+  }
+
+  private static List<Call> sampleCalls() throws NoSuchMethodException {
+    String dir = "/user/hadoop/benchmark/dir0003";
+    String file = dir + "/file000042";
+    String client = "DFSClient_1234567890";
+    DatanodeInfo[] locs = new DatanodeInfo[3];
+    for(int i = 0; i < locs.length; i++)
+      locs[i] = new DatanodeInfo(new DatanodeID("127.0.0." + (i+1) + ":50010",
+          "DS-12345-127.0.0." + (i+1) + "-50010-1234567890", 50075, 50020));
+    Block block = new Block(4242424242L, 64 << 20, 1001);
+    LocatedBlock located = new LocatedBlock(block, locs, 0);
+    List<LocatedBlock> blocks = new ArrayList<LocatedBlock>();
+    for(int i = 0; i < 4; i++)
+      blocks.add(new LocatedBlock(new Block(i + 1000, 64 << 20, 1001),
+          locs, i * (64L << 20)));
+    DatanodeRegistration reg = new DatanodeRegistration("127.0.0.1:50010");
+    Block[] received = new Block[8];
+    long[] report = new long[3 * 100];
+    for(int i = 0; i < received.length; i++)
+      received[i] = new Block(i + 2000, 1 << 20, 1001);
+    for(int i = 0; i < report.length; i++)
+      report[i] = i;
+    String[] hints = new String[received.length];
+    Arrays.fill(hints, "");
+
+    List<Call> calls = new ArrayList<Call>();
+    calls.add(new Call(ClientProtocol.class, "create",
+        new Class<?>[] {String.class, FsPermission.class, String.class,
+                        boolean.class, short.class, long.class},
+        new Object[] {file, new FsPermission((short)0644), client, true,
+                      (short)3, 64L << 20}, null));
+    calls.add(new Call(ClientProtocol.class, "getBlockLocations",
+        new Class<?>[] {String.class, long.class, long.class},
+        new Object[] {file, 0L, 256L << 20},
+        new LocatedBlocks(256L << 20, blocks, false)));
+    calls.add(new Call(ClientProtocol.class, "addBlock",
+        new Class<?>[] {String.class, String.class},
+        new Object[] {file, client}, located));
+    calls.add(new Call(ClientProtocol.class, "complete",
+        new Class<?>[] {String.class, String.class},
+        new Object[] {file, client}, true));
+    calls.add(new Call(ClientProtocol.class, "rename",
+        new Class<?>[] {String.class, String.class},
+        new Object[] {file, dir + "/file000042.renamed"}, true));
+    calls.add(new Call(DatanodeProtocol.class, "sendHeartbeat",
+        new Class<?>[] {DatanodeRegistration.class, long.class, long.class,
+                        long.class, int.class, int.class},
+        new Object[] {reg, 1L << 40, 1L << 30, 1L << 39, 0, 2},
+        new BlockCommand(DatanodeProtocol.DNA_INVALIDATE, received)));
+    calls.add(new Call(DatanodeProtocol.class, "blockReceived",
+        new Class<?>[] {DatanodeRegistration.class, Block[].class,
+                        String[].class},
+        new Object[] {reg, received, hints}, null));
+    calls.add(new Call(DatanodeProtocol.class, "blockReport",
+        new Class<?>[] {DatanodeRegistration.class, long[].class},
+        new Object[] {reg, report}, null));
+    calls.add(new Call(DatanodeProtocol.class, "blockReportDelta",
+        new Class<?>[] {DatanodeRegistration.class, BlockReportDelta.class},
+        new Object[] {reg, new BlockReportDelta(77L, received, new Block[0])},
+        null));
+    return calls;
+  }
+
+  private static byte[] encodeRequest(Call call, boolean compact) {
+    return new BftGlueRequest(new BftGlueInvocation(call.method, call.args),
+        call.nodeType, ugi, conf, compact).toBytes();
+  }
+
+  private static BftGlueRequest decodeRequest(byte[] bytes) throws IOException {
+    return BftGlueRequest.getRequestFromBytes(bytes, conf);
+  }
+
+  private static byte[] encodeReply(Call call, boolean compact) {
+    Class<?> type = call.method.getReturnType();
+    if(compact)
+      return new BftGlueReply(type, call.ret, conf).toBytes();
+    return new BftGlueReply(new ObjectWritable(type,
+        call.ret), conf).toBytes();
+  }
+
+  private static Object decodeReply(Call call, byte[] bytes, boolean compact)
+  throws IOException {
+    BftGlueReply reply = compact
+        ? BftGlueReply.getReplyFromBytes(bytes, call.method, conf)
+        : BftGlueReply.getReplyFromBytes(bytes, conf);
+    return reply.getReturnValue().get();
+  }
+
+  private static void check(Call call, boolean compact) throws IOException {
+    byte[] request = encodeRequest(call, compact);
+    BftGlueRequest req = decodeRequest(request);
+    BftGlueInvocation inv = req.getInvocation();
+    byte[] again = new BftGlueRequest(inv, req.getNodeType(), req.getTicket(),
+        conf, req.isCompact()).toBytes();
+    if(compact && inv.getMethod() == null || !Arrays.equals(request, again))
+      throw new IOException("Request roundtrip of " + call.method.getName()
+          + " differs, compact=" + compact);
+    byte[] reply = encodeReply(call, compact);
+    Object ret = decodeReply(call, reply, compact);
+    byte[] replyAgain = compact
+        ? new BftGlueReply(call.method.getReturnType(), ret, conf).toBytes()
+        : new BftGlueReply(new ObjectWritable(
+            call.method.getReturnType(), ret), conf).toBytes();
+    if(!Arrays.equals(reply, replyAgain))
+      throw new IOException("Reply roundtrip of " + call.method.getName()
+          + " differs, compact=" + compact);
+  }
+
+  private static void run(List<Call> calls, boolean compact, int iterations)
+  throws IOException {
+    String name = compact ? "compact" : "ObjectWritable";
+    long requestBytes = 0;
+    long replyBytes = 0;
+    for(Call call : calls) {
+      check(call, compact);
+      int req = encodeRequest(call, compact).length;
+      int rep = encodeReply(call, compact).length;
+      requestBytes += req;
+      replyBytes += rep;
+      LOG.info(name + " " + call.method.getName() + ": request " + req
+          + " bytes, reply " + rep + " bytes");
+    }
+    byte[][] encoded = new byte[calls.size()][];
+    long start = System.nanoTime();
+    for(int i = 0; i < iterations; i++)
+      for(int j = 0; j < calls.size(); j++)
+        encoded[j] = encodeRequest(calls.get(j), compact);
+    long encodeTime = System.nanoTime() - start;
+    start = System.nanoTime();
+    for(int i = 0; i < iterations; i++)
+      for(int j = 0; j < calls.size(); j++)
+        decodeRequest(encoded[j]);
+    long decodeTime = System.nanoTime() - start;
+    long ops = (long)iterations * calls.size();
+    LOG.info("--- " + name + " ---");
+    LOG.info("Average request size: " + requestBytes / calls.size() + " bytes");
+    LOG.info("Average reply size: " + replyBytes / calls.size() + " bytes");
+    LOG.info("Request encodes/sec: " + ops * 1000000000L / encodeTime);
+    LOG.info("Request decodes/sec: " + ops * 1000000000L / decodeTime);
+  }
+
+  public static void main(String[] args) throws Exception {
+    int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+    List<Call> calls = sampleCalls();
+    // warm up both paths before timing them
+    run(calls, false, iterations / 10);
+    run(calls, true, iterations / 10);
+    run(calls, false, iterations);
+    run(calls, true, iterations);
+  }
+}
@@ -0,0 +1,399 @@
+package org.apache.hadoop.hdfs;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.hdfs.protocol.ClientProtocol;
+import org.apache.hadoop.hdfs.server.namenode.NameNode;
+import org.apache.hadoop.hdfs.server.protocol.DatanodeProtocol;
+import org.apache.hadoop.net.DNS;
+import org.apache.hadoop.security.UserGroupInformation;
+
+import BFT.clientShim.ClientShimBaseNode;
+import BFT.order.OrderBaseNode;
+import BFT.util.Role;
+import BFT.util.StageTimes;
+
+/**
+ * A BFT name-node replica set on the local host: the order replicas
+ * and, for each execution replica, a primary and a helper name-node,
+ * each in its own JVM started with the classpath of this one.
+ *
+ * The UpRight configuration must list loopback addresses for all of
+ * them, and their keys must be in ./keys, as for any UpRight node.
+ * Execution replica i listens on port basePort + 2*i and its helper on
+ * the next port. The replicas record the time spent in each stage of
+ * a request, which printStageTimes() reports after they are stopped.
+ *
+ * Each running thread that calls the replicas has a client shim of its
+ * own, with ids from the -bftClient id up, so the configuration needs a
+ * client for every benchmark thread and one for the main thread.
+ */
+class BftReplicaSet {
+  private static final Log LOG = LogFactory.getLog(BftReplicaSet.class);
+  static final String BFT_USAGE =
+    "-bft <UpRight config> [-bftPort P] [-bftClient C] [-bftDir D]";
+
+  // the stages of a request in the order they happen
+  private static final String[] STAGES = {
+    "glue.encode", "client.execute", "order.commit", "exec.queue",
+    "exec.execAsync", "client.replyQuorum", "glue.decode" };
+
+  private static final long START_TIMEOUT = 60 * 1000;
+
+  private final File dir;
+  private final File configFile;
+  private final int basePort;
+  private final int clientCount;
+  private int nextClientId;
+  private int orderCount = 0;
+  private int execCount = 0;
+  private List<Process> processes = new ArrayList<Process>();
+  private List<File> logs = new ArrayList<File>();
+  // the client shim of each thread that called the replicas
+  private Map<Thread, ClientShimBaseNode> clientShims =
+    new HashMap<Thread, ClientShimBaseNode>();
+
+  BftReplicaSet(String upRightConfig, int basePort, int clientId, File dir)
+  throws IOException {
+    this.dir = dir;
+    this.basePort = basePort;
+    this.nextClientId = clientId;
+    FileUtil.fullyDelete(dir);
+    if(!dir.mkdirs())
+      throw new IOException("BftReplicaSet: cannot mkdir " + dir);
+    Properties props = new Properties();
+    FileInputStream in = new FileInputStream(upRightConfig);
+    try {
+      props.load(in);
+    } finally {
+      in.close();
+    }
+    while(props.getProperty(Role.ORDER + "." + orderCount) != null)
+      orderCount++;
+    while(props.getProperty(Role.EXEC + "." + execCount) != null)
+      execCount++;
+    clientCount = Integer.parseInt(props.getProperty("clientCount", "0"));
+    props.setProperty("stageTimes", "true");
+    configFile = new File(dir, "upright.properties");
+    OutputStream out = new FileOutputStream(configFile);
+    try {
+      props.store(out, "copy of " + upRightConfig);
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Remove the -bft options from args.
+   * @return the replica set they describe, or null if there is no -bft
+   */
+  static BftReplicaSet parseArguments(Configuration conf, List<String> args)
+  throws IOException {
+    String upRightConfig = null;
+    int basePort = 9000;
+    int clientId = 0;
+    File dir = new File(conf.get("hadoop.tmp.dir", "/tmp"), "bftReplicaSet");
+    for(int i = 0; i < args.size();) {
+      String arg = args.get(i);
+      if(!arg.startsWith("-bft")) {
+        i++;
+        continue;
+      }
+      if(i+1 == args.size())  NNThroughputBenchmark.printUsage();
+      String value = args.get(i+1);
+      if(arg.equals("-bft"))
+        upRightConfig = value;
+      else if(arg.equals("-bftPort"))
+        basePort = Integer.parseInt(value);
+      else if(arg.equals("-bftClient"))
+        clientId = Integer.parseInt(value);
+      else if(arg.equals("-bftDir"))
+        dir = new File(value);
+      else
+        NNThroughputBenchmark.printUsage();
+      args.remove(i+1);
+      args.remove(i);
+    }
+    if(upRightConfig == null)
+      return null;
+    return new BftReplicaSet(upRightConfig, basePort, clientId, dir);
+  }
+
+  String getConfigFile() {
+    return configFile.getAbsolutePath();
+  }
+
+  /**
+   * A ClientProtocol that sends the calls of each thread through the
+   * client shim of that thread.
+   */
+  ClientProtocol getClientProtocol(final Configuration conf,
+                                   final UserGroupInformation ugi) {
+    return (ClientProtocol) perThread(ClientProtocol.class, new ThreadLocal<Object>() {
+      protected Object initialValue() {
+        return BftGlueInvoker.createClient(getClientShim(), conf, ugi);
+      }
+    });
+  }
+
+  DatanodeProtocol getDatanodeProtocol(final Configuration conf) {
+    return (DatanodeProtocol) perThread(DatanodeProtocol.class, new ThreadLocal<Object>() {
+      protected Object initialValue() {
+        return BftGlueInvoker.createDatanode(getClientShim(), conf);
+      }
+    });
+  }
+
+  /**
+   * The shim of the calling thread: the shim of a thread that has
+   * finished, or a new one.
+   */
+  private synchronized ClientShimBaseNode getClientShim() {
+    Thread thread = Thread.currentThread();
+    ClientShimBaseNode shim = clientShims.get(thread);
+    if(shim != null)
+      return shim;
+    for(Iterator<Map.Entry<Thread, ClientShimBaseNode>> it =
+          clientShims.entrySet().iterator(); it.hasNext();) {
+      Map.Entry<Thread, ClientShimBaseNode> e = it.next();
+      if(!e.getKey().isAlive()) {
+        shim = e.getValue();
+        it.remove();
+        break;
+      }
+    }
+    if(shim == null) {
+      if(nextClientId >= clientCount)
+        throw new IllegalStateException("The UpRight configuration has "
+            + clientCount + " clients, a thread needs client " + nextClientId);
+      shim = BftGlueInvoker.startShim(getConfigFile(), nextClientId++);
+    }
+    clientShims.put(thread, shim);
+    return shim;
+  }
+
+  private static Object perThread(Class<?> protocol,
+                                  final ThreadLocal<Object> proxies) {
+    return Proxy.newProxyInstance(protocol.getClassLoader(),
+        new Class[] { protocol }, new InvocationHandler() {
+          public Object invoke(Object proxy, Method method, Object[] args)
+          throws Throwable {
+            try {
+              return method.invoke(proxies.get(), args);
+            } catch(InvocationTargetException e) {
+              throw e.getCause();
+            }
+          }
+        });
+  }
+
+  /**
+   * Format and start the name-nodes, start the order replicas, and wait
+   * until every name-node accepts connections.
+   */
+  void start() throws IOException {
+    String host = DNS.getDefaultIP("default");
+    try {
+      for(int i = 0; i < execCount; i++) {
+        File confDir = writeConf(i);
+        run(confDir, "format" + i, NameNode.class, "-format").waitFor();
+        run(confDir, "format" + i + "_helper", NameNode.class,
+            "-format", "-helper").waitFor();
+      }
+    } catch(InterruptedException e) {
+      throw new IOException("Interrupted formatting name-nodes");
+    }
+    for(int i = 0; i < orderCount; i++)
+      start(null, "order" + i, OrderBaseNode.class,
+            String.valueOf(i), getConfigFile());
+    for(int i = 0; i < execCount; i++) {
+      File confDir = new File(dir, "exec" + i);
+      start(confDir, "exec" + i + "_helper", NameNode.class, "-helper");
+      waitForPort(host, basePort + 2*i + 1);
+      start(confDir, "exec" + i, NameNode.class,
+            "-shimid", String.valueOf(i), "-UpRightConfig", getConfigFile());
+    }
+    for(int i = 0; i < execCount; i++)
+      waitForPort(host, basePort + 2*i);
+    LOG.info("Started " + orderCount + " order and " + execCount
+        + " execution replicas in " + dir);
+  }
+
+  /**
+   * Stop the client shims and all replicas, which print their stage
+   * times as they exit.
+   */
+  void stop() {
+    synchronized(this) {
+      for(ClientShimBaseNode shim : clientShims.values())
+        shim.stop();
+      clientShims.clear();
+    }
+    for(Process p : processes)
+      p.destroy();
+    try {
+      for(Process p : processes)
+        p.waitFor();
+    } catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    processes.clear();
+  }
+
+  /**
+   * Print the average time of each stage, over all the requests of this
+   * client and all the replicas that saw them.
+   */
+  void printStageTimes() throws IOException {
+    Map<String, long[]> stages = new TreeMap<String, long[]>();
+    for(Map.Entry<String, long[]> e : StageTimes.snapshot().entrySet()) {
+      long[] s = e.getValue();
+      stages.put(e.getKey(), new long[] {s[0], s[1] / 1000});
+    }
+    for(File log : logs) {
+      BufferedReader in = new BufferedReader(new FileReader(log));
+      try {
+        String line;
+        while((line = in.readLine()) != null) {
+          String[] f = line.trim().split(" ");
+          if(f.length != 4 || !f[0].equals("STAGE"))
+            continue;
+          long count = Long.parseLong(f[2]);
+          long[] s = stages.get(f[1]);
+          if(s == null) {
+            s = new long[2];
+            stages.put(f[1], s);
+          }
+          s[0] += count;
+          s[1] += count * Long.parseLong(f[3]);
+        }
+      } finally {
+        in.close();
+      }
+    }
+    LOG.info("--- BFT stage times (us) ---");
+    for(String stage : STAGES)
+      printStage(stage, stages.remove(stage));
+    for(Map.Entry<String, long[]> e : stages.entrySet())
+      printStage(e.getKey(), e.getValue());
+  }
+
+  private static void printStage(String stage, long[] s) {
+    if(s == null || s[0] == 0)
+      return;
+    LOG.info(stage + ": " + s[1] / s[0] + " (" + s[0] + " samples)");
+  }
+
+  private File writeConf(int replica) throws IOException {
+    File confDir = new File(dir, "exec" + replica);
+    if(!confDir.mkdirs())
+      throw new IOException("BftReplicaSet: cannot mkdir " + confDir);
+    Configuration conf = new Configuration(false);
+    conf.set("fs.default.name", "hdfs://localhost:" + (basePort + 2*replica));
+    // the replicas share the host, so their web servers take any free port
+    conf.set("dfs.http.address", "localhost:0");
+    conf.set("dfs.https.address", "localhost:0");
+    conf.set("dfs.name.dir", new File(confDir, "name").getAbsolutePath());
+    conf.set("dfs.name.edits.dir", new File(confDir, "name").getAbsolutePath());
+    conf.set("dfs.bft.checkpointDir",
+        new File(confDir, "cp").getAbsolutePath() + File.separator);
+    conf.setBoolean("dfs.bft", true);
+    OutputStream out = new FileOutputStream(new File(confDir, "hadoop-site.xml"));
+    try {
+      conf.writeXml(out);
+    } finally {
+      out.close();
+    }
+    return confDir;
+  }
+
+  private Process start(File confDir, String name, Class<?> main,
+                        String... args) throws IOException {
+    Process p = run(confDir, name, main, args);
+    processes.add(p);
+    return p;
+  }
+
+  /**
+   * Run main in a new JVM with confDir ahead of our classpath, sending
+   * its output to dir/name.log. The shell hands the output straight to
+   * the log, so what a replica prints as it is stopped is kept.
+   */
+  private Process run(File confDir, String name, Class<?> main,
+                      String... args) throws IOException {
+    String classpath = System.getProperty("java.class.path");
+    if(confDir != null)
+      classpath = confDir.getAbsolutePath() + File.pathSeparator + classpath;
+    File log = new File(dir, name + ".log");
+    logs.add(log);
+    List<String> cmd = new ArrayList<String>();
+    cmd.add("sh");
+    cmd.add("-c");
+    cmd.add("log=$1; shift; exec \"$@\" > \"$log\" 2>&1");
+    cmd.add("sh");
+    cmd.add(log.getAbsolutePath());
+    cmd.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+    cmd.add("-cp");
+    cmd.add(classpath);
+    cmd.add(main.getName());
+    for(String arg : args)
+      cmd.add(arg);
+    Process p = new ProcessBuilder(cmd).start();
+    p.getOutputStream().close();
+    return p;
+  }
+
+  private static boolean hasExited(Process p) {
+    try {
+      p.exitValue();
+      return true;
+    } catch(IllegalThreadStateException e) {
+      return false;
+    }
+  }
+
+  private void waitForPort(String host, int port) throws IOException {
+    long deadline = System.currentTimeMillis() + START_TIMEOUT;
+    while(true) {
+      for(int i = 0; i < processes.size(); i++) {
+        if(hasExited(processes.get(i)))
+          throw new IOException("Replica exited, see the logs in " + dir);
+      }
+      try {
+        new Socket(host, port).close();
+        return;
+      } catch(IOException e) {
+        if(System.currentTimeMillis() > deadline)
+          throw new IOException("Nothing listening on " + host + ":" + port
+              + " after " + START_TIMEOUT + " ms");
+      }
+      try {
+        Thread.sleep(500);
+      } catch(InterruptedException e) {
+        throw new IOException("Interrupted starting replicas");
+      }
+    }
+  }
+}
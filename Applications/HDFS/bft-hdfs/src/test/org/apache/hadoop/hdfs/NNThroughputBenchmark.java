@@ -33,6 +33,7 @@ import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.permission.FsPermission;
 import org.apache.hadoop.hdfs.protocol.Block;
 import org.apache.hadoop.hdfs.protocol.BlockListAsLongs;
+import org.apache.hadoop.hdfs.protocol.ClientProtocol;
 import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
 import org.apache.hadoop.hdfs.protocol.FSConstants;
 import org.apache.hadoop.hdfs.protocol.LocatedBlock;
@@ -76,6 +77,11 @@ import org.apache.log4j.Level;
  * 
  * Then the benchmark executes the specified number of operations using 
  * the specified number of threads and outputs the resulting stats.
+ * 
+ * With -bft the operations go through embedded client shims, one per
+ * thread, to a BFT replica set started on the local host instead, and
+ * the time spent in each stage of a request is printed along with the
+ * stats.
  */
 public class NNThroughputBenchmark {
   private static final Log LOG = LogFactory.getLog(NNThroughputBenchmark.class);
@@ -83,10 +89,20 @@ public class NNThroughputBenchmark {
 
   static Configuration config;
   static NameNode nameNode;
+  // the operations are executed through these: the name-node itself,
+  // or the embedded BFT clients when running with -bft
+  static ClientProtocol clientProto;
+  static DatanodeProtocol datanodeProto;
+  static BftReplicaSet bftReplicas;
 
   private final UserGroupInformation ugi;
 
   NNThroughputBenchmark(Configuration conf) throws IOException, LoginException {
+    this(conf, null);
+  }
+
+  NNThroughputBenchmark(Configuration conf, BftReplicaSet replicas)
+  throws IOException, LoginException {
     config = conf;
     ugi = UnixUserGroupInformation.login(config);
     UserGroupInformation.setCurrentUGI(ugi);
@@ -102,13 +118,27 @@ public class NNThroughputBenchmark {
         throw new IOException("NNThroughputBenchmark: cannot mkdir " + excludeFile);
     }
     new FileOutputStream(excludeFile).close();
+    if(replicas != null) {
+      bftReplicas = replicas;
+      bftReplicas.start();
+      nameNode = null;
+      config.setBoolean("dfs.bft", true);
+      clientProto = bftReplicas.getClientProtocol(config, ugi);
+      datanodeProto = bftReplicas.getDatanodeProtocol(config);
+      return;
+    }
     // Start the NameNode
     String[] argv = new String[] {};
     nameNode = NameNode.createNameNode(argv, config);
+    clientProto = nameNode;
+    datanodeProto = nameNode;
   }
 
   void close() throws IOException {
-    nameNode.stop();
+    if(nameNode != null)
+      nameNode.stop();
+    if(bftReplicas != null)
+      bftReplicas.stop();
   }
 
   static void turnOffNameNodeLogging() {
@@ -246,9 +276,9 @@ public class NNThroughputBenchmark {
     }
 
     void cleanUp() throws IOException {
-      nameNode.setSafeMode(FSConstants.SafeModeAction.SAFEMODE_LEAVE);
+      clientProto.setSafeMode(FSConstants.SafeModeAction.SAFEMODE_LEAVE);
       if(!keepResults)
-        nameNode.delete(getBaseDir(), true);
+        clientProto.delete(getBaseDir(), true);
     }
 
     int getNumOpsExecuted() {
@@ -417,9 +447,9 @@ public class NNThroughputBenchmark {
      */
     long executeOp(int daemonId, int inputIdx, String ignore) 
     throws IOException {
-      nameNode.setSafeMode(FSConstants.SafeModeAction.SAFEMODE_LEAVE);
+      clientProto.setSafeMode(FSConstants.SafeModeAction.SAFEMODE_LEAVE);
       long start = System.currentTimeMillis();
-      nameNode.delete(BASE_DIR_NAME, true);
+      clientProto.delete(BASE_DIR_NAME, true);
       long end = System.currentTimeMillis();
       return end-start;
     }
@@ -481,7 +511,7 @@ public class NNThroughputBenchmark {
 
     void generateInputs(int[] opsPerThread) throws IOException {
       assert opsPerThread.length == numThreads : "Error opsPerThread.length"; 
-      nameNode.setSafeMode(FSConstants.SafeModeAction.SAFEMODE_LEAVE);
+      clientProto.setSafeMode(FSConstants.SafeModeAction.SAFEMODE_LEAVE);
       // int generatedFileIdx = 0;
       LOG.info("Generate " + numOpsRequired + " intputs for " + getOpName());
       fileNames = new String[numThreads][];
@@ -513,11 +543,11 @@ public class NNThroughputBenchmark {
     throws IOException {
       long start = System.currentTimeMillis();
       // dummyActionNoSynch(fileIdx);
-      nameNode.create(fileNames[daemonId][inputIdx], FsPermission.getDefault(),
+      clientProto.create(fileNames[daemonId][inputIdx], FsPermission.getDefault(),
                       clientName, true, replication, BLOCK_SIZE);
       long end = System.currentTimeMillis();
       for(boolean written = !closeUponCreate; !written; 
-        written = nameNode.complete(fileNames[daemonId][inputIdx], clientName));
+        written = clientProto.complete(fileNames[daemonId][inputIdx], clientName));
       return end-start;
     }
 
@@ -583,11 +613,11 @@ public class NNThroughputBenchmark {
       }
       // use the same files for open
       super.generateInputs(opsPerThread);
-      if(nameNode.getFileInfo(opCreate.getBaseDir()) != null
-          && nameNode.getFileInfo(getBaseDir()) == null) {
-        nameNode.rename(opCreate.getBaseDir(), getBaseDir());
+      if(clientProto.getFileInfo(opCreate.getBaseDir()) != null
+          && clientProto.getFileInfo(getBaseDir()) == null) {
+        clientProto.rename(opCreate.getBaseDir(), getBaseDir());
       }
-      if(nameNode.getFileInfo(getBaseDir()) == null) {
+      if(clientProto.getFileInfo(getBaseDir()) == null) {
         throw new IOException(getBaseDir() + " does not exist.");
       }
     }
@@ -598,7 +628,35 @@ public class NNThroughputBenchmark {
     long executeOp(int daemonId, int inputIdx, String ignore) 
     throws IOException {
       long start = System.currentTimeMillis();
-      nameNode.getBlockLocations(fileNames[daemonId][inputIdx], 0L, BLOCK_SIZE);
+      clientProto.getBlockLocations(fileNames[daemonId][inputIdx], 0L, BLOCK_SIZE);
+      long end = System.currentTimeMillis();
+      return end-start;
+    }
+  }
+
+  /**
+   * File status statistics.
+   * 
+   * Measure how many getFileInfo calls the name-node can handle per second.
+   */
+  class FileStatusStats extends OpenFileStats {
+    // Operation types
+    static final String OP_FILE_STATUS_NAME = "fileStatus";
+    static final String OP_FILE_STATUS_USAGE = 
+      "-op " + OP_FILE_STATUS_NAME + OP_USAGE_ARGS;
+
+    FileStatusStats(List<String> args) {
+      super(args);
+    }
+
+    String getOpName() {
+      return OP_FILE_STATUS_NAME;
+    }
+
+    long executeOp(int daemonId, int inputIdx, String ignore) 
+    throws IOException {
+      long start = System.currentTimeMillis();
+      clientProto.getFileInfo(fileNames[daemonId][inputIdx]);
       long end = System.currentTimeMillis();
       return end-start;
     }
@@ -626,7 +684,7 @@ public class NNThroughputBenchmark {
     long executeOp(int daemonId, int inputIdx, String ignore) 
     throws IOException {
       long start = System.currentTimeMillis();
-      nameNode.delete(fileNames[daemonId][inputIdx], false);
+      clientProto.delete(fileNames[daemonId][inputIdx], false);
       long end = System.currentTimeMillis();
       return end-start;
     }
@@ -667,7 +725,7 @@ public class NNThroughputBenchmark {
     long executeOp(int daemonId, int inputIdx, String ignore) 
     throws IOException {
       long start = System.currentTimeMillis();
-      nameNode.rename(fileNames[daemonId][inputIdx],
+      clientProto.rename(fileNames[daemonId][inputIdx],
                       destNames[daemonId][inputIdx]);
       long end = System.currentTimeMillis();
       return end-start;
@@ -713,11 +771,11 @@ public class NNThroughputBenchmark {
 
     void register() throws IOException {
       // get versions from the namenode
-      nsInfo = nameNode.versionRequest();
+      nsInfo = datanodeProto.versionRequest();
       dnRegistration.setStorageInfo(new DataStorage(nsInfo, ""));
       DataNode.setNewStorageID(dnRegistration);
       // register datanode
-      dnRegistration = nameNode.register(dnRegistration);
+      dnRegistration = datanodeProto.register(dnRegistration);
     }
 
     /**
@@ -726,7 +784,7 @@ public class NNThroughputBenchmark {
      */
     void sendHeartbeat() throws IOException {
       // register datanode
-      DatanodeCommand cmd = nameNode.sendHeartbeat(
+      DatanodeCommand cmd = datanodeProto.sendHeartbeat(
           dnRegistration, DF_CAPACITY, DF_USED, DF_CAPACITY - DF_USED, 0, 0);
       if(cmd != null)
         LOG.debug("sendHeartbeat Name-node reply: " + cmd.getAction());
@@ -757,7 +815,7 @@ public class NNThroughputBenchmark {
      */
     int replicateBlocks() throws IOException {
       // register datanode
-      DatanodeCommand cmd = nameNode.sendHeartbeat(
+      DatanodeCommand cmd = datanodeProto.sendHeartbeat(
           dnRegistration, DF_CAPACITY, DF_USED, DF_CAPACITY - DF_USED, 0, 0);
       if(cmd == null || cmd.getAction() != DatanodeProtocol.DNA_TRANSFER)
         return 0;
@@ -783,7 +841,7 @@ public class NNThroughputBenchmark {
           receivedDNReg.setStorageInfo(
                           new DataStorage(nsInfo, dnInfo.getStorageID()));
           receivedDNReg.setInfoPort(dnInfo.getInfoPort());
-          nameNode.blockReceived( receivedDNReg, 
+          datanodeProto.blockReceived( receivedDNReg, 
                                   new Block[] {blocks[i]},
                                   new String[] {DataNode.EMPTY_DEL_HINT});
         }
@@ -873,13 +931,13 @@ public class NNThroughputBenchmark {
       FileNameGenerator nameGenerator;
       nameGenerator = new FileNameGenerator(getBaseDir(), 100);
       String clientName = getClientName(007);
-      nameNode.setSafeMode(FSConstants.SafeModeAction.SAFEMODE_LEAVE);
+      clientProto.setSafeMode(FSConstants.SafeModeAction.SAFEMODE_LEAVE);
       for(int idx=0; idx < nrFiles; idx++) {
         String fileName = nameGenerator.getNextFileName("ThroughputBench");
-        nameNode.create(fileName, FsPermission.getDefault(),
+        clientProto.create(fileName, FsPermission.getDefault(),
                         clientName, true, replication, BLOCK_SIZE);
         addBlocks(fileName, clientName);
-        nameNode.complete(fileName, clientName);
+        clientProto.complete(fileName, clientName);
       }
       // prepare block reports
       for(int idx=0; idx < nrDatanodes; idx++) {
@@ -889,11 +947,11 @@ public class NNThroughputBenchmark {
 
     private void addBlocks(String fileName, String clientName) throws IOException {
       for(int jdx = 0; jdx < blocksPerFile; jdx++) {
-        LocatedBlock loc = nameNode.addBlock(fileName, clientName);
+        LocatedBlock loc = clientProto.addBlock(fileName, clientName);
         for(DatanodeInfo dnInfo : loc.getLocations()) {
           int dnIdx = Arrays.binarySearch(datanodes, dnInfo.getName());
           datanodes[dnIdx].addBlock(loc.getBlock());
-          nameNode.blockReceived(
+          datanodeProto.blockReceived(
               datanodes[dnIdx].dnRegistration, 
               new Block[] {loc.getBlock()},
               new String[] {""});
@@ -912,7 +970,7 @@ public class NNThroughputBenchmark {
       assert daemonId < numThreads : "Wrong daemonId.";
       TinyDatanode dn = datanodes[daemonId];
       long start = System.currentTimeMillis();
-      nameNode.blockReport(dn.dnRegistration,
+      datanodeProto.blockReport(dn.dnRegistration,
           BlockListAsLongs.convertToArrayLongs(dn.blocks));
       long end = System.currentTimeMillis();
       return end-start;
@@ -1095,11 +1153,13 @@ public class NNThroughputBenchmark {
         + "\n\t"    + OperationStatsBase.OP_ALL_USAGE
         + " | \n\t" + CreateFileStats.OP_CREATE_USAGE
         + " | \n\t" + OpenFileStats.OP_OPEN_USAGE
+        + " | \n\t" + FileStatusStats.OP_FILE_STATUS_USAGE
         + " | \n\t" + DeleteFileStats.OP_DELETE_USAGE
         + " | \n\t" + RenameFileStats.OP_RENAME_USAGE
         + " | \n\t" + BlockReportStats.OP_BLOCK_REPORT_USAGE
         + " | \n\t" + ReplicationStats.OP_REPLICATION_USAGE
         + " | \n\t" + CleanAllStats.OP_CLEAN_USAGE
+        + "\n\t[" + BftReplicaSet.BFT_USAGE + "]"
     );
     System.exit(-1);
   }
@@ -1109,6 +1169,7 @@ public class NNThroughputBenchmark {
    * @param args command line parameters
    */
   public static void runBenchmark(Configuration conf, List<String> args) throws Exception {
+    BftReplicaSet replicas = BftReplicaSet.parseArguments(conf, args);
     if(args.size() < 2 || ! args.get(0).startsWith("-op"))
       printUsage();
 
@@ -1119,7 +1180,7 @@ public class NNThroughputBenchmark {
     List<OperationStatsBase> ops = new ArrayList<OperationStatsBase>();
     OperationStatsBase opStat = null;
     try {
-      bench = new NNThroughputBenchmark(conf);
+      bench = new NNThroughputBenchmark(conf, replicas);
       if(runAll || CreateFileStats.OP_CREATE_NAME.equals(type)) {
         opStat = bench.new CreateFileStats(args);
         ops.add(opStat);
@@ -1128,6 +1189,10 @@ public class NNThroughputBenchmark {
         opStat = bench.new OpenFileStats(args);
         ops.add(opStat);
       }
+      if(runAll || FileStatusStats.OP_FILE_STATUS_NAME.equals(type)) {
+        opStat = bench.new FileStatusStats(args);
+        ops.add(opStat);
+      }
       if(runAll || DeleteFileStats.OP_DELETE_NAME.equals(type)) {
         opStat = bench.new DeleteFileStats(args);
         ops.add(opStat);
@@ -1140,7 +1205,9 @@ public class NNThroughputBenchmark {
         opStat = bench.new BlockReportStats(args);
         ops.add(opStat);
       }
-      if(runAll || ReplicationStats.OP_REPLICATION_NAME.equals(type)) {
+      // replication monitor work is not visible through the protocols
+      if(replicas == null &&
+          (runAll || ReplicationStats.OP_REPLICATION_NAME.equals(type))) {
         opStat = bench.new ReplicationStats(args);
         ops.add(opStat);
       }
@@ -1168,10 +1235,14 @@ public class NNThroughputBenchmark {
       if(bench != null)
         bench.close();
     }
+    if(replicas != null)
+      replicas.printStageTimes();
   }
 
   public static void main(String[] args) throws Exception {
     runBenchmark(new Configuration(), 
                   new ArrayList<String>(Arrays.asList(args)));
+    // the network threads of the BFT client shims do not stop
+    System.exit(0);
   }
 }
@@ -0,0 +1,241 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hdfs.BftGlueCodec.Strings;
+import org.apache.hadoop.hdfs.protocol.Block;
+import org.apache.hadoop.hdfs.protocol.DatanodeID;
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
+import org.apache.hadoop.hdfs.protocol.FSConstants.SafeModeAction;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.security.UnixUserGroupInformation;
+import org.apache.hadoop.security.UserGroupInformation;
+
+/**
+ * Tests that BftGlueCodec reads back what it writes, and that it rejects
+ * malformed input with an IOException.
+ */
+public class TestBftGlueCodec extends TestCase {
+  private static final Configuration conf = new Configuration();
+
+  private static DataInputBuffer input(DataOutputBuffer out) {
+    DataInputBuffer in = new DataInputBuffer();
+    in.reset(out.getData(), out.getLength());
+    return in;
+  }
+
+  public void testStrings() throws IOException {
+    String[] strings = {"hadoop", null, "/user/hadoop/file", "hadoop",
+        "/user/hadoop/dir", "/user/hadoop/file", "/", "", "/a//b/",
+        "relative/path"};
+    DataOutputBuffer out = new DataOutputBuffer();
+    Strings written = new Strings();
+    for (String s : strings) {
+      BftGlueCodec.writeString(out, s, written);
+    }
+    DataInputBuffer in = input(out);
+    Strings read = new Strings();
+    for (String s : strings) {
+      assertEquals(s, BftGlueCodec.readString(in, read));
+    }
+    assertEquals(0, in.available());
+  }
+
+  public void testRepeatsAreShorter() throws IOException {
+    DataOutputBuffer out = new DataOutputBuffer();
+    Strings strings = new Strings();
+    BftGlueCodec.writeString(out, "/user/hadoop/file", strings);
+    int first = out.getLength();
+    BftGlueCodec.writeString(out, "/user/hadoop/file", strings);
+    assertEquals(1, out.getLength() - first);
+    BftGlueCodec.writeString(out, "/user/hadoop/other", strings);
+    assertTrue(out.getLength() - first - 1 < first);
+  }
+
+  public void testValues() throws IOException {
+    Class<?>[] types = {long.class, int.class, short.class, boolean.class,
+        byte.class, char.class, float.class, double.class, String.class,
+        String[].class, long[].class, long[].class, SafeModeAction.class,
+        SafeModeAction.class, Block.class, Block.class, DatanodeID.class,
+        DatanodeID[].class};
+    DatanodeInfo info = new DatanodeInfo(
+        new DatanodeID("host:50010", "storage", 50075, 50020));
+    Object[] values = {7L, -3, (short) 12, true, (byte) -1, 'x', 1.5f, 2.25,
+        "/user/hadoop", new String[] {"/user/hadoop", "a", null}, null,
+        new long[] {1, 2, 3}, SafeModeAction.SAFEMODE_GET, null,
+        new Block(1, 2, 3), null, info,
+        new DatanodeID[] {info, new DatanodeID("other:50010", "s", 1, 2)}};
+    DataOutputBuffer out = new DataOutputBuffer();
+    Strings written = new Strings();
+    for (int i = 0; i < types.length; i++) {
+      BftGlueCodec.writeValue(out, types[i], values[i], written, conf);
+    }
+    DataInputBuffer in = input(out);
+    Strings read = new Strings();
+    for (int i = 0; i < types.length; i++) {
+      Object value = BftGlueCodec.readValue(in, types[i], read, conf);
+      if (values[i] instanceof long[]) {
+        assertTrue(Arrays.equals((long[]) values[i], (long[]) value));
+      } else if (values[i] instanceof Object[]) {
+        assertTrue(Arrays.equals((Object[]) values[i], (Object[]) value));
+      } else {
+        assertEquals(values[i], value);
+      }
+      if (values[i] != null) {
+        // a subclass keeps its own class
+        assertEquals(values[i].getClass(), value.getClass());
+      }
+    }
+    assertEquals(0, in.available());
+  }
+
+  public void testTickets() throws IOException {
+    UserGroupInformation[] tickets = {null,
+        new UnixUserGroupInformation("hadoop", new String[] {"supergroup"}),
+        new UnixUserGroupInformation("hadoop", new String[] {"supergroup",
+            "users"})};
+    DataOutputBuffer out = new DataOutputBuffer();
+    Strings written = new Strings();
+    for (UserGroupInformation ticket : tickets) {
+      BftGlueCodec.writeTicket(out, ticket, written, conf);
+    }
+    DataInputBuffer in = input(out);
+    Strings read = new Strings();
+    for (UserGroupInformation ticket : tickets) {
+      assertEquals(ticket, BftGlueCodec.readTicket(in, read, conf));
+    }
+  }
+
+  private static void assertMalformed(DataOutputBuffer out, Class<?> type) {
+    try {
+      if (type == null) {
+        BftGlueCodec.readTicket(input(out), new Strings(), conf);
+      } else {
+        BftGlueCodec.readValue(input(out), type, new Strings(), conf);
+      }
+      fail("Read malformed input as " + type);
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  public void testBadStrings() throws IOException {
+    // a reference to a string not read yet
+    DataOutputBuffer out = new DataOutputBuffer();
+    WritableUtils.writeVInt(out, 1);
+    assertMalformed(out, String.class);
+
+    // a negative length
+    out = new DataOutputBuffer();
+    WritableUtils.writeVInt(out, 0);
+    WritableUtils.writeVInt(out, -5);
+    assertMalformed(out, String.class);
+
+    // a path nested in a path
+    out = new DataOutputBuffer();
+    WritableUtils.writeVInt(out, -3);
+    WritableUtils.writeVInt(out, -3);
+    assertMalformed(out, String.class);
+
+    // a component holding a separator
+    out = new DataOutputBuffer();
+    WritableUtils.writeVInt(out, -3);
+    WritableUtils.writeVInt(out, 0);
+    Text.writeString(out, "a/b");
+    assertMalformed(out, String.class);
+
+    // a component referring to a path read before
+    out = new DataOutputBuffer();
+    Strings strings = new Strings();
+    BftGlueCodec.writeString(out, "/a", strings);
+    WritableUtils.writeVInt(out, -3);
+    WritableUtils.writeVInt(out, 2);
+    DataInputBuffer in = input(out);
+    strings = new Strings();
+    assertEquals("/a", BftGlueCodec.readString(in, strings));
+    try {
+      BftGlueCodec.readString(in, strings);
+      fail("Read a path as a path component");
+    } catch (IOException e) {
+      // expected
+    }
+
+    // a string cut short
+    out = new DataOutputBuffer();
+    WritableUtils.writeVInt(out, 0);
+    WritableUtils.writeVInt(out, 10);
+    out.writeBytes("abc");
+    assertMalformed(out, String.class);
+  }
+
+  public void testBadValues() throws IOException {
+    DataOutputBuffer out = new DataOutputBuffer();
+    WritableUtils.writeVInt(out, SafeModeAction.values().length);
+    assertMalformed(out, SafeModeAction.class);
+
+    out = new DataOutputBuffer();
+    out.writeByte(3);
+    assertMalformed(out, Block.class);
+
+    // a class that is not a Block
+    out = new DataOutputBuffer();
+    out.writeByte(2);
+    BftGlueCodec.writeString(out, DatanodeID.class.getName(), new Strings());
+    assertMalformed(out, Block.class);
+
+    out = new DataOutputBuffer();
+    out.writeByte(2);
+    BftGlueCodec.writeString(out, "org.apache.hadoop.NoSuchClass",
+        new Strings());
+    assertMalformed(out, Block.class);
+
+    // an array longer than its elements
+    out = new DataOutputBuffer();
+    WritableUtils.writeVInt(out, 4);
+    out.writeLong(1);
+    assertMalformed(out, long[].class);
+  }
+
+  public void testBadTickets() throws IOException {
+    DataOutputBuffer out = new DataOutputBuffer();
+    out.writeByte(3);
+    assertMalformed(out, null);
+
+    out = new DataOutputBuffer();
+    out.writeByte(1);
+    BftGlueCodec.writeString(out, "hadoop", new Strings());
+    WritableUtils.writeVInt(out, -2);
+    assertMalformed(out, null);
+
+    // a user without a name
+    out = new DataOutputBuffer();
+    out.writeByte(1);
+    BftGlueCodec.writeString(out, null, new Strings());
+    WritableUtils.writeVInt(out, 0);
+    assertMalformed(out, null);
+  }
+}
@@ -0,0 +1,198 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.ArrayBlockingQueue;
+
+import junit.framework.TestCase;
+
+import org.jboss.netty.channel.Channel;
+
+import BFT.Parameters;
+import BFT.network.concurrentNet.FlowControl;
+import BFT.util.Role;
+
+/**
+ * Tests that FlowControl suspends the channels feeding a busy queue and
+ * resumes them once the consumer drains it, and that it parks the work
+ * that finds the queue full in arrival order.
+ */
+public class TestFlowControl extends TestCase {
+  // high water at 6 and low water at 2 messages
+  private static final int CAPACITY = 8;
+
+  private int highWater;
+  private int lowWater;
+  private ArrayBlockingQueue<byte[]> queue;
+  private FlowControl flow;
+
+  /** The readable and open state of a channel, all netty needs here */
+  private static class FakeChannel implements InvocationHandler {
+    boolean readable = true;
+    boolean open = true;
+
+    public Object invoke(Object proxy, Method method, Object[] args) {
+      String name = method.getName();
+      if (name.equals("isReadable")) {
+        return readable;
+      } else if (name.equals("setReadable")) {
+        readable = (Boolean) args[0];
+        return null;
+      } else if (name.equals("isOpen")) {
+        return open;
+      } else if (name.equals("hashCode")) {
+        return System.identityHashCode(proxy);
+      } else if (name.equals("equals")) {
+        return proxy == args[0];
+      } else if (name.equals("toString")) {
+        return "channel";
+      }
+      throw new UnsupportedOperationException(name);
+    }
+  }
+
+  private static FakeChannel state(Channel ch) {
+    return (FakeChannel) Proxy.getInvocationHandler(ch);
+  }
+
+  private static Channel newChannel() {
+    return (Channel) Proxy.newProxyInstance(Channel.class.getClassLoader(),
+        new Class<?>[] {Channel.class}, new FakeChannel());
+  }
+
+  protected void setUp() {
+    highWater = Parameters.queueHighWater;
+    lowWater = Parameters.queueLowWater;
+    Parameters.queueHighWater = 75;
+    Parameters.queueLowWater = 25;
+    queue = new ArrayBlockingQueue<byte[]>(CAPACITY);
+    flow = new FlowControl(Role.CLIENT, 0, queue);
+  }
+
+  protected void tearDown() {
+    Parameters.queueHighWater = highWater;
+    Parameters.queueLowWater = lowWater;
+  }
+
+  private void fill(int size) {
+    while (queue.size() < size) {
+      assertTrue(flow.offer(new byte[0]));
+    }
+  }
+
+  private void drain(int size) {
+    while (queue.size() > size) {
+      queue.poll();
+    }
+    flow.drained();
+  }
+
+  public void testReadsFreelyBelowLowWater() {
+    Channel a = newChannel();
+    fill(1);
+    for (int i = 0; i < 100; i++) {
+      flow.received(a);
+    }
+    assertTrue(a.isReadable());
+    assertEquals(0, flow.getSuspended());
+  }
+
+  public void testSuspendsChannelOutOfCredits() {
+    Channel a = newChannel();
+    Channel b = newChannel();
+    fill(4);
+    // two channels share the 6 credits of the high-water mark
+    flow.received(b);
+    flow.received(a);
+    flow.received(a);
+    assertTrue(a.isReadable());
+    flow.received(a);
+    assertFalse(a.isReadable());
+    assertTrue(b.isReadable());
+    assertEquals(1, flow.getSuspended());
+
+    // at the high-water mark every delivering channel stops
+    fill(6);
+    flow.received(b);
+    assertFalse(b.isReadable());
+    assertEquals(2, flow.getSuspended());
+
+    // above the low-water mark nothing resumes
+    drain(3);
+    assertFalse(a.isReadable());
+    assertFalse(b.isReadable());
+
+    drain(2);
+    assertTrue(a.isReadable());
+    assertTrue(b.isReadable());
+    assertEquals(0, flow.getSuspended());
+
+    // the credits were reset along with the suspensions
+    fill(4);
+    flow.received(a);
+    flow.received(a);
+    assertTrue(a.isReadable());
+  }
+
+  public void testClosedChannels() {
+    Channel a = newChannel();
+    Channel b = newChannel();
+    fill(6);
+    flow.received(a);
+    flow.received(b);
+    assertEquals(2, flow.getSuspended());
+
+    // a closed channel is not made readable again
+    state(a).open = false;
+    flow.closed(b);
+    assertEquals(1, flow.getSuspended());
+    drain(0);
+    assertFalse(a.isReadable());
+    assertFalse(b.isReadable());
+    assertEquals(0, flow.getSuspended());
+  }
+
+  public void testParksWorkWhenFull() {
+    fill(CAPACITY);
+    byte[] first = {1};
+    byte[] second = {2};
+    byte[] third = {3};
+    assertFalse(flow.offer(first));
+    assertFalse(flow.offer(second));
+    assertEquals(0, flow.unpark());
+
+    // work queued behind parked work waits its turn
+    queue.poll();
+    assertFalse(flow.offer(third));
+    assertEquals(CAPACITY - 1, queue.size());
+    assertEquals(1, flow.unpark());
+
+    while (queue.size() > 1) {
+      queue.poll();
+    }
+    assertEquals(2, flow.unpark());
+    assertSame(first, queue.poll());
+    assertSame(second, queue.poll());
+    assertSame(third, queue.poll());
+    assertEquals(0, flow.unpark());
+    assertTrue(flow.offer(first));
+  }
+}
@@ -0,0 +1,247 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.fs.permission.PermissionStatus;
+import org.apache.hadoop.hdfs.protocol.Block;
+import org.apache.hadoop.hdfs.protocol.FSConstants;
+
+/**
+ * Tests that FSImageSections loads back the namespace it saves, whatever
+ * the number of threads, and that it rejects malformed sections.
+ */
+public class TestFSImageSections extends TestCase {
+  private static final PermissionStatus PERMISSIONS =
+    new PermissionStatus("hadoop", "supergroup", new FsPermission((short)0755));
+
+  // the inodes of buildNamespace, other than the root
+  private static final long RECORDS = FSImageSections.SECTION_SIZE + 117;
+
+  private Configuration conf = new Configuration();
+  private long nextBlockId = 1;
+
+  private FSNamesystem newNamesystem() throws IOException {
+    return new FSNamesystem(new FSImage(), conf);
+  }
+
+  private INodeFile addFile(FSNamesystem ns, INodeDirectory dir, String name,
+                            int numBlocks) {
+    INodeFile file = new INodeFile(PERMISSIONS, numBlocks, (short)3,
+                                   1000 + nextBlockId, 0, 64L << 20);
+    file.setLocalName(name);
+    dir.addChild(file, false, false);
+    for (int i = 0; i < numBlocks; i++) {
+      Block b = new Block(nextBlockId++, 1024, 1);
+      file.setBlock(i, ns.blocksMap.addINode(b, file));
+    }
+    return file;
+  }
+
+  private static <T extends INodeDirectory> T addDir(INodeDirectory dir,
+                                                     String name, T child) {
+    child.setLocalName(name);
+    dir.addChild(child, false, false);
+    return child;
+  }
+
+  /**
+   * A namespace with a directory too big for one section, followed by
+   * nested directories, quotas and files with blocks.
+   */
+  private INodeDirectory buildNamespace(FSNamesystem ns) {
+    INodeDirectory root = ns.dir.rootDir;
+    INodeDirectory big = addDir(root, "big",
+                                new INodeDirectory(PERMISSIONS, 1));
+    for (int i = 0; i < FSImageSections.SECTION_SIZE + 100; i++) {
+      addFile(ns, big, String.format("f%06d", i), 0);
+    }
+    INodeDirectory user = addDir(root, "user",
+                                 new INodeDirectory(PERMISSIONS, 2));
+    INodeDirectory quota = addDir(user, "quota",
+        new INodeDirectoryWithQuota(PERMISSIONS, 3, 100, -1));
+    addFile(ns, quota, "a", 2);
+    addFile(ns, quota, "b", 1);
+    INodeDirectory deep = quota;
+    for (int i = 0; i < 5; i++) {
+      deep = addDir(deep, "d" + i, new INodeDirectory(PERMISSIONS, 4 + i));
+      addFile(ns, deep, "file", i);
+    }
+    addDir(user, "empty", new INodeDirectory(PERMISSIONS, 10));
+    addFile(ns, root, "top", 3);
+    return root;
+  }
+
+  private static byte[] save(INodeDirectory root, int threads,
+                             long expectedRecords) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    assertEquals(expectedRecords, new FSImageSections(threads).save(root, out));
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  private static long load(FSNamesystem ns, byte[] image, int threads)
+      throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(image));
+    long records = new FSImageSections(threads).load(ns.dir, in);
+    assertEquals(0, in.available());
+    return records;
+  }
+
+  private static void assertSameTree(INodeDirectory expected,
+                                     FSNamesystem actualNs,
+                                     INodeDirectory actual) {
+    List<INode> e = expected.getChildrenRaw();
+    List<INode> a = actual.getChildrenRaw();
+    assertEquals(e == null ? 0 : e.size(), a == null ? 0 : a.size());
+    if (e == null) {
+      return;
+    }
+    for (int i = 0; i < e.size(); i++) {
+      INode x = e.get(i);
+      INode y = a.get(i);
+      assertEquals(x.getLocalName(), y.getLocalName());
+      assertEquals(x.isDirectory(), y.isDirectory());
+      assertEquals(x.getModificationTime(), y.getModificationTime());
+      assertEquals(x.getUserName(), y.getUserName());
+      assertEquals(x.getGroupName(), y.getGroupName());
+      assertEquals(x.getFsPermissionShort(), y.getFsPermissionShort());
+      assertEquals(x.getNsQuota(), y.getNsQuota());
+      assertEquals(x.getDsQuota(), y.getDsQuota());
+      assertSame(actual, y.getParent());
+      if (x.isDirectory()) {
+        assertSameTree((INodeDirectory)x, actualNs, (INodeDirectory)y);
+      } else {
+        INodeFile f = (INodeFile)x;
+        INodeFile g = (INodeFile)y;
+        assertEquals(f.getReplication(), g.getReplication());
+        assertEquals(f.getPreferredBlockSize(), g.getPreferredBlockSize());
+        assertEquals(f.getAccessTime(), g.getAccessTime());
+        assertTrue(Arrays.equals(f.getBlocks(), g.getBlocks()));
+        for (Block b : g.getBlocks()) {
+          assertSame(g, actualNs.blocksMap.getINode(b));
+        }
+      }
+    }
+  }
+
+  public void testRoundTrip() throws IOException {
+    FSNamesystem ns = newNamesystem();
+    INodeDirectory root = buildNamespace(ns);
+
+    // the bytes do not depend on the number of threads
+    byte[] image = save(root, 1, RECORDS);
+    assertTrue(Arrays.equals(image, save(root, 4, RECORDS)));
+
+    for (int threads : new int[] {1, 3}) {
+      FSNamesystem loaded = newNamesystem();
+      assertEquals(RECORDS, load(loaded, image, threads));
+      assertSameTree(root, loaded, loaded.dir.rootDir);
+    }
+  }
+
+  public void testEmptyNamespace() throws IOException {
+    FSNamesystem ns = newNamesystem();
+    byte[] image = save(ns.dir.rootDir, 2, 0);
+    assertEquals(4, image.length);
+    FSNamesystem loaded = newNamesystem();
+    assertEquals(0, load(loaded, image, 2));
+    assertNull(loaded.dir.rootDir.getChildrenRaw());
+  }
+
+  private void assertMalformed(byte[] image) throws IOException {
+    try {
+      load(newNamesystem(), image, 2);
+      fail("Loaded a malformed image");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  // one section holding the given records, then the end marker
+  private static byte[] section(int records, byte[] bytes)
+      throws IOException {
+    ByteArrayOutputStream image = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(image);
+    out.writeInt(records);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+    out.writeInt(0);
+    out.flush();
+    return image.toByteArray();
+  }
+
+  private static byte[] record(String path, INode node) throws IOException {
+    ByteBuffer name = ByteBuffer.wrap(new byte[4*FSConstants.MAX_PATH_LENGTH]);
+    name.put(INode.string2Bytes(path));
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    FSImage.saveINode2Image(name, node, out, new FsPermission((short)0));
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  public void testMalformed() throws IOException {
+    FSNamesystem ns = newNamesystem();
+    byte[] image = save(buildNamespace(ns), 2, RECORDS);
+
+    // cut in the middle of a section, and before the end marker
+    assertMalformed(Arrays.copyOf(image, image.length / 2));
+    assertMalformed(Arrays.copyOf(image, image.length - 1));
+
+    INodeDirectory dir = new INodeDirectory(PERMISSIONS, 1);
+
+    // a path without a separator
+    assertMalformed(section(1, record("nopath", dir)));
+
+    // a child of a directory not in the image
+    assertMalformed(section(1, record("/missing/dir", dir)));
+
+    // a child of a file
+    INodeFile file = new INodeFile(PERMISSIONS, 0, (short)1, 1, 0, 1024);
+    byte[] a = record("/file", file);
+    byte[] b = record("/file/dir", dir);
+    byte[] both = Arrays.copyOf(a, a.length + b.length);
+    System.arraycopy(b, 0, both, a.length, b.length);
+    assertMalformed(section(2, both));
+
+    // more records than the section holds
+    assertMalformed(section(2, a));
+
+    // a negative section length
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(1);
+    out.writeInt(-1);
+    out.flush();
+    assertMalformed(bytes.toByteArray());
+  }
+}
@@ -0,0 +1,215 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.protocol;
+
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+import org.apache.hadoop.hdfs.protocol.Block;
+import org.apache.hadoop.hdfs.server.common.StorageInfo;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.ipc.RemoteException;
+
+/**
+ * Tests that HeartbeatBatch and HeartbeatReplies read back what they
+ * write, and that they reject malformed input.
+ */
+public class TestHeartbeatBatch extends TestCase {
+
+  private static DatanodeRegistration registration(String name,
+                                                   StorageInfo info) {
+    DatanodeRegistration reg = new DatanodeRegistration(name);
+    reg.setStorageID("DS-" + name);
+    reg.setInfoPort(50075);
+    reg.setIpcPort(50020);
+    reg.storageInfo = info;
+    return reg;
+  }
+
+  private static DataInputBuffer write(Writable w) throws IOException {
+    DataOutputBuffer out = new DataOutputBuffer();
+    w.write(out);
+    DataInputBuffer in = new DataInputBuffer();
+    in.reset(out.getData(), out.getLength());
+    return in;
+  }
+
+  private static DataInputBuffer input(DataOutputBuffer out) {
+    DataInputBuffer in = new DataInputBuffer();
+    in.reset(out.getData(), out.getLength());
+    return in;
+  }
+
+  private static void assertHeartbeat(HeartbeatBatch expected, int i,
+                                      HeartbeatBatch actual, int j) {
+    DatanodeRegistration e = expected.getRegistration(i);
+    DatanodeRegistration a = actual.getRegistration(j);
+    assertEquals(e.getName(), a.getName());
+    assertEquals(e.getStorageID(), a.getStorageID());
+    assertEquals(e.getInfoPort(), a.getInfoPort());
+    assertEquals(e.getIpcPort(), a.getIpcPort());
+    assertEquals(e.storageInfo.getLayoutVersion(),
+                 a.storageInfo.getLayoutVersion());
+    assertEquals(e.storageInfo.getNamespaceID(),
+                 a.storageInfo.getNamespaceID());
+    assertEquals(e.storageInfo.getCTime(), a.storageInfo.getCTime());
+    assertEquals(expected.getCapacity(i), actual.getCapacity(j));
+    assertEquals(expected.getDfsUsed(i), actual.getDfsUsed(j));
+    assertEquals(expected.getRemaining(i), actual.getRemaining(j));
+    assertEquals(expected.getXmitsInProgress(i), actual.getXmitsInProgress(j));
+    assertEquals(expected.getXceiverCount(i), actual.getXceiverCount(j));
+  }
+
+  private static HeartbeatBatch sampleBatch() {
+    StorageInfo info = new StorageInfo(-18, 1234, 0);
+    HeartbeatBatch batch = new HeartbeatBatch(4);
+    batch.add(registration("h1:50010", info), 100L << 30, 1L << 30,
+              99L << 30, 0, 1);
+    // the same storage info is only written once
+    batch.add(registration("h2:50010", new StorageInfo(info)), 200L << 30,
+              0, 200L << 30, 2, 3);
+    batch.add(registration("h3:50010", new StorageInfo(-18, 1234, 5)),
+              1, 1, 0, 0, 0);
+    batch.add(registration("h4:50010", info), 0, 0, 0, 0, 0);
+    return batch;
+  }
+
+  public void testBatch() throws IOException {
+    HeartbeatBatch batch = sampleBatch();
+    HeartbeatBatch read = new HeartbeatBatch();
+    read.readFields(write(batch));
+    assertEquals(batch.size(), read.size());
+    for (int i = 0; i < batch.size(); i++) {
+      assertHeartbeat(batch, i, read, i);
+    }
+
+    // reading again replaces the heartbeats read before
+    read.readFields(write(new HeartbeatBatch(1)));
+    assertEquals(0, read.size());
+  }
+
+  public void testSubset() throws IOException {
+    HeartbeatBatch batch = sampleBatch();
+    HeartbeatBatch subset = batch.subset(
+        new boolean[] {false, true, false, true});
+    assertEquals(2, subset.size());
+    HeartbeatBatch read = new HeartbeatBatch();
+    read.readFields(write(subset));
+    assertHeartbeat(batch, 1, read, 0);
+    assertHeartbeat(batch, 3, read, 1);
+  }
+
+  public void testBadBatch() throws IOException {
+    DataOutputBuffer out = new DataOutputBuffer();
+    WritableUtils.writeVInt(out, -1);
+    try {
+      new HeartbeatBatch().readFields(input(out));
+      fail("Read a negative number of heartbeats");
+    } catch (IOException e) {
+      // expected
+    }
+
+    out = new DataOutputBuffer();
+    WritableUtils.writeVInt(out, 1);
+    Text.writeString(out, "h1:50010");
+    Text.writeString(out, "DS-h1");
+    WritableUtils.writeVInt(out, 50075);
+    WritableUtils.writeVInt(out, 50020);
+    out.writeBoolean(true);
+    try {
+      new HeartbeatBatch().readFields(input(out));
+      fail("Repeated a storage info never read");
+    } catch (IOException e) {
+      // expected
+    }
+
+    // more heartbeats than the input holds
+    out = new DataOutputBuffer();
+    sampleBatch().write(out);
+    out.getData()[0] = 5;
+    try {
+      new HeartbeatBatch().readFields(input(out));
+      fail("Read a truncated batch");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  public void testReplies() throws IOException {
+    BlockCommand invalidate = new BlockCommand(DatanodeProtocol.DNA_INVALIDATE,
+        new Block[] {new Block(1, 2, 3), new Block(4, 5, 6)});
+    DatanodeCommand[] commands = {null, invalidate, DatanodeCommand.REGISTER,
+                                  null};
+    IOException[] errors = {null, null, null,
+                            new IOException("Unknown datanode")};
+    HeartbeatReplies read = new HeartbeatReplies();
+    read.readFields(write(new HeartbeatReplies(commands, errors)));
+    assertEquals(4, read.size());
+    assertNull(read.getCommand(0));
+    BlockCommand cmd = (BlockCommand) read.getCommand(1);
+    assertEquals(DatanodeProtocol.DNA_INVALIDATE, cmd.getAction());
+    assertEquals(2, cmd.getBlocks().length);
+    assertEquals(new Block(4, 5, 6), cmd.getBlocks()[1]);
+    assertEquals(DatanodeProtocol.DNA_REGISTER, read.getCommand(2).getAction());
+    try {
+      read.getCommand(3);
+      fail("Returned the command of a failed heartbeat");
+    } catch (RemoteException e) {
+      assertEquals(IOException.class.getName(), e.getClassName());
+      assertEquals("Unknown datanode", e.getMessage());
+    }
+  }
+
+  private static void assertBadReplies(DataOutputBuffer out) {
+    try {
+      new HeartbeatReplies().readFields(input(out));
+      fail("Read malformed replies");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  public void testBadReplies() throws IOException {
+    DataOutputBuffer out = new DataOutputBuffer();
+    WritableUtils.writeVInt(out, -1);
+    assertBadReplies(out);
+
+    out = new DataOutputBuffer();
+    WritableUtils.writeVInt(out, 1);
+    out.writeByte(3);
+    assertBadReplies(out);
+
+    out = new DataOutputBuffer();
+    WritableUtils.writeVInt(out, 1);
+    out.writeByte(1);
+    Text.writeString(out, "org.apache.hadoop.NoSuchCommand");
+    assertBadReplies(out);
+
+    // a class that is not a command
+    out = new DataOutputBuffer();
+    WritableUtils.writeVInt(out, 1);
+    out.writeByte(1);
+    Text.writeString(out, Block.class.getName());
+    assertBadReplies(out);
+  }
+}
@@ -0,0 +1,181 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.protocol;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.apache.hadoop.hdfs.protocol.Block;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.WritableUtils;
+
+/**
+ * Tests that ReceivedBlocks reads back what it writes, and that it
+ * rejects malformed input.
+ */
+public class TestReceivedBlocks extends TestCase {
+
+  private static DataInputBuffer input(DataOutputBuffer out) {
+    DataInputBuffer in = new DataInputBuffer();
+    in.reset(out.getData(), out.getLength());
+    return in;
+  }
+
+  private static DataInputBuffer write(ReceivedBlocks blocks)
+      throws IOException {
+    DataOutputBuffer out = new DataOutputBuffer();
+    blocks.write(out);
+    return input(out);
+  }
+
+  private static Block block(long id, byte[] hash, byte[] addedHash) {
+    Block b = new Block(id, id * 1024, 1000 + id);
+    b.setHash(hash);
+    b.setAddedHash(addedHash);
+    return b;
+  }
+
+  private static void assertBlocks(Block[] blocks, String[] hints,
+                                   ReceivedBlocks read) {
+    assertEquals(blocks.length, read.size());
+    for (int i = 0; i < blocks.length; i++) {
+      Block b = read.getBlock(i);
+      assertEquals(blocks[i], b);
+      assertEquals(blocks[i].getNumBytes(), b.getNumBytes());
+      assertTrue(Arrays.equals(blocks[i].getHash(), b.getHash()));
+      assertTrue(Arrays.equals(blocks[i].getAddedHash(), b.getAddedHash()));
+      assertEquals(hints[i] == null ? "" : hints[i], read.getDelHint(i));
+    }
+  }
+
+  public void testRoundTrip() throws IOException {
+    // more blocks than the initial capacity, so the list grows
+    Block[] blocks = new Block[20];
+    String[] hints = new String[blocks.length];
+    ReceivedBlocks received = new ReceivedBlocks(2);
+    for (int i = 0; i < blocks.length; i++) {
+      blocks[i] = block(i, i % 2 == 0 ? new byte[] {(byte) i, 1, 2} : null,
+                        i % 3 == 0 ? new byte[] {(byte) -i} : null);
+      hints[i] = i % 4 == 0 ? null : i % 4 == 1 ? "" : "h" + (i % 4) + ":50010";
+      received.add(blocks[i], hints[i]);
+    }
+    ReceivedBlocks read = new ReceivedBlocks(1);
+    read.readFields(write(received));
+    assertBlocks(blocks, hints, read);
+  }
+
+  public void testRepeatedHints() throws IOException {
+    ReceivedBlocks repeated = new ReceivedBlocks();
+    repeated.add(block(1, null, null), "h1:50010");
+    repeated.add(block(2, null, null), "h1:50010");
+    ReceivedBlocks empty = new ReceivedBlocks();
+    empty.add(block(1, null, null), "h1:50010");
+    empty.add(block(2, null, null), null);
+    // a repeated hint costs no more than an empty one
+    DataOutputBuffer out = new DataOutputBuffer();
+    repeated.write(out);
+    int length = out.getLength();
+    out.reset();
+    empty.write(out);
+    assertEquals(out.getLength(), length);
+
+    ReceivedBlocks read = new ReceivedBlocks();
+    read.readFields(write(repeated));
+    assertEquals("h1:50010", read.getDelHint(1));
+  }
+
+  public void testClear() throws IOException {
+    ReceivedBlocks received = new ReceivedBlocks();
+    for (int i = 0; i < 10; i++) {
+      received.add(block(i, new byte[] {1}, null), "h:50010");
+    }
+    received.clear();
+    assertEquals(0, received.size());
+    Block[] blocks = {block(42, null, new byte[] {2, 3})};
+    String[] hints = {"other:50010"};
+    received.add(blocks[0], hints[0]);
+    assertBlocks(blocks, hints, received);
+
+    // reading into a used list drops what it held
+    ReceivedBlocks read = new ReceivedBlocks();
+    read.add(block(7, null, null), "h:50010");
+    read.add(block(8, null, null), "h:50010");
+    read.readFields(write(received));
+    assertBlocks(blocks, hints, read);
+  }
+
+  private static void assertMalformed(DataOutputBuffer out) {
+    try {
+      new ReceivedBlocks().readFields(input(out));
+      fail("Read malformed received blocks");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  // the fields of one block up to its hashes
+  private static DataOutputBuffer header(long size) throws IOException {
+    DataOutputBuffer out = new DataOutputBuffer();
+    WritableUtils.writeVInt(out, 1);
+    out.writeLong(1);
+    WritableUtils.writeVLong(out, size);
+    WritableUtils.writeVLong(out, 1000);
+    return out;
+  }
+
+  public void testMalformed() throws IOException {
+    DataOutputBuffer out = new DataOutputBuffer();
+    WritableUtils.writeVInt(out, -1);
+    assertMalformed(out);
+
+    assertMalformed(header(-1));
+
+    out = header(1024);
+    WritableUtils.writeVInt(out, -2);
+    assertMalformed(out);
+
+    // a hint referring to itself
+    out = header(1024);
+    WritableUtils.writeVInt(out, 0);
+    WritableUtils.writeVInt(out, 0);
+    WritableUtils.writeVInt(out, 1);
+    assertMalformed(out);
+
+    out = header(1024);
+    WritableUtils.writeVInt(out, 0);
+    WritableUtils.writeVInt(out, 0);
+    WritableUtils.writeVInt(out, -2);
+    assertMalformed(out);
+
+    // a hash cut short
+    out = header(1024);
+    WritableUtils.writeVInt(out, 16);
+    out.writeLong(0);
+    assertMalformed(out);
+
+    // a hint cut short
+    out = header(1024);
+    WritableUtils.writeVInt(out, 0);
+    WritableUtils.writeVInt(out, 0);
+    WritableUtils.writeVInt(out, -1);
+    assertMalformed(out);
+  }
+}
@@ -106,10 +106,93 @@ public class ZKClientGlue implements ClientGlueInterface {
 		zlt.start();
 	}
 	
+	/**
+	 * Execute several ZooKeeper packets as one BFT request. The client
+	 * shim allows a single outstanding request per client, so packets
+	 * that the ZooKeeper client pipelined while the previous request
+	 * was in flight are concatenated (each packet keeps its length
+	 * header) and the replicas answer with the concatenated replies in
+	 * the same order.
+	 */
+	public void handleBatch(List<byte[]> frames) {
+		if (frames.size() == 1) {
+			handleBytes(frames.get(0));
+			return;
+		}
+		int size = 0;
+		boolean readonly = true;
+		int[] xids = new int[frames.size()];
+		for (int i = 0; i < frames.size(); i++) {
+			byte[] f = frames.get(i);
+			size += f.length;
+			readonly = readonly && isReadonly(f);
+			xids[i] = ByteBuffer.wrap(f, 4, 4).getInt();
+		}
+		byte[] request = new byte[size];
+		int offset = 0;
+		for (byte[] f : frames) {
+			System.arraycopy(f, 0, request, offset, f.length);
+			offset += f.length;
+		}
+		byte[] result = null;
+		if (!readonly)
+			result = csbn.execute(request);
+		else
+			result = csbn.executeReadOnlyRequest(request);
+		if (!matchReplies(xids, result)) {
+			// The client cannot match these replies to its pending
+			// requests, so drop the connection and let it reconnect
+			System.err.println("Replies do not match the xids of a batch of "
+					+ xids.length + " requests, closing the connection");
+			try {
+				network.closeConn();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			return;
+		}
+		network.send(result);
+	}
+
+	/**
+	 * Check that the reply frames in result answer the requests with the
+	 * given xids, in order
+	 */
+	private boolean matchReplies(int[] xids, byte[] result) {
+		ByteBuffer bb = ByteBuffer.wrap(result);
+		int i = 0;
+		while (bb.remaining() >= 8) {
+			int len = bb.getInt(bb.position());
+			if (i >= xids.length || bb.getInt(bb.position() + 4) != xids[i])
+				return false;
+			bb.position(bb.position() + 4 + len);
+			i++;
+		}
+		return i == xids.length && !bb.hasRemaining();
+	}
+
+	/**
+	 * Connect requests (the only 48 byte packets, as on the server) and
+	 * closeSession requests change the session itself, so they are never
+	 * batched with other packets.
+	 */
+	public static boolean mustSendAlone(byte[] frame) {
+		if (isConnectRequest(frame))
+			return true;
+		return frame.length >= 12 && ByteBuffer.wrap(frame, 8, 4).getInt() == -11;
+	}
+
+	private static boolean isConnectRequest(byte[] frame) {
+		return frame.length == 48 && ByteBuffer.wrap(frame).getInt() == 44;
+	}
+
 	public void handleBytes(byte[] bytes) {
 		byte[] result = null;
 		//System.out.println("request:");
 		//BFT.util.UnsignedTypes.printBytes(bytes);		
+		// the replicas number the events of a new connection from 0
+		if (isConnectRequest(bytes))
+			csbn.resetEvents();
 		if(!isReadonly(bytes))
 			result = csbn.execute(bytes);
 		else
@@ -141,15 +224,21 @@ public class ZKClientGlue implements ClientGlueInterface {
 			if(replies[i]!=null)
 				return replies[i];*/
 		int endIndex=0;
-		long[] zxid = new long[replies.length];
 		for (int i = 0; i < replies.length; i++) {
 			if(replies[i]==null){
 				//System.out.println(i+" is null");
 				continue;
 			}
-			zxid[i] = ByteBuffer.wrap(replies[i], 8, 8).asLongBuffer().get();
-			for (int j = 8; j < 16; j++) {
-				replies[i][j] = 0;
+			// a reply may hold several frames; clear the zxid of each
+			int off = 0;
+			while (off + 16 <= replies[i].length) {
+				for (int j = off + 8; j < off + 16; j++) {
+					replies[i][j] = 0;
+				}
+				int len = ByteBuffer.wrap(replies[i], off, 4).getInt();
+				if (len < 0)
+					break;
+				off += 4 + len;
 			}
 		}
 		for (int i = 0; i < replies.length - 1; i++) {
@@ -197,16 +286,16 @@ class ZKNetwork {
 	private ServerSocketChannel serverChannel;
 	// The selector we'll be monitoring
 	private Selector selector;
-	// stores the available bytes on each socket
-	private Hashtable<SocketChannel, byte[]> storedBytes;
-	private ByteBuffer readBuffer = ByteBuffer.allocate(8192);
+	// frame decoder for each socket
+	private Hashtable<SocketChannel, ZKFrameDecoder> decoders;
+	private ByteBuffer readBuffer = ByteBuffer.allocate(65536);
 	BlockingQueue<byte[]> writeQueue = null;
 
 	public ZKNetwork(ZKClientGlue shim, int port) {
 		try {
 			this.cShim = shim;
 
-			storedBytes = new Hashtable<SocketChannel, byte[]>();
+			decoders = new Hashtable<SocketChannel, ZKFrameDecoder>();
 			writeQueue = new ArrayBlockingQueue<byte[]>(2048);
 
 			selector = SelectorProvider.provider().openSelector();
@@ -240,7 +329,12 @@ class ZKNetwork {
 		}
 	}
 
-	public void closeConn() throws IOException {
+	public synchronized void closeConn() throws IOException {
+		// replies still queued belong to the closed session
+		writeQueue.clear();
+		decoders.remove(socket);
+		if (sk != null)
+			sk.cancel();
 		socket.close();
 	}
 
@@ -339,90 +433,6 @@ class ZKNetwork {
 
 	}
 
-	/**
-	 * Handles raw bytes from the selector and calls handle(bytes) 
-	 * if necessary
-	 * 
-	 * @param bytes
-	 */
-	public Queue<byte[]> handleRawBytes(SocketChannel socket, byte[] bytes) {
-		//BFT.//Debug.println("I got "+bytes.length+" bytes");
-		 //System.out.println("Start of rawBytes "+System.currentTimeMillis());
-
-		Queue<byte[]> parsedMsgBytes = null;
-
-		//byte[] lengthBuf = UnsignedTypes.longToBytes((long)bytes.length);
-
-		if(!storedBytes.containsKey(socket)) {
-			storedBytes.put(socket, new byte[0]);
-		}
-		int target = 0;
-		byte[] existingBytes = (byte [])storedBytes.get(socket);
-		/*if(existingBytes.length > 0) {
-            BFT.//Debug.println("there are already "+existingBytes.length+" bytes for this socket");
-        }*/
-		byte[] newBytes = new byte[existingBytes.length+bytes.length];
-		System.arraycopy(existingBytes, 0, newBytes, 0, existingBytes.length);
-		System.arraycopy(bytes, 0, newBytes, existingBytes.length, bytes.length);
-
-		// CAUTION: I am hardcoding the number of bytes that constitute the length header
-
-		if(newBytes.length < 4) { // we still dont know the length
-			//////System.out.println("newBytes.length < 2. Do nothing");
-			storedBytes.put(socket, newBytes);
-		} else {    // we know the length of the message
-			byte[] lenBytes = new byte[4];
-			System.arraycopy(newBytes, 0, lenBytes, 0, 4);
-			int len = (int)UnsignedTypes.bytesToLong(lenBytes);
-			if(newBytes.length < 4+len) {       // MARKER change
-				////System.out.println("More than 2 bytes, but still not enough");
-				storedBytes.put(socket, newBytes);
-			} else {
-				////System.out.println("Enough bytes 2+("+len+")"+" and "+(newBytes.length-(2+len))+" restBytes");
-				//parsedMsgBytes = new HashSet<byte[]>();
-				byte[] dataBytes = new byte[len+4];
-				int rest = newBytes.length-(4+len);
-				byte[] restBytes = new byte[rest];
-				//byte[] marker = new byte[4];
-				System.arraycopy(newBytes, 0, dataBytes, 0, len+4);       // 0        to len+4
-				System.arraycopy(newBytes, 4+len, restBytes, 0, rest);  // len+4   to end
-				//System.out.println("COPY " + len+4 + " useful bytes");
-				//int markerInt = (int)UnsignedTypes.bytesToLong(marker);
-				// TLR 2009.1.23: Changed marker to be length of message
-				//if(markerInt != len) {
-					//System.out.println(myRole.toString() + " " + indexTable.get(socket));
-				//	BFT.Debug.kill(new RuntimeException("invalid marker"));
-				//}
-				parsedMsgBytes = new LinkedList<byte[]>();
-
-
-				parsedMsgBytes.add(dataBytes);
-				storedBytes.remove(socket);
-				////System.out.println("rest = "+rest+" restBytes.length = "+restBytes.length);
-				if(restBytes.length > 0) { // if there are more bytes there
-					////System.out.println("Calling handleRawBytes iteratively with "+restBytes.length+" bytes");
-
-					//System.out.println("RECUR " + restBytes.length + " more bytes");
-					// System.out.println("Start of handleBytes "+System.currentTimeMillis());
-					Queue<byte[]> tempSet = handleRawBytes(socket, restBytes);
-					// System.out.println("End of read "+System.currentTimeMillis());
-
-					if (tempSet != null) {
-						if (!tempSet.isEmpty()) {
-							parsedMsgBytes.addAll(tempSet);
-						} else {
-							throw new RuntimeException(
-							"This doesn't make sense");
-						}
-					}
-				}
-			}
-		}
-	 	//System.out.println("End of rawBytes "+System.currentTimeMillis());
-
-		return parsedMsgBytes;
-	}
-
 	public synchronized void accept(SelectionKey key) throws IOException {
 		ServerSocketChannel serverSocketChannel = (ServerSocketChannel) key.channel();
 
@@ -435,6 +445,7 @@ class ZKNetwork {
 		// we'd like to be notified when there's data waiting to be read
 		//System.out.println("Inside accept, direct register of OP_READ");
 		this.sk = this.socket.register(this.selector, SelectionKey.OP_WRITE|SelectionKey.OP_READ);
+		decoders.put(this.socket, new ZKFrameDecoder());
 		
 	}
 
@@ -456,6 +467,7 @@ class ZKNetwork {
 			// The remote forcibly closed the connection, cancel
 			// the selection key and close the channel.
 			System.out.println("Exception in socketChannel.read");
+			decoders.remove(socketChannel);
 			key.cancel();
 			socketChannel.close();
 			return null;
@@ -465,23 +477,21 @@ class ZKNetwork {
 			// Remote entity shut the socket down cleanly. Do the
 			// same from our end and cancel the channel.
 			System.out.println("Clean shutdown from ZK glue");
+			decoders.remove(socketChannel);
 			key.channel().close();
 			key.cancel();
 			return null;
 		}
-		//System.out.println("before processData");
-		// Hand the data off to our worker thread
-		byte[] arr = readBuffer.array();
-		//System.out.println("Arr");
-		//BFT.util.UnsignedTypes.printBytes(arr);
-		//BFT.//Debug.println("position="+readBuffer.position()+" numRead="+numRead);
-		byte[] dataCopy = new byte[numRead];
-		System.arraycopy(arr, 0, dataCopy, 0, numRead);
-		//System.out.println("READ " + numRead);
-
-		Queue<byte[]> tempSet = handleRawBytes(socketChannel, dataCopy);
-		 //System.out.println("End of read "+System.currentTimeMillis());
-		return tempSet;
+		// Cut complete frames straight out of the read buffer
+		readBuffer.flip();
+		ZKFrameDecoder decoder = decoders.get(socketChannel);
+		if (decoder == null) {
+			decoder = new ZKFrameDecoder();
+			decoders.put(socketChannel, decoder);
+		}
+		Queue<byte[]> tempSet = new LinkedList<byte[]>();
+		decoder.decode(readBuffer, tempSet);
+		return tempSet.isEmpty() ? null : tempSet;
 	}
 
 }
@@ -511,7 +521,46 @@ class ZKListener implements Runnable {
 	}
 }
 
+/**
+ * Splits a ZooKeeper byte stream into length prefixed frames. Bytes are
+ * copied once, from the socket read buffer into the frame they belong to.
+ */
+class ZKFrameDecoder {
+	private byte[] header = new byte[4];
+	private int headerRead = 0;
+	private byte[] frame = null;
+	private int frameRead = 0;
+
+	public void decode(ByteBuffer buf, Queue<byte[]> out) {
+		while (buf.hasRemaining()) {
+			if (frame == null) {
+				int n = Math.min(4 - headerRead, buf.remaining());
+				buf.get(header, headerRead, n);
+				headerRead += n;
+				if (headerRead < 4)
+					return;
+				int len = (int)UnsignedTypes.bytesToLong(header);
+				frame = new byte[len + 4];
+				System.arraycopy(header, 0, frame, 0, 4);
+				frameRead = 4;
+				headerRead = 0;
+			}
+			int n = Math.min(frame.length - frameRead, buf.remaining());
+			buf.get(frame, frameRead, n);
+			frameRead += n;
+			if (frameRead == frame.length) {
+				out.add(frame);
+				frame = null;
+			}
+		}
+	}
+}
+
 class ZKWorker implements Runnable {
+	// upper bounds on the packets and bytes sent in one BFT request
+	public static final int MAX_BATCH = 128;
+	public static final int MAX_BATCH_BYTES = 32768;
+
 	ZKClientGlue glue;
 	protected BlockingQueue<byte[]> queue;
 
@@ -523,15 +572,31 @@ class ZKWorker implements Runnable {
 
 	public void run() {
 
+		ArrayList<byte[]> batch = new ArrayList<byte[]>();
 		while(true) {
 			byte[] bytes = null;
 			try {
 				bytes = queue.poll(10, TimeUnit.MILLISECONDS);
 			} catch (InterruptedException e) {
 			}
-			if(bytes != null) {
-				glue.handleBytes(bytes);
+			if(bytes == null)
+				continue;
+			batch.add(bytes);
+			// Everything the client sent while the last request was in
+			// flight goes out together, in arrival order.
+			int size = bytes.length;
+			if (!ZKClientGlue.mustSendAlone(bytes)) {
+				byte[] next;
+				while (batch.size() < MAX_BATCH
+				       && (next = queue.peek()) != null
+				       && !ZKClientGlue.mustSendAlone(next)
+				       && size + next.length <= MAX_BATCH_BYTES) {
+					batch.add(queue.poll());
+					size += next.length;
+				}
 			}
+			glue.handleBatch(batch);
+			batch.clear();
 		}
 	}
 } 
@@ -0,0 +1,39 @@
+// $Id$
+
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.zookeeper.server;
+
+/**
+ * RequestProcessors are chained together to process transactions. Requests are
+ * always processed in order. The standalone server, follower, and leader all
+ * have slightly different RequestProcessors changed together.
+ * 
+ * Requests always move forward through the chain of RequestProcessors. Requests
+ * are passed to a RequestProcessor through processRequest(). Generally method
+ * will always be invoked by a single thread.
+ * 
+ * When shutdown is called, the request RequestProcessor should also shutdown
+ * any RequestProcessors that it is connected to.
+ */
+public interface RequestProcessor {
+    void processRequest(Request request);
+
+    void shutdown();
+}
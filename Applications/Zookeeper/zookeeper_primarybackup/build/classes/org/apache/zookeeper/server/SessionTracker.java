@@ -0,0 +1,60 @@
+// $Id$
+
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.zookeeper.server;
+
+import org.apache.zookeeper.KeeperException;
+
+/**
+ * This is the basic interface that ZooKeeperServer uses to track sessions. The
+ * standalone and leader ZooKeeperServer use the same SessionTracker. The
+ * FollowerZooKeeperServer uses a SessionTracker which is basically a simple
+ * shell to track information to be forwarded to the leader.
+ */
+public interface SessionTracker {
+    public static interface SessionExpirer {
+        public void expire(long sessionId);
+
+        public long getServerId();
+    }
+
+    long createSession(int sessionTimeout, long timestamp);
+
+    void addSession(long id, int to, long ttt, long timeout);
+
+    /**
+     * @param sessionId
+     * @param sessionTimeout
+     * @return false if session is no longer active
+     */
+    boolean touchSession(long sessionId, int sessionTimeout, long timestamp);
+
+    /**
+     * 
+     */
+    void shutdown();
+
+    /**
+     * @param sessionId
+     */
+    void removeSession(long sessionId);
+
+    void checkSession(long sessionId) throws KeeperException.SessionExpiredException;
+}
@@ -0,0 +1,78 @@
+// $Id$
+
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.zookeeper.server.quorum;
+
+import org.apache.zookeeper.ZooDefs;
+import org.apache.zookeeper.server.Request;
+import org.apache.zookeeper.server.RequestProcessor;
+import org.apache.zookeeper.server.SyncRequestProcessor;
+
+/**
+ * This RequestProcessor simply forwards requests to an AckRequestProcessor and
+ * SyncRequestProcessor.
+ */
+public class ProposalRequestProcessor implements RequestProcessor {
+    LeaderZooKeeperServer zks;
+
+    RequestProcessor nextProcessor;
+
+    SyncRequestProcessor syncProcessor;
+
+    public ProposalRequestProcessor(LeaderZooKeeperServer zks,
+            RequestProcessor nextProcessor) {
+        this.zks = zks;
+        this.nextProcessor = nextProcessor;
+        AckRequestProcessor ackProcessor = new AckRequestProcessor(zks.getLeader());
+        syncProcessor = new SyncRequestProcessor(zks, ackProcessor);
+    }
+
+    public void processRequest(Request request) {
+        // LOG.warn("Ack>>> cxid = " + request.cxid + " type = " +
+        // request.type + " id = " + request.sessionId);
+        // request.addRQRec(">prop");
+                
+        
+        /* In the following IF-THEN-ELSE block, we process syncs on the leader. 
+         * If the sync is coming from a follower, then the follower
+         * handler adds it to syncHandler. Otherwise, if it is a client of
+         * the leader that issued the sync command, then syncHandler won't 
+         * contain the handler. In this case, we add it to syncHandler, and 
+         * call processRequest on the next processor.
+         */
+        
+        if(request instanceof FollowerSyncRequest){
+            zks.getLeader().processSync((FollowerSyncRequest)request);
+        } else {
+                nextProcessor.processRequest(request);
+            if (request.hdr != null) {
+                // We need to sync and get consensus on any transactions
+                zks.getLeader().propose(request);
+                syncProcessor.processRequest(request);
+            }
+        }
+    }
+
+    public void shutdown() {
+        nextProcessor.shutdown();
+        syncProcessor.shutdown();
+    }
+
+}
@@ -0,0 +1,120 @@
+// $Id$
+
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.zookeeper.server.util;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.Map.Entry;
+
+import org.apache.log4j.Logger;
+
+import org.apache.jute.InputArchive;
+import org.apache.jute.OutputArchive;
+import org.apache.jute.Record;
+import org.apache.zookeeper.ZooDefs.OpCode;
+import org.apache.zookeeper.server.DataTree;
+import org.apache.zookeeper.server.SessionInfo;
+import org.apache.zookeeper.server.ZooTrace;
+import org.apache.zookeeper.txn.CreateSessionTxn;
+import org.apache.zookeeper.txn.CreateTxn;
+import org.apache.zookeeper.txn.DeleteTxn;
+import org.apache.zookeeper.txn.ErrorTxn;
+import org.apache.zookeeper.txn.SetACLTxn;
+import org.apache.zookeeper.txn.SetDataTxn;
+import org.apache.zookeeper.txn.TxnHeader;
+
+import BFT.Debug;
+
+public class SerializeUtils {
+    private static final Logger LOG = Logger.getLogger(SerializeUtils.class);
+    
+    public static Record deserializeTxn(InputArchive ia, TxnHeader hdr)
+            throws IOException {
+        hdr.deserialize(ia, "hdr");
+        Record txn = null;
+        switch (hdr.getType()) {
+        case OpCode.createSession:
+            // This isn't really an error txn; it just has the same
+            // format. The error represents the timeout
+            txn = new CreateSessionTxn();
+            break;
+        case OpCode.closeSession:
+            return null;
+        case OpCode.create:
+            txn = new CreateTxn();
+            break;
+        case OpCode.delete:
+            txn = new DeleteTxn();
+            break;
+        case OpCode.setData:
+            txn = new SetDataTxn();
+            break;
+        case OpCode.setACL:
+            txn = new SetACLTxn();
+            break;
+        case OpCode.error:
+            txn = new ErrorTxn();
+            break;
+        }
+        if (txn != null) {
+            txn.deserialize(ia, "txn");
+        }
+        return txn;
+    }
+
+    public static void deserializeSnapshot(DataTree dt,InputArchive ia,
+            Map<Long, SessionInfo> sessions) throws IOException {
+        int count = ia.readInt("count");
+        while (count > 0) {
+            long id = ia.readLong("id");
+            int to = ia.readInt("timeout");
+            long ttt = ia.readLong("timeToTimeout");
+            sessions.put(id, new SessionInfo(to,ttt));
+            System.out.println("Read session "+id+" "+to+" "+ttt);
+            ZooTrace.logTraceMessage(LOG, ZooTrace.SESSION_TRACE_MASK,
+                                     "loadData --- session in archive: " + id
+                                     + " with timeout: " + to);
+            count--;
+        }
+        dt.deserialize(ia, "tree");
+    }
+
+    public static void serializeSnapshot(DataTree dt,OutputArchive oa,
+            Map<Long, SessionInfo> sessions) throws IOException {
+        HashMap<Long, SessionInfo> sessSnap = new HashMap<Long, SessionInfo>(sessions);
+        //oa.writeInt(0, "count");
+        oa.writeInt(sessSnap.size(), "count");
+        TreeMap<Long, SessionInfo> sessSnapInOrder=new TreeMap<Long, SessionInfo>();
+        for (Entry<Long, SessionInfo> entry : sessSnap.entrySet()) {
+        	sessSnapInOrder.put(entry.getKey(), entry.getValue());
+        } 
+        for (Entry<Long, SessionInfo> entry : sessSnapInOrder.entrySet()) {
+            oa.writeLong(entry.getKey().longValue(), "id");
+            oa.writeInt(entry.getValue().timeout, "timeout");
+            oa.writeLong(entry.getValue().timeToTimeout, "timeToTimeout");
+            Debug.println("Write session "+entry.getKey().longValue()+" "+entry.getValue().timeout+" "+entry.getValue().timeToTimeout);
+        }     
+        dt.serialize(oa, "tree");
+    }
+
+}
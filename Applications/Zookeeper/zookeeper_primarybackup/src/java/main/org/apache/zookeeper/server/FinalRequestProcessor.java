@@ -62,6 +62,17 @@ public class FinalRequestProcessor implements RequestProcessor {
     }
 
     public void processRequest(Request request) {
+        try {
+            process(request);
+        } finally {
+            Factory scxn = zks.getServerCnxnFactory();
+            if (scxn != null) {
+                scxn.requestDone(request.info);
+            }
+        }
+    }
+
+    private void process(Request request) {
         //Debug.println("In Final Processing " + request);
         if (LOG.isDebugEnabled()) {
             LOG.debug("Processing request:: " + request);
@@ -116,6 +127,9 @@ public class FinalRequestProcessor implements RequestProcessor {
             }
         }
         if (request.cnxn == null && request.type != OpCode.takeCP) {
+            if (zks.getServerCnxnFactory() != null) {
+                zks.getServerCnxnFactory().skipReply(request.info);
+            }
             return;
         }
         // modified by iodine. decInProcess is executed later.
@@ -167,8 +181,10 @@ public class FinalRequestProcessor implements RequestProcessor {
                     ExistsRequest existsRequest = new ExistsRequest();
                     ZooKeeperServer.byteBuffer2Record(request.request,
                             existsRequest);
-                    if(existsRequest.getWatch()&&request.info.isReadonly())
-                    	return;
+                    if(existsRequest.getWatch()&&request.info.isReadonly()) {
+                        zks.getServerCnxnFactory().skipReply(request.info);
+                        return;
+                    }
                     String path = existsRequest.getPath();
                     if (path.indexOf('\0') != -1) {
                         throw new KeeperException.BadArgumentsException();
@@ -181,8 +197,10 @@ public class FinalRequestProcessor implements RequestProcessor {
                     GetDataRequest getDataRequest = new GetDataRequest();
                     ZooKeeperServer.byteBuffer2Record(request.request,
                             getDataRequest);
-                    if(getDataRequest.getWatch()&&request.info.isReadonly())
-                    	return;
+                    if(getDataRequest.getWatch()&&request.info.isReadonly()) {
+                        zks.getServerCnxnFactory().skipReply(request.info);
+                        return;
+                    }
                     DataNode n = zks.dataTree.getNode(getDataRequest.getPath());
                     if (n == null) {
                         throw new KeeperException.NoNodeException();
@@ -219,8 +237,10 @@ public class FinalRequestProcessor implements RequestProcessor {
                     GetChildrenRequest getChildrenRequest = new GetChildrenRequest();
                     ZooKeeperServer.byteBuffer2Record(request.request,
                             getChildrenRequest);
-                    if(getChildrenRequest.getWatch()&&request.info.isReadonly())
-                    	return;
+                    if(getChildrenRequest.getWatch()&&request.info.isReadonly()) {
+                        zks.getServerCnxnFactory().skipReply(request.info);
+                        return;
+                    }
                     stat = new Stat();
                     n = zks.dataTree.getNode(getChildrenRequest.getPath());
                     if (n == null) {
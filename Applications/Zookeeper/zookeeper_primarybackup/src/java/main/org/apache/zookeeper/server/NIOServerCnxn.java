@@ -42,6 +42,7 @@ import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Hashtable;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
@@ -82,6 +83,18 @@ public class NIOServerCnxn implements Watcher, ServerCnxn, Record {
 
 		int outstandingLimit = 1;
 
+		// Requests from the client glue that carry several packets, and the
+		// replies collected for them so far
+		IdentityHashMap<RequestInfo, ReplyBatch> replyBatches = new IdentityHashMap<RequestInfo, ReplyBatch>();
+
+		// When set, the watch events triggered while executing a batch are
+		// sent to each client as one message instead of one per event.
+		// Every replica must use the same setting.
+		boolean batchEvents = !System.getProperty("zookeeper.batchEvents",
+				"yes").equals("no");
+		// clientId -> events buffered for that client
+		TreeMap<Integer, EventBatch> pendingEvents = new TreeMap<Integer, EventBatch>();
+
 		// This is a temp field to transfer information from Factory to
 		// ZooKeeperServer
 		long nextSessionId = -1;
@@ -181,7 +194,7 @@ public class NIOServerCnxn implements Watcher, ServerCnxn, Record {
 			lastSeqNo = info.getSeqNo();
 			//System.out.println("ZK exec "+info+" inLoadLog="+inLoadLog);
 			try {
-				if (request.length == 48
+				if (isConnectRequest(request)
 						&& cnxns.containsKey(info.getClientId())) {
 					long sessionId = cnxns.get(info.getClientId())
 							.getSessionId();
@@ -265,6 +278,18 @@ public class NIOServerCnxn implements Watcher, ServerCnxn, Record {
 			this.inLoadLog = false;
 		}*/
 
+		/**
+		 * Collect the replies to a request carrying count packets and
+		 * deliver them as one concatenated reply
+		 */
+		void expectReplies(RequestInfo info, int count) {
+			if (isBackup)
+				return;
+			synchronized (replyBatches) {
+				replyBatches.put(info, new ReplyBatch(count));
+			}
+		}
+
 		public void enqueueReply(long watchSeqNo,
 				ByteBuffer data, int clientId, RequestInfo info) {
 			// If info is null, then this is a watcher event without request.
@@ -272,11 +297,23 @@ public class NIOServerCnxn implements Watcher, ServerCnxn, Record {
 				return;
 			//System.out.println("ZK exec done "+info);
 			if(info!=null){
-				if(info.isReadonly())
-					gcp.execReadonlyDone(data.array(), info.getClientId(), info
-							.getRequestId());
-				else
-					gcp.execDone(data.array(), info);
+				// A client must see the events triggered before a reply
+				// ahead of that reply. Read-only requests are not
+				// ordered, so they do not cut batches: the events go out
+				// with the batch they were triggered in
+				if (!info.isReadonly())
+					flushEvents(info.getClientId());
+				deliver(data.array(), info);
+			}
+			else if (batchEvents) {
+				synchronized (pendingEvents) {
+					EventBatch events = pendingEvents.get(clientId);
+					if (events == null) {
+						events = new EventBatch(watchSeqNo);
+						pendingEvents.put(clientId, events);
+					}
+					events.add(data.array());
+				}
 			}
 			else{
 				//throw new RuntimeException("Watcher Not Implemented Yet");
@@ -284,6 +321,89 @@ public class NIOServerCnxn implements Watcher, ServerCnxn, Record {
 			}
 		}
 
+		/**
+		 * Account for a packet of info that ends without a reply, so a
+		 * request carrying several packets still completes
+		 */
+		/**
+		 * Answer a request that was not executed with an empty reply, so
+		 * that a checkpoint waiting for it still completes
+		 */
+		void rejectRequest(RequestInfo info) {
+			if (isBackup)
+				return;
+			deliver(new byte[0], info);
+		}
+
+		public void skipReply(RequestInfo info) {
+			if (isBackup || info == null)
+				return;
+			deliver(null, info);
+		}
+
+		private void deliver(byte[] reply, RequestInfo info) {
+			ReplyBatch batch;
+			synchronized (replyBatches) {
+				batch = replyBatches.get(info);
+			}
+			if (batch != null) {
+				reply = batch.add(reply);
+				if (reply == null)
+					return;
+				synchronized (replyBatches) {
+					replyBatches.remove(info);
+				}
+			} else if (reply == null) {
+				// a single packet without a reply
+				return;
+			}
+			if(info.isReadonly())
+				gcp.execReadonlyDone(reply, info.getClientId(), info
+						.getRequestId());
+			else
+				gcp.execDone(reply, info);
+		}
+
+		/**
+		 * Called once a request has been processed. Events are sent at
+		 * the end of each ordered batch, and right after a request that
+		 * no client sent, such as the expiry of a session, so that the
+		 * batches are cut at the same points on every replica and an
+		 * event never waits for a later batch.
+		 */
+		void requestDone(RequestInfo info) {
+			if (info == null || info.isLastReqInBatch())
+				flushEvents();
+		}
+
+		/**
+		 * Send the buffered events of every client, in client order
+		 */
+		void flushEvents() {
+			TreeMap<Integer, EventBatch> tmp;
+			synchronized (pendingEvents) {
+				if (pendingEvents.isEmpty())
+					return;
+				tmp = new TreeMap<Integer, EventBatch>(pendingEvents);
+				pendingEvents.clear();
+			}
+			for (Integer clientId : tmp.keySet()) {
+				EventBatch events = tmp.get(clientId);
+				gcp.sendEventBatch(events.getBytes(), clientId,
+						events.firstEventId, events.count);
+			}
+		}
+
+		void flushEvents(int clientId) {
+			EventBatch events;
+			synchronized (pendingEvents) {
+				events = pendingEvents.remove(clientId);
+			}
+			if (events != null)
+				gcp.sendEventBatch(events.getBytes(), clientId,
+						events.firstEventId, events.count);
+		}
+
 		public void syncDone(String fileName) {
 			System.out.println("ZK syncDone");
 			gcp.syncDone(fileName);
@@ -339,6 +459,76 @@ public class NIOServerCnxn implements Watcher, ServerCnxn, Record {
 		}
 	}
 
+	/**
+	 * Replies to the packets of one request, kept in the order they are
+	 * produced, which is the order of the packets within the session. A
+	 * packet that ends without a reply adds null, so the batch completes
+	 * once every packet is accounted for; the client glue then finds
+	 * fewer replies than packets.
+	 */
+	static class ReplyBatch {
+		private byte[][] replies;
+		private int received = 0;
+		private int size = 0;
+
+		ReplyBatch(int count) {
+			replies = new byte[count][];
+		}
+
+		/**
+		 * Add a reply, or null for none. Returns the concatenation of all
+		 * replies once the last packet is accounted for, null before that.
+		 */
+		synchronized byte[] add(byte[] reply) {
+			replies[received++] = reply;
+			if (reply != null)
+				size += reply.length;
+			if (received < replies.length)
+				return null;
+			byte[] all = new byte[size];
+			int offset = 0;
+			for (byte[] r : replies) {
+				if (r == null)
+					continue;
+				System.arraycopy(r, 0, all, offset, r.length);
+				offset += r.length;
+			}
+			return all;
+		}
+	}
+
+	/**
+	 * Watch events for one client waiting to be sent together. Events of
+	 * a connection are numbered consecutively by watchSeqNo.
+	 */
+	static class EventBatch {
+		long firstEventId;
+		int count = 0;
+		private ByteArrayOutputStream events = new ByteArrayOutputStream();
+
+		EventBatch(long firstEventId) {
+			this.firstEventId = firstEventId;
+		}
+
+		void add(byte[] event) {
+			events.write(event, 0, event.length);
+			count++;
+		}
+
+		byte[] getBytes() {
+			return events.toByteArray();
+		}
+	}
+
+	/**
+	 * A connect request is the only packet without a request header, and
+	 * it is always 48 bytes long with its length prefix.
+	 */
+	static boolean isConnectRequest(byte[] request) {
+		return request.length == 48
+				&& ByteBuffer.wrap(request).getInt() == 44;
+	}
+
 	/**
 	 * The buffer will cause the connection to be close when we do a send.
 	 */
@@ -428,7 +618,55 @@ public class NIOServerCnxn implements Watcher, ServerCnxn, Record {
 
 	public void execRequest(byte[] request, RequestInfo info)
 			throws IOException, InterruptedException {
-		incomingBuffer = ByteBuffer.wrap(request, 4, request.length - 4);
+		ByteBuffer bb = ByteBuffer.wrap(request);
+		int count = countPackets(bb);
+		if (count < 0) {
+			// Every replica rejects the same request, so they stay in step
+			LOG.warn("Rejecting a request with malformed packet lengths from client "
+					+ clientId);
+			factory.rejectRequest(info);
+			return;
+		}
+		if (count > 1) {
+			// The client glue pipelined several length prefixed packets
+			// into this request. Execute them in order and reply once.
+			factory.expectReplies(info, count);
+			for (int off = 0; off < request.length; off += 4 + bb.getInt(off)) {
+				try {
+					execPacket(request, off, 4 + bb.getInt(off), info);
+				} catch (IOException e) {
+					LOG.warn("Dropping a malformed packet of a batch", e);
+					factory.skipReply(info);
+				}
+			}
+			return;
+		}
+		execPacket(request, 0, request.length, info);
+	}
+
+	/**
+	 * Count the length prefixed packets of a request, or return -1 if
+	 * they do not exactly cover it.
+	 */
+	private static int countPackets(ByteBuffer bb) {
+		int count = 0;
+		int off = 0;
+		int end = bb.limit();
+		while (off < end) {
+			if (end - off < 4)
+				return -1;
+			int len = bb.getInt(off);
+			if (len < 0 || len > end - off - 4)
+				return -1;
+			off += 4 + len;
+			count++;
+		}
+		return count == 0 ? -1 : count;
+	}
+
+	private void execPacket(byte[] request, int offset, int length,
+			RequestInfo info) throws IOException, InterruptedException {
+		incomingBuffer = ByteBuffer.wrap(request, offset + 4, length - 4);
 		// This is a duplicated connect request
 		// System.out.println("Initialized "+this+" ="+initialized);
 		if (!initialized) {
@@ -621,6 +859,7 @@ public class NIOServerCnxn implements Watcher, ServerCnxn, Record {
 		//	System.out.println("sendResponse:"+info+"zxid="+h.getZxid());
 		//}
 		if (closed) {
+			factory.skipReply(info);
 			return;
 		}
 		ByteArrayOutputStream baos = new ByteArrayOutputStream();
@@ -3,6 +3,7 @@ package Applications.hashtable;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.Random;
 import java.util.StringTokenizer;
 
 import BFT.clientShim.ClientShimBaseNode;
@@ -38,9 +39,68 @@ public class HTClient{
                 return rep.getData();
 	}
 	
+	// Binary requests understood by ShardedHTServer
+	public void writeBytes(String key, byte[] value){
+		byte[] replyBytes = clientShim.execute(HTCodec.encodeRequest(HTRequest.WRITE, key, value));
+		if(replyBytes[0] != HTCodec.OK){
+			throw new RuntimeException("Write failed");
+		}
+	}
+
+	public HTRecord readBytes(String key, boolean readonly){
+		byte[] req = HTCodec.encodeRequest(HTRequest.READ, key, null);
+		byte[] replyBytes = readonly ? clientShim.executeReadOnlyRequest(req) : clientShim.execute(req);
+		return HTCodec.decodeReply(replyBytes);
+	}
+
+	// Closed-loop load generator against ShardedHTServer
+	public void runLoad(int ops, int keys, boolean zipfian, int valueSize, double readRatio, boolean readonly){
+		Random r = new Random();
+		ZipfianGenerator zipf = zipfian ? new ZipfianGenerator(keys, r) : null;
+		byte[] value = new byte[valueSize];
+		r.nextBytes(value);
+		long[] latency = new long[ops];
+		int reads = 0;
+		int misses = 0;
+		long start = System.nanoTime();
+		for(int i = 0; i < ops; i++){
+			String key = "k" + (zipf != null ? zipf.next() : r.nextInt(keys));
+			long opStart = System.nanoTime();
+			if(r.nextDouble() < readRatio){
+				if(readBytes(key, readonly) == null)
+					misses++;
+				reads++;
+			}else{
+				writeBytes(key, value);
+			}
+			latency[i] = System.nanoTime() - opStart;
+		}
+		long elapsed = System.nanoTime() - start;
+		java.util.Arrays.sort(latency);
+		System.out.println("ops="+ops+" reads="+reads+" misses="+misses
+				   +" throughput="+(ops * 1000000000L / Math.max(elapsed, 1))+"ops/s");
+		if(ops > 0){
+			System.out.println("latency(us) p50="+latency[ops/2]/1000
+					   +" p99="+latency[(int)(ops*0.99)]/1000
+					   +" max="+latency[ops-1]/1000);
+		}
+	}
+
 	public static void main(String[] args){
 		String membership=args[0];
 		int id=Integer.parseInt(args[1]);
+		if(args.length >= 7){
+			HTClient client=new HTClient(membership, id);
+			client.runLoad(Integer.parseInt(args[2]), Integer.parseInt(args[3]),
+				       args[4].equals("zipfian"), Integer.parseInt(args[5]),
+				       Double.parseDouble(args[6]),
+				       args.length == 8 && args[7].equals("readonly"));
+			System.exit(0);
+		}
+		if(args.length != 2){
+			System.out.println("Usage: java Applications.hashtable.HTClient <config_file> <id> [<ops> <keys> <uniform|zipfian> <value_size> <read_ratio> [readonly]]");
+			System.exit(0);
+		}
 		HTClient client=new HTClient(membership, id);
 		client.write("1",1);
 		DataUnit data=client.read("1");
@@ -0,0 +1,107 @@
+package Applications.hashtable;
+
+import java.io.UnsupportedEncodingException;
+
+// Compact binary encoding of hashtable requests and replies used by
+// ShardedHTServer, replacing Java serialization of HTRequest/HTReply.
+//
+// request: type(1) keyLen(2) key valueLen(4) value
+// reply:   status(1) [valueLen(4) value rand(8) timestamp(8)]
+public class HTCodec{
+	public static final byte OK = 0;
+	public static final byte NOT_FOUND = 1;
+
+	public static byte[] encodeRequest(byte type, String key, byte[] value){
+		byte[] k = toBytes(key);
+		int vlen = value == null ? 0 : value.length;
+		byte[] out = new byte[1 + 2 + k.length + 4 + vlen];
+		out[0] = type;
+		putShort(out, 1, k.length);
+		System.arraycopy(k, 0, out, 3, k.length);
+		putInt(out, 3 + k.length, vlen);
+		if(vlen > 0)
+			System.arraycopy(value, 0, out, 7 + k.length, vlen);
+		return out;
+	}
+
+	public static byte getType(byte[] req){
+		return req[0];
+	}
+
+	public static String getKey(byte[] req){
+		int len = getShort(req, 1);
+		try{
+			return new String(req, 3, len, "UTF-8");
+		}catch(UnsupportedEncodingException e){
+			throw new RuntimeException(e);
+		}
+	}
+
+	public static byte[] getValue(byte[] req){
+		int off = 3 + getShort(req, 1);
+		byte[] value = new byte[getInt(req, off)];
+		System.arraycopy(req, off + 4, value, 0, value.length);
+		return value;
+	}
+
+	public static byte[] encodeReply(HTRecord rec){
+		if(rec == null)
+			return new byte[]{NOT_FOUND};
+		byte[] value = rec.getValue();
+		byte[] out = new byte[1 + 4 + value.length + 16];
+		out[0] = OK;
+		putInt(out, 1, value.length);
+		System.arraycopy(value, 0, out, 5, value.length);
+		putLong(out, 5 + value.length, rec.getRandom());
+		putLong(out, 13 + value.length, rec.getTimestamp());
+		return out;
+	}
+
+	// Returns null if the reply reports a missing key
+	public static HTRecord decodeReply(byte[] rep){
+		if(rep[0] != OK)
+			return null;
+		int len = getInt(rep, 1);
+		byte[] value = new byte[len];
+		System.arraycopy(rep, 5, value, 0, len);
+		return new HTRecord(value, getLong(rep, 5 + len), getLong(rep, 13 + len), 0, null);
+	}
+
+	public static byte[] toBytes(String s){
+		try{
+			return s.getBytes("UTF-8");
+		}catch(UnsupportedEncodingException e){
+			throw new RuntimeException(e);
+		}
+	}
+
+	static void putShort(byte[] b, int off, int v){
+		b[off] = (byte)(v >>> 8);
+		b[off + 1] = (byte)v;
+	}
+
+	static int getShort(byte[] b, int off){
+		return ((b[off] & 0xff) << 8) | (b[off + 1] & 0xff);
+	}
+
+	static void putInt(byte[] b, int off, int v){
+		b[off] = (byte)(v >>> 24);
+		b[off + 1] = (byte)(v >>> 16);
+		b[off + 2] = (byte)(v >>> 8);
+		b[off + 3] = (byte)v;
+	}
+
+	static int getInt(byte[] b, int off){
+		return ((b[off] & 0xff) << 24) | ((b[off + 1] & 0xff) << 16)
+			| ((b[off + 2] & 0xff) << 8) | (b[off + 3] & 0xff);
+	}
+
+	static void putLong(byte[] b, int off, long v){
+		putInt(b, off, (int)(v >>> 32));
+		putInt(b, off + 4, (int)v);
+	}
+
+	static long getLong(byte[] b, int off){
+		return ((long)getInt(b, off) << 32) | (getInt(b, off + 4) & 0xffffffffL);
+	}
+}
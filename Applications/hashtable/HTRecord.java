@@ -0,0 +1,33 @@
+package Applications.hashtable;
+
+// Immutable value stored by ShardedHTServer. version is the write count
+// at which the record was written; prev holds the value visible to a
+// snapshot that is in progress when the record was overwritten.
+public class HTRecord{
+	private final byte[] value;
+	private final long rand;
+	private final long timestamp;
+	private final long version;
+	final HTRecord prev;
+
+	public HTRecord(byte[] value, long rand, long timestamp, long version, HTRecord prev){
+		this.value = value;
+		this.rand = rand;
+		this.timestamp = timestamp;
+		this.version = version;
+		this.prev = prev;
+	}
+
+	public byte[] getValue() { return value;}
+	public long getRandom() { return rand;}
+	public long getTimestamp() { return timestamp;}
+	public long getVersion() { return version;}
+
+	// Return the newest record in the chain written at or before version
+	public HTRecord at(long version){
+		HTRecord r = this;
+		while(r != null && r.version > version)
+			r = r.prev;
+		return r;
+	}
+}
@@ -10,28 +10,49 @@ import BFT.serverShim.ShimBaseNode;
 //The server class must implement the two interfaces
 public class HTServer implements AppCPInterface{
 
+	// Header of the binary snapshot format written in async sync mode
+	public static final int SNAPSHOT_MAGIC = 0x48545331;
+
 	// The hashtable. We use LinkedHashMap instead of HashMap, since the iteration of HashMap is nondeterministic.
 	LinkedHashMap<String, DataUnit> ht;
 	int writeCount=0;
 	CPAppInterface generalCP=null;
-   
+
+	// In async sync mode, sync() freezes ht and redirects writes to
+	// overlay until the background writer has serialized the frozen
+	// table. Writes in overlay are then folded back into ht in their
+	// insertion order, so the iteration order matches a plain put.
+	private boolean asyncSync = false;
+	private LinkedHashMap<String, DataUnit> overlay = null;
+	private long lastSyncStall = 0;
+
 
 	// Directories to store log and sync files.
 	private String syncDir=null;
 	private int id=0;
-    
+
 	public HTServer(String syncDir, int id) throws IOException {
+		this(syncDir, id, false);
+	}
+
+	public HTServer(String syncDir, int id, boolean asyncSync) throws IOException {
 		this.syncDir=syncDir+File.separator;
 		this.id=id;
+		this.asyncSync=asyncSync;
 		ht = new LinkedHashMap<String, DataUnit>();
 		File syncDir2 = new File(this.syncDir);
                 syncDir2.mkdirs();
 	}
-	
+
 	public void setGenCP(CPAppInterface cp) {
 		generalCP = cp;
 	}
-	
+
+	// Time in nanoseconds that execution was blocked by the last sync
+	public synchronized long getLastSyncStall() {
+		return lastSyncStall;
+	}
+
 	// Execute the request
 	@Override
 	public synchronized void execAsync(byte[] request, RequestInfo info) {
@@ -39,29 +60,46 @@ public class HTServer implements AppCPInterface{
 		HTReply rep = null;
 		String key = req.getKey();
 		if(req.getType() == HTRequest.READ){
-			if(ht.containsKey(key)){
-				rep = new HTReply(false, ht.get(key));
+			DataUnit data = get(key);
+			if(data != null){
+				rep = new HTReply(false, data);
 			}else{
 				rep = new HTReply(true, null);
 			}
 		} else {	// WRITE operation
 			DataUnit data=new DataUnit(req.getValue(), info.getRandom(), info.getTime());
-			ht.put(key, data);
+			if(overlay != null){
+				overlay.put(key, data);
+			}else{
+				ht.put(key, data);
+			}
 			writeCount++;
 			rep = new HTReply(false, null);
 		}
 		generalCP.execDone(Convert.objectToBytes(rep), info);
-		
+
+	}
+
+	private DataUnit get(String key){
+		if(overlay != null && overlay.containsKey(key)){
+			return overlay.get(key);
+		}
+		return ht.get(key);
 	}
 
 	@Override
 	public void execReadonly(byte[] request, int clientId, long requestId){
 		throw new RuntimeException("Not implemented");
 	}
-    
+
 	// Write all states into a snapshot file
 	@Override
 	public void sync() {
+		if(asyncSync){
+			asyncSync();
+			return;
+		}
+		long start = System.nanoTime();
         	try {
 			File syncFile=new File(this.syncDir+"ht_sync_"+writeCount);
             		ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(syncFile));
@@ -72,30 +110,121 @@ public class HTServer implements AppCPInterface{
 		catch (Exception e) {
             		e.printStackTrace();
         	}
+		synchronized(this){
+			lastSyncStall = System.nanoTime() - start;
+		}
+		System.out.println("SyncStall="+lastSyncStall/1000+"us entries="+ht.size());
         	generalCP.syncDone(this.syncDir+"ht_sync_"+writeCount);
     	}
 
-	// Load all states from a snapshot file 
+	// Freeze the current table and hand it to a background writer.
+	// Only the map swap happens on the execution thread.
+	private void asyncSync() {
+		SnapshotWriter writer;
+		synchronized(this){
+			long start = System.nanoTime();
+			while(overlay != null){
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					e.printStackTrace();
+				}
+			}
+			overlay = new LinkedHashMap<String, DataUnit>();
+			writer = new SnapshotWriter(ht, writeCount);
+			lastSyncStall = System.nanoTime() - start;
+		}
+		System.out.println("SyncStall="+lastSyncStall/1000+"us entries="+writer.table.size());
+		writer.start();
+	}
+
+	// Fold the writes made during a snapshot back into the main table
+	private synchronized void mergeOverlay() {
+		for(Map.Entry<String, DataUnit> e : overlay.entrySet()){
+			ht.put(e.getKey(), e.getValue());
+		}
+		overlay = null;
+		notifyAll();
+	}
+
+	private class SnapshotWriter extends Thread {
+		private LinkedHashMap<String, DataUnit> table;
+		private int count;
+
+		public SnapshotWriter(LinkedHashMap<String, DataUnit> table, int count){
+			this.table = table;
+			this.count = count;
+		}
+
+		public void run() {
+			String fileName = syncDir+"ht_sync_"+count;
+			long start = System.currentTimeMillis();
+			try {
+				DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName), 65536));
+				dos.writeInt(SNAPSHOT_MAGIC);
+				dos.writeInt(count);
+				dos.writeInt(table.size());
+				for(Map.Entry<String, DataUnit> e : table.entrySet()){
+					DataUnit data = e.getValue();
+					dos.writeUTF(e.getKey());
+					dos.writeInt(data.getValue());
+					dos.writeLong(data.getRandom());
+					dos.writeLong(data.getTimestamp());
+				}
+				dos.close();
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+			System.out.println("SyncWrite="+(System.currentTimeMillis()-start)+"ms entries="+table.size());
+			mergeOverlay();
+			generalCP.syncDone(fileName);
+		}
+	}
+
+	// Load all states from a snapshot file
 	@Override
 	public synchronized void loadSnapshot(String fileName) {
+		while(overlay != null){
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			}
+		}
 		try {
-			ObjectInputStream ois = new ObjectInputStream(new FileInputStream(fileName));
+			DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName)));
+			dis.mark(4);
+			if(dis.readInt() == SNAPSHOT_MAGIC){
+				writeCount = dis.readInt();
+				int size = dis.readInt();
+				LinkedHashMap<String, DataUnit> tmp = new LinkedHashMap<String, DataUnit>(size * 4 / 3 + 1);
+				for(int i = 0; i < size; i++){
+					String key = dis.readUTF();
+					tmp.put(key, new DataUnit(dis.readInt(), dis.readLong(), dis.readLong()));
+				}
+				ht = tmp;
+				dis.close();
+				return;
+			}
+			dis.reset();
+			ObjectInputStream ois = new ObjectInputStream(dis);
 			ht = (LinkedHashMap<String, DataUnit>) ois.readObject();
 			writeCount = ois.readInt();
+			ois.close();
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
-		
+
 	}
 
-	
-	
+
+
 	public static void main(String args[]) throws Exception{
-		if(args.length!=4){
-			System.out.println("Usage: java Applications.hashtable <id> <config_file> <log_path> <snapshot_path>");
+		if(args.length!=4 && args.length!=5){
+			System.out.println("Usage: java Applications.hashtable <id> <config_file> <log_path> <snapshot_path> [async]");
 		}
         	GeneralCP generalCP = new GeneralCP(Integer.parseInt(args[0]), args[1], args[2], args[3]);
-        	HTServer main = new HTServer(args[3],Integer.parseInt(args[0]));
+        	HTServer main = new HTServer(args[3],Integer.parseInt(args[0]), args.length == 5 && args[4].equals("async"));
         	main.setGenCP(generalCP);
         	generalCP.setupApplication(main);
 	}
@@ -0,0 +1,204 @@
+// $Id$
+package Applications.hashtable;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import BFT.generalcp.*;
+
+// Alternative hashtable server for measuring the BFT stack. Requests and
+// replies use HTCodec instead of Java serialization, the table is split
+// into ConcurrentHashMap shards so readonly requests never take a lock,
+// and snapshots are written by a background thread from versioned
+// records while execution continues.
+public class ShardedHTServer implements AppCPInterface{
+
+	public static final int SNAPSHOT_MAGIC = 0x48545332;
+	public static final int DEFAULT_SHARDS = 16;
+
+	private ConcurrentHashMap<String, HTRecord>[] shards;
+	// Only touched by the execution thread
+	private long writeCount = 0;
+	// Version being written by the snapshot thread, -1 if none
+	private volatile long snapshotVersion = -1;
+	private final Object snapshotLock = new Object();
+	private long lastSyncStall = 0;
+	CPAppInterface generalCP = null;
+
+	private String syncDir = null;
+	private int id = 0;
+
+	public ShardedHTServer(String syncDir, int id) throws IOException {
+		this(syncDir, id, DEFAULT_SHARDS);
+	}
+
+	public ShardedHTServer(String syncDir, int id, int shardCount) throws IOException {
+		this.syncDir = syncDir + File.separator;
+		this.id = id;
+		shards = new ConcurrentHashMap[shardCount];
+		for(int i = 0; i < shardCount; i++)
+			shards[i] = new ConcurrentHashMap<String, HTRecord>();
+		new File(this.syncDir).mkdirs();
+	}
+
+	public void setGenCP(CPAppInterface cp) {
+		generalCP = cp;
+	}
+
+	public long getLastSyncStall() {
+		synchronized(snapshotLock){
+			return lastSyncStall;
+		}
+	}
+
+	private ConcurrentHashMap<String, HTRecord> shardFor(String key){
+		return shards[(key.hashCode() & 0x7fffffff) % shards.length];
+	}
+
+	@Override
+	public void execAsync(byte[] request, RequestInfo info) {
+		String key = HTCodec.getKey(request);
+		ConcurrentHashMap<String, HTRecord> shard = shardFor(key);
+		byte[] reply;
+		if(HTCodec.getType(request) == HTRequest.READ){
+			reply = HTCodec.encodeReply(shard.get(key));
+		} else {	// WRITE operation
+			long version = ++writeCount;
+			HTRecord old = shard.get(key);
+			HTRecord prev = null;
+			long snap = snapshotVersion;
+			// Keep exactly the value visible at the snapshot version
+			if(snap >= 0 && old != null)
+				prev = old.getVersion() <= snap ? old : old.prev;
+			shard.put(key, new HTRecord(HTCodec.getValue(request), info.getRandom(),
+						    info.getTime(), version, prev));
+			reply = new byte[]{HTCodec.OK};
+		}
+		generalCP.execDone(reply, info);
+	}
+
+	@Override
+	public void execReadonly(byte[] request, int clientId, long requestId){
+		String key = HTCodec.getKey(request);
+		generalCP.execReadonlyDone(HTCodec.encodeReply(shardFor(key).get(key)), clientId, requestId);
+	}
+
+	@Override
+	public void sync() {
+		SnapshotWriter writer;
+		synchronized(snapshotLock){
+			long start = System.nanoTime();
+			while(snapshotVersion >= 0){
+				try {
+					snapshotLock.wait();
+				} catch (InterruptedException e) {
+					e.printStackTrace();
+				}
+			}
+			snapshotVersion = writeCount;
+			writer = new SnapshotWriter(writeCount);
+			lastSyncStall = System.nanoTime() - start;
+		}
+		System.out.println("SyncStall="+lastSyncStall/1000+"us");
+		writer.start();
+	}
+
+	private class SnapshotWriter extends Thread {
+		private long version;
+
+		public SnapshotWriter(long version){
+			this.version = version;
+		}
+
+		public void run() {
+			String fileName = syncDir+"ht_sync_"+version;
+			long start = System.currentTimeMillis();
+			long entries = 0;
+			try {
+				DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName), 65536));
+				dos.writeInt(SNAPSHOT_MAGIC);
+				dos.writeLong(version);
+				dos.writeInt(shards.length);
+				// Shards in index order, keys sorted within a shard, so
+				// every replica produces the same bytes
+				for(int i = 0; i < shards.length; i++){
+					String[] keys = shards[i].keySet().toArray(new String[0]);
+					Arrays.sort(keys);
+					for(String key : keys){
+						HTRecord rec = shards[i].get(key).at(version);
+						if(rec == null)
+							continue;
+						byte[] k = HTCodec.toBytes(key);
+						dos.writeInt(k.length);
+						dos.write(k);
+						dos.writeInt(rec.getValue().length);
+						dos.write(rec.getValue());
+						dos.writeLong(rec.getRandom());
+						dos.writeLong(rec.getTimestamp());
+						entries++;
+					}
+				}
+				dos.writeInt(-1);
+				dos.close();
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+			System.out.println("SyncWrite="+(System.currentTimeMillis()-start)+"ms entries="+entries);
+			synchronized(snapshotLock){
+				snapshotVersion = -1;
+				snapshotLock.notifyAll();
+			}
+			generalCP.syncDone(fileName);
+		}
+	}
+
+	@Override
+	public void loadSnapshot(String fileName) {
+		synchronized(snapshotLock){
+			while(snapshotVersion >= 0){
+				try {
+					snapshotLock.wait();
+				} catch (InterruptedException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+		try {
+			DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName), 65536));
+			if(dis.readInt() != SNAPSHOT_MAGIC)
+				throw new IOException("Not a sharded hashtable snapshot: "+fileName);
+			long version = dis.readLong();
+			int shardCount = dis.readInt();
+			if(shardCount != shards.length)
+				throw new IOException("Snapshot has "+shardCount+" shards, expected "+shards.length);
+			for(int i = 0; i < shards.length; i++)
+				shards[i].clear();
+			int klen;
+			while((klen = dis.readInt()) >= 0){
+				byte[] k = new byte[klen];
+				dis.readFully(k);
+				byte[] value = new byte[dis.readInt()];
+				dis.readFully(value);
+				String key = new String(k, "UTF-8");
+				shardFor(key).put(key, new HTRecord(value, dis.readLong(), dis.readLong(), version, null));
+			}
+			dis.close();
+			writeCount = version;
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+
+	public static void main(String args[]) throws Exception{
+		if(args.length!=4 && args.length!=5){
+			System.out.println("Usage: java Applications.hashtable.ShardedHTServer <id> <config_file> <log_path> <snapshot_path> [shards]");
+		}
+		int shardCount = args.length == 5 ? Integer.parseInt(args[4]) : DEFAULT_SHARDS;
+		GeneralCP generalCP = new GeneralCP(Integer.parseInt(args[0]), args[1], args[2], args[3]);
+		ShardedHTServer main = new ShardedHTServer(args[3], Integer.parseInt(args[0]), shardCount);
+		main.setGenCP(generalCP);
+		generalCP.setupApplication(main);
+	}
+
+}
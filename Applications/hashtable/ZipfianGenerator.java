@@ -0,0 +1,47 @@
+package Applications.hashtable;
+
+import java.util.Random;
+
+// Draws integers in [0, items) with a zipfian distribution, following
+// Gray et al., "Quickly Generating Billion-Record Synthetic Databases".
+public class ZipfianGenerator{
+	public static final double ZIPFIAN_CONSTANT = 0.99;
+
+	private final int items;
+	private final double theta;
+	private final double zetan;
+	private final double alpha;
+	private final double eta;
+	private final Random rand;
+
+	public ZipfianGenerator(int items, Random rand){
+		this(items, ZIPFIAN_CONSTANT, rand);
+	}
+
+	public ZipfianGenerator(int items, double theta, Random rand){
+		this.items = items;
+		this.theta = theta;
+		this.rand = rand;
+		this.zetan = zeta(items, theta);
+		this.alpha = 1.0 / (1.0 - theta);
+		this.eta = (1 - Math.pow(2.0 / items, 1 - theta)) / (1 - zeta(2, theta) / zetan);
+	}
+
+	private static double zeta(int n, double theta){
+		double sum = 0;
+		for(int i = 1; i <= n; i++)
+			sum += 1 / Math.pow(i, theta);
+		return sum;
+	}
+
+	public int next(){
+		double u = rand.nextDouble();
+		double uz = u * zetan;
+		if(uz < 1.0)
+			return 0;
+		if(uz < 1.0 + Math.pow(0.5, theta))
+			return 1;
+		int ret = (int)(items * Math.pow(eta * u - eta + 1, alpha));
+		return ret >= items ? items - 1 : ret;
+	}
+}
@@ -21,14 +21,19 @@ import BFT.messages.LastExecuted;
 import BFT.messages.CPTokenMessage;
 import BFT.messages.Reply;
 import BFT.messages.WatchReply;
+import BFT.messages.WatchBatchReply;
 import BFT.messages.RequestCP;
 import BFT.messages.ReadOnlyRequest;
 import BFT.messages.ReadOnlyReply;
+import BFT.messages.ReadOnlyRejected;
+import BFT.messages.LeaseReadRequest;
+import BFT.messages.LeaseReadReply;
 import BFT.messages.FilteredRequest;
 import BFT.messages.BatchCompleted;
 import BFT.messages.FetchCommand;
 import BFT.messages.ForwardCommand;
 import BFT.messages.FetchDenied;
+import BFT.messages.PushCommand;
 import BFT.messages.CPUpdate;
 
 
@@ -62,11 +67,16 @@ public class MessageFactory{
 	case MessageTags.Reply: return new Reply(bytes);
 	case MessageTags.RequestCP: return new RequestCP(bytes);
 	case MessageTags.WatchReply: return new WatchReply(bytes);
+	case MessageTags.WatchBatchReply: return new WatchBatchReply(bytes);
 	case MessageTags.ReadOnlyRequest: return new ReadOnlyRequest(bytes);
 	case MessageTags.ReadOnlyReply: return new ReadOnlyReply(bytes);
+	case MessageTags.ReadOnlyRejected: return new ReadOnlyRejected(bytes);
+	case MessageTags.LeaseReadRequest: return new LeaseReadRequest(bytes);
+	case MessageTags.LeaseReadReply: return new LeaseReadReply(bytes);
 	case MessageTags.FetchCommand: return new FetchCommand(bytes);
 	case MessageTags.ForwardCommand: return new ForwardCommand(bytes);
 	case MessageTags.FetchDenied: return new FetchDenied(bytes);
+	case MessageTags.PushCommand: return new PushCommand(bytes);
 	case MessageTags.CPUpdate: return new CPUpdate(bytes);
 	    
 	default: 
@@ -23,15 +23,59 @@ public class Parameters{
     public static boolean debug=false;
 
     public static boolean filterCaching = true;
+    // owning filter pushes request bodies to the execution replicas
+    // before ordering instead of waiting for a fetch
+    public static boolean filterPush = false;
+    public static int filterPushCacheSize = 4096;
     public static boolean doLogging = true;
     
     public static boolean insecure=false;
     public static boolean cheapClients = false;
     
     public static boolean blockingSends = true;
+
+    // transport: netty I/O threads (0 for one per interface) and cpu
+    // hints per role (indexed by Role.ordinal()), socket options (0
+    // keeps the os default), and the outbound bytes at which senders
+    // stall and resume
+    public static int[] netIOThreads = {0, 0, 0, 0};
+    public static String[] netAffinity = new String[4];
+    public static boolean tcpNoDelay = true;
+    public static int sendBufferSize = 0;
+    public static int receiveBufferSize = 0;
+    public static int writeHighWater = 256*1024;
+    public static int writeLowWater = 64*1024;
+    // channels feeding a work queue stop reading above queueHighWater
+    // percent of its capacity and resume below queueLowWater percent
+    public static boolean flowControl = true;
+    public static int queueHighWater = 75;
+    public static int queueLowWater = 25;
     
     public static boolean linearizeReads = false;
 
+    // the primary grants execution replicas a read lease of
+    // leaseDuration ms with every batch.  leased reads are answered by
+    // rightExecutionQuorumSize replicas, or by a single replica with
+    // trustedReads, for leaseDuration ms less leaseSkew after the
+    // replica received the batch, by its own clock
+    public static boolean readLeases = false;
+    public static boolean trustedReads = false;
+    public static long leaseDuration = 500;
+    public static long leaseSkew = 50;
+
+    // admission control for read only requests at the execution
+    // replicas: per client rate and burst, queue length, number of
+    // read workers, and the longest a read waits for ordered work
+    public static int readRate = 1000;
+    public static int readBurst = 100;
+    public static int readQueueSize = 1024;
+    public static int readWorkers = 2;
+    public static long maxReadDefer = 50;
+
+    // accumulate the time spent in each stage of a request (see
+    // BFT.util.StageTimes) and print the averages at exit
+    public static boolean stageTimes = false;
+
 
     public static String provider="FlexiCore";
     //public static String provider="SunJCE";
@@ -8,11 +8,16 @@ import BFT.messages.SignedRequestCore;
 import BFT.messages.SimpleRequestCore;
 import BFT.messages.RequestCore;
 import BFT.messages.ReadOnlyRequest;
+import BFT.messages.LeaseReadRequest;
 
 // incoming messages
 import BFT.messages.Reply;
 import BFT.messages.WatchReply;
+import BFT.messages.WatchBatchReply;
 import BFT.messages.ReadOnlyReply;
+import BFT.messages.ReadOnlyRejected;
+import BFT.messages.LeaseReadReply;
+import BFT.messages.Digest;
 
 
 import BFT.messages.VerifiedMessageBase;
@@ -22,18 +27,43 @@ import BFT.membership.Membership;
 import BFT.MessageFactory;
 
 import BFT.util.Role;
+import BFT.util.StageTimes;
 
 import BFT.Debug;
 
 import java.util.Random;
+import java.util.TreeMap;
 
 public class ClientShimBaseNode extends BaseNode implements ClientShimInterface{
 
     protected long seqNo = 1;
     protected long readOnlySeqno = 1;
     protected Quorum<Reply> replies;
+    // when the first reply and the reply completing the quorum arrived
+    protected long firstReply = 0;
+    protected long quorumReached = 0;
     protected Quorum<WatchReply> watchReplies;
+    // one quorum per event batch, keyed by the id of its first event
+    protected TreeMap<Long, Quorum<WatchBatchReply>> watchBatches =
+	new TreeMap<Long, Quorum<WatchBatchReply>>();
+    // id of the next event to hand to the glue; the events of a
+    // connection are numbered from 0
+    protected long nextEventId = 0;
+    // complete batches allowed to wait for a missing earlier batch
+    public static int maxPendingWatchBatches = 64;
+    // batches kept at all, complete or not
+    public static int maxWatchBatches = 256;
     protected Quorum<ReadOnlyReply> readreplies;
+    // replicas that shed the current read only request
+    protected boolean[] readRejected;
+    protected long readsRejected = 0;
+    // replies to leased reads, and the full result from the responder
+    protected Quorum<LeaseReadReply> leaseReplies;
+    protected int leaseQuorumSize;
+    protected byte[] leaseResult;
+    protected boolean leaseFailed;
+    protected long leaseReadsServed = 0;
+    protected long leaseReadsFailed = 0;
     protected ClientGlueInterface glue;
     protected int resendBase;
     protected int readQuorumSize;
@@ -56,11 +86,22 @@ public class ClientShimBaseNode extends BaseNode implements ClientShimInterface{
 	readreplies = new Quorum<ReadOnlyReply>(BFT.Parameters.getExecutionCount(),
 						readQuorumSize,
 						0);
+	readRejected = new boolean[BFT.Parameters.getExecutionCount()];
+	leaseQuorumSize = BFT.Parameters.trustedReads ? 1 :
+	    BFT.Parameters.rightExecutionQuorumSize();
+	leaseReplies = new Quorum<LeaseReadReply>(BFT.Parameters.getExecutionCount(),
+						  leaseQuorumSize,
+						  0);
 	watchReplies = new Quorum<WatchReply>(BFT.Parameters.getExecutionCount(),
 					      BFT.Parameters.rightExecutionQuorumSize(),
 					      0);
 	Random rand = new Random(System.currentTimeMillis());
-	int resendBase = rand.nextInt(BFT.Parameters.getExecutionCount());
+	resendBase = rand.nextInt(BFT.Parameters.getExecutionCount());
+	readRTT = new RTTEstimator[BFT.Parameters.getExecutionCount()];
+	for (int i = 0; i < readRTT.length; i++)
+	    readRTT[i] = new RTTEstimator(readRetrans*1000);
+	readSent = new long[readRTT.length];
+	readResent = new boolean[readRTT.length];
 	pendingRequestCount = 0;
 	requestThreshold = BFT.Parameters.getConcurrentRequestLimit();
     }
@@ -80,7 +121,140 @@ public class ClientShimBaseNode extends BaseNode implements ClientShimInterface{
 
     }
 
+    // initial read timeout, and the timeout after which reads fall
+    // back to the ordered path
     protected long readRetrans = 500;
+    protected long maxReadRetrans = 1000;
+    // rtt of read only requests to each execution replica
+    protected RTTEstimator[] readRTT;
+    // when the current read was sent to each replica, 0 if it was not
+    protected long[] readSent;
+    protected boolean[] readResent;
+    // replicas whose estimate is older than this are probed again
+    public static long rttProbeInterval = 1000;
+
+    /**
+       The count replicas with the lowest smoothed rtt.  Replicas
+       without a recent sample come first, so they get measured.
+     **/
+    protected int[] fastestReplicas(int count){
+	int n = readRTT.length;
+	long now = System.currentTimeMillis();
+	long[] key = new long[n];
+	Integer[] order = new Integer[n];
+	for (int i = 0; i < n; i++){
+	    order[i] = (i + resendBase) % n;
+	    key[i] = now - readRTT[i].getLastSample() > rttProbeInterval ?
+		-1 : readRTT[i].getSRTT();
+	}
+	final long[] k = key;
+	java.util.Arrays.sort(order, new java.util.Comparator<Integer>(){
+		public int compare(Integer a, Integer b){
+		    return k[a] < k[b] ? -1 : (k[a] == k[b] ? 0 : 1);
+		}
+	    });
+	resendBase++;
+	int[] res = new int[count];
+	for (int i = 0; i < count; i++)
+	    res[i] = order[i];
+	return res;
+    }
+
+    protected void sendRead(ReadOnlyRequest req, boolean first){
+	byte[] tmp = req.getBytes();
+	long now = System.nanoTime();
+	if (first){
+	    int[] targets = fastestReplicas(readQuorumSize);
+	    for (int j = 0; j < targets.length; j++){
+		sendToExecutionReplica(tmp, targets[j]);
+		readSent[targets[j]] = now;
+	    }
+	    return;
+	}
+	// retransmit to every replica that has not answered yet
+	for (int i = 0; i < readSent.length; i++){
+	    if (readreplies.containsEntry(i))
+		continue;
+	    sendToExecutionReplica(tmp, i);
+	    if (readSent[i] != 0)
+		readResent[i] = true;
+	    else
+		readSent[i] = now;
+	}
+    }
+
+    /**
+       Timeout for the first read, long enough for the slowest of the
+       fastest quorum replicas
+     **/
+    protected long readTimeout(int quorum){
+	long[] rto = new long[readRTT.length];
+	for (int i = 0; i < rto.length; i++)
+	    rto[i] = readRTT[i].getSRTT() < 0 ? readRetrans : readRTT[i].getRTOMillis();
+	java.util.Arrays.sort(rto);
+	return rto[quorum-1];
+    }
+
+    /**
+       Read under the lease of the execution replicas.  The fastest
+       replica returns the result and the rest of the quorum its
+       digest.  Returns null if a replica held no valid lease or the
+       quorum did not answer in time, in which case the caller uses
+       the regular read only path.
+     **/
+    protected byte[] leaseRead(byte[] op){
+	RequestCore rc = null;
+	if (!BFT.Parameters.filtered)
+	    rc = new SignedRequestCore(members.getMyId(), readOnlySeqno, op);
+	else
+	    rc = new SimpleRequestCore(members.getMyId(), readOnlySeqno, op);
+	int[] targets = fastestReplicas(leaseQuorumSize);
+	LeaseReadRequest req = 
+	    new LeaseReadRequest(members.getMyId(), rc, targets[0]);
+	authenticateExecMacArrayMessage(req);
+	leaseReplies.clear();
+	leaseResult = null;
+	leaseFailed = false;
+	long now = System.nanoTime();
+	for (int i = 0; i < readSent.length; i++){
+	    readSent[i] = 0;
+	    readResent[i] = false;
+	}
+	byte[] tmp = req.getBytes();
+	for (int j = 0; j < targets.length; j++){
+	    sendToExecutionReplica(tmp, targets[j]);
+	    readSent[targets[j]] = now;
+	}
+	long deadline = System.currentTimeMillis() + readTimeout(leaseQuorumSize);
+	long left = deadline - System.currentTimeMillis();
+	while (!leaseComplete() && !leaseFailed && left > 0){
+	    try{
+		wait(left);
+	    }catch(Exception e){
+		e.printStackTrace();
+		Debug.kill( new RuntimeException("interrupted!?"));
+	    }
+	    left = deadline - System.currentTimeMillis();
+	}
+	byte[] res = leaseComplete() ? leaseResult : null;
+	readOnlySeqno++;
+	leaseReplies.clear();
+	leaseResult = null;
+	if (res != null)
+	    leaseReadsServed++;
+	else
+	    leaseReadsFailed++;
+	if ((leaseReadsServed + leaseReadsFailed) % 1000 == 0)
+	    System.out.println("Leased reads served= "+leaseReadsServed+
+			       " fallback= "+leaseReadsFailed);
+	return res;
+    }
+
+    protected boolean leaseComplete(){
+	return leaseReplies.isComplete() && leaseResult != null
+	    && leaseReplies.getEntry().getResultDigest().equals(new Digest(leaseResult));
+    }
+
     public synchronized byte[] executeReadOnlyRequest(byte[] op){
 	while(pendingRequestCount >= requestThreshold){
 	    try{
@@ -96,6 +270,19 @@ public class ClientShimBaseNode extends BaseNode implements ClientShimInterface{
 	if (op.length > BFT.Parameters.maxRequestSize)
 	    Debug.kill("operation is too big!");
 
+	if (BFT.Parameters.readLeases){
+	    byte[] res = leaseRead(op);
+	    if (res != null){
+		reportRTT();
+		pendingRequestCount--;
+		if (pendingRequestCount < 0)
+		    BFT.Debug.kill("pending request count should not be below 0: "+
+				   pendingRequestCount);
+		notifyAll();
+		return res;
+	    }
+	}
+
 	// 	System.err.println("forming Read only "+
 	// 		      "request with sequence number:"+(readOnlySeqno+1));
 	RequestCore origRC = null;
@@ -115,23 +302,23 @@ public class ClientShimBaseNode extends BaseNode implements ClientShimInterface{
 	int count = 0;
 	byte[] replybytes = null;
 	long startTime = System.currentTimeMillis();
-	while (replybytes == null && count < 10){
+	for (int i = 0; i < readSent.length; i++){
+	    readSent[i] = 0;
+	    readResent[i] = false;
+	    readRejected[i] = false;
+	}
+	long timeout = readTimeout(readQuorumSize);
+	while (replybytes == null && count < 10 && !readQuorumLost()){
 	    if (resend){
 		//		System.err.println("retransmitting!");
-		byte[] tmp = req.getBytes();
-
-		for (int j = 0; j < readQuorumSize; j++){
-		    int index = 
-			(resendBase++) % BFT.Parameters.getExecutionCount();
-		    sendToExecutionReplica(tmp, index);
-		}
+		sendRead(req, count == 0);
 	    }
 	    resend = true;
 	    count++;
 	    //	    System.err.println("Sending read only sequence number: "+readOnlySeqno);
 	    try{
-			//	System.err.println("waiting for readRetrans "+readRetrans+" "+System.currentTimeMillis());
-		wait(readRetrans);
+			//	System.err.println("waiting for readRetrans "+timeout+" "+System.currentTimeMillis());
+		wait(timeout);
 //				System.err.println("the retrans timer expired "+System.currentTimeMillis());
 	    }catch(Exception e){
 		e.printStackTrace();
@@ -175,6 +362,8 @@ public class ClientShimBaseNode extends BaseNode implements ClientShimInterface{
 		req = new ReadOnlyRequest(req.getSender(), rc);
 		authenticateExecMacArrayMessage(req);
 		readreplies.clear();
+		for (int i = 0; i < readRejected.length; i++)
+		    readRejected[i] = false;
 		reply = null;
 	    } 
 	    if (reply != null && reply.getRequestId() < readOnlySeqno){
@@ -182,9 +371,9 @@ public class ClientShimBaseNode extends BaseNode implements ClientShimInterface{
 		reply = null;
 		//		System.err.println("not resending yet!");
 		resend = false;
-	    }else
-		readRetrans *=2;
-	    if (readRetrans > 1000){ count = 11; readRetrans = 1000;}
+	    }else if (replybytes == null)
+		timeout *=2;
+	    if (timeout > maxReadRetrans){ count = 11;}
 	}
         readOnlySeqno++;
 	// if the retries failed, do the normal path
@@ -192,9 +381,6 @@ public class ClientShimBaseNode extends BaseNode implements ClientShimInterface{
 	   // System.err.println("I give up, converting to regular");
 	    readreplies.clear();
 	    replybytes = execute(op);
-	    readRetrans = 2*(System.currentTimeMillis()-startTime);
-	    if (readRetrans < 200)
-		readRetrans = 200;
 	    pendingRequestCount--;
 	    if (pendingRequestCount < 0)
 		BFT.Debug.kill("pending request count should not be below 0: "+
@@ -204,9 +390,7 @@ public class ClientShimBaseNode extends BaseNode implements ClientShimInterface{
 	else{
 	    readreplies.clear();
 	    //	    System.err.println("returning: "+new String(reply.getCommand()));
-	    readRetrans = 2*(System.currentTimeMillis() - startTime);
-	    if (readRetrans < 200)
-		readRetrans = 200;
+	    reportRTT();
 	    pendingRequestCount--;
 	    if (pendingRequestCount < 0)
 		BFT.Debug.kill("pending request count should not be below 0: "+
@@ -217,7 +401,28 @@ public class ClientShimBaseNode extends BaseNode implements ClientShimInterface{
     }
 
 
-    protected long retrans = 1000;
+    // rtt of ordered requests, from the first send to a complete
+    // reply quorum
+    protected RTTEstimator orderedRTT = new RTTEstimator(1000000);
+    protected long rttReports = 0;
+
+    protected void reportRTT(){
+	if (++rttReports % 1000 != 0)
+	    return;
+	System.out.println("RTT ordered "+orderedRTT);
+	for (int i = 0; i < readRTT.length; i++)
+	    if (readRTT[i].getSamples() > 0)
+		System.out.println("RTT read exec"+i+" "+readRTT[i]);
+    }
+
+    public RTTEstimator getOrderedRTT(){
+	return orderedRTT;
+    }
+
+    public RTTEstimator getReadRTT(int replica){
+	return readRTT[replica];
+    }
+
     public synchronized byte[] execute(byte[] operation){
 	while(pendingRequestCount >= requestThreshold){
 	    try{
@@ -250,6 +455,8 @@ public class ClientShimBaseNode extends BaseNode implements ClientShimInterface{
 	//Debug.println("forming request with sequence number: "+(seqNo));
 
 	replies.clear();
+	firstReply = 0;
+	quorumReached = 0;
 	Reply reply = null;
 	if (!BFT.Parameters.filtered)
 	    authenticateOrderMacArrayMessage(req);
@@ -257,7 +464,9 @@ public class ClientShimBaseNode extends BaseNode implements ClientShimInterface{
 	    authenticateFilterMacArrayMessage(req);
 	boolean resend = true;
 	boolean firstsend = true;
-	long start = System.currentTimeMillis();
+	int sends = 0;
+	long start = System.nanoTime();
+	long retrans = orderedRTT.getRTOMillis();
 	while (reply == null){
 	    if (resend){
 		Debug.profileStart("SND_TO_FILTER-ORDER");
@@ -284,6 +493,7 @@ public class ClientShimBaseNode extends BaseNode implements ClientShimInterface{
 		}
 		//Debug.println("Sending sequence number: "+seqNo);
 		Debug.profileFinis("SND_TO_FILTER-ORDER");
+		sends++;
 	    }
 	    resend = true;
 	    try{
@@ -333,22 +543,22 @@ public class ClientShimBaseNode extends BaseNode implements ClientShimInterface{
 		replies.clear();
 		reply = null;
 		resend = false;
-	    }else
+	    }else if (reply == null)
 		retrans *= 2;
-	    if (retrans > 4000)
-		retrans = 4000;
+	    if (retrans > RTTEstimator.maxRTO/1000)
+		retrans = RTTEstimator.maxRTO/1000;
 	    //		retrans = 0;
 
 	}
 	//Debug.println("returning: "+reply.getCommand()+" bytes");
-	retrans = 2*(System.currentTimeMillis() - start);
-	if (retrans < 500)
-	    retrans = 500;
-	if (retrans > 4000){
-	    retrans = 4000;
-	}
+	// only requests that were sent once give a sample (Karn)
+	if (sends == 1)
+	    orderedRTT.sample((System.nanoTime() - start)/1000);
+	StageTimes.add("client.execute", System.nanoTime() - start);
+	if (firstReply != 0 && quorumReached != 0)
+	    StageTimes.add("client.replyQuorum", quorumReached - firstReply);
+	reportRTT();
 	seqNo++;
-	//System.err.println("NEW RETRANS: " + retrans);
 	//	System.err.println("returning a response!");
 	pendingRequestCount--;
 	if (pendingRequestCount < 0)
@@ -363,7 +573,10 @@ public class ClientShimBaseNode extends BaseNode implements ClientShimInterface{
 	switch(vmb.getTag()){
 	case MessageTags.Reply: process( (Reply) vmb); return;
 	case MessageTags.WatchReply: process( (WatchReply) vmb); return;
+	case MessageTags.WatchBatchReply: process( (WatchBatchReply) vmb); return;
 	case MessageTags.ReadOnlyReply: process((ReadOnlyReply) vmb); return;
+	case MessageTags.ReadOnlyRejected: process((ReadOnlyRejected) vmb); return;
+	case MessageTags.LeaseReadReply: process((LeaseReadReply) vmb); return;
 	default: Debug.kill("WTF");
 	}
     }
@@ -380,6 +593,12 @@ public class ClientShimBaseNode extends BaseNode implements ClientShimInterface{
 	    //System.err.println("discarding the older response");
 	    return;
 	}
+	int sender = (int) rep.getSendingReplica();
+	if (rep.getRequestId() == readOnlySeqno && readSent[sender] != 0){
+	    if (!readResent[sender])
+		readRTT[sender].sample((System.nanoTime() - readSent[sender])/1000);
+	    readSent[sender] = 0;
+	}
 	ReadOnlyReply rop = readreplies.getEntry();
 	if(!readreplies.addEntry(rep)){
 	     	    System.err.println("Didn't like the reply! Replaced");
@@ -398,6 +617,55 @@ public class ClientShimBaseNode extends BaseNode implements ClientShimInterface{
 	    notifyAll();
     }
 
+    synchronized protected void process(ReadOnlyRejected rej){
+	if (!validateExecMacMessage(rej))
+	    throw new RuntimeException("reply mac did not authenticate");
+	if (rej.getRequestId() != readOnlySeqno)
+	    return;
+	int sender = (int) rej.getSendingReplica();
+	boolean lost = readQuorumLost();
+	readSent[sender] = 0;
+	readRejected[sender] = true;
+	if (!lost && readQuorumLost()){
+	    if (++readsRejected % 1000 == 0)
+		System.out.println("Read only requests rejected= "+readsRejected);
+	    notifyAll();
+	}
+    }
+
+    /**
+       true once so many replicas shed the current read only request
+       that no read quorum can form
+     **/
+    protected boolean readQuorumLost(){
+	int rejected = 0;
+	for (int i = 0; i < readRejected.length; i++)
+	    if (readRejected[i])
+		rejected++;
+	return rejected > readRejected.length - readQuorumSize;
+    }
+
+    synchronized protected void process(LeaseReadReply rep){
+	if (!validateExecMacMessage(rep))
+	    throw new RuntimeException("reply mac did not authenticate");
+	if (rep.getRequestId() != readOnlySeqno)
+	    return;
+	int sender = (int) rep.getSendingReplica();
+	if (readSent[sender] != 0){
+	    readRTT[sender].sample((System.nanoTime() - readSent[sender])/1000);
+	    readSent[sender] = 0;
+	}
+	if (rep.isExpired())
+	    leaseFailed = true;
+	else{
+	    leaseReplies.addEntry(rep);
+	    if (rep.hasResult())
+		leaseResult = rep.getCommand();
+	}
+	if (leaseFailed || leaseComplete())
+	    notifyAll();
+    }
+
     synchronized protected void process(Reply rep){
 	//System.out.println("=====processing reply "+ rep.getRequestId() +" size " +rep.getCommand().length +" bytes from " + rep.getSendingReplica());
 	//	System.err.println(rep);
@@ -420,8 +688,14 @@ public class ClientShimBaseNode extends BaseNode implements ClientShimInterface{
 	    
 	}
 	//Debug.println("complete: "+replies.isComplete());
-	if (replies.isComplete())
+	long now = System.nanoTime();
+	if (firstReply == 0)
+	    firstReply = now;
+	if (replies.isComplete()){
+	    if (quorumReached == 0)
+		quorumReached = now;
 	    notifyAll();
+	}
     }
 
     protected void process(WatchReply rep){
@@ -440,4 +714,77 @@ public class ClientShimBaseNode extends BaseNode implements ClientShimInterface{
     }
 
 
+    /**
+       Start the event numbering over, for a new connection of the
+       glue's client.  Batches of the old connection still waiting are
+       dropped.
+     **/
+    public void resetEvents(){
+	synchronized(watchBatches){
+	    watchBatches.clear();
+	    nextEventId = 0;
+	}
+    }
+
+    /**
+       Event batches from different replicas interleave, so each batch
+       gathers its own quorum.  Complete batches are handed to the glue
+       in event id order; a batch waits while an earlier one is still
+       incomplete, unless too many batches are waiting, in which case
+       the gap is skipped.  At most maxWatchBatches batches are kept,
+       those with the lowest ids: a faulty replica can announce any
+       number of batches that never complete.
+     **/
+    protected void process(WatchBatchReply rep){
+	if (!validateExecMacMessage(rep))
+	    Debug.kill(new RuntimeException("reply mac did not authenticate"));
+	synchronized(watchBatches){
+	    long id = rep.getFirstEventId();
+	    if (id < nextEventId)
+		return;
+	    Quorum<WatchBatchReply> q = watchBatches.get(id);
+	    if (q == null){
+		if (watchBatches.size() >= maxWatchBatches){
+		    long last = watchBatches.lastKey();
+		    if (id > last)
+			return;
+		    watchBatches.remove(last);
+		}
+		q = new Quorum<WatchBatchReply>(BFT.Parameters.getExecutionCount(),
+						BFT.Parameters.rightExecutionQuorumSize(),
+						0);
+		watchBatches.put(id, q);
+	    }
+	    if (!q.addEntry(rep))
+		glue.brokenConnection();
+	    int complete = 0;
+	    for (Quorum<WatchBatchReply> w : watchBatches.values())
+		if (w.isComplete())
+		    complete++;
+	    while (!watchBatches.isEmpty()){
+		long first = watchBatches.firstKey();
+		Quorum<WatchBatchReply> w = watchBatches.get(first);
+		boolean inOrder = first == nextEventId;
+		if (!(w.isComplete() && inOrder)){
+		    if (complete <= maxPendingWatchBatches)
+			break;
+		    // too many complete batches are stuck behind this one
+		    glue.brokenConnection();
+		    if (!w.isComplete()){
+			watchBatches.remove(first);
+			continue;
+		    }
+		}
+		watchBatches.remove(first);
+		complete--;
+		WatchBatchReply entry = w.getEntry();
+		nextEventId = first + entry.getEventCount();
+		glue.returnReply(entry.getCommand());
+	    }
+	    // drop incomplete quorums for events that were skipped
+	    while (!watchBatches.isEmpty() && watchBatches.firstKey() < nextEventId)
+		watchBatches.remove(watchBatches.firstKey());
+	}
+    }
+
 }
@@ -0,0 +1,103 @@
+package BFT.clientShim;
+
+/**
+   Smoothed round trip time estimate for one peer or path, computed
+   as in TCP (RFC 6298).  All times are in microseconds.  Samples are
+   also counted in a log2 histogram so the distribution can be
+   reported.
+ **/
+public class RTTEstimator{
+
+    public static long minRTO = 20000;
+    public static long maxRTO = 4000000;
+
+    protected long srtt = -1;
+    protected long rttvar = 0;
+    protected long rto;
+    protected long samples = 0;
+    protected long lastSample = 0;
+    // histogram[i] counts samples in [2^i, 2^(i+1)) microseconds;
+    // the last bucket also counts every larger sample
+    protected long[] histogram = new long[32];
+
+    public RTTEstimator(long initialRTO){
+	rto = initialRTO;
+    }
+
+    public void sample(long rtt){
+	if (rtt < 1)
+	    rtt = 1;
+	if (srtt < 0){
+	    srtt = rtt;
+	    rttvar = rtt / 2;
+	}else{
+	    long err = srtt - rtt;
+	    if (err < 0)
+		err = -err;
+	    rttvar = (3 * rttvar + err) / 4;
+	    srtt = (7 * srtt + rtt) / 8;
+	}
+	rto = srtt + 4 * rttvar;
+	if (rto < minRTO)
+	    rto = minRTO;
+	if (rto > maxRTO)
+	    rto = maxRTO;
+	samples++;
+	lastSample = System.currentTimeMillis();
+	histogram[Math.min(63 - Long.numberOfLeadingZeros(rtt),
+			   histogram.length - 1)]++;
+    }
+
+    /**
+       Current retransmission timeout, in milliseconds
+     **/
+    public long getRTOMillis(){
+	return (rto + 999) / 1000;
+    }
+
+    public long getRTO(){
+	return rto;
+    }
+
+    /**
+       Smoothed rtt, or -1 if nothing was measured yet
+     **/
+    public long getSRTT(){
+	return srtt;
+    }
+
+    public long getRTTVar(){
+	return rttvar;
+    }
+
+    public long getSamples(){
+	return samples;
+    }
+
+    /**
+       Wall clock time of the last sample, in milliseconds
+     **/
+    public long getLastSample(){
+	return lastSample;
+    }
+
+    /**
+       Upper bound of the histogram bucket holding the p-th quantile
+     **/
+    public long percentile(double p){
+	long target = (long) Math.ceil(p * samples);
+	long seen = 0;
+	for (int i = 0; i < histogram.length; i++){
+	    seen += histogram[i];
+	    if (seen >= target && seen > 0)
+		return 1L << (i + 1);
+	}
+	return 0;
+    }
+
+    public String toString(){
+	return "srtt="+srtt+"us rttvar="+rttvar+"us rto="+rto+
+	    "us p50<"+percentile(0.5)+"us p99<"+percentile(0.99)+
+	    "us n="+samples;
+    }
+}
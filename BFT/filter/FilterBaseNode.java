@@ -10,6 +10,7 @@ import BFT.messages.FilteredRequestCore;
 import BFT.messages.Digest;
 import BFT.messages.ForwardCommand;
 import BFT.messages.FetchDenied;
+import BFT.messages.PushCommand;
 
 // incoming messages
 import BFT.messages.ClientRequest;
@@ -26,6 +27,7 @@ import BFT.util.Role;
 import BFT.network.concurrentNet.*;
 import java.security.Security;
 import java.util.PriorityQueue;
+import java.util.Vector;
 
 
 
@@ -194,8 +196,12 @@ public class FilterBaseNode extends BaseNode {
 		// if we're sending a digest, record teh
 		// simplecore for posterity
 		//			System.out.println("filtering "+src.getRequestId()+" for client "+src.getSendingClient());
-	    if (frc.getEntry().getDigest() != null)
+	    if (frc.getEntry().getDigest() != null){
 		pendingClientEntries[client] = src.getEntry();
+		if (BFT.Parameters.filterPush 
+		    && (client+1) % BFT.Parameters.getFilterCount() == getMyFilterIndex())
+		    push(src.getEntry());
+	    }
 	    lastreqId[client] = frc.getRequestId();
 	    // log it to disk
 	    if (use_digest)
@@ -409,6 +415,7 @@ public class FilterBaseNode extends BaseNode {
 		    (int)(bc.getView() % BFT.Parameters.getOrderCount());
 	    }
 	    //	    String completing = "\t completing: ";
+	    Vector<Entry> toFetch = new Vector<Entry>();
 	    for (int i = 0; i < entries.length; i++){
 		e = entries[i];
 		d = e.getDigest();
@@ -425,12 +432,15 @@ public class FilterBaseNode extends BaseNode {
 			//			completing += "<"+c+","+e2.getRequestId()+"> ";
 			cps.addRequest(e2);
 			pendingClientEntries[(int)c] = null;
-			// if im the sender designate, then send
-			if ((c+1) % BFT.Parameters.getFilterCount() == forme){
+			// if im the sender designate, then send.  with
+			// filterPush the body was already pushed and the
+			// exec replica fetches only what it is missing
+			if (!BFT.Parameters.filterPush
+			    && (c+1) % BFT.Parameters.getFilterCount() == forme){
 			    //			    			    System.out.println("\tcomplete batch fetch for "+
 			    //	       "client "+c+" to server "+
 			    //		       bc.getSendingReplica());
-			    fetch(bc.getSeqNo(), e, bc.getSendingReplica());
+			    toFetch.add(e);
 			    
 			}
 		    }// otherwise if there is no pending entry or the
@@ -455,29 +465,34 @@ public class FilterBaseNode extends BaseNode {
 		}
 	    }
 	    //	    System.out.println(completing);
+	    if (!toFetch.isEmpty())
+		fetch(bc.getSeqNo(), toFetch.toArray(new Entry[toFetch.size()]),
+		      bc.getSendingReplica());
 	    // if im at a checkpoint interval, then garbage collect
 	    if (bc.getSeqNo() == maxSequenceNumber()-1-BFT.order.Parameters.checkPointInterval) {
 		garbageCollect();
 	    }
 
 	}
-	else{// wasnt complete, still need to respond
+	else if (!BFT.Parameters.filterPush){// wasnt complete, still need to respond
 	    CommandBatch cb = bc.getCommands();
 	    Entry[] entries = cb.getEntries();
 	    Entry e;
 	    int forme = getMyFilterIndex();
+	    Vector<Entry> toFetch = new Vector<Entry>();
 	    
 	    for (int i = 0; i < entries.length; i++){
 		e = entries[i];
 		if (e.getDigest() != null && 
 		    (e.getClient()+1) % BFT.Parameters.getFilterCount() == forme){
-		    synchronized(clientLocks[(int)e.getClient()]){
 			//			System.out.println("\tincomplete batch fetch for client "+
 			//		   e.getClient()+" for "+bc.getSendingReplica());
-			fetch(bc.getSeqNo(), e, bc.getSendingReplica());
-		    }
+		    toFetch.add(e);
 		}
 	    }
+	    if (!toFetch.isEmpty())
+		fetch(bc.getSeqNo(), toFetch.toArray(new Entry[toFetch.size()]),
+		      bc.getSendingReplica());
 	}
 
     }
@@ -525,57 +540,80 @@ public class FilterBaseNode extends BaseNode {
 	if (!validateExecMacArrayMessage(fc) || !fc.checkAuthenticationDigest())
 	    BFT.Debug.kill("Bad authentication");
 
-	String fetching = fc.getSeqNo()+
-	    " {"+fc.getEntry().getClient()+","+fc.getEntry().getRequestId()+" }"; 
-	fetch( fc.getSeqNo(), fc.getEntry(), fc.getSendingReplica());
+	fetch( fc.getSeqNo(), fc.getEntries(), fc.getSendingReplica());
     }
 
 
 
     protected void fetch(long seqno, Entry ent,  int sender){
-	fetch(seqno, (int) ent.getClient(),
-	      (int)ent.getRequestId(),
-	      ent, sender);
+	fetch(seqno, new Entry[]{ent}, sender);
     }
-    protected void fetch(long seqno, int client, long reqId,
-			 Entry ent, int sender ){
+
+    /**
+       Answer a fetch for the entries ents of batch seqno with a single
+       forward holding every body this filter has.  If some bodies are
+       missing, the first of them is reported in a fetch denied so the
+       execution replica can fetch the rest from everybody.
+     **/
+    protected void fetch(long seqno, Entry[] ents, int sender){
 	int index = 
 	    (int)(baseIntervalIndex + (seqno - baseSequenceNumber()) / BFT.order.Parameters.checkPointInterval);
 	index = index % intervals.length;
-	Entry entry;
-	synchronized(clientLocks[client]){
-	    entry = intervals[index].getRequest(client,
-						      reqId);
-	    if(entry == null) {
-		entry = pendingClientEntries[client];
-		
+	Vector<Entry> found = new Vector<Entry>(ents.length);
+	Entry denied = null;
+	for (int i = 0; i < ents.length; i++){
+	    Entry ent = ents[i];
+	    int client = (int) ent.getClient();
+	    long reqId = ent.getRequestId();
+	    Entry entry;
+	    synchronized(clientLocks[client]){
+		entry = intervals[index].getRequest(client,
+						    reqId);
+		if(entry == null) {
+		    entry = pendingClientEntries[client];
+		    
+		}
 	    }
+	    if (entry == null || ! entry.matches(ent.getDigest()) ) {
+		if (entry == null)
+		    System.out.println("\t nada -- failed to fetch <"+client+","+
+				       reqId+"> for "+sender+" at "+seqno);
+		else
+		    System.out.println("\t wrong -- failed to fetch <"+client+","+
+				       reqId+"> for "+sender+" at "+seqno);
+		if (denied == null)
+		    denied = ent;
+		continue;
+	    }
+	    found.add(entry);
 	}
-	if (entry == null || ! entry.matches(ent.getDigest()) ) {
-	    if (entry == null)
-		System.out.println("\t nada -- failed to fetch <"+client+","+
-				   reqId+"> for "+sender+" at "+seqno);
-	    else
-		System.out.println("\t wrong -- failed to fetch <"+client+","+
-				   reqId+"> for "+sender+" at "+seqno);
-	    FetchDenied fd = new FetchDenied(seqno, ent, getMyFilterIndex());
-	    authenticateExecMacMessage(fd, sender);//, fc.getSendingReplica());
+	
+	if (!found.isEmpty()){
+	    Entry[] tmp = new Entry[found.size()];
+	    ForwardCommand fwd = new ForwardCommand(seqno,
+						    found.toArray(tmp), getMyFilterIndex());
+	    authenticateExecMacMessage(fwd,sender);
+	    sendToExecutionReplica(fwd.getBytes(), sender);
+	}
+	if (denied != null){
+	    FetchDenied fd = new FetchDenied(seqno, denied, getMyFilterIndex());
+	    authenticateExecMacMessage(fd, sender);
 	    sendToExecutionReplica(fd.getBytes(), 
 				   sender);
-	    
-	    return;
 	}
-	
-	// 	System.out.println("successfully fetched "+fetching+" for "+fc.getSendingReplica());
-	// 	System.out.println("forwarding "+seqno+" from "+fc.getEntry().getClient()+" to "+fc.getSendingReplica());
-	ForwardCommand fwd = new ForwardCommand(seqno,
-						entry, getMyFilterIndex());
-	authenticateExecMacMessage(fwd,sender);
-	sendToExecutionReplica(fwd.getBytes(), sender);
-	
     }
 
 
+    /**
+       Send the body of a request this filter owns to every execution
+       replica so it is staged there before the batch is ordered.
+     **/
+    protected void push(Entry entry){
+	PushCommand pc = new PushCommand(entry, getMyFilterIndex());
+	authenticateExecMacArrayMessage(pc);
+	sendToAllExecutionReplicas(pc.getBytes());
+    }
+
     public void handle(byte[] vmbbytes){
 	VerifiedMessageBase vmb = MessageFactory.fromBytes(vmbbytes);
 	switch(vmb.getTag()){
@@ -19,6 +19,8 @@ public class BatchInfo implements Serializable{
     
     //The following field do not need to serialize.
     private boolean takeCP;
+    // when the batch was queued for execution
+    private transient long queued = System.nanoTime();
 
     public CommandBatch getBatch() {
         return this.batch;
@@ -36,6 +38,10 @@ public class BatchInfo implements Serializable{
         return this.takeCP;
     }
 
+    public long getQueued() {
+        return this.queued;
+    }
+
     public BatchInfo() {
     }
     
@@ -50,7 +56,14 @@ public class BatchInfo implements Serializable{
         out.writeLong(seqNo);
         out.writeLong(time.getTime());
         out.writeLong(time.getSeed());
-        out.writeInt(batch.getEntries().length);
+        // a negative entry count flags a lease; without one the layout
+        // is the original one, so older logs still load
+        if (time.getLease() != 0) {
+            out.writeInt(-1 - batch.getEntries().length);
+            out.writeLong(time.getLease());
+        } else {
+            out.writeInt(batch.getEntries().length);
+        }
         byte[] tmp = batch.getBytes();
         out.writeInt(tmp.length);
         out.write(tmp);
@@ -58,12 +71,20 @@ public class BatchInfo implements Serializable{
 
     private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
         seqNo = in.readLong();
-        time = new NonDeterminism(in.readLong(), in.readLong());
+        long t = in.readLong();
+        long seed = in.readLong();
         int entryNo = in.readInt();
+        long lease = 0;
+        if (entryNo < 0) {
+            entryNo = -1 - entryNo;
+            lease = in.readLong();
+        }
+        time = new NonDeterminism(t, seed, lease);
         int len = in.readInt();
         byte[] tmp = new byte[len];
         in.readFully(tmp);
         batch = new CommandBatch(tmp, entryNo);
+        queued = System.nanoTime();
     }
 
 }
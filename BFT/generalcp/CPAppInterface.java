@@ -10,6 +10,9 @@ public interface CPAppInterface {
 	public void execReadonlyDone(byte []reply, int clientId, long requestId);
 
 	public void sendEvent(byte []event, int clientId, long eventSeqNo);
+
+	// Send eventCount events, numbered from firstEventSeqNo, in one message
+	public void sendEventBatch(byte []events, int clientId, long firstEventSeqNo, int eventCount);
 	
 	//public void flushDone(long seqNo, String fileName);
 	
@@ -9,6 +9,7 @@ import BFT.serverShim.ServerShimInterface;
 import BFT.serverShim.ShimBaseNode;
 import BFT.serverShim.Worker;
 import BFT.util.Role;
+import BFT.util.StageTimes;
 
 import java.io.*;
 import java.util.ArrayList;
@@ -180,6 +181,8 @@ public class GeneralCP implements GlueShimInterface, CPAppInterface {
 						NonDeterminism nd = request.getTime();
 						long seqNo = request.getSeqNo();
 						boolean takeCP = request.getTakeCP();
+						StageTimes.add("exec.queue",
+								System.nanoTime() - request.getQueued());
 						//System.out.println("GeneralCP exec " + seqNo);
 						BFT.messages.Entry[] entries = batch.getEntries();
 						Random rand = new Random(nd.getSeed());
@@ -192,7 +195,12 @@ public class GeneralCP implements GlueShimInterface, CPAppInterface {
 							if (takeCP && i == entries.length - 1) {
 								info.setLastReqBeforeCP();
 							}
+							if (i == entries.length - 1) {
+								info.setLastReqInBatch();
+							}
+							long start = System.nanoTime();
 							app.execAsync(e.getCommand(), info);
+							StageTimes.add("exec.execAsync", System.nanoTime() - start);
 						}
 						if (takeCP) {
 							logger.flush();
@@ -736,6 +744,9 @@ public class GeneralCP implements GlueShimInterface, CPAppInterface {
 								if (takeCP && i == entries.length - 1) {
 									info.setLastReqBeforeCP();
 								}
+								if (i == entries.length - 1) {
+									info.setLastReqInBatch();
+								}
 								app.execAsync(e.getCommand(), info);
 							}
 							if (seqNo % APP_CP_INTERVAL == APP_CP_INTERVAL - 1) {
@@ -803,6 +814,10 @@ public class GeneralCP implements GlueShimInterface, CPAppInterface {
 		shim.result(event, clientId, eventId, 0, false);
 	}
 
+	public void sendEventBatch(byte[] events, int clientId, long firstEventId, int eventCount){
+		shim.eventBatch(events, clientId, firstEventId, eventCount);
+	}
+
 	public void syncDone(String fileName) {
 		state.syncDone(fileName);
 	}
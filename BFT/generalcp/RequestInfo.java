@@ -19,6 +19,7 @@ public class RequestInfo implements Serializable{
     private long time;
     private long random;
     private boolean lastReqBeforeCP = false;
+    private boolean lastReqInBatch = false;
 
     public RequestInfo(){}
     public RequestInfo(boolean readonly, int clientId, long seqNo, long requestId, long time, long random) {
@@ -38,6 +39,8 @@ public class RequestInfo implements Serializable{
     public long getRandom() { return random;}
     public boolean isLastReqBeforeCP() { return lastReqBeforeCP;}
     public void setLastReqBeforeCP() { lastReqBeforeCP = true;}
+    public boolean isLastReqInBatch() { return lastReqInBatch;}
+    public void setLastReqInBatch() { lastReqInBatch = true;}
 
     @Override
     public String toString() {
@@ -1,17 +1,14 @@
 package BFT.logdaemon;
 
+import java.io.BufferedInputStream;
 import java.io.DataInputStream;
-import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.Hashtable;
-import java.util.Iterator;
 import java.util.TreeMap;
-import java.util.TreeSet;
 
 public class LogDaemon {
 
@@ -22,34 +19,38 @@ public class LogDaemon {
 	public static final int TAG_APP_LOG = 4;
 
 	private String logDir = null;
-	private int lastLogIndex = 0;
-	private static final String LOG_PREFIX = "LOG_";
 	private static int LOG_SIZE = 1048576;
 
-	private TreeSet<Integer> existingFiles = new TreeSet<Integer>();
-	// Hashtable<tag, TreeMap<barrier seqNo, logIndex>>
-	private Hashtable<Integer, TreeMap<Long, Integer>> barrierIndex = new Hashtable<Integer, TreeMap<Long, Integer>>();
+	// files of the older layout, where all tags shared LOG_<n> files
+	private static final String OLD_LOG_PREFIX = "LOG_";
+	// present while old files are copied into segments, and renamed to
+	// MIGRATED once the segments are on disk
+	private static final String MIGRATING = "MIGRATING";
+	private static final String MIGRATED = "MIGRATED";
 
-	// Hashtable<logIndex, HashSet<tag>>: whether file logIndex has record for
-	// tag
-	private Hashtable<Integer, HashSet<Integer>> logInfo = new Hashtable<Integer, HashSet<Integer>>();
+	// Each tag has its own segment files, so tags never contend on a lock
+	// and gc of one tag never has to look at records of another.
+	private Hashtable<Integer, SegmentLog> logs = new Hashtable<Integer, SegmentLog>();
 
-	// the latest gc for a tag
-	private Hashtable<Integer, Long> gcRecord = new Hashtable<Integer, Long>();
-
-	private DataOutputStream out = null;
-
-	private String getFileName(int logIndex) {
-		return logDir + LOG_PREFIX + logIndex;
+	private int getTag(String name) {
+		if (!name.startsWith(SegmentLog.SEGMENT_PREFIX))
+			return -1;
+		String rest = name.substring(SegmentLog.SEGMENT_PREFIX.length());
+		return Integer.parseInt(rest.substring(0, rest.indexOf('_')));
+	}
 
+	private int getIndex(String name) {
+		return Integer.parseInt(name.substring(name.lastIndexOf('_') + 1));
 	}
 
-	private int getIndex(String fileName) {
-		if (!fileName.startsWith(logDir + LOG_PREFIX))
+	private int getOldIndex(String name) {
+		if (!name.startsWith(OLD_LOG_PREFIX))
+			return -1;
+		try {
+			return Integer.parseInt(name.substring(OLD_LOG_PREFIX.length()));
+		} catch (NumberFormatException e) {
 			return -1;
-		File f = new File(fileName);
-		String name = f.getName();
-		return Integer.parseInt(name.substring(LOG_PREFIX.length()));
+		}
 	}
 
 	public LogDaemon(String logDir, int logSize) {
@@ -60,160 +61,178 @@ public class LogDaemon {
 		LOG_SIZE = logSize;
 		try{
 			this.scanFiles();
-			lastLogIndex++;
-			String newLogName = getFileName(lastLogIndex);
-			System.out.println("Create new log file " + newLogName);
-			out = new DataOutputStream(new FileOutputStream(newLogName));
-			existingFiles.add(lastLogIndex);
-			logInfo.put(this.lastLogIndex, new HashSet<Integer>());
 		}
-		catch(Exception e){
-			e.printStackTrace();
+		catch(IOException e){
+			throw new RuntimeException("Cannot open the logs in " + logDir, e);
 		}
-		
+
 	}
-	
+
 	private void scanFiles() throws IOException{
 		File dir=new File(logDir);
-		File []logs=dir.listFiles();
-		for(File logFile:logs){
-			int logIndex=getIndex(logFile.getAbsolutePath());
-			if(logIndex!=-1){
-				System.out.println("Scan file finds "+logIndex);
-				existingFiles.add(logIndex);
+		File []files=dir.listFiles();
+		// tag -> segment index -> file
+		TreeMap<Integer, TreeMap<Integer, File>> found = new TreeMap<Integer, TreeMap<Integer, File>>();
+		TreeMap<Integer, File> oldLogs = new TreeMap<Integer, File>();
+		for(File logFile:files){
+			int oldIndex=getOldIndex(logFile.getName());
+			if(oldIndex!=-1){
+				oldLogs.put(oldIndex, logFile);
+				continue;
 			}
-			else
+			int tag=getTag(logFile.getName());
+			if(tag==-1)
 				continue;
-			logInfo.put(logIndex, new HashSet<Integer>());
-			if(logIndex>lastLogIndex)
-				lastLogIndex=logIndex;
-			DataInputStream dis = new DataInputStream(new FileInputStream(
-					logFile));
-			while (dis.available() > 0) {
-				int logTag = dis.readInt();
-				int size = dis.readInt();
-				if (size == -1) {
-					// This is a barrier record
-					long seqNo=dis.readLong();
-					addBarrier(logTag, seqNo);
-				} else {
-					byte[] data = new byte[size];
-					dis.readFully(data);
-					logInfo.get(logIndex).add(logTag);
-				}
+			if(!found.containsKey(tag))
+				found.put(tag, new TreeMap<Integer, File>());
+			found.get(tag).put(getIndex(logFile.getName()), logFile);
+		}
+		File migrating=new File(logDir+MIGRATING);
+		File migrated=new File(logDir+MIGRATED);
+		if(migrating.exists() && !oldLogs.isEmpty()){
+			// an interrupted migration, start it over
+			System.out.println("Discard segments of an interrupted migration");
+			for(TreeMap<Integer, File> segments:found.values())
+				for(File f:segments.values())
+					f.delete();
+			found.clear();
+		}
+		else if(migrating.exists()){
+			migrating.delete();
+		}
+		else if(migrated.exists()){
+			// the segments are complete, only the old files are left
+			deleteOldLogs(oldLogs);
+			migrated.delete();
+		}
+		else if(!oldLogs.isEmpty() && !found.isEmpty()){
+			throw new IOException(logDir+" holds both "+OLD_LOG_PREFIX
+					+"<n> and "+SegmentLog.SEGMENT_PREFIX
+					+"<tag>_<n> files, refusing to start");
+		}
+		for(Integer tag:found.keySet()){
+			SegmentLog log=new SegmentLog(logDir, tag, LOG_SIZE);
+			for(Integer index:found.get(tag).keySet()){
+				System.out.println("Scan file finds "+tag+"_"+index);
+				log.addExistingSegment(index, found.get(tag).get(index));
 			}
+			log.open();
+			logs.put(tag, log);
 		}
-		
+		if(!oldLogs.isEmpty())
+			migrate(oldLogs, migrating, migrated);
 	}
 
-	public synchronized void writeData(int tag, byte[] data) throws IOException {
-		out.writeInt(tag);
-		out.writeInt(data.length);
-		out.write(data);
-		logInfo.get(this.lastLogIndex).add(tag);
+	/**
+	 * Copy the records and barriers of the old LOG_<n> files, in order,
+	 * into the segments of their tags, then delete the old files.
+	 */
+	private void migrate(TreeMap<Integer, File> oldLogs, File migrating,
+			File migrated) throws IOException {
+		migrating.createNewFile();
+		for(File logFile:oldLogs.values()){
+			System.out.println("Migrate "+logFile);
+			DataInputStream dis = new DataInputStream(new BufferedInputStream(
+					new FileInputStream(logFile)));
+			try{
+				while(true){
+					int logTag;
+					try{
+						logTag=dis.readInt();
+					}
+					catch(EOFException e){
+						break;
+					}
+					SegmentLog log=getLog(logTag);
+					try{
+						int size=dis.readInt();
+						if(size==-1){
+							log.appendBarrier(dis.readLong());
+						}
+						else{
+							byte[] data=new byte[size];
+							dis.readFully(data);
+							log.append(data);
+						}
+					}
+					catch(EOFException e){
+						System.out.println("Skip partial record at the end of "+logFile);
+						break;
+					}
+					log.flush();
+				}
+			}
+			finally{
+				dis.close();
+			}
+		}
+		for(SegmentLog log:logs.values())
+			log.force();
+		if(!migrating.renameTo(migrated))
+			throw new IOException("Cannot rename "+migrating+" to "+migrated);
+		deleteOldLogs(oldLogs);
+		migrated.delete();
 	}
 
-	public synchronized void flush() throws IOException {
-		out.flush();
-		if (out.size() > LOG_SIZE) {
-			lastLogIndex++;
-			out.close();
-			String newLogName = getFileName(lastLogIndex);
-			System.out.println("Switch log file to " + newLogName);
-			out = new DataOutputStream(new FileOutputStream(newLogName));
-			existingFiles.add(lastLogIndex);
-			logInfo.put(this.lastLogIndex, new HashSet<Integer>());
+	private void deleteOldLogs(TreeMap<Integer, File> oldLogs) {
+		for(File f:oldLogs.values()){
+			f.delete();
+			System.out.println(f.getAbsolutePath() + " deleted");
 		}
 	}
 
-	public synchronized ArrayList<byte[]> read(int tag) throws IOException {
-		ArrayList<byte[]> result = new ArrayList<byte[]>();
-		for (Integer logIndex : existingFiles) {
-			DataInputStream dis = new DataInputStream(new FileInputStream(
-					getFileName(logIndex)));
-			while (dis.available() > 0) {
-				int logTag = dis.readInt();
-				int size = dis.readInt();
-				if (size == -1) {
-					// This is a barrier record
-					dis.readLong();
-				} else {
-					byte[] data = new byte[size];
-					dis.readFully(data);
-					if (logTag == tag) {
-						result.add(data);
-					}
-				}
+	private SegmentLog getLog(int tag) throws IOException {
+		synchronized(logs){
+			SegmentLog log = logs.get(tag);
+			if (log == null) {
+				log = new SegmentLog(logDir, tag, LOG_SIZE);
+				log.open();
+				logs.put(tag, log);
 			}
+			return log;
 		}
-		return result;
 	}
 
-	public synchronized void writeBarrier(int tag, long seqNo) throws IOException {
-		out.writeInt(tag);
-		out.writeInt(-1);
-		out.writeLong(seqNo);
-		addBarrier(tag, seqNo);
+	public void writeData(int tag, byte[] data) throws IOException {
+		getLog(tag).append(data);
+	}
+
+	public void flush(int tag) throws IOException {
+		getLog(tag).flush();
 	}
 
-	private void addBarrier(int tag, long seqNo) {
-		if (!barrierIndex.containsKey(tag)) {
-			barrierIndex.put(tag, new TreeMap<Long, Integer>());
+	public void flush() throws IOException {
+		ArrayList<SegmentLog> tmp;
+		synchronized(logs){
+			tmp = new ArrayList<SegmentLog>(logs.values());
 		}
-		barrierIndex.get(tag).put(seqNo, this.lastLogIndex);
+		for (SegmentLog log : tmp)
+			log.flush();
 	}
 
-	private int getBarrier(int tag, long seqNo) {
-		return barrierIndex.get(tag).get(seqNo);
+	public ArrayList<byte[]> read(int tag) throws IOException {
+		return getLog(tag).read(-1);
 	}
 
-	public synchronized void gc(int tag, long seqNo) {
-		boolean needCheck = false;
-		int thisLog = getBarrier(tag, seqNo);
-		if (!gcRecord.containsKey(tag)) {
-			needCheck = true;
-		} else {
-			long lastSeqNo = gcRecord.get(tag);
-			int previousLog = getBarrier(tag, lastSeqNo);
-			if (previousLog != thisLog) {
-				needCheck = true;
-			}
-		}
-		gcRecord.put(tag, seqNo);
-		if (needCheck) {
-			Iterator<Integer>iter=this.existingFiles.iterator();
-			while(iter.hasNext()){
-				int logIndex=iter.next();
-				if (logIndex < thisLog && isGCable(logIndex)) {
-					File tmp = new File(getFileName(logIndex));
-					tmp.delete();
-					iter.remove();
-					System.out.println(tmp.getAbsolutePath() + " deleted");
-				}
-			}
-		}
+	/**
+	 * Return the records of tag written after the barrier seqNo
+	 */
+	public ArrayList<byte[]> read(int tag, long seqNo) throws IOException {
+		return getLog(tag).read(seqNo);
 	}
 
-	private boolean isGCable(int logIndex) {
-		System.out.println("Check gc for "+logIndex);
-		for (Integer tag : logInfo.get(logIndex)) {
-			// Only check for tags in this log. If this log does not have a
-			// specified kind of tag, we can ignore that tag.
-			long lastestGCSeqNo = -1;
-			if (gcRecord.containsKey(tag)) {
-				lastestGCSeqNo = gcRecord.get(tag);
-			}
-			// If the file of the latest gc is older than this file, this file
-			// is not GCable.
-			System.out.println("lastestGCSeqNo="+lastestGCSeqNo);
-			if(lastestGCSeqNo!=-1)
-				System.out.println(getBarrier(tag, lastestGCSeqNo)+" "+logIndex);
-			if (lastestGCSeqNo ==-1
-					|| getBarrier(tag, lastestGCSeqNo) <= logIndex) {
-				return false;
-			}
-			
-		}
-		return true;
+	/**
+	 * Append a barrier for tag and return once it and everything before
+	 * it is on disk
+	 */
+	public void writeBarrier(int tag, long seqNo) throws IOException {
+		getLog(tag).barrier(seqNo);
+	}
+
+	/**
+	 * Delete the segments of tag that precede the barrier seqNo
+	 */
+	public void gc(int tag, long seqNo) throws IOException {
+		getLog(tag).gc(seqNo);
 	}
 }
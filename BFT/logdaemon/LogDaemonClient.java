@@ -1,64 +1,203 @@
 package BFT.logdaemon;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.net.Socket;
 import java.util.ArrayList;
+import java.util.LinkedList;
 
+/**
+ * Client of LogDaemonServer. The *Async calls send a request and return
+ * immediately, so many requests can be outstanding on one connection;
+ * replies come back in request order and are matched by a reader
+ * thread. The blocking calls are the async ones followed by get().
+ */
 public class LogDaemonClient {
 	Socket sock;
 	DataOutputStream out;
 	DataInputStream in;
 
+	private int nextId = 0;
+	private LinkedList<Pending> pending = new LinkedList<Pending>();
+	private IOException failure = null;
+
 	public LogDaemonClient(int port) throws IOException {
 		sock = new Socket("localhost", port);
-		out = new DataOutputStream(sock.getOutputStream());
-		in = new DataInputStream(sock.getInputStream());
+		sock.setTcpNoDelay(true);
+		out = new DataOutputStream(new BufferedOutputStream(sock
+				.getOutputStream(), 65536));
+		in = new DataInputStream(new BufferedInputStream(sock
+				.getInputStream(), 65536));
+		Thread reader = new ReplyReader();
+		reader.setDaemon(true);
+		reader.start();
 	}
 
-	public synchronized void write(int tag, byte[] data) throws IOException {
-		out.writeInt(LogRequest.WRITE);
-		out.writeInt(tag);
-		out.writeInt(data.length);
-		out.write(data);
-		int ret = in.readInt();
-		if (ret != LogRequest.WRITE_OK)
-			throw new IOException("Write Failed. Please check LogDaemon log");
+	/**
+	 * An outstanding request
+	 */
+	public static class Pending {
+		private int id;
+		private int type;
+		private int okStatus;
+		private boolean done = false;
+		private int status;
+		private ArrayList<byte[]> result;
+		private IOException error;
+
+		Pending(int id, int type, int okStatus) {
+			this.id = id;
+			this.type = type;
+			this.okStatus = okStatus;
+		}
+
+		synchronized void complete(int status, ArrayList<byte[]> result,
+				IOException error) {
+			this.status = status;
+			this.result = result;
+			this.error = error;
+			this.done = true;
+			notifyAll();
+		}
+
+		public synchronized boolean isDone() {
+			return done;
+		}
+
+		/**
+		 * Wait for the reply. Returns the records for reads and null
+		 * otherwise.
+		 */
+		public synchronized ArrayList<byte[]> get() throws IOException {
+			while (!done) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					throw new IOException("Interrupted waiting for reply " + id);
+				}
+			}
+			if (error != null)
+				throw error;
+			if (status != okStatus)
+				throw new IOException("Request " + id + " of type " + type
+						+ " failed. Please check LogDaemon log");
+			return result;
+		}
 	}
 
-	public synchronized ArrayList<byte[]> read(int tag) throws IOException {
-		out.writeInt(LogRequest.READ);
-		out.writeInt(tag);
-		int ret = in.readInt();
-		if (ret != LogRequest.READ_OK)
-			throw new IOException("Read Failed. Please check LogDaemon log");
-		int size = in.readInt();
-		ArrayList<byte[]> list = new ArrayList<byte[]>(size);
-		for (int i = 0; i < size; i++) {
-			int length = in.readInt();
-			byte[] tmp = new byte[length];
-			in.readFully(tmp);
-			list.add(tmp);
+	private class ReplyReader extends Thread {
+		public void run() {
+			try {
+				while (true) {
+					int id = in.readInt();
+					int status = in.readInt();
+					Pending p;
+					synchronized (pending) {
+						p = pending.isEmpty() ? null : pending.removeFirst();
+					}
+					if (p == null)
+						throw new IOException("Reply " + id
+								+ " to no outstanding request");
+					if (p.id != id) {
+						// the stream is out of step, fail p along with
+						// the requests still outstanding
+						IOException e = new IOException("Reply " + id
+								+ " does not match request " + p.id);
+						p.complete(-1, null, e);
+						throw e;
+					}
+					ArrayList<byte[]> list = null;
+					if (status == LogRequest.READ_OK) {
+						int size = in.readInt();
+						list = new ArrayList<byte[]>(size);
+						for (int i = 0; i < size; i++) {
+							byte[] tmp = new byte[in.readInt()];
+							in.readFully(tmp);
+							list.add(tmp);
+						}
+					}
+					p.complete(status, list, null);
+				}
+			} catch (IOException e) {
+				synchronized (pending) {
+					failure = e;
+					for (Pending p : pending)
+						p.complete(-1, null, e);
+					pending.clear();
+				}
+			}
 		}
-		return list;
 	}
-	
-	public synchronized void barrier(int tag, long seqNo) throws IOException {
-		out.writeInt(LogRequest.BARRIER);
+
+	private Pending send(int type, int tag, int okStatus, long seqNo,
+			byte[] data) throws IOException {
+		Pending p;
+		synchronized (pending) {
+			if (failure != null)
+				throw failure;
+			p = new Pending(nextId++, type, okStatus);
+			pending.addLast(p);
+		}
+		out.writeInt(type);
+		out.writeInt(p.id);
 		out.writeInt(tag);
-		out.writeLong(seqNo);
-		int ret = in.readInt();
-		if (ret != LogRequest.BARRIER_OK)
-			throw new IOException("Write Failed. Please check LogDaemon log");
+		if (data != null) {
+			out.writeInt(data.length);
+			out.write(data);
+		} else if (type != LogRequest.READ) {
+			out.writeLong(seqNo);
+		}
+		out.flush();
+		return p;
 	}
-	
-	public synchronized void gc(int tag, long seqNo) throws IOException {
-		out.writeInt(LogRequest.GC);
-		out.writeInt(tag);
-		out.writeLong(seqNo);
-		int ret = in.readInt();
-		if (ret != LogRequest.GC_OK)
-			throw new IOException("Write Failed. Please check LogDaemon log");
+
+	public synchronized Pending writeAsync(int tag, byte[] data)
+			throws IOException {
+		return send(LogRequest.WRITE, tag, LogRequest.WRITE_OK, 0, data);
+	}
+
+	public synchronized Pending readAsync(int tag) throws IOException {
+		return send(LogRequest.READ, tag, LogRequest.READ_OK, 0, null);
+	}
+
+	public synchronized Pending readAsync(int tag, long seqNo)
+			throws IOException {
+		return send(LogRequest.READ_FROM, tag, LogRequest.READ_OK, seqNo, null);
+	}
+
+	public synchronized Pending barrierAsync(int tag, long seqNo)
+			throws IOException {
+		return send(LogRequest.BARRIER, tag, LogRequest.BARRIER_OK, seqNo, null);
+	}
+
+	public synchronized Pending gcAsync(int tag, long seqNo)
+			throws IOException {
+		return send(LogRequest.GC, tag, LogRequest.GC_OK, seqNo, null);
+	}
+
+	public void write(int tag, byte[] data) throws IOException {
+		writeAsync(tag, data).get();
+	}
+
+	public ArrayList<byte[]> read(int tag) throws IOException {
+		return readAsync(tag).get();
+	}
+
+	/**
+	 * Read the records of tag written after barrier seqNo
+	 */
+	public ArrayList<byte[]> read(int tag, long seqNo) throws IOException {
+		return readAsync(tag, seqNo).get();
+	}
+
+	public void barrier(int tag, long seqNo) throws IOException {
+		barrierAsync(tag, seqNo).get();
+	}
+
+	public void gc(int tag, long seqNo) throws IOException {
+		gcAsync(tag, seqNo).get();
 	}
 }
@@ -1,10 +1,13 @@
 package BFT.logdaemon;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.concurrent.LinkedBlockingQueue;
 
 public class LogDaemonServer extends Thread {
@@ -48,6 +51,13 @@ public class LogDaemonServer extends Thread {
 		}
 	}
 
+	/**
+	 * Serves one client connection. Requests are [type][id][tag][args]
+	 * and replies are [id][status][result]. Clients may pipeline
+	 * requests; they are executed and answered in arrival order, and
+	 * buffered writes and replies are only pushed out once no further
+	 * request is waiting in the input buffer.
+	 */
 	private class ServerThread extends Thread {
 		private Socket sock;
 
@@ -57,12 +67,18 @@ public class LogDaemonServer extends Thread {
 
 		public void run() {
 			try {
-				DataInputStream in = new DataInputStream(sock.getInputStream());
-				DataOutputStream out = new DataOutputStream(sock
-						.getOutputStream());
+				sock.setTcpNoDelay(true);
+				DataInputStream in = new DataInputStream(
+						new BufferedInputStream(sock.getInputStream(), 65536));
+				DataOutputStream out = new DataOutputStream(
+						new BufferedOutputStream(sock.getOutputStream(), 65536));
+				// tags written since the last flush
+				HashSet<Integer> dirty = new HashSet<Integer>();
 				while (true) {
 					int type = in.readInt();
+					int id = in.readInt();
 					int tag = in.readInt();
+					out.writeInt(id);
 					switch (type) {
 					case LogRequest.WRITE:
 						int size = in.readInt();
@@ -70,7 +86,7 @@ public class LogDaemonServer extends Thread {
 						in.readFully(data);
 						try {
 							logDaemon.writeData(tag, data);
-							logDaemon.flush();
+							dirty.add(tag);
 							out.writeInt(LogRequest.WRITE_OK);
 						} catch (Exception e) {
 							e.printStackTrace();
@@ -78,8 +94,13 @@ public class LogDaemonServer extends Thread {
 						}
 						break;
 					case LogRequest.READ:
+					case LogRequest.READ_FROM:
 						try {
-							ArrayList<byte[]> ret = logDaemon.read(tag);
+							ArrayList<byte[]> ret;
+							if (type == LogRequest.READ_FROM)
+								ret = logDaemon.read(tag, in.readLong());
+							else
+								ret = logDaemon.read(tag);
 							out.writeInt(LogRequest.READ_OK);
 							out.writeInt(ret.size());
 							for (int i = 0; i < ret.size(); i++) {
@@ -87,6 +108,7 @@ public class LogDaemonServer extends Thread {
 								out.write(ret.get(i));
 							}
 						} catch (Exception e) {
+							e.printStackTrace();
 							out.writeInt(LogRequest.READ_FAIL);
 						}
 						break;
@@ -94,7 +116,6 @@ public class LogDaemonServer extends Thread {
 						try {
 							long seqNo = in.readLong();
 							logDaemon.writeBarrier(tag, seqNo);
-							logDaemon.flush();
 							out.writeInt(LogRequest.BARRIER_OK);
 						} catch (Exception e) {
 							e.printStackTrace();
@@ -114,6 +135,12 @@ public class LogDaemonServer extends Thread {
 					default:
 						throw new RuntimeException("Unknown type " + type);
 					}
+					if (in.available() == 0) {
+						for (Integer t : dirty)
+							logDaemon.flush(t);
+						dirty.clear();
+						out.flush();
+					}
 				}
 			} catch (Exception e) {
 				e.printStackTrace();
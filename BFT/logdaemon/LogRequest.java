@@ -8,6 +8,7 @@ public class LogRequest {
 	public static final int READ=1;
 	public static final int BARRIER=2;
 	public static final int GC=3;
+	public static final int READ_FROM=4;
 	
 	public static final int WRITE_OK=0;
 	public static final int WRITE_FAIL=1;
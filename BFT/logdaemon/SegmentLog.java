@@ -0,0 +1,260 @@
+package BFT.logdaemon;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.TreeMap;
+
+/**
+ * The log of a single tag, stored as a sequence of segment files
+ * SEG_<tag>_<index>. A segment holds records of the form
+ * [int size][data] and barriers of the form [int -1][long seqNo].
+ *
+ * The barrier index is a sparse offset index: it maps every barrier
+ * seqNo to the segment and offset right after the barrier, so reads
+ * can start there instead of scanning the whole log.
+ */
+class SegmentLog {
+
+	public static final String SEGMENT_PREFIX = "SEG_";
+
+	private String logDir;
+	private int tag;
+	private int segmentSize;
+
+	// segment index -> segment file
+	private TreeMap<Integer, File> segments = new TreeMap<Integer, File>();
+	// barrier seqNo -> {segment index, offset after the barrier}
+	private TreeMap<Long, long[]> barrierIndex = new TreeMap<Long, long[]>();
+
+	private int current = -1;
+	private FileOutputStream fos = null;
+	private FileChannel channel = null;
+	private DataOutputStream out = null;
+	private long currentSize = 0;
+
+	// group commit state: barriers appended vs. barriers made durable
+	private long appended = 0;
+	private long synced = 0;
+	private final Object syncLock = new Object();
+
+	public SegmentLog(String logDir, int tag, int segmentSize) {
+		this.logDir = logDir;
+		this.tag = tag;
+		this.segmentSize = segmentSize;
+	}
+
+	public static String getFileName(String logDir, int tag, int index) {
+		return logDir + SEGMENT_PREFIX + tag + "_" + index;
+	}
+
+	/**
+	 * Register an existing segment found at startup, rebuilding the
+	 * barrier index from its contents. Segments must be added in
+	 * increasing index order.
+	 */
+	public synchronized void addExistingSegment(int index, File file)
+			throws IOException {
+		segments.put(index, file);
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		FileChannel ch = raf.getChannel();
+		try {
+			MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0,
+					ch.size());
+			long valid = 0;
+			while (buf.remaining() >= 4) {
+				int size = buf.getInt();
+				if (size == -1) {
+					if (buf.remaining() < 8)
+						break;
+					long seqNo = buf.getLong();
+					barrierIndex.put(seqNo, new long[] { index, buf.position() });
+				} else {
+					if (size < 0 || buf.remaining() < size)
+						break;
+					buf.position(buf.position() + size);
+				}
+				valid = buf.position();
+			}
+			if (valid < ch.size()) {
+				System.out.println("Truncate partial record in " + file
+						+ " at " + valid);
+				ch.truncate(valid);
+			}
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Start a fresh segment after all existing ones.
+	 */
+	public synchronized void open() throws IOException {
+		roll();
+	}
+
+	private void roll() throws IOException {
+		if (out != null) {
+			out.flush();
+			channel.force(false);
+			out.close();
+		}
+		current = segments.isEmpty() ? 0 : segments.lastKey() + 1;
+		File f = new File(getFileName(logDir, tag, current));
+		System.out.println("Switch log file to " + f);
+		fos = new FileOutputStream(f);
+		channel = fos.getChannel();
+		out = new DataOutputStream(new BufferedOutputStream(fos, 65536));
+		currentSize = 0;
+		segments.put(current, f);
+	}
+
+	public synchronized void append(byte[] data) throws IOException {
+		out.writeInt(data.length);
+		out.write(data);
+		currentSize += 4 + data.length;
+	}
+
+	/**
+	 * Push buffered records to the file and switch to a new segment
+	 * once the current one is full.
+	 */
+	public synchronized void flush() throws IOException {
+		out.flush();
+		if (currentSize > segmentSize)
+			roll();
+	}
+
+	/**
+	 * Append a barrier and return once it is durable. Concurrent
+	 * callers share fsyncs: whoever holds syncLock forces everything
+	 * appended so far, and later callers covered by that fsync return
+	 * without issuing their own.
+	 */
+	public void barrier(long seqNo) throws IOException {
+		long ticket = appendBarrier(seqNo);
+		synchronized (syncLock) {
+			if (synced >= ticket)
+				return;
+			long target;
+			FileChannel ch;
+			synchronized (this) {
+				out.flush();
+				target = appended;
+				ch = channel;
+			}
+			try {
+				ch.force(false);
+			} catch (ClosedChannelException e) {
+				// the segment was rolled, which forced it before closing
+			}
+			synced = target;
+		}
+		flush();
+	}
+
+	/**
+	 * Append a barrier without waiting for it to be durable
+	 */
+	synchronized long appendBarrier(long seqNo) throws IOException {
+		out.writeInt(-1);
+		out.writeLong(seqNo);
+		currentSize += 12;
+		barrierIndex.put(seqNo, new long[] { current, currentSize });
+		return ++appended;
+	}
+
+	/**
+	 * Make everything appended so far durable.
+	 */
+	public synchronized void force() throws IOException {
+		out.flush();
+		channel.force(false);
+	}
+
+	/**
+	 * Return every record after barrier fromSeqNo, or every record in
+	 * the log if fromSeqNo is negative. Segments are read through
+	 * read-only memory maps.
+	 */
+	public ArrayList<byte[]> read(long fromSeqNo) throws IOException {
+		ArrayList<RandomAccessFile> files = new ArrayList<RandomAccessFile>();
+		ArrayList<long[]> ranges = new ArrayList<long[]>();
+		synchronized (this) {
+			out.flush();
+			long[] start;
+			if (fromSeqNo < 0) {
+				start = new long[] { segments.firstKey(), 0 };
+			} else {
+				start = barrierIndex.get(fromSeqNo);
+				if (start == null)
+					throw new IOException("Unknown barrier " + fromSeqNo
+							+ " for tag " + tag);
+			}
+			for (Integer index : segments.tailMap((int) start[0]).keySet()) {
+				RandomAccessFile raf = new RandomAccessFile(segments
+						.get(index), "r");
+				long end = index == current ? currentSize : raf.length();
+				files.add(raf);
+				ranges.add(new long[] { index == start[0] ? start[1] : 0, end });
+			}
+		}
+		ArrayList<byte[]> result = new ArrayList<byte[]>();
+		try {
+			for (int i = 0; i < files.size(); i++) {
+				long[] range = ranges.get(i);
+				if (range[1] <= range[0])
+					continue;
+				MappedByteBuffer buf = files.get(i).getChannel().map(
+						FileChannel.MapMode.READ_ONLY, range[0],
+						range[1] - range[0]);
+				while (buf.remaining() >= 4) {
+					int size = buf.getInt();
+					if (size == -1) {
+						buf.getLong();
+					} else {
+						byte[] data = new byte[size];
+						buf.get(data);
+						result.add(data);
+					}
+				}
+			}
+		} finally {
+			for (RandomAccessFile raf : files)
+				raf.close();
+		}
+		return result;
+	}
+
+	/**
+	 * Delete every segment that ends before barrier seqNo.
+	 */
+	public synchronized void gc(long seqNo) throws IOException {
+		long[] pos = barrierIndex.get(seqNo);
+		if (pos == null)
+			throw new IOException("Unknown barrier " + seqNo + " for tag "
+					+ tag);
+		Iterator<Integer> iter = segments.headMap((int) pos[0]).keySet()
+				.iterator();
+		while (iter.hasNext()) {
+			File f = segments.get(iter.next());
+			f.delete();
+			iter.remove();
+			System.out.println(f.getAbsolutePath() + " deleted");
+		}
+		Iterator<long[]> biter = barrierIndex.headMap(seqNo).values()
+				.iterator();
+		while (biter.hasNext()) {
+			if (biter.next()[0] < pos[0])
+				biter.remove();
+		}
+	}
+}
@@ -104,9 +104,78 @@ public class Membership {
 	if (properties.getProperty("filterCaching") != null)
 	    Parameters.filterCaching = 
 		Boolean.parseBoolean(properties.getProperty("filterCaching"));
+	if (properties.getProperty("filterPush") != null)
+	    Parameters.filterPush = 
+		Boolean.parseBoolean(properties.getProperty("filterPush"));
+	if (properties.getProperty("filterPushCacheSize") != null)
+	    Parameters.filterPushCacheSize = 
+		Integer.parseInt(properties.getProperty("filterPushCacheSize"));
+	for (Role r : Role.values()){
+	    String name = r.toString().toLowerCase();
+	    if (properties.getProperty("netIOThreads."+name) != null)
+		Parameters.netIOThreads[r.ordinal()] =
+		    Integer.parseInt(properties.getProperty("netIOThreads."+name));
+	    if (properties.getProperty("netAffinity."+name) != null)
+		Parameters.netAffinity[r.ordinal()] =
+		    properties.getProperty("netAffinity."+name);
+	}
+	if (properties.getProperty("tcpNoDelay") != null)
+	    Parameters.tcpNoDelay =
+		Boolean.parseBoolean(properties.getProperty("tcpNoDelay"));
+	if (properties.getProperty("sendBufferSize") != null)
+	    Parameters.sendBufferSize =
+		Integer.parseInt(properties.getProperty("sendBufferSize"));
+	if (properties.getProperty("receiveBufferSize") != null)
+	    Parameters.receiveBufferSize =
+		Integer.parseInt(properties.getProperty("receiveBufferSize"));
+	if (properties.getProperty("writeHighWater") != null)
+	    Parameters.writeHighWater =
+		Integer.parseInt(properties.getProperty("writeHighWater"));
+	if (properties.getProperty("writeLowWater") != null)
+	    Parameters.writeLowWater =
+		Integer.parseInt(properties.getProperty("writeLowWater"));
+	if (properties.getProperty("flowControl") != null)
+	    Parameters.flowControl =
+		Boolean.parseBoolean(properties.getProperty("flowControl"));
+	if (properties.getProperty("queueHighWater") != null)
+	    Parameters.queueHighWater =
+		Integer.parseInt(properties.getProperty("queueHighWater"));
+	if (properties.getProperty("queueLowWater") != null)
+	    Parameters.queueLowWater =
+		Integer.parseInt(properties.getProperty("queueLowWater"));
 	if (properties.getProperty("linearizeReads") != null)
 	    Parameters.linearizeReads =
 		Boolean.parseBoolean(properties.getProperty("linearizeReads"));
+	if (properties.getProperty("readLeases") != null)
+	    Parameters.readLeases =
+		Boolean.parseBoolean(properties.getProperty("readLeases"));
+	if (properties.getProperty("trustedReads") != null)
+	    Parameters.trustedReads =
+		Boolean.parseBoolean(properties.getProperty("trustedReads"));
+	if (properties.getProperty("leaseDuration") != null)
+	    Parameters.leaseDuration =
+		Long.parseLong(properties.getProperty("leaseDuration"));
+	if (properties.getProperty("leaseSkew") != null)
+	    Parameters.leaseSkew =
+		Long.parseLong(properties.getProperty("leaseSkew"));
+	if (properties.getProperty("readRate") != null)
+	    Parameters.readRate =
+		Integer.parseInt(properties.getProperty("readRate"));
+	if (properties.getProperty("readBurst") != null)
+	    Parameters.readBurst =
+		Integer.parseInt(properties.getProperty("readBurst"));
+	if (properties.getProperty("readQueueSize") != null)
+	    Parameters.readQueueSize =
+		Integer.parseInt(properties.getProperty("readQueueSize"));
+	if (properties.getProperty("readWorkers") != null)
+	    Parameters.readWorkers =
+		Integer.parseInt(properties.getProperty("readWorkers"));
+	if (properties.getProperty("maxReadDefer") != null)
+	    Parameters.maxReadDefer =
+		Long.parseLong(properties.getProperty("maxReadDefer"));
+	if (properties.getProperty("stageTimes") != null)
+	    Parameters.stageTimes =
+		Boolean.parseBoolean(properties.getProperty("stageTimes"));
 
 
 	if (Parameters.getFilterLiars() == 0 && Parameters.getOrderLiars()==0)
@@ -118,6 +187,7 @@ public class Membership {
 
 
 	System.out.println("linearizeReads: "+Parameters.linearizeReads);
+	System.out.println("readLeases: "+Parameters.readLeases);
 	System.out.println("cheapClients: "+Parameters.cheapClients);
 	System.out.println("filterCaching: "+Parameters.filterCaching);
 	System.out.println("doLogging: "+Parameters.doLogging);
@@ -5,18 +5,27 @@ package BFT.messages;
 import BFT.util.UnsignedTypes;
 import BFT.Debug;
 
+/**
+   Request for the bodies of one or more entries of the batch at
+   seqno.  All missing entries of a batch that are fetched from the
+   same filter travel in one message.
+ **/
 public class FetchCommand extends MacArrayMessage{
 
-    protected Entry entry;
+    protected Entry[] entries;
     protected long seqno;
 
     public FetchCommand(long seq, Entry ent, int sendingReplica){
+	this(seq, new Entry[]{ent}, sendingReplica);
+    }
+
+    public FetchCommand(long seq, Entry[] ents, int sendingReplica){
 	super(MessageTags.FetchCommand,
-	      computeSize(ent),
+	      computeSize(ents),
 	      sendingReplica,
 	      BFT.Parameters.getFilterCount());
 	seqno = seq;
-	entry = ent;
+	entries = ents;
 	// need to write to bytes
 
 
@@ -28,11 +37,18 @@ public class FetchCommand extends MacArrayMessage{
 	for (int i = 0; i < tmp.length; i++, offset++)
 	    bytes[offset] = tmp[i];
 
-	// place the batch bytes
-	tmp = entry.getBytes();
+	// place the number of entries
+	tmp = UnsignedTypes.intToBytes(entries.length);
 	for (int i = 0; i < tmp.length; i++, offset++)
 	    bytes[offset] = tmp[i];
 
+	// place the entry bytes
+	for (int j = 0; j < entries.length; j++){
+	    tmp = entries[j].getBytes();
+	    for (int i = 0; i < tmp.length; i++, offset++)
+		bytes[offset] = tmp[i];
+	}
+
     }
 
     public FetchCommand(byte[] bits){
@@ -48,9 +64,17 @@ public class FetchCommand extends MacArrayMessage{
 	    tmp[i] = bits[offset];
 	seqno = UnsignedTypes.bytesToLong(tmp);
 
-	// read the batch bytes
-	entry = Entry.fromBytes(bits, offset);
-	offset += entry.getSize();
+	// read the number of entries
+	tmp = new byte[MessageTags.uint16Size];
+	for (int i = 0; i < tmp.length; i++, offset++)
+	    tmp[i] = bits[offset];
+	entries = new Entry[UnsignedTypes.bytesToInt(tmp)];
+
+	// read the entry bytes
+	for (int j = 0; j < entries.length; j++){
+	    entries[j] = Entry.fromBytes(bits, offset);
+	    offset += entries[j].getSize();
+	}
 	if (offset != getBytes().length- getAuthenticationSize())
 	    Debug.kill(new RuntimeException("Invalid byte input"));
     }
@@ -65,8 +89,8 @@ public class FetchCommand extends MacArrayMessage{
 	return seqno;
     }
 
-    public Entry getEntry(){
-	return entry;
+    public Entry[] getEntries(){
+	return entries;
     }
 
     public boolean matches(VerifiedMessageBase vmb){
@@ -74,16 +98,20 @@ public class FetchCommand extends MacArrayMessage{
 	if (!res)
 	    return false;
 	FetchCommand bc = (FetchCommand) vmb;
-	return res 
-	    && getSeqNo() == bc.getSeqNo() 
-	    && getEntry().equals(bc.getEntry());
-	    
+	if (getSeqNo() != bc.getSeqNo() 
+	    || entries.length != bc.getEntries().length)
+	    return false;
+	for (int i = 0; i < entries.length; i++)
+	    res = res && entries[i].equals(bc.getEntries()[i]);
+	return res;
     }
 
-    static public int computeSize(Entry ent){
-	return ent.getSize() + MessageTags.uint32Size;
-
+    static public int computeSize(Entry[] ents){
+	int size = MessageTags.uint32Size + MessageTags.uint16Size;
+	for (int i = 0; i < ents.length; i++)
+	    size += ents[i].getSize();
+	return size;
     }
 
 
-}
\ No newline at end of file
+}
@@ -5,16 +5,25 @@ package BFT.messages;
 import BFT.util.UnsignedTypes;
 import BFT.Debug;
 
+/**
+   Bodies of one or more entries of the batch at seqno, sent by a
+   filter in answer to a fetch.  A filter that has only some of the
+   requested bodies forwards those it has.
+ **/
 public class ForwardCommand extends MacMessage{
 
-    protected Entry entry;
+    protected Entry[] entries;
     protected long seqno;
 
     public ForwardCommand( long seqno, Entry ent, int sendingReplica){
+	this(seqno, new Entry[]{ent}, sendingReplica);
+    }
+
+    public ForwardCommand( long seqno, Entry[] ents, int sendingReplica){
 	super(MessageTags.ForwardCommand,
-	      computeSize(ent),
+	      computeSize(ents),
 	      sendingReplica);
-	entry = ent;
+	entries = ents;
 	this.seqno = seqno;
 	// need to write to bytes
 
@@ -25,11 +34,18 @@ public class ForwardCommand extends MacMessage{
 	for (int i = 0;i < tmp.length; i ++, offset++)
 	    bytes[offset] = tmp[i];
 
-	// place the batch bytes
-	tmp = entry.getBytes();
+	// place the number of entries
+	tmp = UnsignedTypes.intToBytes(entries.length);
 	for (int i = 0; i < tmp.length; i++, offset++)
 	    bytes[offset] = tmp[i];
 
+	// place the entry bytes
+	for (int j = 0; j < entries.length; j++){
+	    tmp = entries[j].getBytes();
+	    for (int i = 0; i < tmp.length; i++, offset++)
+		bytes[offset] = tmp[i];
+	}
+
     }
 
     public ForwardCommand(byte[] bits){
@@ -44,9 +60,17 @@ public class ForwardCommand extends MacMessage{
 	    tmp[i] = bits[offset];
 	seqno = BFT.util.UnsignedTypes.bytesToLong(tmp);
 
-	// read the batch bytes
-	entry = Entry.fromBytes(bits, offset);
-	offset += entry.getSize();
+	// read the number of entries
+	tmp = new byte[MessageTags.uint16Size];
+	for (int i = 0; i < tmp.length; i++, offset++)
+	    tmp[i] = bits[offset];
+	entries = new Entry[UnsignedTypes.bytesToInt(tmp)];
+
+	// read the entry bytes
+	for (int j = 0; j < entries.length; j++){
+	    entries[j] = Entry.fromBytes(bits, offset);
+	    offset += entries[j].getSize();
+	}
 	if (offset != getBytes().length- getAuthenticationSize())
 	    Debug.kill(new RuntimeException("Invalid byte input"));
     }
@@ -57,8 +81,8 @@ public class ForwardCommand extends MacMessage{
     }
 
 
-    public Entry getEntry(){
-	return entry;
+    public Entry[] getEntries(){
+	return entries;
     }
 
     public long getSeqNo(){
@@ -70,15 +94,19 @@ public class ForwardCommand extends MacMessage{
 	if (!res)
 	    return false;
 	ForwardCommand bc = (ForwardCommand) vmb;
-	return res 
-	    && getEntry().equals(bc.getEntry());
-	    
+	if (entries.length != bc.getEntries().length)
+	    return false;
+	for (int i = 0; i < entries.length; i++)
+	    res = res && entries[i].equals(bc.getEntries()[i]);
+	return res;
     }
 
-    static public int computeSize(Entry ent){
-	return ent.getSize() + MessageTags.uint32Size;
-
+    static public int computeSize(Entry[] ents){
+	int size = MessageTags.uint32Size + MessageTags.uint16Size;
+	for (int i = 0; i < ents.length; i++)
+	    size += ents[i].getSize();
+	return size;
     }
 
 
-}
\ No newline at end of file
+}
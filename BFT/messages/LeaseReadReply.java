@@ -0,0 +1,148 @@
+// $Id$
+
+package BFT.messages;
+
+import BFT.util.UnsignedTypes;
+
+/**
+   Reply to a LeaseReadRequest.  Carries the full result, the digest
+   of the result, or nothing if the replica held no valid lease.
+ **/
+public class LeaseReadReply extends MacMessage{
+
+    public final static int EXPIRED = 0;
+    public final static int DIGEST = 1;
+    public final static int RESULT = 2;
+
+    public LeaseReadReply(long execReplica, long reqId, long leaseSeqNo,
+			  int kind, byte[] result){
+	super(tag(), computeSize(kind, result), execReplica);
+	requestId = reqId;
+	seqNo = leaseSeqNo;
+	type = kind;
+	if (kind == RESULT){
+	    command = result;
+	    digest = new Digest(result);
+	}else if (kind == DIGEST){
+	    digest = new Digest(result);
+	}
+	byte[] body = kind == RESULT ? command :
+	    (kind == DIGEST ? digest.getBytes() : new byte[0]);
+
+	byte[] bytes = getBytes();
+	int offset = getOffset();
+	byte[] tmp = UnsignedTypes.longToBytes(reqId);
+	for (int i = 0; i < tmp.length; i++, offset++)
+	    bytes[offset] = tmp[i];
+	tmp = UnsignedTypes.longToBytes(leaseSeqNo);
+	for (int i = 0; i < tmp.length; i++, offset++)
+	    bytes[offset] = tmp[i];
+	tmp = UnsignedTypes.intToBytes(kind);
+	for (int i = 0; i < tmp.length; i++, offset++)
+	    bytes[offset] = tmp[i];
+	tmp = UnsignedTypes.longToBytes(body.length);
+	for (int i = 0; i < tmp.length; i++, offset++)
+	    bytes[offset] = tmp[i];
+	for (int i = 0; i < body.length; i++, offset++)
+	    bytes[offset] = body[i];
+    }
+
+    public LeaseReadReply(byte[] bytes){
+	super(bytes);
+	if (getTag() != MessageTags.LeaseReadReply)
+	    throw new RuntimeException("invalid message Tag: "+getTag());
+
+	int offset = getOffset();
+	byte[] tmp = new byte[MessageTags.uint32Size];
+	for (int i = 0; i < tmp.length; i++, offset++)
+	    tmp[i] = bytes[offset];
+	requestId = UnsignedTypes.bytesToLong(tmp);
+	for (int i = 0; i < tmp.length; i++, offset++)
+	    tmp[i] = bytes[offset];
+	seqNo = UnsignedTypes.bytesToLong(tmp);
+	tmp = new byte[MessageTags.uint16Size];
+	for (int i = 0; i < tmp.length; i++, offset++)
+	    tmp[i] = bytes[offset];
+	type = UnsignedTypes.bytesToInt(tmp);
+	tmp = new byte[MessageTags.uint32Size];
+	for (int i = 0; i < tmp.length; i++, offset++)
+	    tmp[i] = bytes[offset];
+	byte[] body = new byte[(int)UnsignedTypes.bytesToLong(tmp)];
+	for (int i = 0; i < body.length; i++, offset++)
+	    body[i] = bytes[offset];
+	if (type == RESULT){
+	    command = body;
+	    digest = new Digest(body);
+	}else if (type == DIGEST)
+	    digest = Digest.fromBytes(body);
+	else if (type != EXPIRED || body.length != 0)
+	    throw new RuntimeException("Invalid lease reply type "+type);
+
+	if (offset != bytes.length - getAuthenticationSize())
+	    throw new RuntimeException("Invalid byte input");
+    }
+
+    private long requestId;
+    private long seqNo;
+    private int type;
+    private byte[] command;
+    private Digest digest;
+
+    public long getSendingReplica(){
+	return getSender();
+    }
+
+    public long getRequestId(){
+	return requestId;
+    }
+
+    /**
+       sequence number of the batch that granted the lease the read
+       was served under
+     **/
+    public long getLeaseSeqNo(){
+	return seqNo;
+    }
+
+    public boolean isExpired(){
+	return type == EXPIRED;
+    }
+
+    public boolean hasResult(){
+	return type == RESULT;
+    }
+
+    /**
+       the full result, null unless hasResult()
+     **/
+    public byte[] getCommand(){
+	return command;
+    }
+
+    public Digest getResultDigest(){
+	return digest;
+    }
+
+    static private int computeSize(int kind, byte[] result){
+	int body = kind == RESULT ? result.length :
+	    (kind == DIGEST ? Digest.size() : 0);
+	return MessageTags.uint32Size + MessageTags.uint32Size
+	    + MessageTags.uint16Size + MessageTags.uint32Size + body;
+    }
+
+    public static int tag(){
+	return MessageTags.LeaseReadReply;
+    }
+
+    public boolean matches(VerifiedMessageBase vmb){
+	LeaseReadReply rep = (LeaseReadReply) vmb;
+	return rep != null && rep.requestId == requestId
+	    && rep.seqNo == seqNo && digest != null && rep.digest != null
+	    && digest.equals(rep.digest);
+    }
+
+    public String toString(){
+	return "< LEASEREP, "+super.toString()+", reqId:"+requestId+
+	    ", lease:"+seqNo+", type:"+type+", digest: "+digest+">";
+    }
+}
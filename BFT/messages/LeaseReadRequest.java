@@ -0,0 +1,74 @@
+// $Id$
+
+package BFT.messages;
+
+import BFT.util.UnsignedTypes;
+
+/**
+   Read only request served under the read lease of the execution
+   replicas.  Only the responder returns the full result, every other
+   replica returns its digest.
+ **/
+public class LeaseReadRequest extends MacArrayMessage{
+
+    protected RequestCore core;
+    protected int responder;
+
+    public LeaseReadRequest(long sender, RequestCore pay, int resp){
+	super(MessageTags.LeaseReadRequest, computeSize(pay), sender,
+	      BFT.Parameters.getExecutionCount());
+	core = pay;
+	responder = resp;
+
+	byte[] bytes = getBytes();
+	int offset = getOffset();
+	byte[] tmp = UnsignedTypes.intToBytes(resp);
+	for (int i = 0; i < tmp.length; i++, offset++)
+	    bytes[offset] = tmp[i];
+	tmp = pay.getBytes();
+	for (int i = 0; i < tmp.length; i++, offset++)
+	    bytes[offset] = tmp[i];
+    }
+
+    public LeaseReadRequest(byte[] bytes){
+	super(bytes);
+	if (getTag() != MessageTags.LeaseReadRequest)
+	    throw new RuntimeException("invalid message Tag: "+getTag());
+
+	int offset = getOffset();
+	byte[] tmp = new byte[MessageTags.uint16Size];
+	for (int i = 0; i < tmp.length; i++, offset++)
+	    tmp[i] = bytes[offset];
+	responder = UnsignedTypes.bytesToInt(tmp);
+
+	tmp = new byte[getPayloadSize() - MessageTags.uint16Size];
+	for (int i = 0; i < tmp.length; i++, offset++)
+	    tmp[i] = bytes[offset];
+	if (!BFT.Parameters.filtered)
+	    core = new SignedRequestCore(tmp);
+	else
+	    core = new SimpleRequestCore(tmp);
+
+	if (offset != getBytes().length - getAuthenticationSize())
+	    throw new RuntimeException("Invalid byte input");
+    }
+
+    public RequestCore getCore(){
+	return core;
+    }
+
+    /**
+       index of the execution replica that returns the full result
+     **/
+    public int getResponder(){
+	return responder;
+    }
+
+    static private int computeSize(RequestCore pay){
+	return MessageTags.uint16Size + pay.getTotalSize();
+    }
+
+    public String toString(){
+	return "< LEASEREAD, responder:"+responder+", "+core+">";
+    }
+}
@@ -31,6 +31,11 @@ public class MessageTags{
     final public static int ForwardCommand = 22;
     final public static int FetchDenied = 23;
     final public static int CPUpdate = 24;
+    final public static int WatchBatchReply = 25;
+    final public static int PushCommand = 26;
+    final public static int LeaseReadRequest = 27;
+    final public static int LeaseReadReply = 28;
+    final public static int ReadOnlyRejected = 29;
 
 
     // message field sizes in bytes
@@ -231,7 +231,7 @@ abstract public class NextBatch extends MacArrayMessage{
 	    MessageTags.uint32Size +//+ entry.getSize();
 	    entry.getCPHash().size()+
 	    entry.getHistoryDigest().size() +
-	    entry.getNonDeterminism().size() + entry.getCommandBatch().getSize();
+	    entry.getNonDeterminism().getSize() + entry.getCommandBatch().getSize();
 	return size;
     }
 
@@ -16,8 +16,17 @@ public class NonDeterminism{
     // of today) within a 32 bit unsigned integer of actual time
 
     public NonDeterminism(long _time, long nonDetSeeds){
+	this(_time, nonDetSeeds, 0);
+    }
+
+    /**
+       A lease of 0 grants no read lease and keeps the original 16
+       byte representation.
+     **/
+    public NonDeterminism(long _time, long nonDetSeeds, long _lease){
 	time = _time;
 	seeds = nonDetSeeds;
+	lease = _lease;
 	bytes = new byte[computeSize()];
 	
 	byte[] tmp;
@@ -29,6 +38,11 @@ public class NonDeterminism{
 	tmp = UnsignedTypes.longlongToBytes(seeds);
 	for (int i = 0; i < tmp.length; i++, offset++)
 	    bytes[offset] = tmp[i];
+	if (lease == 0)
+	    return;
+	tmp = UnsignedTypes.longlongToBytes(lease);
+	for (int i = 0; i < tmp.length; i++, offset++)
+	    bytes[offset] = tmp[i];
     }
     
     
@@ -45,12 +59,20 @@ public class NonDeterminism{
 	    tmp[i] = bytes[offset];
 	}
 	seeds = UnsignedTypes.bytesToLongLong(tmp);
+	if (bytes.length == offset)
+	    return;
+	for (int i = 0; i < tmp.length; i++, offset++){
+	    tmp[i] = bytes[offset];
+	}
+	lease = UnsignedTypes.bytesToLongLong(tmp);
     }
 
 
     protected byte[] bytes;
     protected long time;
     protected long seeds;
+    // time until which execution replicas may serve leased reads
+    protected long lease;
 
     public long getTime(){
 	return time;
@@ -58,6 +80,9 @@ public class NonDeterminism{
     public long getSeed(){
 	return seeds;
     }
+    public long getLease(){
+	return lease;
+    }
 
     static public int size(){
 		return MessageTags.uint64Size + MessageTags.uint64Size;
@@ -65,7 +90,8 @@ public class NonDeterminism{
     }
 
     public int getSize(){
-	return NonDeterminism.size();
+	return lease == 0 ? NonDeterminism.size() : 
+	    NonDeterminism.size() + MessageTags.uint64Size;
     }
 
 
@@ -83,7 +109,7 @@ public class NonDeterminism{
     }
 
     public boolean equals(NonDeterminism d){
-	return time == d.time && seeds == d.seeds;
+	return time == d.time && seeds == d.seeds && lease == d.lease;
     }
 
     private final int computeSize(){
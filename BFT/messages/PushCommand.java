@@ -0,0 +1,68 @@
+// $Id
+
+package BFT.messages;
+
+import BFT.Debug;
+
+/**
+   Request body sent by the owning filter to every execution replica
+   as soon as the request is authenticated, ahead of ordering.
+ **/
+public class PushCommand extends MacArrayMessage{
+
+    protected Entry entry;
+
+    public PushCommand(Entry ent, int sendingReplica){
+	super(MessageTags.PushCommand,
+	      computeSize(ent),
+	      sendingReplica,
+	      BFT.Parameters.getExecutionCount());
+	entry = ent;
+
+	int offset = getOffset();
+	byte[] bytes = getBytes();
+
+	// place the entry bytes
+	byte[] tmp = entry.getBytes();
+	for (int i = 0; i < tmp.length; i++, offset++)
+	    bytes[offset] = tmp[i];
+    }
+
+    public PushCommand(byte[] bits){
+	super(bits);
+	if (getTag() != MessageTags.PushCommand)
+	    BFT.Debug.kill("Bad Tag; "+getTag());
+
+	int offset = getOffset();
+
+	// read the entry bytes
+	entry = Entry.fromBytes(bits, offset);
+	offset += entry.getSize();
+	if (offset != getBytes().length- getAuthenticationSize())
+	    Debug.kill(new RuntimeException("Invalid byte input"));
+    }
+
+
+    public int getSendingReplica(){
+	return (int) getSender();
+    }
+
+    public Entry getEntry(){
+	return entry;
+    }
+
+    public boolean matches(VerifiedMessageBase vmb){
+	boolean res = vmb.getTag() == getTag();
+	if (!res)
+	    return false;
+	PushCommand pc = (PushCommand) vmb;
+	return res 
+	    && getEntry().equals(pc.getEntry());
+    }
+
+    static public int computeSize(Entry ent){
+	return ent.getSize();
+    }
+
+
+}
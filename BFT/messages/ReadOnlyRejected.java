@@ -0,0 +1,66 @@
+// $Id$
+
+package BFT.messages;
+
+import BFT.util.UnsignedTypes;
+
+/**
+   Sent to a client whose read only request a replica shed instead of
+   executing.  Once too many replicas reject a read for a read quorum
+   to form, the client sends the request down the ordered path.
+ **/
+public class ReadOnlyRejected extends MacMessage{
+
+    public ReadOnlyRejected(long execReplica, long reqId){
+	super(tag(), computeSize(), execReplica);
+	requestId = reqId;
+
+	byte[] bytes = getBytes();
+	int offset = getOffset();
+	byte[] tmp = UnsignedTypes.longToBytes(reqId);
+	for (int i = 0; i < tmp.length; i++, offset++)
+	    bytes[offset] = tmp[i];
+    }
+
+    public ReadOnlyRejected(byte[] bytes){
+	super(bytes);
+	if (getTag() != MessageTags.ReadOnlyRejected)
+	    throw new RuntimeException("invalid message Tag: "+getTag());
+
+	int offset = getOffset();
+	byte[] tmp = new byte[MessageTags.uint32Size];
+	for (int i = 0; i < tmp.length; i++, offset++)
+	    tmp[i] = bytes[offset];
+	requestId = UnsignedTypes.bytesToLong(tmp);
+
+	if (offset != bytes.length - getAuthenticationSize())
+	    throw new RuntimeException("Invalid byte input");
+    }
+
+    private long requestId;
+
+    public long getSendingReplica(){
+	return getSender();
+    }
+
+    public long getRequestId(){
+	return requestId;
+    }
+
+    static private int computeSize(){
+	return MessageTags.uint32Size;
+    }
+
+    public static int tag(){
+	return MessageTags.ReadOnlyRejected;
+    }
+
+    public boolean matches(VerifiedMessageBase vmb){
+	ReadOnlyRejected rep = (ReadOnlyRejected) vmb;
+	return rep != null && rep.requestId == requestId;
+    }
+
+    public String toString(){
+	return "< READREJ, "+super.toString()+", reqId:"+requestId+">";
+    }
+}
@@ -0,0 +1,153 @@
+// $Id$
+
+package BFT.messages;
+
+import BFT.util.UnsignedTypes;
+
+/**
+   WatchBatchReply carries all the watch events a replica generated
+   for one client while executing a batch.  The events are numbered
+   consecutively per client: the message holds events firstEventId
+   through firstEventId + eventCount - 1.
+ **/
+public class WatchBatchReply extends MacMessage{
+
+
+    /**
+       Construct that accepts specific message fields.  This
+       constructor builds up the message byte representation starting
+       from where VerifiedMessageBase leaves off.
+     **/
+    public WatchBatchReply(long execReplica, long firstEvent, long count,
+			   byte[] com){
+	super(tag(), computeSize(com), execReplica);
+	firstEventId = firstEvent;
+	eventCount = count;
+	command = com;
+
+	// now lets get the bytes
+	byte[] bytes = getBytes();
+
+	// copy the first event id over
+	byte[] tmp = UnsignedTypes.longToBytes(firstEvent);
+	int offset = getOffset();
+	for (int i = 0; i < tmp.length; i++, offset++)
+	    bytes[offset] = tmp[i];
+
+	// copy the event count over
+	tmp = UnsignedTypes.longToBytes(count);
+	for (int i = 0; i < tmp.length; i++, offset++)
+	    bytes[offset] = tmp[i];
+
+	// copy the command size over
+	tmp = UnsignedTypes.longToBytes(com.length);
+	for (int i = 0; i < tmp.length; i++, offset++)
+	    bytes[offset] = tmp[i];
+
+	// copy the events over
+	for (int i = 0; i < com.length; i++, offset++)
+	    bytes[offset] = com[i];
+    }
+
+    /**
+       Constructor accepting a byte representation of the message.
+       Parses the byte representation to populate the class fields.
+     **/
+    public WatchBatchReply(byte[] bytes){
+	super(bytes);
+	if (getTag() != MessageTags.WatchBatchReply)
+	    throw new RuntimeException("invalid message Tag: "+getTag());
+
+	int offset = getOffset();
+
+	// pull the first event id out.
+	byte[] tmp = new byte[4];
+	for (int i = 0; i < 4; i++, offset++)
+	    tmp[i] = bytes[offset];
+	firstEventId = UnsignedTypes.bytesToLong(tmp);
+
+	// pull the event count out
+	tmp = new byte[4];
+	for (int i = 0; i < 4; i++, offset++)
+	    tmp[i] = bytes[offset];
+	eventCount = UnsignedTypes.bytesToLong(tmp);
+
+	// pull the command size out
+	tmp = new byte[4];
+	for (int i = 0; i < 4; i++, offset++)
+	    tmp[i] = bytes[offset];
+	long size = UnsignedTypes.bytesToLong(tmp);
+
+	// pull the events out
+	command = new byte[(int)size];
+	for (int i = 0; i < size; i++, offset++)
+	    command[i] = bytes[offset];
+
+	if (offset != bytes.length - getAuthenticationSize())
+	    throw new RuntimeException("Invalid byte input");
+    }
+
+    private long firstEventId;
+    private long eventCount;
+    private byte[] command;
+
+    /**
+       gets the identifier of the sending replica
+     **/
+    public long getSendingReplica(){
+	return getSender();
+    }
+
+    /**
+       gets the identifier of the first event in the batch
+     **/
+    public long getFirstEventId(){
+	return firstEventId;
+    }
+
+    /**
+       gets the number of events in the batch
+     **/
+    public long getEventCount(){
+	return eventCount;
+    }
+
+    /**
+       retrieves the concatenated events
+     **/
+    public byte[] getCommand(){
+	return command;
+    }
+
+    static private int computeSize(byte[] com){
+	return  MessageTags.uint32Size + MessageTags.uint32Size
+	    + MessageTags.uint32Size + com.length;
+    }
+
+    public static int tag(){
+	return MessageTags.WatchBatchReply;
+    }
+
+    public boolean equals(WatchBatchReply rep){
+	boolean res = rep != null && super.equals(rep);
+	res =  res && matches(rep);
+	return res;
+    }
+
+    public boolean matches(VerifiedMessageBase vmb){
+	WatchBatchReply rep = (WatchBatchReply) vmb;
+	boolean res = rep != null &&
+	    command.length == rep.command.length &&
+	    rep.firstEventId == firstEventId &&
+	    rep.eventCount == eventCount;
+	for (int i = 0; res && i < command.length; i++)
+	    res = res && command[i] == rep.command[i];
+	return res;
+    }
+
+
+    public String toString(){
+	return "< WBREP, "+super.toString()+", firstEvent:"+firstEventId+
+	    ", count:"+eventCount+", commandDigest: "+new Digest(command)+">";
+    }
+}
@@ -0,0 +1,164 @@
+// $Id$
+
+package BFT.network.concurrentNet;
+
+import BFT.Parameters;
+import BFT.util.Role;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.concurrent.ArrayBlockingQueue;
+
+import org.jboss.netty.channel.Channel;
+
+/**
+   Credit based backpressure between one work queue and the netty
+   channels that feed it.
+
+   Below the low-water mark every channel reads freely.  Above it each
+   channel gets an equal share of the high-water mark as credits, and
+   a channel that spends its credits stops reading; at the high-water
+   mark every delivering channel stops reading.  Once the consumer
+   drains the queue below the low-water mark all suspended channels
+   resume and the credits are reset.  Replica roles have their own
+   queues, so a noisy client only ever suspends client channels.
+
+   A suspended channel still delivers the frames netty already read.
+   Those that find the queue full are parked in arrival order and move
+   into the queue as the consumer takes work, so the I/O thread never
+   waits for the consumer.
+ **/
+public class FlowControl {
+
+    protected Role role;
+    protected int index;
+    protected ArrayBlockingQueue<byte[]> queue;
+    protected int high;
+    protected int low;
+
+    // messages delivered by each channel since the last reset
+    protected HashMap<Channel, int[]> used = new HashMap<Channel, int[]>();
+    protected LinkedList<Channel> suspended = new LinkedList<Channel>();
+    // frames that found the queue full, oldest first
+    protected LinkedList<byte[]> parked = new LinkedList<byte[]>();
+    protected volatile int parkedCount = 0;
+    // set while credits are being counted
+    protected volatile boolean active = false;
+
+    protected long suspensions = 0;
+    protected long resumes = 0;
+
+    public FlowControl(Role role, int index, ArrayBlockingQueue<byte[]> queue){
+	this.role = role;
+	this.index = index;
+	this.queue = queue;
+	int capacity = queue.size() + queue.remainingCapacity();
+	high = Math.max(1, capacity * Parameters.queueHighWater / 100);
+	low = Math.min(high - 1, capacity * Parameters.queueLowWater / 100);
+    }
+
+    /**
+       Add work to the queue, or park it behind the frames already
+       parked.  Never blocks.
+       @return true if work went straight into the queue
+     **/
+    public boolean offer(byte[] work){
+	if (parkedCount == 0 && queue.offer(work))
+	    return true;
+	synchronized(this){
+	    if (parked.isEmpty() && queue.offer(work))
+		return true;
+	    parked.addLast(work);
+	    parkedCount = parked.size();
+	    return false;
+	}
+    }
+
+    /**
+       Move parked frames into the queue while it has room
+       @return the number of frames moved
+     **/
+    public int unpark(){
+	if (parkedCount == 0)
+	    return 0;
+	synchronized(this){
+	    int moved = 0;
+	    while (!parked.isEmpty() && queue.offer(parked.getFirst())){
+		parked.removeFirst();
+		moved++;
+	    }
+	    parkedCount = parked.size();
+	    return moved;
+	}
+    }
+
+    /**
+       Called on the netty I/O thread after ch delivered a message
+     **/
+    public void received(Channel ch){
+	int size = queue.size();
+	if (size < low)
+	    return;
+	synchronized(this){
+	    active = true;
+	    int[] count = used.get(ch);
+	    if (count == null){
+		count = new int[1];
+		used.put(ch, count);
+	    }
+	    count[0]++;
+	    int credits = Math.max(1, high / used.size());
+	    if ((size >= high || count[0] >= credits) && ch.isReadable()){
+		ch.setReadable(false);
+		suspended.add(ch);
+		if (++suspensions % 1000 == 0)
+		    System.out.println(this);
+		// the consumer may have drained the queue since size was
+		// read, without seeing this channel
+		if (queue.size() <= low)
+		    resumeAll();
+	    }
+	}
+    }
+
+    /**
+       Called by the consumer after it took work from the queue
+     **/
+    public void drained(){
+	if (!active || queue.size() > low)
+	    return;
+	synchronized(this){
+	    resumeAll();
+	}
+    }
+
+    private void resumeAll(){
+	Iterator<Channel> it = suspended.iterator();
+	while (it.hasNext()){
+	    Channel ch = it.next();
+	    if (ch.isOpen())
+		ch.setReadable(true);
+	    resumes++;
+	}
+	suspended.clear();
+	used.clear();
+	active = false;
+    }
+
+    public synchronized void closed(Channel ch){
+	used.remove(ch);
+	suspended.remove(ch);
+    }
+
+    public synchronized int getSuspended(){
+	return suspended.size();
+    }
+
+    public String toString(){
+	return "Flow "+role+"."+index+" occupancy= "+queue.size()+"/"+
+	    (queue.size()+queue.remainingCapacity())+" parked= "+parkedCount+
+	    " suspended= "+getSuspended()+" suspensions= "+suspensions+
+	    " resumes= "+resumes;
+    }
+}
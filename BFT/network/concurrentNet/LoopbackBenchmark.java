@@ -0,0 +1,121 @@
+// $Id$
+
+package BFT.network.concurrentNet;
+
+import BFT.Parameters;
+import BFT.util.Role;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jboss.netty.bootstrap.ServerBootstrap;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.ChannelPipelineCoverage;
+import org.jboss.netty.channel.ChannelPipelineFactory;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.jboss.netty.channel.socket.nio.NioServerSocketChannelFactory;
+
+/**
+   Loopback throughput of the netty transport with the configured
+   thread counts and socket options.  Messages of 100 B up to 1 MB are
+   framed and sent the way NettyTCPNetwork.send does, and decoded by
+   MessageDecoder on the receiving side.
+
+   usage: LoopbackBenchmark [bytesPerSize] [senders]
+ **/
+public class LoopbackBenchmark {
+
+    @ChannelPipelineCoverage("one")
+    static class Counter extends SimpleChannelUpstreamHandler {
+	AtomicLong received;
+
+	Counter(AtomicLong received){
+	    this.received = received;
+	}
+
+	public void messageReceived(ChannelHandlerContext ctx, MessageEvent e){
+	    received.incrementAndGet();
+	}
+    }
+
+    public static void main(String[] args) throws Exception{
+	long volume = args.length > 0 ? Long.parseLong(args[0]) : 256L*1024*1024;
+	final int senders = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+	final AtomicLong received = new AtomicLong();
+
+	int ioThreads = NettyTCPNetwork.ioThreads(Role.EXEC, 1);
+	NioServerSocketChannelFactory factory = 
+	    NettyTCPNetwork.newChannelFactory(Role.EXEC, ioThreads);
+	ServerBootstrap b = new ServerBootstrap(factory);
+	NettyTCPNetwork.configure(b);
+	b.setPipelineFactory(new ChannelPipelineFactory(){
+		public ChannelPipeline getPipeline(){
+		    ChannelPipeline p = Channels.pipeline();
+		    p.addLast("decoder", new MessageDecoder(Role.EXEC, 0));
+		    p.addLast("handler", new Counter(received));
+		    return p;
+		}
+	    });
+	Channel server = b.bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0));
+	final InetSocketAddress addr = (InetSocketAddress) server.getLocalAddress();
+
+	System.out.println("io threads: "+ioThreads+
+			   " tcpNoDelay: "+Parameters.tcpNoDelay+
+			   " sndbuf: "+Parameters.sendBufferSize+
+			   " rcvbuf: "+Parameters.receiveBufferSize+
+			   " senders: "+senders);
+	System.out.println("size\tmsgs\tmsgs/s\tMB/s");
+	int[] sizes = {100, 1024, 10*1024, 100*1024, 1024*1024};
+	for (int s = 0; s < sizes.length; s++){
+	    final int size = sizes[s];
+	    final long count = Math.max(1000, volume / size / senders);
+	    received.set(0);
+	    final SocketChannel[] socks = new SocketChannel[senders];
+	    for (int i = 0; i < senders; i++){
+		socks[i] = SocketChannel.open();
+		NettyTCPNetwork.configure(socks[i]);
+		socks[i].connect(addr);
+	    }
+	    Thread[] threads = new Thread[senders];
+	    long start = System.nanoTime();
+	    for (int i = 0; i < senders; i++){
+		final SocketChannel sock = socks[i];
+		threads[i] = new Thread(){
+			public void run(){
+			    byte[] framed = NettyTCPNetwork.frame(new byte[size]);
+			    try{
+				for (long j = 0; j < count; j++){
+				    ByteBuffer buf = ByteBuffer.wrap(framed);
+				    while (buf.hasRemaining())
+					sock.write(buf);
+				}
+			    }catch(Exception e){
+				e.printStackTrace();
+			    }
+			}
+		    };
+		threads[i].start();
+	    }
+	    for (int i = 0; i < senders; i++)
+		threads[i].join();
+	    long total = count * senders;
+	    while (received.get() < total)
+		Thread.sleep(1);
+	    long elapsed = System.nanoTime() - start;
+	    for (int i = 0; i < senders; i++)
+		socks[i].close();
+	    double secs = elapsed / 1e9;
+	    System.out.println(size+"\t"+total+"\t"+(long)(total/secs)+"\t"+
+			       (long)(total*(double)size/secs/(1024*1024)));
+	}
+	server.close().awaitUninterruptibly();
+	factory.releaseExternalResources();
+    }
+}
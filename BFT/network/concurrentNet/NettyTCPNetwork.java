@@ -22,7 +22,10 @@ import java.util.*;
 import BFT.Debug;
 import BFT.Parameters;
 
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
 import java.net.InetSocketAddress;
 
 import org.jboss.netty.bootstrap.ServerBootstrap;
@@ -54,6 +57,280 @@ public class NettyTCPNetwork implements ConcurrentNetwork {
     private ByteBuffer readBuffer = ByteBuffer.allocate(8*1024);
     //netty//private Hashtable<SocketAddress, Integer> indexTable =  null;
     private NetworkWorkQueue NWQ;
+    // one boss and one worker pool per role, shared by all interfaces
+    private NioServerSocketChannelFactory channelFactory;
+    // bytes handed to non-blocking sockets but not yet written
+    private ConcurrentHashMap<String, Outbound> outbound =
+	new ConcurrentHashMap<String, Outbound>();
+    private long writeStalls = 0;
+    // writes what sends left in outbound once their sockets are
+    // writable, see flushLater()
+    private Selector flushSelector = null;
+    private Hashtable<SocketChannel, String> toFlush =
+	new Hashtable<SocketChannel, String>();
+
+    /**
+       Threads of a role's event loop are named
+       <role>-<pool>-<n>[@cpu<k>] where k cycles over
+       Parameters.netAffinity for the role.  The jvm cannot pin threads
+       itself, the names are the hint for an external taskset.
+     **/
+    static class RoleThreadFactory implements ThreadFactory {
+	private Role role;
+	private String pool;
+	private int count = 0;
+	private int[] cpus;
+
+	RoleThreadFactory(Role role, String pool){
+	    this.role = role;
+	    this.pool = pool;
+	    String aff = Parameters.netAffinity[role.ordinal()];
+	    if (aff != null && aff.length() > 0){
+		String[] parts = aff.split(",");
+		cpus = new int[parts.length];
+		for (int i = 0; i < parts.length; i++)
+		    cpus[i] = Integer.parseInt(parts[i].trim());
+	    }
+	}
+
+	public synchronized Thread newThread(Runnable r){
+	    String name = role+"-"+pool+"-"+count;
+	    if (cpus != null)
+		name += "@cpu"+cpus[count % cpus.length];
+	    count++;
+	    Thread t = new Thread(r, name);
+	    t.setDaemon(true);
+	    return t;
+	}
+    }
+
+    /**
+       The I/O threads of role, listening on interfaces interfaces.
+       Without Parameters.netIOThreads set, one per interface, as many
+       as when each interface had a factory of its own
+     **/
+    static int ioThreads(Role role, int interfaces){
+	int threads = Parameters.netIOThreads[role.ordinal()];
+	return threads > 0 ? threads : Math.max(interfaces, 1);
+    }
+
+    /**
+       The server channel factory for role, with threads I/O threads
+     **/
+    static NioServerSocketChannelFactory newChannelFactory(Role role,
+							   int threads){
+	ExecutorService boss = 
+	    Executors.newCachedThreadPool(new RoleThreadFactory(role, "boss"));
+	ExecutorService workers = 
+	    Executors.newCachedThreadPool(new RoleThreadFactory(role, "io"));
+	return new NioServerSocketChannelFactory(boss, workers, threads);
+    }
+
+    /**
+       Apply the configured socket options to accepted connections
+     **/
+    static void configure(ServerBootstrap b){
+	b.setOption("reuseAddress", true);
+	b.setOption("child.tcpNoDelay", Parameters.tcpNoDelay);
+	if (Parameters.receiveBufferSize > 0){
+	    b.setOption("receiveBufferSize", Parameters.receiveBufferSize);
+	    b.setOption("child.receiveBufferSize", Parameters.receiveBufferSize);
+	}
+	if (Parameters.sendBufferSize > 0)
+	    b.setOption("child.sendBufferSize", Parameters.sendBufferSize);
+	b.setOption("child.writeBufferHighWaterMark", Parameters.writeHighWater);
+	b.setOption("child.writeBufferLowWaterMark", Parameters.writeLowWater);
+    }
+
+    /**
+       Apply the configured socket options to an outgoing connection
+     **/
+    static void configure(SocketChannel socket) throws IOException{
+	socket.socket().setTcpNoDelay(Parameters.tcpNoDelay);
+	if (Parameters.sendBufferSize > 0)
+	    socket.socket().setSendBufferSize(Parameters.sendBufferSize);
+	if (Parameters.receiveBufferSize > 0)
+	    socket.socket().setReceiveBufferSize(Parameters.receiveBufferSize);
+    }
+
+    /**
+       length | message | length framing expected by MessageDecoder
+     **/
+    static byte[] frame(byte[] m){
+	byte[] lenBytes = UnsignedTypes.longToBytes((long)m.length);
+	byte[] allBytes = new byte[m.length+8]; // MARKER change
+	// TLR 2009.1.23: Changed marker to be length of message
+	System.arraycopy(lenBytes, 0, allBytes, 0, 4);
+	System.arraycopy(m, 0, allBytes, 4, m.length);
+	System.arraycopy(lenBytes, 0, allBytes, m.length+4, 4);
+	return allBytes;
+    }
+
+    /**
+       Pending output of one non-blocking socket.  Senders wait for the
+       socket to become writable on writable, a selector of its own.
+     **/
+    static class Outbound {
+	LinkedList<ByteBuffer> queue = new LinkedList<ByteBuffer>();
+	long bytes = 0;
+	Selector writable;
+
+	void drain(SocketChannel socket) throws IOException{
+	    while (!queue.isEmpty()){
+		ByteBuffer b = queue.getFirst();
+		bytes -= socket.write(b);
+		if (b.hasRemaining())
+		    return;
+		queue.removeFirst();
+	    }
+	}
+
+	/**
+	   Block until socket may take more bytes, or for at most 100ms.
+	   Only one sender at a time waits on the selector, the others
+	   keep queueing under the Outbound lock meanwhile.
+	 **/
+	void awaitWritable(SocketChannel socket) throws IOException{
+	    synchronized(this){
+		if (writable == null){
+		    writable = Selector.open();
+		    socket.register(writable, SelectionKey.OP_WRITE);
+		}
+	    }
+	    synchronized(writable){
+		try {
+		    if (writable.select(100) > 0)
+			writable.selectedKeys().clear();
+		} catch (ClosedSelectorException e) {
+		    throw new IOException("socket closed while waiting to write");
+		}
+	    }
+	}
+
+	synchronized void close(){
+	    if (writable != null){
+		try {
+		    writable.close();
+		} catch (IOException e) {
+		}
+	    }
+	}
+    }
+
+    /**
+       Queue bytes on a non-blocking socket.  Once more than
+       Parameters.writeHighWater bytes are pending, the sender waits
+       until the socket drains below Parameters.writeLowWater.  The
+       flush thread writes whatever is left after that.
+     **/
+    private void writeNonBlocking(String socketName, SocketChannel socket,
+				  byte[] bytes) throws IOException{
+	Outbound out = outbound.get(socketName);
+	if (out == null){
+	    Outbound fresh = new Outbound();
+	    out = outbound.putIfAbsent(socketName, fresh);
+	    if (out == null)
+		out = fresh;
+	}
+	synchronized(out){
+	    out.queue.addLast(ByteBuffer.wrap(bytes));
+	    out.bytes += bytes.length;
+	    out.drain(socket);
+	    if (out.bytes <= Parameters.writeHighWater){
+		if (out.bytes > 0)
+		    flushLater(socketName, socket);
+		return;
+	    }
+	    if (++writeStalls % 1000 == 0)
+		System.out.println(myRole+" write stalls: "+writeStalls);
+	}
+	while (true){
+	    out.awaitWritable(socket);
+	    synchronized(out){
+		out.drain(socket);
+		if (out.bytes <= Parameters.writeLowWater){
+		    if (out.bytes > 0)
+			flushLater(socketName, socket);
+		    return;
+		}
+	    }
+	}
+    }
+
+    /**
+       Have the flush thread write what a send left queued on socket
+       once it is writable, rather than on the next send to the peer,
+       which may never come
+     **/
+    private void flushLater(String socketName, SocketChannel socket)
+	throws IOException{
+	Selector selector;
+	synchronized(toFlush){
+	    if (flushSelector == null){
+		flushSelector = Selector.open();
+		Thread t = new Thread(myRole+"-flush"){
+			public void run(){
+			    flushLoop();
+			}
+		    };
+		t.setDaemon(true);
+		t.start();
+	    }
+	    selector = flushSelector;
+	    toFlush.put(socket, socketName);
+	}
+	selector.wakeup();
+    }
+
+    /**
+       Register the sockets handed to flushLater() and drain those that
+       became writable, until their queues are empty.  A socket that
+       fails is left for the next send to it to close.
+     **/
+    private void flushLoop(){
+	while (true){
+	    try {
+		flushSelector.select();
+	    } catch (IOException e) {
+		System.out.println(myRole+" flush thread failed: "+e);
+		return;
+	    }
+	    synchronized(toFlush){
+		for (Map.Entry<SocketChannel, String> e : toFlush.entrySet()){
+		    SelectionKey key = e.getKey().keyFor(flushSelector);
+		    try {
+			if (key == null)
+			    e.getKey().register(flushSelector,
+						SelectionKey.OP_WRITE, e.getValue());
+			else if (key.isValid())
+			    key.interestOps(SelectionKey.OP_WRITE);
+		    } catch (ClosedChannelException ce) {
+		    }
+		}
+		toFlush.clear();
+	    }
+	    Iterator<SelectionKey> keys = flushSelector.selectedKeys().iterator();
+	    while (keys.hasNext()){
+		SelectionKey key = keys.next();
+		keys.remove();
+		Outbound out = outbound.get((String) key.attachment());
+		if (out == null){
+		    key.cancel();
+		    continue;
+		}
+		synchronized(out){
+		    try {
+			out.drain((SocketChannel) key.channel());
+		    } catch (IOException e) {
+			key.cancel();
+			continue;
+		    }
+		    if (out.bytes == 0 && key.isValid())
+			key.interestOps(0);
+		}
+	    }
+	}
+    }
 
     public NettyTCPNetwork(Role role, Membership members, NetworkWorkQueue nwq) {
 	myRole = role;
@@ -88,16 +365,14 @@ public class NettyTCPNetwork implements ConcurrentNetwork {
 
 	bootstrap = new ServerBootstrap[IPports.length];
 	isas = new InetSocketAddress[IPports.length];
+	channelFactory = newChannelFactory(role, ioThreads(role, IPports.length));
 	for(int i=0;i<IPports.length;i++) {
 	    try {
 		String ipStr = IPports[i].split(":", 0)[0];
 		String portStr = IPports[i].split(":", 0)[1];
 
-		bootstrap[i] = new ServerBootstrap(
-				new NioServerSocketChannelFactory(
-				Executors.newCachedThreadPool(),
-				Executors.newCachedThreadPool(),
-                1));
+		bootstrap[i] = new ServerBootstrap(channelFactory);
+		configure(bootstrap[i]);
 
 		//this.serverChannels[i] = ServerSocketChannel.open();
 		//this.serverChannels[i].configureBlocking(false);
@@ -179,9 +454,10 @@ public class NettyTCPNetwork implements ConcurrentNetwork {
 	    }
 	    try {
 		socket = SocketChannel.open();
-		socket.configureBlocking(Parameters.blockingSends);
-		socket.socket().setTcpNoDelay(true);
+		configure(socket);
 		socket.connect(new InetSocketAddress(p.getIP(), p.getPort()));
+		// connect blocking, then switch to the configured send mode
+		socket.configureBlocking(Parameters.blockingSends);
 		socketTable.put(socketName, new SCWrapper(socket));
 	    }
 	    catch (IOException e) {
@@ -192,18 +468,15 @@ public class NettyTCPNetwork implements ConcurrentNetwork {
 		//System.exit(1);
 	    }
 	}
-	byte[] lenBytes = UnsignedTypes.longToBytes((long)m.length);
-	byte[] allBytes = new byte[m.length+8]; // MARKER change
-	// TLR 2009.1.23: Changed marker to be length of message
-    ////System.err.println("\tsending "+m.length+" bytes");
-	System.arraycopy(lenBytes, 0, allBytes, 0, 4);
-	System.arraycopy(m, 0, allBytes, 4, m.length);
-	System.arraycopy(lenBytes, 0, allBytes, m.length+4, 4);
+	byte[] allBytes = frame(m);
 
 	boolean cleanup = false;
 	try {
 	    if(socket.isConnected()) {
-		int numWritten = socket.write(ByteBuffer.wrap(allBytes));
+		if (socket.isBlocking())
+		    socket.write(ByteBuffer.wrap(allBytes));
+		else
+		    writeNonBlocking(socketName, socket, allBytes);
 	    }
 	    else {
 		cleanup = true;
@@ -231,6 +504,9 @@ public class NettyTCPNetwork implements ConcurrentNetwork {
 		System.out.println("Failed on close");
 	    }
 	    socketTable.remove(socketName);
+	    Outbound out = outbound.remove(socketName);
+	    if (out != null)
+		out.close();
 	}
 	Debug.profileFinis("SEND");
     }
@@ -35,6 +35,9 @@ public class NetworkWorkQueue implements NetQueue {
     protected int orderCount = 0;
     protected int filterCount = 0;
     protected int execCount = 0;
+
+    // backpressure state of each queue, by role and index
+    protected Hashtable<String, FlowControl> flows = new Hashtable<String, FlowControl>();
     
     public NetworkWorkQueue() {
 	filters = new ArrayList<ArrayBlockingQueue<byte[]>>(BFT.Parameters.getFilterCount());
@@ -195,7 +198,14 @@ public class NetworkWorkQueue implements NetQueue {
 		lock.notifyAll();
 	    }
 	}
-	if (queue.offer(work))
+	// under flow control a frame that finds the queue full is parked
+	// and announced once the consumer moves it into the queue
+	FlowControl flow = getFlowControl(role, index);
+	if (flow != null){
+	    if (flow.offer(work))
+		this.announceNetWork(role);
+	}
+	else if (queue.offer(work))
 	    this.announceNetWork(role);
  	else{
 		//this.tookNetWork(role); 
@@ -223,7 +233,15 @@ public class NetworkWorkQueue implements NetQueue {
 	if(!queue.isEmpty()) {
 	    retBytes = queue.poll();
 	}
-	if(retBytes != null) this.tookNetWork(role);
+	if(retBytes != null) {
+	    this.tookNetWork(role);
+	    FlowControl flow = flows.get(flowName(role, index));
+	    if (flow != null){
+		for (int moved = flow.unpark(); moved > 0; moved--)
+		    this.announceNetWork(role);
+		flow.drained();
+	    }
+	}
 
 // 	if (clientCount > 100)
 // 	    System.out.println("end: "+clientCount+" "+filterCount+" "+orderCount+" "+execCount);
@@ -293,6 +311,41 @@ public class NetworkWorkQueue implements NetQueue {
     }
 	
 
+    /**
+       Backpressure for the queue of role and index, null if flow
+       control is off or the role is not queued here
+     **/
+    public FlowControl getFlowControl(Role role, int index){
+	if (!Parameters.flowControl)
+	    return null;
+	String name = flowName(role, index);
+	FlowControl flow = flows.get(name);
+	if (flow == null){
+	    synchronized(lock){
+		flow = flows.get(name);
+		ArrayBlockingQueue<byte[]> queue = selectQueue(role, index);
+		if (flow == null && queue != null){
+		    flow = new FlowControl(role, index, queue);
+		    flows.put(name, flow);
+		}
+	    }
+	}
+	return flow;
+    }
+
+    // all client interfaces share one queue
+    protected String flowName(Role role, int index){
+	return role == Role.CLIENT ? role.toString() : role.toString() + index;
+    }
+
+    /**
+       Occupancy and suspended channels of every queue under flow control
+     **/
+    public void printFlowStats(){
+	for (FlowControl flow : flows.values())
+	    System.out.println(flow);
+    }
+
     protected ArrayBlockingQueue<byte[]> selectQueue(Role role, int index){
 	ArrayBlockingQueue<byte[]> queue=null;
 	try{
@@ -10,6 +10,7 @@ import java.util.logging.Logger;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelStateEvent;
 import org.jboss.netty.channel.ChannelPipelineCoverage;
 import org.jboss.netty.channel.ExceptionEvent;
 import org.jboss.netty.channel.MessageEvent;
@@ -29,6 +30,7 @@ public class ServerHandler extends SimpleChannelUpstreamHandler {
     Role role;
     int id;
     NetworkWorkQueue NWQ;
+    FlowControl flow = null;
     
     public ServerHandler(Role _role, int _id, NetworkWorkQueue _NWQ) {
         role = _role;
@@ -55,6 +57,19 @@ public class ServerHandler extends SimpleChannelUpstreamHandler {
         byte[] bytes = pair.getRight();
         ////System.out.println("I got "+bytes.length+" bytes from the decoder. Role = "+role+" id="+id);
     	NWQ.addWork(role, id, pair.getRight());
+        // the queue is created by the first addWork
+        if (flow == null)
+            flow = NWQ.getFlowControl(role, id);
+        if (flow != null)
+            flow.received(e.getChannel());
+    }
+
+    @Override
+    public void channelClosed(
+            ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+        if (flow != null)
+            flow.closed(e.getChannel());
+        super.channelClosed(ctx, e);
     }
 
     @Override
@@ -0,0 +1,101 @@
+// $Id$
+
+package BFT.order;
+
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+   Streams nextbatch messages to execution replicas that are catching
+   up, off the order worker thread.
+
+   Each execution replica has at most one pending stream; a newer
+   catch-up request for the same replica replaces the old stream since
+   it starts at a later point.  Every replica has its own byte budget
+   that refills at Parameters.catchUpBytesPerSecond, so a replica that
+   is far behind neither starves the others nor floods the network.
+ **/
+public class CatchUpSender implements Runnable{
+
+    protected OrderBaseNode obn;
+    protected LinkedList<byte[]>[] streams;
+    protected long[] budget;
+    protected long[] lastRefill;
+    protected long[] sentBytes;
+    protected long[] sentBatches;
+
+    public CatchUpSender(OrderBaseNode obn){
+	this.obn = obn;
+	int count = Parameters.getExecutionCount();
+	streams = new LinkedList[count];
+	budget = new long[count];
+	lastRefill = new long[count];
+	sentBytes = new long[count];
+	sentBatches = new long[count];
+	for (int i = 0; i < count; i++){
+	    streams[i] = new LinkedList<byte[]>();
+	    budget[i] = Parameters.catchUpBurst;
+	}
+    }
+
+    /**
+       Replace the pending stream for replica with batches
+     **/
+    public synchronized void enqueue(int replica, List<byte[]> batches){
+	streams[replica].clear();
+	streams[replica].addAll(batches);
+	notifyAll();
+    }
+
+    protected void refill(int replica, long now){
+	long elapsed = now - lastRefill[replica];
+	lastRefill[replica] = now;
+	budget[replica] += elapsed * Parameters.catchUpBytesPerSecond / 1000;
+	if (budget[replica] > Parameters.catchUpBurst)
+	    budget[replica] = Parameters.catchUpBurst;
+    }
+
+    public void run(){
+	while (true){
+	    byte[][] toSend = new byte[streams.length][];
+	    synchronized(this){
+		boolean pending = false;
+		long now = System.currentTimeMillis();
+		for (int i = 0; i < streams.length; i++){
+		    if (streams[i].isEmpty())
+			continue;
+		    pending = true;
+		    refill(i, now);
+		    if (budget[i] > 0){
+			toSend[i] = streams[i].removeFirst();
+			budget[i] -= toSend[i].length;
+		    }
+		}
+		try{
+		    if (!pending){
+			wait();
+			continue;
+		    }
+		    boolean any = false;
+		    for (int i = 0; i < toSend.length; i++)
+			any = any || toSend[i] != null;
+		    // everybody is out of budget, wait for the next refill
+		    if (!any)
+			wait(1);
+		}catch(InterruptedException e){
+		}
+	    }
+	    // send outside the lock so the worker never waits on the network
+	    for (int i = 0; i < toSend.length; i++){
+		if (toSend[i] == null)
+		    continue;
+		obn.sendToExecutionReplica(toSend[i], i);
+		sentBytes[i] += toSend[i].length;
+		sentBatches[i]++;
+		if (sentBatches[i] % 1000 == 0)
+		    System.out.println("CatchUp replica="+i+" batches="+sentBatches[i]+
+				       " bytes="+sentBytes[i]);
+	    }
+	}
+    }
+}
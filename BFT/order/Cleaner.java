@@ -7,7 +7,6 @@ import java.security.interfaces.RSAPrivateKey;
 import java.security.interfaces.RSAPublicKey;
 import java.security.*;
 import java.util.concurrent.*;
-import java.util.Vector;
 
 import BFT.membership.*;
 import BFT.order.messages.PrePrepare;
@@ -27,7 +26,7 @@ public class Cleaner{
 	//private int[] lastClientReq = null;
 	//private ExecutorService pool = null;
 	private Membership members;
-	private Vector<Vector<Pair<Integer, Digest>>> lastClientReq = null;
+	private VerifiedRequestCache verified = null;
 
     public Cleaner(CleanerWorkQueue in, OrderWorkQueue out, Membership m){
 	this.incoming = in;
@@ -36,18 +35,10 @@ public class Cleaner{
 		//pool = Executors.newCachedThreadPool();
 		//pool = new ThreadPoolExecutor(0, 2, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(1024));
 		members = m;
-		lastClientReq = new Vector<Vector<Pair<Integer, Digest>>>(BFT.Parameters.getNumberOfClients());
-		Vector<Pair<Integer, Digest>> v;
-		for(int i = 0; i < BFT.Parameters.getNumberOfClients(); i++) {
-			v = new Vector<Pair<Integer, Digest>>((BFT.order.Parameters.checkPointInterval));
-			lastClientReq.add(i, v);
-			Pair<Integer, Digest> p = null;
-			for(int j = 0; j < BFT.order.Parameters.checkPointInterval; j++) {
-				//byte[] test = new String("Test").getBytes();
-				//p = new Pair<Integer, Digest>(new Integer(0), new Digest(test));
-				v.add(j, p);
-			}
-		}
+		int size = BFT.order.Parameters.cleanerCacheSize;
+		if (size <= 0)
+		    size = BFT.Parameters.getNumberOfClients() * BFT.order.Parameters.checkPointInterval;
+		verified = new VerifiedRequestCache(size);
 	}
 
 	/** Functions to get the public keys for specific nodes **/
@@ -93,22 +84,29 @@ public class Cleaner{
     
     public boolean hasBeenCleaned(RequestCore rc) {
 	boolean retVal = false;
-	Pair<Integer, Digest> p = lastClientReq.get((int)rc.getSendingClient()).get((int)rc.getRequestId() % BFT.order.Parameters.checkPointInterval);
-	//Digest d = lastClientReq[(int)rc.getSendingClient()][(int)rc.getRequestId() % BFT.order.Parameters.checkPointInterval];
-	if(p != null) {
-	    Digest d = p.getRight();
-	    Integer sn = p.getLeft();
+	Digest d = verified.lookup(rc.getSendingClient(), rc.getRequestId());
+	if(d != null) {
 	    Digest newD = new Digest(rc.getBytes());
 	    if(newD.equals(d)) {
 		retVal = true;
 	    }
-	    else if (sn == (int)rc.getRequestId()) {
+	    else {
+		verified.miss();
 		Debug.println(rc);
 		BFT.Debug.kill(new RuntimeException("Sequence number sending different requests! Somebody is being bad!"));
 	    }
 	}
+	if (verified.getLookups() % 10000 == 0)
+	    System.out.println(verified);
 	return retVal;
     }
+
+    /**
+       called when the order node garbage collects a checkpoint
+     **/
+    public void garbageCollect(){
+	verified.garbageCollect();
+    }
 	
 	public void farm(SignedRequestCore rc){
 		CleanerWork cw = new CleanerWork(rc, this);
@@ -150,10 +148,7 @@ public class Cleaner{
 	}
 	
 	public void updateHash(SignedRequestCore rc) {
-		Digest d = new Digest(rc.getBytes());
-		Integer sn = (int)rc.getRequestId();
-		Pair<Integer, Digest> newP = new Pair<Integer, Digest>(sn, d);
-		lastClientReq.get((int)rc.getSendingClient()).add((int)rc.getRequestId() % BFT.order.Parameters.checkPointInterval, newP);
+		verified.add(rc.getSendingClient(), rc.getRequestId(), new Digest(rc.getBytes()));
 	}
 	
     private class CleanerWork implements Runnable {
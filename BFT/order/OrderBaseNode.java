@@ -7,6 +7,7 @@ package BFT.order;
 import java.security.Security;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.Vector;
 import java.io.*;
 
 import BFT.BaseNode;
@@ -83,6 +84,7 @@ import BFT.order.statemanagement.Certificate;
 import BFT.order.statemanagement.CheckPointState;
 import BFT.order.statemanagement.RequestQueue;
 import BFT.util.Role;
+import BFT.util.StageTimes;
 
 // network communication
 import BFT.network.concurrentNet.*;
@@ -234,6 +236,9 @@ public class OrderBaseNode extends BaseNode{
 	// client retransmission control
 	lastClientRetrans = new long[BFT.Parameters.getNumberOfClients()];
 
+	// order status rate limiting
+	lastStatusReply = new long[BFT.Parameters.getOrderCount()];
+
 	// active counting
 	active = new boolean[BFT.Parameters.getNumberOfClients()];
 	activeCount = 0;
@@ -246,6 +251,8 @@ public class OrderBaseNode extends BaseNode{
 	changingView = false;
 	viewChanges = new ViewChangeRow[BFT.Parameters.getOrderCount()];
 	vcPPs = new PrePrepare[2*BFT.order.Parameters.checkPointInterval];
+	ppTimes = new long[BFT.order.Parameters.maxPeriods *
+			   BFT.order.Parameters.checkPointInterval];
 	vcCommits = new Commit[BFT.Parameters.getOrderCount()];
 	nvCache = new NewView[viewChanges.length];
 	for (int i = 0; i < viewChanges.length; i++)
@@ -753,8 +760,12 @@ public class OrderBaseNode extends BaseNode{
 
     **/
     long nonDetcounter = System.currentTimeMillis();
+    // when the preprepare for each live sequence number was created or
+    // accepted, for the ordering stage time
+    protected long[] ppTimes;
     protected void createNextBatch(RequestCore[] cores){
 	long seqno = getCurrentSequenceNumber();
+	ppTimes[(int)(seqno % ppTimes.length)] = System.nanoTime();
 
 	// (1) not the primary
 	if (!amIPrimary())
@@ -805,11 +816,13 @@ public class OrderBaseNode extends BaseNode{
 	else
 	    lasttime++;
 	//	getWorkingState().setCurrentTime(lasttime);
+	long lease = BFT.Parameters.readLeases ?
+	    lasttime + BFT.Parameters.leaseDuration : 0;
 	PrePrepare pp = 
 	    new PrePrepare(currentView, seqno,
 			   workingState.getHistory(),
 			   rb, 
-			   new NonDeterminism(lasttime,nonDetcounter++),
+			   new NonDeterminism(lasttime,nonDetcounter++, lease),
 			   d,
 			   getMyOrderIndex());
 
@@ -844,7 +857,6 @@ public class OrderBaseNode extends BaseNode{
 	// (8) create the next batch
 	NextBatch nb = 
 	    certificates[state][cert].getNextBatchMessage(this, currentView);
-	authenticateExecMacArrayMessage(nb);
 	// (9)  add the next batch to the agreement state
 	addNextBatch(nb);
 	// if its not a checkpoint interval rely on speculation
@@ -990,6 +1002,7 @@ public class OrderBaseNode extends BaseNode{
 	    Debug.kill("MacArray didn't validate");
 	    return;
 	}
+	ppTimes[(int)(seqno % ppTimes.length)] = System.nanoTime();
 
 	// (6) check that nondet time is consistent
 
@@ -1006,6 +1019,13 @@ public class OrderBaseNode extends BaseNode{
 		       BFT.order.Parameters.timeVariance);
 	    return;
 	}
+	long lease = pp.getNonDeterminism().getLease();
+	if (lease != 0 && (!BFT.Parameters.readLeases || lease < time
+			   || lease - time > BFT.Parameters.leaseDuration)){
+	    Debug.kill("lease doesnt work, time: "+time+" lease: "+lease+
+		       " allowed: "+BFT.Parameters.leaseDuration);
+	    return;
+	}
 		
 
 	boolean cp = (getCurrentSequenceNumber()+1) %
@@ -1115,7 +1135,6 @@ public class OrderBaseNode extends BaseNode{
 	HistoryDigest hist = cert.getHistory();
 	NextBatch nb = 
 	    cert.getNextBatchMessage(this, currentView);
-	authenticateExecMacArrayMessage(nb);
 	//	if(!validateOrderMacArrayMessage(nb)) {
 	//		BFT.Debug.kill(new RuntimeException("Bad nb mac"));
 	//	}
@@ -1445,11 +1464,15 @@ public class OrderBaseNode extends BaseNode{
 
 	// (1) fetch the next batch message for this sequence number
 	NextBatch nb = cert.getNextBatchMessage(this, currentView);
-	authenticateExecMacArrayMessage(nb);
 	//Debug.println("sending next batch: "+nb.getSeqNo());
 	// (2)  send it out to everybody
 	//sendToAllExecutionReplicas(nb.getBytes());
 	writeAndSend(nb);
+	int pt = (int)(seqNo % ppTimes.length);
+	if (ppTimes[pt] != 0){
+	    StageTimes.add("order.commit", System.nanoTime() - ppTimes[pt]);
+	    ppTimes[pt] = 0;
+	}
 	// (3) if this is a checkpoint Intervalth request, 
 	if ((seqNo + 1) % 
 	    BFT.order.Parameters.checkPointInterval == 0){
@@ -1914,6 +1937,8 @@ public class OrderBaseNode extends BaseNode{
 	    }
 	    stateSnapshots[baseIndex] = null;
 	    baseIndex = (baseIndex + 1) % BFT.order.Parameters.maxPeriods;
+	    if (cleaner != null)
+		cleaner.garbageCollect();
 	}
     }
 
@@ -1939,6 +1964,11 @@ public class OrderBaseNode extends BaseNode{
     long max = 0;
     protected void updateHeartBeat(){
 	long tmp = System.currentTimeMillis();
+	if (statusPending){
+	    statusPending = false;
+	    statusRecovered++;
+	    printStatusCounters();
+	}
 	if (max > 1000)
 	    max = -1;
 	if (tmp-heartBeat > max)
@@ -1973,11 +2003,13 @@ public class OrderBaseNode extends BaseNode{
     }
 
     public void checkHeartBeat(){
+	sendStatus();
 	if (DISABLE_VC)
 	    return;
 	if(!changingView && !amIPrimary() &&
 	   getBaseSequenceNumber() > 3*BFT.order.Parameters.checkPointInterval &&
 	   System.currentTimeMillis() - heartBeat > BFT.order.Parameters.heartBeat){
+	    statusPending = false;
 	    System.out.println("view changing off of the heartbeat");
 	    System.out.println(max);
 	    System.out.println(BFT.order.Parameters.heartBeat);
@@ -2714,7 +2746,6 @@ public class OrderBaseNode extends BaseNode{
 	    vInfo.getStableCP().hasExecCP())
 	    makeCPStable(vInfo.getStableCP());
 	NextBatch nb = certificates[stateIndex(ln)][certificateIndex(ln)].getNextBatchMessage(this, currentView);
-	authenticateExecMacArrayMessage(nb);
 	writeAndSend(nb);
 
 	//	System.out.println("starting the new view now!!!");
@@ -2999,83 +3030,135 @@ public class OrderBaseNode extends BaseNode{
     /*****************************
        Help me, i'm lost!
     *******************************/
+
+    // last time a status was sent, and last time each replica's
+    // status was answered
+    protected long lastStatus = 0;
+    protected long[] lastStatusReply;
+    // a status was sent since the last heartbeat
+    protected boolean statusPending = false;
+    protected long statusSent = 0;
+    protected long statusRetransmits = 0;
+    protected long statusRecovered = 0;
+    protected long statusTooOld = 0;
+
+    /**
+       A backup that has not seen a preprepare for statusInterval asks
+       the other replicas for whatever it is missing, well before the
+       heartbeat would trigger a view change.
+     **/
+    protected void sendStatus(){
+	long now = System.currentTimeMillis();
+	if (changingView || amIPrimary() || maxCommitted < 0
+	    || now - heartBeat < BFT.order.Parameters.statusInterval
+	    || now - lastStatus < BFT.order.Parameters.statusInterval)
+	    return;
+	lastStatus = now;
+	OrderStatus os = makeStatus();
+	sendToOtherOrderReplicas(os.getBytes());
+	statusSent++;
+	statusPending = true;
+    }
+
+    protected OrderStatus makeStatus(){
+	long p = maxPrepared > maxCommitted ? maxPrepared : maxCommitted;
+	long pp = getCurrentSequenceNumber() > p ? getCurrentSequenceNumber() : p;
+	OrderStatus os = new OrderStatus(currentView, maxCommitted,
+					 p, pp, getMyOrderIndex());
+	authenticateOrderMacArrayMessage(os);
+	return os;
+    }
+
+    protected void printStatusCounters(){
+	System.out.println("OrderStatus sent="+statusSent+
+			   " retransmits="+statusRetransmits+
+			   " recovered="+statusRecovered+
+			   " tooOld="+statusTooOld);
+    }
+
     protected void process(OrderStatus os){
-	System.err.println("****RATE LIMITING GOES HERE****");
-	Debug.kill("not using order status yet");
 	//Debug.println(Debug.STATUS, "\t\t\t\tStatus "+os.getView()+" from "+
 	//		os.getSendingReplica());
+	long replica = os.getSendingReplica();
+	if (replica < 0 || replica >= lastStatusReply.length)
+	    return;
+	int sender = (int) replica;
+	long now = System.currentTimeMillis();
+	// a status comes from a single replica, so it must be rate limited.
+	// the limit is checked before the macs, which cost more, but only
+	// valid statuses move it
+	if (now - lastStatusReply[sender] < BFT.order.Parameters.statusInterval/2)
+	    return;
 
 	if (!validateOrderMacArrayMessage(os))
-	    Debug.kill("validation should not fail yet");
+	    Debug.kill("invalid macarray");
+	lastStatusReply[sender] = now;
+	if (changingView)
+	    return;
 
-	// if its from the future, respond with an orderstatus
+	// if its from the future, respond with an orderstatus so the
+	// sender can bring us up to its view
 	if (os.getView() > currentView()){
-	    OrderStatus os2 = new OrderStatus(currentView, maxCommitted,
-					      maxPrepared, 
-					      getCurrentSequenceNumber(),
-					      getMyOrderIndex());
-	    authenticateOrderMacArrayMessage(os2);
-	    sendToOrderReplica(os2.getBytes(), (int)(os2.getSendingReplica()));
-	    Debug.kill("shouldnt be hitting this yet");
+	    sendToOrderReplica(makeStatus().getBytes(), sender);
 	    return;
 	}	
 
 	if (os.getView() < currentView()){
-	    if (amIPrimary()){
-		sendToOrderReplica(vInfo.getNewViewMessage().getBytes(),
-				   (int)(os.getSendingReplica()));
-		Debug.kill("ought to send forwarded view changes as well");
-		return;
-	    }else{
-		sendToOrderReplica(vInfo.getMyViewChange().getBytes(),
-				   (int)(os.getSendingReplica()));
-		Debug.kill("I really hope we're not doing this piece yet");
-		return;
+	    VerifiedMessageBase vmb;
+	    if (amIPrimary())
+		vmb = vInfo.getNewViewMessage();
+	    else
+		vmb = vInfo.getMyViewChange();
+	    if (vmb != null){
+		sendToOrderReplica(vmb.getBytes(), sender);
+		statusRetransmits++;
 	    }
+	    return;
 	}
 
-	if (os.getView() == currentView()){
-	    if (amIPrimary()){
-		long pp = os.getLastPrePrepared();
-		Certificate cert=null;
-		while (pp < getCurrentSequenceNumber() 
-		       && pp >= getBaseSequenceNumber()){
-		    cert = certificates[stateIndex(pp)][certificateIndex(pp)];
-		    //System.out.println("*****************forwarding preprepares"+pp);
-		    if (cert.getPrePrepare() != null)
-			sendToOrderReplica(cert.getPrePrepare().getBytes(),
-					   (int)(os.getSendingReplica()));
-		    else 
-			Debug.kill("shouldnt happen");
-		    pp++;
-		}
-		pp = os.getLastCommitted();
-		if (pp < maxCommitted){
-		    pp = maxCommitted;
-		    cert = certificates[stateIndex(pp)][certificateIndex(pp)];
-		    if (cert.getPrepare() != null)
-			sendToOrderReplica(cert.getPrepare().getBytes(),
-					   (int)(os.getSendingReplica()));
-		    else
-			Debug.kill("shouldnt happen");
-		}
-		pp = os.getLastPrepared();
-		if (pp > maxCommitted && pp < maxPrepared){
-		    cert = certificates[stateIndex(pp)][certificateIndex(pp)];
-		    if (cert.getCommit() != null)
-			sendToOrderReplica(cert.getCommit().getBytes(),
-					   (int)(os.getSendingReplica()));
-		    else
-			Debug.kill("shouldnt happen");
-		}
-
-
-	    }else{
-
-
+	// same view.  anything before our base has been garbage
+	// collected, so a replica that far behind waits for a view change
+	if (os.getLastPrePrepared() < getBaseSequenceNumber()){
+	    statusTooOld++;
+	    return;
+	}
+	int count = 0;
+	Certificate cert = null;
+	// the preprepares it has not seen
+	if (amIPrimary()){
+	    long pp = os.getLastPrePrepared();
+	    while (pp < getCurrentSequenceNumber() 
+		   && count < BFT.order.Parameters.maxStatusRetransmit){
+		cert = certificates[stateIndex(pp)][certificateIndex(pp)];
+		if (cert.getPrePrepare() == null)
+		    break;
+		sendToOrderReplica(cert.getPrePrepare().getBytes(), sender);
+		count++;
+		pp++;
 	    }
 	}
-
+	// my prepares and commits for what it preprepared but did not commit
+	long seq = os.getLastCommitted()+1;
+	if (seq < getBaseSequenceNumber())
+	    seq = getBaseSequenceNumber();
+	long end = os.getLastPrePrepared() < getCurrentSequenceNumber() ?
+	    os.getLastPrePrepared() : getCurrentSequenceNumber();
+	for (; seq < end && count < BFT.order.Parameters.maxStatusRetransmit; seq++){
+	    cert = certificates[stateIndex(seq)][certificateIndex(seq)];
+	    if (cert.getPrepare() != null){
+		sendToOrderReplica(cert.getPrepare().getBytes(), sender);
+		count++;
+	    }
+	    if (cert.getCommit() != null){
+		sendToOrderReplica(cert.getCommit().getBytes(), sender);
+		count++;
+	    }
+	}
+	if (statusRetransmits / 1000 != (statusRetransmits + count) / 1000){
+	    statusRetransmits += count;
+	    printStatusCounters();
+	}else
+	    statusRetransmits += count;
     }
 
     /*******************************
@@ -3154,10 +3237,20 @@ public class OrderBaseNode extends BaseNode{
 	lastExecLoadCP[senderIndex] = false;
     }
 
+    protected CatchUpSender catchUp = null;
+    public void setCatchUpSender(CatchUpSender c){
+	catchUp = c;
+    }
+
+    /**
+       Nextbatches are authenticated once by their certificate, so
+       catching up only collects the cached bytes.  The sending is
+       left to the catch up sender when there is one.
+    **/
     protected void forwardNextBatches(long baseline, int sendingReplica){
 	//       	System.out.println("forwarding to "+sendingReplica +"from "+baseline+" through "+getCurrentSequenceNumber());
 	
-	int count = 0;
+	Vector<byte[]> batches = new Vector<byte[]>();
 
 	// if its in the range then send nextbatches up to the
 	// getCurrentSequenceNumber()
@@ -3170,10 +3263,7 @@ public class OrderBaseNode extends BaseNode{
 		    NextBatch nb = 
 			certificates[index][i].getNextBatchMessage(this,
 								   currentView);
-		    count++;
-		    authenticateExecMacArrayMessage(nb);
-		    sendToExecutionReplica(nb.getBytes(), 
-					   (int)sendingReplica);
+		    batches.add(nb.getBytes());
 		    //		    System.out.println("resending "+nb.getSeqNo()+" to "+sendingReplica);
 		}
 		index = (index+1) % BFT.order.Parameters.maxPeriods;
@@ -3185,13 +3275,16 @@ public class OrderBaseNode extends BaseNode{
 		NextBatch nb = 
 		    certificates[index][i].getNextBatchMessage(this,
 							       currentView);
-		authenticateExecMacArrayMessage(nb);
-		count++;
-		sendToExecutionReplica(nb.getBytes(), 
-				       (int)sendingReplica);
+		batches.add(nb.getBytes());
 		//		System.out.println("resending (2) "+nb.getSeqNo() + " to "+sendingReplica);
 	    }
 	}
+	if (catchUp != null){
+	    catchUp.enqueue(sendingReplica, batches);
+	    return;
+	}
+	for (int i = 0; i < batches.size(); i++)
+	    sendToExecutionReplica(batches.get(i), (int)sendingReplica);
 	//Debug.println("*****sent "+ count+" messages  starting at "+ 
 	//		baseline +
 	//" in respose to last executed!");
@@ -3361,6 +3454,9 @@ public class OrderBaseNode extends BaseNode{
 	//netty//Thread lte = new Thread(le);
 	Worker w = new Worker(owq, owq, osn);
 	Thread wt = new Thread(w);
+	CatchUpSender cus = new CatchUpSender(osn);
+	osn.setCatchUpSender(cus);
+	Thread cust = new Thread(cus);
 	// nextbatch logging needs the exec network
 	NBLogger l1 = new NBLogger(0, owq, execNet);
 	NBLogger l2 = new NBLogger(1, owq, execNet);
@@ -3395,6 +3491,7 @@ public class OrderBaseNode extends BaseNode{
 	//netty//ltc.start();
 	l1t.start();
 	l2t.start();
+	cust.start();
     }
     
     /**
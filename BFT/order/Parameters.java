@@ -14,8 +14,23 @@ public class Parameters extends BFT.Parameters{
     public static int baseDuration = 100;
     // heartbeat interval, in milliseconds
     public static long heartBeat = 1000;
+    // a backup without progress for this many milliseconds sends an
+    // order status, and at most maxStatusRetransmit messages are resent
+    // in answer to one status
+    public static long statusInterval = heartBeat/4;
+    public static int maxStatusRetransmit = 2*checkPointInterval;
 
     // allow time to be +/- 10 sec of local time
     public static long timeVariance = 1000000;
+
+    // rate at which nextbatches are streamed to a lagging execution
+    // replica, in bytes per second, and the largest burst allowed
+    public static long catchUpBytesPerSecond = 50*1024*1024;
+    public static long catchUpBurst = 256*1024;
+
+    // entries of the verified request cache, 0 for one checkpoint
+    // interval per client, and the garbage collections they survive
+    public static int cleanerCacheSize = 0;
+    public static int cleanerCacheGenerations = maxPeriods;
  
 }
@@ -0,0 +1,120 @@
+// $Id$
+
+package BFT.order;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import BFT.messages.Digest;
+
+/**
+   Requests whose client signature has already been verified, keyed by
+   (client, request id) and holding the request digest, so a lookup is
+   a single hash probe.  Safe for concurrent verifiers.
+
+   Entries are evicted in insertion order, either once the cache holds
+   more than Parameters.cleanerCacheSize entries or once they are more
+   than Parameters.cleanerCacheGenerations garbage collections old.
+ **/
+public class VerifiedRequestCache{
+
+    protected class Entry{
+	long key;
+	Digest digest;
+	long generation;
+
+	Entry(long key, Digest digest, long generation){
+	    this.key = key;
+	    this.digest = digest;
+	    this.generation = generation;
+	}
+    }
+
+    protected ConcurrentHashMap<Long, Entry> entries;
+    protected ConcurrentLinkedQueue<Entry> order;
+    protected int maxSize;
+    protected volatile long generation = 0;
+
+    protected AtomicLong lookups = new AtomicLong();
+    protected AtomicLong hits = new AtomicLong();
+
+    public VerifiedRequestCache(int maxSize){
+	this.maxSize = maxSize;
+	entries = new ConcurrentHashMap<Long, Entry>(maxSize * 4 / 3 + 1);
+	order = new ConcurrentLinkedQueue<Entry>();
+    }
+
+    protected static long key(long client, long reqId){
+	return (client << 32) | (reqId & 0xffffffffL);
+    }
+
+    /**
+       the verified digest for (client, reqId), or null
+     **/
+    public Digest lookup(long client, long reqId){
+	Entry e = entries.get(key(client, reqId));
+	lookups.incrementAndGet();
+	if (e == null)
+	    return null;
+	hits.incrementAndGet();
+	return e.digest;
+    }
+
+    /**
+       a lookup returned a digest that did not match the request
+     **/
+    public void miss(){
+	hits.decrementAndGet();
+    }
+
+    public void add(long client, long reqId, Digest d){
+	Entry e = new Entry(key(client, reqId), d, generation);
+	entries.put(e.key, e);
+	order.add(e);
+	while (entries.size() > maxSize)
+	    evictOldest();
+    }
+
+    protected void evictOldest(){
+	Entry e = order.poll();
+	if (e != null)
+	    entries.remove(e.key, e);
+    }
+
+    /**
+       Called on every order garbage collection; drops the entries
+       added more than Parameters.cleanerCacheGenerations collections
+       ago
+     **/
+    public void garbageCollect(){
+	long gen = ++generation;
+	Entry e = order.peek();
+	while (e != null && e.generation < gen - Parameters.cleanerCacheGenerations){
+	    evictOldest();
+	    e = order.peek();
+	}
+    }
+
+    public int size(){
+	return entries.size();
+    }
+
+    public long getLookups(){
+	return lookups.get();
+    }
+
+    /**
+       number of signature verifications avoided
+     **/
+    public long getHits(){
+	return hits.get();
+    }
+
+    public String toString(){
+	long l = lookups.get();
+	long h = hits.get();
+	return "Verified cache size= "+size()+" lookups= "+l+" hits= "+h+
+	    " hitRate= "+(l == 0 ? 0 : (100*h)/l)+"% verificationsAvoided= "+h;
+    }
+}
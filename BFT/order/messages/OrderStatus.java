@@ -18,7 +18,7 @@ public class OrderStatus extends MacArrayMessage{
 
     public OrderStatus (long view, long c, long p, long pp, int sendingReplica){
 	super(MessageTags.OrderStatus, computeSize(), sendingReplica,
-	      Parameters.getExecutionCount());
+	      Parameters.getOrderCount());
 	viewNo = view;
 	comSeqNo = c;
 	prepSeqNo = p;
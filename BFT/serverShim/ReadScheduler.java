@@ -0,0 +1,128 @@
+// $Id$
+
+package BFT.serverShim;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+   Admission control and scheduling for read only requests.
+
+   Reads are admitted against a per-client token bucket that refills
+   at Parameters.readRate reads per second up to Parameters.readBurst,
+   and then wait in a bounded queue for one of Parameters.readWorkers
+   threads.  A worker only hands a read to the glue once every batch
+   passed to the glue has produced its results, so ordered execution
+   always goes first; a read is deferred at most
+   Parameters.maxReadDefer ms.  Reads over the rate or beyond the
+   queue are shed and the client falls back to the ordered path.
+ **/
+public class ReadScheduler{
+
+    protected class Read{
+	int client;
+	long reqId;
+	byte[] op;
+	long queued;
+
+	Read(int client, long reqId, byte[] op){
+	    this.client = client;
+	    this.reqId = reqId;
+	    this.op = op;
+	    queued = System.currentTimeMillis();
+	}
+    }
+
+    protected ShimBaseNode shim;
+    protected ArrayBlockingQueue<Read> queue;
+    protected double[] tokens;
+    protected long[] lastRefill;
+
+    protected long admitted = 0;
+    protected long rateShed = 0;
+    protected long queueShed = 0;
+    protected long deferred = 0;
+    protected long executed = 0;
+    protected long queueTime = 0;
+
+    public ReadScheduler(ShimBaseNode shim){
+	this.shim = shim;
+	queue = new ArrayBlockingQueue<Read>(BFT.Parameters.readQueueSize);
+	tokens = new double[BFT.Parameters.getNumberOfClients()];
+	lastRefill = new long[tokens.length];
+	for (int i = 0; i < tokens.length; i++)
+	    tokens[i] = BFT.Parameters.readBurst;
+    }
+
+    public void start(){
+	for (int i = 0; i < BFT.Parameters.readWorkers; i++){
+	    Thread t = new Thread(new Runnable(){
+		    public void run(){
+			work();
+		    }
+		}, "ReadWorker-"+i);
+	    t.setDaemon(true);
+	    t.start();
+	}
+    }
+
+    /**
+       Called by the shim worker for every valid read.  Returns false
+       if the read was shed.
+     **/
+    public boolean submit(int client, long reqId, byte[] op){
+	long now = System.currentTimeMillis();
+	boolean ok;
+	synchronized(this){
+	    tokens[client] += (now - lastRefill[client]) * 
+		BFT.Parameters.readRate / 1000.0;
+	    lastRefill[client] = now;
+	    if (tokens[client] > BFT.Parameters.readBurst)
+		tokens[client] = BFT.Parameters.readBurst;
+	    ok = tokens[client] >= 1;
+	    if (!ok)
+		rateShed++;
+	    else if (!queue.offer(new Read(client, reqId, op))){
+		queueShed++;
+		ok = false;
+	    }else{
+		tokens[client] -= 1;
+		admitted++;
+	    }
+	    if ((admitted + rateShed + queueShed) % 1000 == 0)
+		report();
+	}
+	return ok;
+    }
+
+    protected void work(){
+	while (true){
+	    Read r;
+	    try{
+		r = queue.take();
+	    }catch(InterruptedException e){
+		return;
+	    }
+	    long start = System.currentTimeMillis();
+	    boolean waited = false;
+	    while (shim.orderedPending() 
+		   && System.currentTimeMillis() - start < BFT.Parameters.maxReadDefer){
+		waited = true;
+		shim.waitForOrdered(BFT.Parameters.maxReadDefer);
+	    }
+	    synchronized(this){
+		if (waited)
+		    deferred++;
+		executed++;
+		queueTime += System.currentTimeMillis() - r.queued;
+	    }
+	    shim.glue.execReadOnly(r.client, r.reqId, r.op);
+	}
+    }
+
+    public synchronized void report(){
+	System.out.println("Reads admitted= "+admitted+" shed(rate)= "+rateShed+
+			   " shed(queue)= "+queueShed+" queued= "+queue.size()+
+			   " deferred= "+deferred+" avgQueueMs= "+
+			   (executed == 0 ? 0 : queueTime/executed));
+    }
+}
@@ -17,6 +17,13 @@ public interface ServerShimInterface{
 		       long seqNo, boolean toCache);
     
     
+    /**
+       Upcall delivering eventCount watch events for clientId,
+       numbered from firstEventId on, as a single message.
+     **/
+    public void eventBatch(byte[] events, int clientId, long firstEventId,
+			   int eventCount);
+
     /** 
 	Upcall delivering the result of executing clientId's reqId^th
 	read only request.
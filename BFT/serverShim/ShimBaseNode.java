@@ -7,6 +7,9 @@ import java.util.Hashtable;
 import java.util.Vector;
 import java.lang.Thread;
 import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.nio.ByteBuffer;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.io.File;
@@ -18,7 +21,10 @@ import BFT.messages.CPLoaded;
 import BFT.messages.CPTokenMessage;
 import BFT.messages.Reply;
 import BFT.messages.WatchReply;
+import BFT.messages.WatchBatchReply;
 import BFT.messages.ReadOnlyReply;
+import BFT.messages.ReadOnlyRejected;
+import BFT.messages.LeaseReadReply;
 import BFT.messages.BatchCompleted;
 import BFT.messages.Entry;
 import BFT.messages.FetchCommand;
@@ -37,8 +43,11 @@ import BFT.messages.LoadCPMessage;
 import BFT.messages.Retransmit;
 import BFT.messages.RequestCP;
 import BFT.messages.ReadOnlyRequest;
+import BFT.messages.LeaseReadRequest;
+import BFT.messages.NonDeterminism;
 import BFT.messages.ForwardCommand;
 import BFT.messages.FetchDenied;
+import BFT.messages.PushCommand;
 
 import BFT.messages.VerifiedMessageBase;
 import BFT.messages.Digest;
@@ -99,6 +108,34 @@ public class ShimBaseNode extends BaseNode
 
 
     boolean loadingCP = false;
+
+    // request bodies pushed by the filters ahead of ordering, indexed
+    // by digest.  the oldest entries are dropped once the cache is full
+    protected LinkedHashMap<ByteBuffer, Entry> staged =
+	new LinkedHashMap<ByteBuffer, Entry>(){
+	protected boolean removeEldestEntry(Map.Entry<ByteBuffer, Entry> eldest){
+	    return size() > BFT.Parameters.filterPushCacheSize;
+	}
+    };
+    protected long stagedHits = 0;
+    protected long stagedMisses = 0;
+
+    // read lease granted by the most recently executed batch
+    protected long leaseSeqNo = -1;
+    protected long leaseExpiry = 0;
+    // outstanding leased reads per client: {reqId, responder, leaseSeqNo}
+    protected Hashtable<Integer, long[]> leaseReads = 
+	new Hashtable<Integer, long[]>();
+    protected long leaseServed = 0;
+    protected long leaseExpired = 0;
+
+    // admission control for read only requests
+    protected ReadScheduler reads;
+    // last batch handed to the glue and last batch with a result;
+    // reads wait while the glue still has ordered work
+    protected long lastHandedOff = -1;
+    protected long lastResult = -1;
+    protected final Object orderedLock = new Object();
     
     public ShimBaseNode(String membership, int id,
 			byte[] initialCPToken){
@@ -141,6 +178,8 @@ public class ShimBaseNode extends BaseNode
 					       0);
 
 	pool = Executors.newCachedThreadPool();
+	fetchStart = new long[batches.length];
+	reads = new ReadScheduler(this);
 
 	
 
@@ -323,6 +362,7 @@ public class ShimBaseNode extends BaseNode
 	while (batches[index].isReadyForExecution() && batches[index].getNextBatch().getSeqNo() == baseSeqNo){
 	    acton(batches[index]);
 	    batches[index].clear();
+	    fetchStart[index] = 0;
 	    baseSeqNo += 1; // only updated on return res
 	    index = (index+1) % batches.length;
 	    res = true;
@@ -345,6 +385,18 @@ public class ShimBaseNode extends BaseNode
 //     	Debug.println("Executing next batch at : "+nb.getSeqNo() +
 //     		      " with commands: "+nb.getCommands());
 	long tmpTime = System.currentTimeMillis();
+	if (b.getCommands().getEntries().length > 0){
+	    synchronized(orderedLock){
+		lastHandedOff = nb.getSeqNo();
+	    }
+	}
+	// the lease runs from when this replica received the batch, by
+	// its own clock, not from the primary's ordered time
+	NonDeterminism nd = nb.getNonDeterminism();
+	if (nd.getLease() != 0){
+	    leaseSeqNo = nb.getSeqNo();
+	    leaseExpiry = b.getReceivedTime() + nd.getLease() - nd.getTime();
+	}
 	glue.exec(b.getCommands(), nb.getSeqNo(),
 		  nb.getNonDeterminism(), nb.takeCP());
 	
@@ -352,31 +404,139 @@ public class ShimBaseNode extends BaseNode
 
 
     protected void fetchCommands(NextBatchCertificate nbc, boolean fromAll){
+	long seqno = nbc.getNextBatch().getSeqNo();
+	int index = (int) (seqno % batches.length);
 	// first notify everybody of the batch and the expected contents
 	if (!fromAll){
 
 	    //	    System.out.println("fetching with the batch completed");
+	    if (BFT.Parameters.filterPush)
+		unstage(nbc);
 	    BatchCompleted bc = new BatchCompleted(nbc.getNextBatch(), getMyExecutionIndex());
 	    authenticateFilterMacArrayMessage(bc);
 	    sendToAllFilterReplicas(bc.getBytes());
+	    if (!nbc.getMissingEntries().hasMoreElements())
+		return;
+	    if (fetchStart[index] == 0)
+		fetchStart[index] = System.nanoTime();
+	    if (!BFT.Parameters.filterPush)
+		return;
+	    // the filters do not answer the batch completed when pushing,
+	    // so fetch whatever was not staged from its owner
+	    Vector<Entry>[] perFilter = missingByFilter(nbc, true);
+	    for (int i = 0; i < perFilter.length; i++){
+		if (perFilter[i].isEmpty())
+		    continue;
+		FetchCommand fc = 
+		    new FetchCommand(seqno,
+				     perFilter[i].toArray(new Entry[perFilter[i].size()]),
+				     getMyExecutionIndex());
+		authenticateFilterMacArrayMessage(fc);
+		sendToFilterReplica(fc.getBytes(), i);
+		fetchMessages++;
+	    }
 	    return;
 	}
+	if (fetchStart[index] == 0)
+	    fetchStart[index] = System.nanoTime();
+	// every filter but the owner gets one fetch holding all the
+	// missing entries it does not own
+	Vector<Entry>[] perFilter = missingByFilter(nbc, false);
+	for (int i = 0;i < perFilter.length; i++){
+	    if (perFilter[i].isEmpty())
+		continue;
+	    FetchCommand fc = 
+		new FetchCommand(seqno,
+				 perFilter[i].toArray(new Entry[perFilter[i].size()]),
+				 getMyExecutionIndex());
+	    authenticateFilterMacArrayMessage(fc);
+	    // System.out.println("fetching "+fc.getSeqNo()+" from "+i);
+	    sendToFilterReplica(fc.getBytes(), i);
+	    fetchMessages++;
+	}
+    }
+
+    /**
+       Group the missing entries of nbc by the filter they are fetched
+       from: their owner if owner is true, every other filter otherwise.
+     **/
+    protected Vector<Entry>[] missingByFilter(NextBatchCertificate nbc, boolean owner){
+	Vector<Entry>[] perFilter = new Vector[BFT.Parameters.getFilterCount()];
+	for (int i = 0; i < perFilter.length; i++)
+	    perFilter[i] = new Vector<Entry>();
 	Enumeration<Entry> entries = nbc.getMissingEntries();
-	int target;
 	while (entries.hasMoreElements()){
 	    Entry entry = entries.nextElement();
-	    FetchCommand fc = new FetchCommand(nbc.getNextBatch().getSeqNo(),
-					       entry, getMyExecutionIndex());
-	    target = (int)((entry.getClient()+1) % BFT.Parameters.getFilterCount());
-	    authenticateFilterMacArrayMessage(fc);
-	    // System.out.println("fetching "+fc.getSeqNo()+" client "+
-	    //		       entry.getClient()+" from all");
-	    for (int i = 0;i < BFT.Parameters.getFilterCount(); i++)
-		    if (i != target)
-			sendToFilterReplica(fc.getBytes(), i);
+	    int target = (int)((entry.getClient()+1) % BFT.Parameters.getFilterCount());
+	    for (int i = 0; i < perFilter.length; i++)
+		if ((i == target) == owner)
+		    perFilter[i].add(entry);
 	}
+	return perFilter;
     }
 
+    // start of the fetch for each batch, indexed like batches
+    protected long[] fetchStart;
+    protected long fetchMessages = 0;
+    protected long fetchedBatches = 0;
+    protected long fetchLatency = 0;
+
+    /**
+       Record the fetch latency of the batch at index if it just
+       became ready for execution
+     **/
+    protected void fetchDone(int index){
+	if (fetchStart[index] == 0 || !batches[index].isReadyForExecution())
+	    return;
+	fetchLatency += System.nanoTime() - fetchStart[index];
+	fetchStart[index] = 0;
+	fetchedBatches++;
+	if (fetchedBatches % 1000 == 0){
+	    System.out.println("Fetched batches="+fetchedBatches+
+			       " msgs/batch="+((double)fetchMessages/fetchedBatches)+
+			       " latency="+(fetchLatency/fetchedBatches/1000)+"us");
+	}
+    }
+
+
+    /**
+       Fill the missing commands of nbc from the staged request bodies
+     **/
+    protected void unstage(NextBatchCertificate nbc){
+	Vector<Entry> missing = new Vector<Entry>();
+	Enumeration<Entry> entries = nbc.getMissingEntries();
+	while (entries.hasMoreElements())
+	    missing.add(entries.nextElement());
+	for (Entry entry: missing){
+	    Entry body = staged.remove(ByteBuffer.wrap(entry.getDigest().getBytes()));
+	    if (body != null && nbc.addCommand(entry.getClient(), body))
+		stagedHits++;
+	    else
+		stagedMisses++;
+	}
+	if (!missing.isEmpty() && (stagedHits + stagedMisses) % 10000 < missing.size())
+	    System.out.println("Staged hits="+stagedHits+" misses="+stagedMisses+
+			       " cached="+staged.size());
+    }
+
+    protected void process(PushCommand pc){
+	if (!validateFilterMacArrayMessage(pc))
+	    BFT.Debug.kill("BAD FILTER");
+	Entry entry = pc.getEntry();
+	// only the owning filter pushes, and only full bodies
+	if (entry.has_digest() 
+	    || pc.getSendingReplica() != (entry.getClient()+1) % BFT.Parameters.getFilterCount())
+	    return;
+	// the batch may already be waiting on this body
+	int index = (int) (baseSeqNo % batches.length);
+	if (batches[index].isComplete() 
+	    && batches[index].addCommand(entry.getClient(), entry)){
+	    fetchDone(index);
+	    tryToExecute();
+	    return;
+	}
+	staged.put(ByteBuffer.wrap(entry.getMyDigest().getBytes()), entry);
+    }
 
     protected void process(ForwardCommand fwd){
 	if (fwd.getSeqNo() < baseSeqNo)
@@ -386,8 +546,12 @@ public class ShimBaseNode extends BaseNode
 
 	int index = (int) (fwd.getSeqNo() % batches.length);
 
-	boolean notcomplete = !batches[index].isComplete();
-	batches[index].addCommand(fwd.getEntry().getClient(), fwd.getEntry());
+	fetchMessages++;
+	Entry[] entries = fwd.getEntries();
+	// partial forwards are fine, the rest comes from other filters
+	for (int i = 0; i < entries.length; i++)
+	    batches[index].addCommand(entries[i].getClient(), entries[i]);
+	fetchDone(index);
 	tryToExecute();
     }
 
@@ -402,6 +566,7 @@ public class ShimBaseNode extends BaseNode
 	    return;
 	if (!validateFilterMacMessage(fd))
 	    BFT.Debug.kill("BAD FILTER");
+	fetchMessages++;
 	//	System.out.println("refetching!");
 	if (fd.getSendingReplica() == (fd.getEntry().getClient()+1) % BFT.Parameters.getFilterCount())
 	    fetchCommands( batches[index], true);
@@ -419,12 +584,74 @@ public class ShimBaseNode extends BaseNode
 	    Debug.kill("should have valid client mac array");
 	}
 	
-	//  need to rate limit read only requests
-	
-	// its valid, so execute it
-	glue.execReadOnly((int)(req.getCore().getSendingClient()),
-			  req.getCore().getRequestId(),
-			  req.getCore().getCommand());
+	// its valid, so queue it behind the ordered work
+	int client = (int)(req.getCore().getSendingClient());
+	long reqId = req.getCore().getRequestId();
+	if (!reads.submit(client, reqId, req.getCore().getCommand())){
+	    // shed, tell the client so it need not wait for a reply
+	    ReadOnlyRejected rej = 
+		new ReadOnlyRejected(getMyExecutionIndex(), reqId);
+	    authenticateClientMacMessage(rej, client);
+	    sendToClient(rej.getBytes(), client);
+	}
+    }
+
+    /**
+       true while a batch handed to the glue has not produced results
+     **/
+    protected boolean orderedPending(){
+	synchronized(orderedLock){
+	    return lastResult < lastHandedOff;
+	}
+    }
+
+    protected void waitForOrdered(long timeout){
+	synchronized(orderedLock){
+	    if (lastResult < lastHandedOff){
+		try{
+		    orderedLock.wait(timeout);
+		}catch(InterruptedException e){}
+	    }
+	}
+    }
+
+    /**
+       Process a read only request served under the read lease.  The
+       read is queued behind every batch executed so far, so the reply
+       reflects at least the state at leaseSeqNo.
+     **/
+    protected void process(LeaseReadRequest req){
+	if (!readyForRequests)
+	    return;
+	if (!validateClientMacArrayMessage(req)){
+	    Debug.kill("should have valid client mac array");
+	}
+	int client = (int) req.getCore().getSendingClient();
+	long reqId = req.getCore().getRequestId();
+	if (!BFT.Parameters.readLeases || leaseSeqNo < 0 || 
+	    System.currentTimeMillis() + BFT.Parameters.leaseSkew >= leaseExpiry){
+	    if (++leaseExpired % 1000 == 0)
+		System.out.println("Leased reads served= "+leaseServed+
+				   " expired= "+leaseExpired);
+	    LeaseReadReply rep = 
+		new LeaseReadReply(getMyExecutionIndex(), reqId, leaseSeqNo,
+				   LeaseReadReply.EXPIRED, null);
+	    authenticateClientMacMessage(rep, client);
+	    sendToClient(rep.getBytes(), client);
+	    return;
+	}
+	if (++leaseServed % 1000 == 0)
+	    System.out.println("Leased reads served= "+leaseServed+
+			       " expired= "+leaseExpired);
+	leaseReads.put(client, new long[]{reqId, req.getResponder(), leaseSeqNo});
+	if (!reads.submit(client, reqId, req.getCore().getCommand())){
+	    leaseReads.remove(client);
+	    LeaseReadReply rep = 
+		new LeaseReadReply(getMyExecutionIndex(), reqId, leaseSeqNo,
+				   LeaseReadReply.EXPIRED, null);
+	    authenticateClientMacMessage(rep, client);
+	    sendToClient(rep.getBytes(), client);
+	}
     }
 
 
@@ -798,8 +1025,10 @@ public class ShimBaseNode extends BaseNode
 	case MessageTags.FetchState: process((FetchState) vmb); return;
 	case MessageTags.AppState: process((AppState) vmb); return;
 	case MessageTags.ReadOnlyRequest: process((ReadOnlyRequest) vmb); return;
+	case MessageTags.LeaseReadRequest: process((LeaseReadRequest) vmb); return;
 	case MessageTags.ForwardCommand: process((ForwardCommand) vmb); return;
 	case MessageTags.FetchDenied: process((FetchDenied)vmb); return;
+	case MessageTags.PushCommand: process((PushCommand)vmb); return;
 	default: Debug.kill("servershim does not handle message "+vmb.getTag());
 	}
     }
@@ -843,6 +1072,12 @@ public class ShimBaseNode extends BaseNode
 // 		      " is going to cache: "+toCache+" and is "+result.length + " bytes long");
 	 
 	if (toCache){ // add to the reply cache
+	    synchronized(orderedLock){
+		if (seqNo > lastResult){
+		    lastResult = seqNo;
+		    orderedLock.notifyAll();
+		}
+	    }
 	    retransCount[clientId] = 0;
 	    Reply rep = new Reply(getMyExecutionIndex(), clientReqId, result);
 	    authenticateClientMacMessage(rep, clientId);
@@ -875,8 +1110,29 @@ public class ShimBaseNode extends BaseNode
 	}	
     }
 
+    public void eventBatch(byte[] events, int clientId, long firstEventId,
+			   int eventCount){
+	WatchBatchReply rep =
+	    new WatchBatchReply(getMyExecutionIndex(), firstEventId,
+				eventCount, events);
+	authenticateClientMacMessage(rep, clientId);
+	sendToClient(rep.getBytes(), clientId);
+    }
+
     public void readOnlyResult(byte[] result, int clientId, long reqId){
 	//Debug.println("\t\treadonlyresult for "+clientId+" at "+reqId);
+	long[] lease = leaseReads.get(clientId);
+	if (lease != null && lease[0] == reqId){
+	    leaseReads.remove(clientId);
+	    LeaseReadReply rep = 
+		new LeaseReadReply(getMyExecutionIndex(), reqId, lease[2],
+				   lease[1] == getMyExecutionIndex() ?
+				   LeaseReadReply.RESULT : LeaseReadReply.DIGEST,
+				   result);
+	    authenticateClientMacMessage(rep, clientId);
+	    sendToClient(rep.getBytes(), clientId);
+	    return;
+	}
 	ReadOnlyReply reply = 
 	    new ReadOnlyReply(getMyExecutionIndex(), reqId, result);
 	authenticateClientMacMessage(reply, clientId);
@@ -983,6 +1239,7 @@ public class ShimBaseNode extends BaseNode
     
     public void start(){
 	super.start();
+	reads.start();
 	System.out.println("started at : "+System.currentTimeMillis());
 	CheckPointState cps = null;
 	Long key = new Long(0);
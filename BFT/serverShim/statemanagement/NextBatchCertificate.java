@@ -29,6 +29,8 @@ public class NextBatchCertificate{
     NextBatch val;
     Hashtable<Long, Entry> commandList;
     Hashtable<Long, Entry> commands;
+    // local time the current nextbatch was first received
+    long received;
 
     public NextBatchCertificate(){
 	batches = new int[Parameters.getOrderCount()];
@@ -105,6 +107,7 @@ public class NextBatchCertificate{
 	    if (!rep.checkAuthenticationDigest())
 		BFT.Debug.kill("BAD authentication digest");
 	    val = rep;
+	    received = System.currentTimeMillis();
 	    CommandBatch cb = rep.getCommands();
 	    Entry[] entries = cb.getEntries();
 	    for (int i = 0;i < entries.length; i++){
@@ -134,6 +137,13 @@ public class NextBatchCertificate{
 	return val;
     }
 
+    /**
+       Local time at which the current nextbatch was first received
+     **/
+    public long getReceivedTime(){
+	return received;
+    }
+
 
     public boolean isReadyForExecution(){
 	if (!isComplete()){
@@ -0,0 +1,64 @@
+// $Id$
+
+package BFT.util;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Time spent in each named stage of request processing, summed over
+ * the life of the process.  Nothing is recorded unless
+ * BFT.Parameters.stageTimes is set.  The averages are printed at exit,
+ * one line per stage:
+ *
+ *   STAGE <name> <count> <average us>
+ **/
+public class StageTimes{
+
+    private static final TreeMap<String, long[]> stages =
+	new TreeMap<String, long[]>();
+
+    static{
+	Runtime.getRuntime().addShutdownHook(new Thread(){
+		public void run(){
+		    print();
+		}
+	    });
+    }
+
+    public static void add(String stage, long nanos){
+	if (!BFT.Parameters.stageTimes)
+	    return;
+	synchronized(stages){
+	    long[] s = stages.get(stage);
+	    if (s == null){
+		s = new long[2];
+		stages.put(stage, s);
+	    }
+	    s[0]++;
+	    s[1] += nanos;
+	}
+    }
+
+    /**
+     * A copy of the stages recorded so far, as name -> {count, total ns}
+     **/
+    public static Map<String, long[]> snapshot(){
+	TreeMap<String, long[]> copy = new TreeMap<String, long[]>();
+	synchronized(stages){
+	    for (Map.Entry<String, long[]> e: stages.entrySet())
+		copy.put(e.getKey(), e.getValue().clone());
+	}
+	return copy;
+    }
+
+    public static void print(){
+	synchronized(stages){
+	    for (Map.Entry<String, long[]> e: stages.entrySet()){
+		long[] s = e.getValue();
+		System.out.println("STAGE "+e.getKey()+" "+s[0]+" "+
+				   s[1]/s[0]/1000);
+	    }
+	}
+    }
+}